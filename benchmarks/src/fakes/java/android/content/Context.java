@@ -0,0 +1,196 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package android.content;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.net.ConnectivityManager;
+import android.os.Handler;
+
+/**
+ * JVM fake of android.content.Context, with its own files and cache directories, in-memory shared preferences 
+ * and a ConnectivityManager. Broadcasts are delivered to the registered receivers on the main Looper.
+ */
+public class Context {
+
+	public static final String CONNECTIVITY_SERVICE = "connectivity";
+	public static final int MODE_PRIVATE = 0;
+
+	private final File mDir;
+	private final ConnectivityManager mConnectivityManager = new ConnectivityManager();
+	private final Map<String, MemorySharedPreferences> mPreferences = new HashMap<String, MemorySharedPreferences>();
+	private final List<BroadcastReceiver> mReceivers = new ArrayList<BroadcastReceiver>();
+	private final List<IntentFilter> mFilters = new ArrayList<IntentFilter>();
+	private final Handler mHandler = new Handler();
+
+	/**
+	 * @param dir directory that holds the files and cache directories of the context.
+	 */
+	public Context(File dir){
+		mDir = dir;
+	}
+
+	public Context getApplicationContext(){
+		return this;
+	}
+
+	public String getPackageName(){
+		return "com.catchoom.test";
+	}
+
+	public File getFilesDir(){
+		File dir = new File(mDir, "files");
+		dir.mkdirs();
+		return dir;
+	}
+
+	public File getCacheDir(){
+		File dir = new File(mDir, "cache");
+		dir.mkdirs();
+		return dir;
+	}
+
+	public Object getSystemService(String name){
+		return CONNECTIVITY_SERVICE.equals(name) ? mConnectivityManager : null;
+	}
+
+	public synchronized SharedPreferences getSharedPreferences(String name, int mode){
+		MemorySharedPreferences preferences = mPreferences.get(name);
+		if(preferences == null){
+			preferences = new MemorySharedPreferences();
+			mPreferences.put(name, preferences);
+		}
+		return preferences;
+	}
+
+	public synchronized Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter){
+		mReceivers.add(receiver);
+		mFilters.add(filter);
+		return null;
+	}
+
+	public synchronized void unregisterReceiver(BroadcastReceiver receiver){
+		int index = mReceivers.indexOf(receiver);
+		if(index < 0){
+			throw new IllegalArgumentException("Receiver not registered: " + receiver);
+		}
+		mReceivers.remove(index);
+		mFilters.remove(index);
+	}
+
+	public synchronized void sendBroadcast(final Intent intent){
+		for(int i = 0; i < mReceivers.size(); i++){
+			if(mFilters.get(i).hasAction(intent.getAction())){
+				final BroadcastReceiver receiver = mReceivers.get(i);
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						receiver.onReceive(Context.this, intent);
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Fake only: number of receivers still registered.
+	 */
+	public synchronized int getRegisteredReceivers(){
+		return mReceivers.size();
+	}
+
+	static class MemorySharedPreferences implements SharedPreferences {
+
+		private final Map<String, Object> mValues = new HashMap<String, Object>();
+
+		@Override
+		public synchronized long getLong(String key, long defValue) {
+			Object value = mValues.get(key);
+			return value instanceof Long ? (Long) value : defValue;
+		}
+
+		@Override
+		public synchronized String getString(String key, String defValue) {
+			Object value = mValues.get(key);
+			return value instanceof String ? (String) value : defValue;
+		}
+
+		@Override
+		public synchronized int getInt(String key, int defValue) {
+			Object value = mValues.get(key);
+			return value instanceof Integer ? (Integer) value : defValue;
+		}
+
+		@Override
+		public Editor edit() {
+			final Map<String, Object> changes = new HashMap<String, Object>();
+			return new Editor() {
+				@Override
+				public Editor putLong(String key, long value) {
+					changes.put(key, value);
+					return this;
+				}
+
+				@Override
+				public Editor putString(String key, String value) {
+					changes.put(key, value);
+					return this;
+				}
+
+				@Override
+				public Editor putInt(String key, int value) {
+					changes.put(key, value);
+					return this;
+				}
+
+				@Override
+				public Editor remove(String key) {
+					changes.put(key, null);
+					return this;
+				}
+
+				@Override
+				public void apply() {
+					commit();
+				}
+
+				@Override
+				public boolean commit() {
+					synchronized (MemorySharedPreferences.this) {
+						for(Map.Entry<String, Object> change : changes.entrySet()){
+							if(change.getValue() == null){
+								mValues.remove(change.getKey());
+							}else{
+								mValues.put(change.getKey(), change.getValue());
+							}
+						}
+					}
+					return true;
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,206 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package android.graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * JVM fake of android.graphics.Bitmap, backed by an array of ARGB pixels. 
+ * 
+ * Like the real one, it throws IllegalStateException when a recycled bitmap is used, and createBitmap() and 
+ * createScaledBitmap() return the source itself when the result would be identical.
+ */
+public final class Bitmap {
+
+	public enum Config { ALPHA_8, RGB_565, ARGB_4444, ARGB_8888 }
+
+	public enum CompressFormat { JPEG, PNG, WEBP }
+
+	private final int mWidth;
+	private final int mHeight;
+	private final int[] mPixels;
+	private final boolean mIsMutable;
+	private boolean mIsRecycled = false;
+
+	private Bitmap(int width, int height, int[] pixels, boolean isMutable){
+		if(width <= 0 || height <= 0){
+			throw new IllegalArgumentException("width and height must be > 0");
+		}
+		mWidth = width;
+		mHeight = height;
+		mPixels = pixels;
+		mIsMutable = isMutable;
+	}
+
+	public static Bitmap createBitmap(int width, int height, Config config){
+		return new Bitmap(width, height, new int[width * height], true);
+	}
+
+	public static Bitmap createBitmap(int[] colors, int width, int height, Config config){
+		int[] pixels = new int[width * height];
+		System.arraycopy(colors, 0, pixels, 0, pixels.length);
+		return new Bitmap(width, height, pixels, false);
+	}
+
+	public static Bitmap createBitmap(Bitmap source, int x, int y, int width, int height){
+		source.checkRecycled();
+		if(x < 0 || y < 0 || x + width > source.mWidth || y + height > source.mHeight){
+			throw new IllegalArgumentException("The region is outside of the bitmap");
+		}
+		if(!source.mIsMutable && x == 0 && y == 0 && width == source.mWidth && height == source.mHeight){
+			return source;
+		}
+		int[] pixels = new int[width * height];
+		for(int row = 0; row < height; row++){
+			System.arraycopy(source.mPixels, (y + row) * source.mWidth + x, pixels, row * width, width);
+		}
+		return new Bitmap(width, height, pixels, false);
+	}
+
+	public static Bitmap createScaledBitmap(Bitmap source, int dstWidth, int dstHeight, boolean filter){
+		source.checkRecycled();
+		if(dstWidth == source.mWidth && dstHeight == source.mHeight){
+			return source;
+		}
+		int[] pixels = new int[dstWidth * dstHeight];
+		for(int y = 0; y < dstHeight; y++){
+			int sy = (int) ((y + 0.5) * source.mHeight / dstHeight);
+			for(int x = 0; x < dstWidth; x++){
+				int sx = (int) ((x + 0.5) * source.mWidth / dstWidth);
+				pixels[y * dstWidth + x] = source.mPixels[sy * source.mWidth + sx];
+			}
+		}
+		return new Bitmap(dstWidth, dstHeight, pixels, false);
+	}
+
+	/**
+	 * Fake only: a bitmap with the pixels of an AWT image.
+	 */
+	public static Bitmap fromImage(BufferedImage image){
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		return new Bitmap(width, height, pixels, false);
+	}
+
+	/**
+	 * Fake only: an AWT image with the pixels of this bitmap.
+	 */
+	public BufferedImage toImage(){
+		checkRecycled();
+		BufferedImage image = new BufferedImage(mWidth, mHeight, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, mWidth, mHeight, mPixels, 0, mWidth);
+		return image;
+	}
+
+	public int getWidth(){
+		return mWidth;
+	}
+
+	public int getHeight(){
+		return mHeight;
+	}
+
+	public boolean isMutable(){
+		return mIsMutable;
+	}
+
+	public int getByteCount(){
+		return mWidth * mHeight * 4;
+	}
+
+	public int getPixel(int x, int y){
+		checkRecycled();
+		if(x < 0 || y < 0 || x >= mWidth || y >= mHeight){
+			throw new IllegalArgumentException("x and y must be inside the bitmap");
+		}
+		return mPixels[y * mWidth + x];
+	}
+
+	public void getPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height){
+		checkRecycled();
+		if(x < 0 || y < 0 || x + width > mWidth || y + height > mHeight){
+			throw new IllegalArgumentException("The region is outside of the bitmap");
+		}
+		for(int row = 0; row < height; row++){
+			System.arraycopy(mPixels, (y + row) * mWidth + x, pixels, offset + row * stride, width);
+		}
+	}
+
+	public void setPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height){
+		checkRecycled();
+		if(!mIsMutable){
+			throw new IllegalStateException("The bitmap is immutable");
+		}
+		for(int row = 0; row < height; row++){
+			System.arraycopy(pixels, offset + row * stride, mPixels, (y + row) * mWidth + x, width);
+		}
+	}
+
+	public Bitmap copy(Config config, boolean isMutable){
+		checkRecycled();
+		return new Bitmap(mWidth, mHeight, mPixels.clone(), isMutable);
+	}
+
+	public boolean compress(CompressFormat format, int quality, OutputStream stream){
+		checkRecycled();
+		try {
+			if(format != CompressFormat.JPEG){
+				return ImageIO.write(toImage(), "png", stream);
+			}
+			ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(Math.max(0, Math.min(100, quality)) / 100f);
+			MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(stream);
+			writer.setOutput(output);
+			writer.write(null, new IIOImage(toImage(), null, null), param);
+			output.close();
+			writer.dispose();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	public void recycle(){
+		mIsRecycled = true;
+	}
+
+	public boolean isRecycled(){
+		return mIsRecycled;
+	}
+
+	private void checkRecycled(){
+		if(mIsRecycled){
+			throw new IllegalStateException("Can't call this method on a recycled bitmap");
+		}
+	}
+}
@@ -0,0 +1,52 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package android.net;
+
+/**
+ * JVM fake of android.net.ConnectivityManager. The network is a connected Wi-Fi one until the test changes it 
+ * with {@link #setActiveNetwork(boolean, boolean)}.
+ */
+public class ConnectivityManager {
+
+	public static final String CONNECTIVITY_ACTION = "android.net.conn.CONNECTIVITY_CHANGE";
+	public static final int TYPE_MOBILE = 0;
+	public static final int TYPE_WIFI = 1;
+
+	private volatile boolean mIsConnected = true;
+	private volatile boolean mIsMetered = false;
+
+	public NetworkInfo getActiveNetworkInfo(){
+		return mIsConnected ? new NetworkInfo(mIsMetered ? TYPE_MOBILE : TYPE_WIFI) : null;
+	}
+
+	public boolean isActiveNetworkMetered(){
+		return mIsMetered;
+	}
+
+	/**
+	 * Fake only: changes the active network. Send a CONNECTIVITY_ACTION broadcast to notify the receivers.
+	 */
+	public void setActiveNetwork(boolean isConnected, boolean isMetered){
+		mIsConnected = isConnected;
+		mIsMetered = isMetered;
+	}
+}
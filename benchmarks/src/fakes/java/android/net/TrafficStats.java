@@ -0,0 +1,65 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package android.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JVM fake of android.net.TrafficStats. The fake network clients add the bytes they send and receive.
+ */
+public class TrafficStats {
+
+	public static final int UNSUPPORTED = -1;
+
+	private static final AtomicLong TX_BYTES = new AtomicLong();
+	private static final AtomicLong RX_BYTES = new AtomicLong();
+	private static volatile boolean sIsSupported = true;
+
+	public static long getUidTxBytes(int uid){
+		return sIsSupported ? TX_BYTES.get() : UNSUPPORTED;
+	}
+
+	public static long getUidRxBytes(int uid){
+		return sIsSupported ? RX_BYTES.get() : UNSUPPORTED;
+	}
+
+	/**
+	 * Fake only: counts bytes sent by the app.
+	 */
+	public static void addTxBytes(long bytes){
+		TX_BYTES.addAndGet(bytes);
+	}
+
+	/**
+	 * Fake only: counts bytes received by the app.
+	 */
+	public static void addRxBytes(long bytes){
+		RX_BYTES.addAndGet(bytes);
+	}
+
+	/**
+	 * Fake only: makes the counters UNSUPPORTED, as on devices without per-UID statistics.
+	 */
+	public static void setSupported(boolean isSupported){
+		sIsSupported = isSupported;
+	}
+}
@@ -0,0 +1,70 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package android.os;
+
+/**
+ * JVM fake of android.os.Handler. Only the main {@link Looper} exists.
+ */
+public class Handler {
+
+	private final Looper mLooper;
+
+	public Handler(){
+		this(Looper.getMainLooper());
+	}
+
+	public Handler(Looper looper){
+		mLooper = looper;
+	}
+
+	public Looper getLooper(){
+		return mLooper;
+	}
+
+	public final boolean post(Runnable r){
+		return postDelayed(r, 0);
+	}
+
+	public final boolean postDelayed(Runnable r, long delayMillis){
+		mLooper.post(this, r, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+		return true;
+	}
+
+	public final boolean postAtTime(Runnable r, long uptimeMillis){
+		mLooper.post(this, r, uptimeMillis);
+		return true;
+	}
+
+	public final void removeCallbacks(Runnable r){
+		mLooper.remove(this, r);
+	}
+
+	public final void removeCallbacksAndMessages(Object token){
+		if(token == null){
+			mLooper.remove(this, null);
+		}
+	}
+
+	public final boolean hasCallbacks(Runnable r){
+		return mLooper.has(this, r);
+	}
+}
@@ -0,0 +1,188 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package android.os;
+
+import java.util.PriorityQueue;
+
+/**
+ * JVM fake of android.os.Looper. There is only the main looper, and it only runs when the test or the benchmark
+ * asks for it, on the thread that asks: {@link #runUntil(long)}, {@link #runFor(long)} or {@link #runUntilIdle()}.
+ * Tasks can be posted from any thread.
+ */
+public final class Looper {
+
+	private static final Looper MAIN_LOOPER = new Looper();
+
+	static class Task implements Comparable<Task> {
+		final Handler mHandler;
+		final Runnable mRunnable;
+		final long mWhenMillis;
+		final long mSequence;
+
+		Task(Handler handler, Runnable runnable, long whenMillis, long sequence){
+			mHandler = handler;
+			mRunnable = runnable;
+			mWhenMillis = whenMillis;
+			mSequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Task other) {
+			if(mWhenMillis != other.mWhenMillis){
+				return mWhenMillis < other.mWhenMillis ? -1 : 1;
+			}
+			return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+		}
+	}
+
+	private final PriorityQueue<Task> mTasks = new PriorityQueue<Task>();
+	private final MessageQueue mQueue = new MessageQueue();
+	private long mNextSequence = 0;
+	private volatile Thread mThread;
+
+	private Looper(){
+	}
+
+	public static Looper getMainLooper(){
+		return MAIN_LOOPER;
+	}
+
+	public static Looper myLooper(){
+		return MAIN_LOOPER.mThread == Thread.currentThread() ? MAIN_LOOPER : null;
+	}
+
+	public static MessageQueue myQueue(){
+		Looper looper = myLooper();
+		return looper != null ? looper.mQueue : null;
+	}
+
+	public MessageQueue getQueue(){
+		return mQueue;
+	}
+
+	public Thread getThread(){
+		return mThread;
+	}
+
+	synchronized void post(Handler handler, Runnable runnable, long whenMillis){
+		mTasks.add(new Task(handler, runnable, whenMillis, mNextSequence++));
+		notifyAll();
+	}
+
+	synchronized void remove(Handler handler, Runnable runnable){
+		java.util.Iterator<Task> iterator = mTasks.iterator();
+		while(iterator.hasNext()){
+			Task task = iterator.next();
+			if(task.mHandler == handler && (runnable == null || task.mRunnable == runnable)){
+				iterator.remove();
+			}
+		}
+	}
+
+	synchronized boolean has(Handler handler, Runnable runnable){
+		for(Task task : mTasks){
+			if(task.mHandler == handler && task.mRunnable == runnable){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Fake only: runs the tasks due until the given time, in order. In simulated time the clock jumps from task to
+	 * task and ends at the given time; in real time this waits until then. The idle handlers run every time there 
+	 * are no tasks due anymore.
+	 */
+	public void runUntil(long uptimeMillis){
+		mThread = Thread.currentThread();
+		boolean hasRunTasks = true;
+		while(true){
+			Task task;
+			synchronized (this) {
+				task = mTasks.peek();
+				long now = SystemClock.uptimeMillis();
+				boolean isDue = task != null && task.mWhenMillis <= now;
+				if(!isDue && hasRunTasks){
+					task = null;
+				}else if(task == null || task.mWhenMillis > uptimeMillis){
+					if(SystemClock.isSimulated() || now >= uptimeMillis){
+						SystemClock.advanceTo(uptimeMillis);
+						return;
+					}
+					waitUntil(Math.min(uptimeMillis, task == null ? Long.MAX_VALUE : task.mWhenMillis) - now);
+					continue;
+				}else if(!isDue && !SystemClock.isSimulated()){
+					waitUntil(task.mWhenMillis - now);
+					continue;
+				}else{
+					SystemClock.advanceTo(task.mWhenMillis);
+					mTasks.poll();
+				}
+			}
+			if(task == null){
+				hasRunTasks = false;
+				mQueue.runIdleHandlers();
+				continue;
+			}
+			hasRunTasks = true;
+			task.mRunnable.run();
+		}
+	}
+
+	private void waitUntil(long millis){
+		try {
+			wait(Math.max(1, millis));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Fake only: runs the tasks due in the next millis milliseconds.
+	 */
+	public void runFor(long millis){
+		runUntil(SystemClock.uptimeMillis() + millis);
+	}
+
+	/**
+	 * Fake only: runs the tasks that are already due.
+	 */
+	public void runUntilIdle(){
+		runUntil(SystemClock.uptimeMillis());
+	}
+
+	/**
+	 * Fake only: number of tasks waiting to run.
+	 */
+	public synchronized int getPendingTasks(){
+		return mTasks.size();
+	}
+
+	/**
+	 * Fake only: drops all the tasks, so a test doesn't see the ones of the previous test.
+	 */
+	public synchronized void reset(){
+		mTasks.clear();
+		mQueue.reset();
+	}
+}
@@ -0,0 +1,71 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package android.os;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM fake of android.os.MessageQueue. The idle handlers run when the main {@link Looper} has run all the tasks due.
+ */
+public final class MessageQueue {
+
+	public interface IdleHandler {
+		boolean queueIdle();
+	}
+
+	private final List<IdleHandler> mIdleHandlers = new ArrayList<IdleHandler>();
+
+	MessageQueue(){
+	}
+
+	public synchronized void addIdleHandler(IdleHandler handler){
+		mIdleHandlers.add(handler);
+	}
+
+	public synchronized void removeIdleHandler(IdleHandler handler){
+		mIdleHandlers.remove(handler);
+	}
+
+	/**
+	 * Fake only: number of idle handlers registered.
+	 */
+	public synchronized int getIdleHandlers(){
+		return mIdleHandlers.size();
+	}
+
+	void runIdleHandlers(){
+		List<IdleHandler> handlers;
+		synchronized (this) {
+			handlers = new ArrayList<IdleHandler>(mIdleHandlers);
+		}
+		for(IdleHandler handler : handlers){
+			if(!handler.queueIdle()){
+				removeIdleHandler(handler);
+			}
+		}
+	}
+
+	synchronized void reset(){
+		mIdleHandlers.clear();
+	}
+}
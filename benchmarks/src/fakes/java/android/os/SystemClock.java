@@ -0,0 +1,71 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package android.os;
+
+/**
+ * JVM fake of android.os.SystemClock.
+ * 
+ * By default the clock follows System.nanoTime(). Benchmarks and tests that run in simulated time call 
+ * {@link #setSimulatedTime(long)}; the clock then only moves when the main {@link Looper} is advanced.
+ */
+public final class SystemClock {
+
+	private static final long START_NANOS = System.nanoTime();
+	private static volatile boolean sIsSimulated = false;
+	private static volatile long sSimulatedMillis = 0;
+
+	private SystemClock(){
+	}
+
+	public static long elapsedRealtime(){
+		return sIsSimulated ? sSimulatedMillis : (System.nanoTime() - START_NANOS) / 1000000;
+	}
+
+	public static long uptimeMillis(){
+		return elapsedRealtime();
+	}
+
+	/**
+	 * Fake only: stops the clock at the given time. It moves when the main Looper runs the tasks posted in the future.
+	 */
+	public static void setSimulatedTime(long millis){
+		sSimulatedMillis = millis;
+		sIsSimulated = true;
+	}
+
+	/**
+	 * Fake only: goes back to the real clock.
+	 */
+	public static void useRealTime(){
+		sIsSimulated = false;
+	}
+
+	public static boolean isSimulated(){
+		return sIsSimulated;
+	}
+
+	static void advanceTo(long millis){
+		if(millis > sSimulatedMillis){
+			sSimulatedMillis = millis;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package android.util;
+
+/**
+ * JVM fake of android.util.Log. Prints to the standard error when the "fakes.log" system property is true.
+ */
+public final class Log {
+
+	private static final boolean ENABLED = Boolean.getBoolean("fakes.log");
+
+	private Log(){
+	}
+
+	private static int print(String level, String tag, String msg, Throwable tr){
+		if(ENABLED){
+			System.err.println(level + "/" + tag + ": " + msg + (tr == null ? "" : " " + tr));
+		}
+		return 0;
+	}
+
+	public static int v(String tag, String msg){
+		return print("V", tag, msg, null);
+	}
+
+	public static int d(String tag, String msg){
+		return print("D", tag, msg, null);
+	}
+
+	public static int i(String tag, String msg){
+		return print("I", tag, msg, null);
+	}
+
+	public static int w(String tag, String msg){
+		return print("W", tag, msg, null);
+	}
+
+	public static int w(String tag, String msg, Throwable tr){
+		return print("W", tag, msg, tr);
+	}
+
+	public static int e(String tag, String msg){
+		return print("E", tag, msg, null);
+	}
+
+	public static int e(String tag, String msg, Throwable tr){
+		return print("E", tag, msg, tr);
+	}
+}
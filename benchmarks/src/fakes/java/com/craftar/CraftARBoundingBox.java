@@ -0,0 +1,43 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.craftar;
+
+/**
+ * JVM fake of the bounding box of a result, in normalized coordinates.
+ */
+public class CraftARBoundingBox {
+
+	public float TLx, TLy, TRx, TRy, BRx, BRy, BLx, BLy;
+
+	public CraftARBoundingBox(){
+	}
+
+	/**
+	 * Fake only: an axis-aligned box.
+	 */
+	public CraftARBoundingBox(float left, float top, float right, float bottom){
+		TLx = left; TLy = top;
+		TRx = right; TRy = top;
+		BRx = right; BRy = bottom;
+		BLx = left; BLy = bottom;
+	}
+}
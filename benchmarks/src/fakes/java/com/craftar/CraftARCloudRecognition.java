@@ -0,0 +1,86 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.craftar;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * JVM fake of the cloud image recognition module. Searches are served by a {@link FakeSearchEngine}.
+ */
+public class CraftARCloudRecognition {
+
+	private static final CraftARCloudRecognition INSTANCE = new CraftARCloudRecognition();
+
+	private final FakeSearchModule mModule = new FakeSearchModule("Cloud");
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	public static CraftARCloudRecognition Instance(){
+		return INSTANCE;
+	}
+
+	public void search(CraftARQueryImage image){
+		mModule.search(image);
+	}
+
+	public void setCraftARSearchResponseHandler(CraftARSearchResponseHandler handler){
+		mModule.setResponseHandler(handler);
+	}
+
+	public void setCollection(String token, final SetCloudCollectionListener listener){
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				listener.collectionReady();
+			}
+		});
+	}
+
+	/**
+	 * Fake only: replaces the engine that searches the queries.
+	 */
+	public void setEngine(FakeSearchEngine engine){
+		mModule.setEngine(engine);
+	}
+
+	/**
+	 * Fake only: time between the end of a search and its response.
+	 */
+	public void setResponseDelayMillis(long responseDelayMillis){
+		mModule.setResponseDelayMillis(responseDelayMillis);
+	}
+
+	/**
+	 * Fake only: number of queries searched since the last reset.
+	 */
+	public long getSearches(){
+		return mModule.getSearches();
+	}
+
+	/**
+	 * Fake only: drops the pending searches, the engine and the response handler.
+	 */
+	public void reset(){
+		mModule.reset();
+		mHandler.removeCallbacksAndMessages(null);
+	}
+}
@@ -0,0 +1,74 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.craftar;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * JVM fake of an on-device collection. A sync succeeds unless the test sets an error with {@link #setSyncError(CraftARError)}.
+ */
+public class CraftAROnDeviceCollection {
+
+	private final String mName;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private volatile CraftARError mSyncError;
+	private volatile int mSyncs = 0;
+
+	public CraftAROnDeviceCollection(String name){
+		mName = name;
+	}
+
+	public String getName(){
+		return mName;
+	}
+
+	public void sync(final CraftAROnDeviceCollectionManager.SyncCollectionListener listener){
+		mSyncs++;
+		final CraftARError error = mSyncError;
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				listener.syncProgress(CraftAROnDeviceCollection.this, 0.5f);
+				if(error == null){
+					listener.syncSuccessful(CraftAROnDeviceCollection.this);
+				}else{
+					listener.syncFailed(CraftAROnDeviceCollection.this, error);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Fake only: makes the next syncs fail with the given error, or succeed if null.
+	 */
+	public void setSyncError(CraftARError error){
+		mSyncError = error;
+	}
+
+	/**
+	 * Fake only: number of sync calls.
+	 */
+	public int getSyncs(){
+		return mSyncs;
+	}
+}
@@ -0,0 +1,147 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.craftar;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * JVM fake of the manager of the on-device collections stored in the device. Collections added from a bundle 
+ * take the name of the bundle file; collections added with a token take the token as name.
+ */
+public class CraftAROnDeviceCollectionManager {
+
+	public interface AddCollectionListener {
+		void collectionAdded(CraftAROnDeviceCollection collection);
+		void addCollectionFailed(CraftARError error);
+		void addCollectionProgress(float progress);
+	}
+
+	public interface SyncCollectionListener {
+		void syncSuccessful(CraftAROnDeviceCollection collection);
+		void syncFinishedWithErrors(CraftAROnDeviceCollection collection, CraftARError error);
+		void syncProgress(CraftAROnDeviceCollection collection, float progress);
+		void syncFailed(CraftAROnDeviceCollection collection, CraftARError error);
+	}
+
+	private static final CraftAROnDeviceCollectionManager INSTANCE = new CraftAROnDeviceCollectionManager();
+
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private final Map<String, CraftAROnDeviceCollection> mCollections = new HashMap<String, CraftAROnDeviceCollection>();
+	private final List<String> mAddedBundles = new ArrayList<String>();
+	private CraftARError mAddError;
+
+	public static CraftAROnDeviceCollectionManager Instance(){
+		return INSTANCE;
+	}
+
+	public synchronized CraftAROnDeviceCollection get(String token){
+		return mCollections.get(token);
+	}
+
+	public void addCollectionWithToken(final String token, final AddCollectionListener listener){
+		add(token, token, listener);
+	}
+
+	/**
+	 * Adds the collection of the bundle at the given path. The bundle file must exist.
+	 */
+	public void addCollection(AddCollectionListener listener, String bundlePath){
+		File bundle = new File(bundlePath);
+		if(!bundle.isFile()){
+			postFailure(listener, new CraftARError(CraftARError.ERROR_CODES.OTHER, "Bundle not found: " + bundlePath));
+			return;
+		}
+		synchronized (this) {
+			mAddedBundles.add(bundlePath);
+		}
+		add(bundle.getName(), bundle.getName(), listener);
+	}
+
+	private void add(final String key, final String name, final AddCollectionListener listener){
+		final CraftARError error;
+		synchronized (this) {
+			error = mAddError;
+		}
+		if(error != null){
+			postFailure(listener, error);
+			return;
+		}
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				CraftAROnDeviceCollection collection = new CraftAROnDeviceCollection(name);
+				synchronized (CraftAROnDeviceCollectionManager.this) {
+					mCollections.put(key, collection);
+				}
+				listener.addCollectionProgress(1);
+				listener.collectionAdded(collection);
+			}
+		});
+	}
+
+	private void postFailure(final AddCollectionListener listener, final CraftARError error){
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				listener.addCollectionFailed(error);
+			}
+		});
+	}
+
+	/**
+	 * Fake only: stores a collection as if it had been added before.
+	 */
+	public synchronized void putCollection(String token, CraftAROnDeviceCollection collection){
+		mCollections.put(token, collection);
+	}
+
+	/**
+	 * Fake only: makes the next additions fail with the given error, or succeed if null.
+	 */
+	public synchronized void setAddError(CraftARError error){
+		mAddError = error;
+	}
+
+	/**
+	 * Fake only: paths of the bundles added with addCollection(), in order.
+	 */
+	public synchronized List<String> getAddedBundles(){
+		return new ArrayList<String>(mAddedBundles);
+	}
+
+	/**
+	 * Fake only: forgets all the collections.
+	 */
+	public synchronized void reset(){
+		mHandler.removeCallbacksAndMessages(null);
+		mCollections.clear();
+		mAddedBundles.clear();
+		mAddError = null;
+	}
+}
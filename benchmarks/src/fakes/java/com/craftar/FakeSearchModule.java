@@ -0,0 +1,211 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.craftar;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Search queue shared by the fake on-device and cloud modules. Queries are searched one after the other, each 
+ * one taking the latency given by the engine, and the responses are sent on the main Looper in order.
+ * 
+ * The pending count drops when a search finishes; the response is sent responseDelayMillis later, as the SDK 
+ * posts it to the main thread.
+ * 
+ * With setWorkers(), the queries are searched in parallel by that many worker threads instead, as a module that 
+ * searches on several cores would. The engine runs on the workers then, and the responses are sent in the order 
+ * the searches finish, each one with the request code given when search() was called.
+ */
+class FakeSearchModule {
+
+	private final static FakeSearchEngine EMPTY_ENGINE = new FakeSearchEngine() {
+		@Override
+		public long getLatencyMillis(CraftARQueryImage query) {
+			return 1;
+		}
+
+		@Override
+		public ArrayList<CraftARResult> search(CraftARQueryImage query) {
+			return new ArrayList<CraftARResult>();
+		}
+	};
+
+	private final String mName;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private final LinkedList<CraftARQueryImage> mQueue = new LinkedList<CraftARQueryImage>();
+	private FakeSearchEngine mEngine = EMPTY_ENGINE;
+	private CraftARSearchResponseHandler mResponseHandler;
+	private long mResponseDelayMillis = 0;
+	private boolean mIsSearching = false;
+	private int mNextRequestCode = 1;
+	private long mSearches = 0;
+	private ExecutorService mWorkers;
+	private int mRunning = 0;
+
+	FakeSearchModule(String name){
+		mName = name;
+	}
+
+	synchronized void setEngine(FakeSearchEngine engine){
+		mEngine = engine != null ? engine : EMPTY_ENGINE;
+	}
+
+	synchronized void setResponseDelayMillis(long responseDelayMillis){
+		mResponseDelayMillis = responseDelayMillis;
+	}
+
+	synchronized void setResponseHandler(CraftARSearchResponseHandler responseHandler){
+		mResponseHandler = responseHandler;
+	}
+
+	synchronized CraftARSearchResponseHandler getResponseHandler(){
+		return mResponseHandler;
+	}
+
+	synchronized void setWorkers(int workers){
+		if(mWorkers != null){
+			mWorkers.shutdownNow();
+			mWorkers = null;
+		}
+		if(workers > 0){
+			mWorkers = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, mName + " search worker");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	synchronized void search(CraftARQueryImage query){
+		mSearches++;
+		if(mWorkers != null){
+			searchInWorker(query);
+			return;
+		}
+		mQueue.add(query);
+		if(!mIsSearching){
+			startNext();
+		}
+	}
+
+	synchronized int getPendingSearchRequestsCount(){
+		return mQueue.size() + mRunning;
+	}
+
+	synchronized long getSearches(){
+		return mSearches;
+	}
+
+	synchronized void reset(){
+		mHandler.removeCallbacksAndMessages(null);
+		mQueue.clear();
+		mIsSearching = false;
+		mEngine = EMPTY_ENGINE;
+		mResponseDelayMillis = 0;
+		mResponseHandler = null;
+		mNextRequestCode = 1;
+		mSearches = 0;
+		setWorkers(0);
+		mRunning = 0;
+	}
+	
+	private void searchInWorker(final CraftARQueryImage query){
+		if(query.getBitmap() != null && query.getBitmap().isRecycled()){
+			throw new IllegalStateException(mName + ": searching a recycled bitmap");
+		}
+		final FakeSearchEngine engine = mEngine;
+		final int requestCode = mNextRequestCode++;
+		mRunning++;
+		mWorkers.execute(new Runnable() {
+			@Override
+			public void run() {
+				long start = System.nanoTime();
+				long latency = Math.max(0, engine.getLatencyMillis(query));
+				ArrayList<CraftARResult> results = engine.search(query);
+				try {
+					Thread.sleep(latency);
+				} catch (InterruptedException e) {
+					return;
+				}
+				finishInWorker(results, (System.nanoTime() - start) / 1000000, requestCode);
+			}
+		});
+	}
+	
+	private synchronized void finishInWorker(ArrayList<CraftARResult> results, long latency, int requestCode){
+		mRunning--;
+		respond(results, latency, requestCode);
+	}
+
+	private void startNext(){
+		if(mQueue.isEmpty()){
+			mIsSearching = false;
+			return;
+		}
+		mIsSearching = true;
+		CraftARQueryImage query = mQueue.getFirst();
+		if(query.getBitmap() != null && query.getBitmap().isRecycled()){
+			throw new IllegalStateException(mName + ": searching a recycled bitmap");
+		}
+		final long latency = Math.max(0, mEngine.getLatencyMillis(query));
+		final ArrayList<CraftARResult> results = mEngine.search(query);
+		final int requestCode = mNextRequestCode++;
+		mHandler.postDelayed(new Runnable() {
+			@Override
+			public void run() {
+				finish(results, latency, requestCode);
+			}
+		}, latency);
+	}
+
+	private synchronized void finish(final ArrayList<CraftARResult> results, final long latency, final int requestCode){
+		mQueue.removeFirst();
+		respond(results, latency, requestCode);
+		startNext();
+	}
+	
+	private void respond(final ArrayList<CraftARResult> results, final long latency, final int requestCode){
+		final CraftARSearchResponseHandler responseHandler = mResponseHandler;
+		mHandler.postDelayed(new Runnable() {
+			@Override
+			public void run() {
+				if(responseHandler == null){
+					return;
+				}
+				if(results != null){
+					responseHandler.searchResults(results, latency, requestCode);
+				}else{
+					responseHandler.searchFailed(new CraftARError(CraftARError.ERROR_CODES.OTHER, mName + " search failed"), requestCode);
+				}
+			}
+		}, mResponseDelayMillis);
+	}
+}
@@ -0,0 +1,185 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.benchmarks;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.catchoom.advancedexamples.AdaptiveQueryEncoder;
+
+/**
+ * Cloud queries over slow links: time from sending a picture to receiving the answer of a {@link SlowLinkServer}, 
+ * when every picture is sent with the best encoding level ("fixed") or with the level chosen by an 
+ * {@link AdaptiveQueryEncoder} ("adaptive").
+ * 
+ * The pictures are 1280x960 renderings of the reference images with camera noise, encoded beforehand at every 
+ * level, so the score is the time spent on the (loopback) link. At the end of every trial the encoder statistics 
+ * are reported: bytes sent, estimated throughput and latency, requests per level and round-trip percentiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CloudEncodingBenchmark {
+
+	private final static int PICTURE_WIDTH = 1280;
+	private final static int PICTURE_HEIGHT = 960;
+	private final static int PICTURES = 8;
+
+	@Param({"2g", "3g", "lte"})
+	public String link;
+	
+	@Param({"fixed", "adaptive"})
+	public String encoding;
+
+	SlowLinkServer mServer;
+	URL mSearchUrl;
+	AdaptiveQueryEncoder mEncoder;
+	//JPEG of every picture at every level, and the size of the encoded picture.
+	byte[][][] mJpegs;
+	int[][] mSizes;
+	int mNextPicture = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		if("2g".equals(link)){
+			mServer = new SlowLinkServer(250000, 400);
+		}else if("3g".equals(link)){
+			mServer = new SlowLinkServer(1000000, 200);
+		}else{
+			mServer = new SlowLinkServer(8000000, 60);
+		}
+		mSearchUrl = mServer.getSearchUrl();
+		mEncoder = new AdaptiveQueryEncoder();
+		
+		BufferedImage[] images = ReferenceFrames.loadImages(ReferenceFrames.getImagesDir());
+		Random random = new Random(7);
+		mJpegs = new byte[PICTURES][mEncoder.getLevelCount()][];
+		mSizes = new int[mEncoder.getLevelCount()][2];
+		for(int i = 0; i < PICTURES; i++){
+			BufferedImage picture = renderPicture(images[i % images.length], random);
+			for(int level = 0; level < mEncoder.getLevelCount(); level++){
+				double scale = mEncoder.getScale(level, PICTURE_WIDTH, PICTURE_HEIGHT);
+				int width = (int) Math.round(PICTURE_WIDTH * scale);
+				int height = (int) Math.round(PICTURE_HEIGHT * scale);
+				mJpegs[i][level] = encode(picture, width, height, mEncoder.getLevel(level).mQuality);
+				mSizes[level][0] = width;
+				mSizes[level][1] = height;
+			}
+		}
+	}
+
+	@Benchmark
+	public int searchPicture() throws IOException {
+		byte[][] picture = mJpegs[mNextPicture];
+		mNextPicture = (mNextPicture + 1) % PICTURES;
+		int level = "adaptive".equals(encoding) ? mEncoder.chooseLevel(PICTURE_WIDTH, PICTURE_HEIGHT) : 0;
+		long rttMillis = SlowLinkServer.post(mSearchUrl, picture[level]);
+		mEncoder.recordRequest(level, mSizes[level][0], mSizes[level][1], picture[level].length, rttMillis);
+		return level;
+	}
+
+	@TearDown(Level.Trial)
+	public void report(){
+		mServer.stop();
+		System.out.println();
+		System.out.println("[cloud link=" + link + " encoding=" + encoding + "] " + mEncoder);
+	}
+
+	/**
+	 * The reference image as a handheld camera would take it: rotated, on a gray background, with noise.
+	 */
+	static BufferedImage renderPicture(BufferedImage image, Random random){
+		BufferedImage picture = new BufferedImage(PICTURE_WIDTH, PICTURE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = picture.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.setColor(Color.GRAY);
+		g.fillRect(0, 0, PICTURE_WIDTH, PICTURE_HEIGHT);
+		double fit = Math.min((double) PICTURE_WIDTH / image.getWidth(), (double) PICTURE_HEIGHT / image.getHeight());
+		double scale = fit * (0.7 + random.nextDouble() * 0.3);
+		AffineTransform transform = new AffineTransform();
+		transform.translate(PICTURE_WIDTH / 2.0, PICTURE_HEIGHT / 2.0);
+		transform.rotate((random.nextDouble() - 0.5) * Math.PI / 6);
+		transform.scale(scale, scale);
+		transform.translate(-image.getWidth() / 2.0, -image.getHeight() / 2.0);
+		g.drawImage(image, transform, null);
+		g.dispose();
+		
+		for(int y = 0; y < PICTURE_HEIGHT; y++){
+			for(int x = 0; x < PICTURE_WIDTH; x++){
+				int rgb = picture.getRGB(x, y);
+				int noise = (int) (random.nextGaussian() * 4);
+				int r = Math.max(0, Math.min(255, ((rgb >> 16) & 0xff) + noise));
+				int gr = Math.max(0, Math.min(255, ((rgb >> 8) & 0xff) + noise));
+				int b = Math.max(0, Math.min(255, (rgb & 0xff) + noise));
+				picture.setRGB(x, y, (r << 16) | (gr << 8) | b);
+			}
+		}
+		return picture;
+	}
+
+	static byte[] encode(BufferedImage picture, int width, int height, int quality) throws IOException {
+		BufferedImage scaled = picture;
+		if(width != picture.getWidth() || height != picture.getHeight()){
+			scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = scaled.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.drawImage(picture, 0, 0, width, height, null);
+			g.dispose();
+		}
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionQuality(quality / 100f);
+		ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+		MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(jpeg);
+		writer.setOutput(output);
+		writer.write(null, new IIOImage(scaled, null, null), param);
+		output.close();
+		writer.dispose();
+		return jpeg.toByteArray();
+	}
+}
@@ -0,0 +1,194 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.catchoom.advancedexamples.ConcurrentSearchController;
+import com.catchoom.benchmarks.ReferenceFrames.Frame;
+import com.craftar.CraftARBoundingBox;
+import com.craftar.CraftARError;
+import com.craftar.CraftARItem;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.FakeSearchEngine;
+
+/**
+ * Concurrent finder search: frames per second searched through a {@link ConcurrentSearchController}, with the fake 
+ * on-device module searching in 1 to 8 worker threads and the in-flight limit set to the number of workers.
+ * 
+ * The search is a CPU-bound stand-in for the on-device matcher: the luma grid of the frame is compared with a 
+ * template of every reference image at all the shifts of a small window. Every invocation sends frames to the 
+ * controller (running the main Looper whenever the in-flight limit is reached) until a batch of responses has been 
+ * handed over, so the score only grows with the number of workers if the searches really run on several cores.
+ * The trial report tells whether the responses were handed over in request order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConcurrentSearchBenchmark {
+
+	private final static int BATCH_FRAMES = 64;
+	private final static int SHIFT_RADIUS = 6;
+	
+	@Param({"1", "2", "4", "8"})
+	public int workers;
+	
+	List<CraftARQueryImage> mQueries;
+	byte[][] mTemplates;
+	ConcurrentSearchController mController;
+	int mNextFrame = 0;
+	int mHandedOver = 0;
+	int mLastRequestCode = -1;
+	boolean mIsOutOfOrder = false;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		BufferedImage[] images = ReferenceFrames.loadImages(ReferenceFrames.getImagesDir());
+		List<Frame> frames = ReferenceFrames.generate(images, 600, 30, 42);
+		mQueries = new ArrayList<CraftARQueryImage>(frames.size());
+		for(Frame frame : frames){
+			mQueries.add(new CraftARQueryImage(frame.toBitmap()));
+		}
+		mTemplates = new byte[images.length][];
+		for(int i = 0; i < images.length; i++){
+			mTemplates[i] = ReferenceFrames.downscale(ReferenceFrames.render(images[i], 0, 1, 0, 0, null));
+		}
+		
+		SystemClock.useRealTime();
+		Looper.getMainLooper().reset();
+		CraftAROnDeviceIR onDeviceIR = CraftAROnDeviceIR.Instance();
+		onDeviceIR.reset();
+		onDeviceIR.setWorkers(workers);
+		onDeviceIR.setEngine(new FakeSearchEngine() {
+			@Override
+			public long getLatencyMillis(CraftARQueryImage query) {
+				return 0;
+			}
+
+			@Override
+			public ArrayList<CraftARResult> search(CraftARQueryImage query) {
+				int template = bestTemplate(ReferenceFrames.frameOf(query.getBitmap()).mGrid);
+				ArrayList<CraftARResult> results = new ArrayList<CraftARResult>();
+				results.add(new CraftARResult(new CraftARItem(ReferenceFrames.IMAGE_NAMES[template]), 90, new CraftARBoundingBox(0, 0, 1, 1)));
+				return results;
+			}
+		});
+		mController = new ConcurrentSearchController(onDeviceIR, new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+				onHandedOver(requestCode);
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+				onHandedOver(requestCode);
+			}
+		}, workers);
+		onDeviceIR.setCraftARSearchResponseHandler(mController);
+		mController.onFinderActivated();
+	}
+	
+	void onHandedOver(int requestCode){
+		if(mLastRequestCode >= 0 && requestCode != mLastRequestCode + 1){
+			mIsOutOfOrder = true;
+		}
+		mLastRequestCode = requestCode;
+		mHandedOver++;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_FRAMES)
+	public void searchBatch(){
+		int target = mHandedOver + BATCH_FRAMES;
+		while(mHandedOver < target){
+			if(mController.getInFlight() < workers){
+				mController.onPreviewFrame(mQueries.get(mNextFrame));
+				mNextFrame = (mNextFrame + 1) % mQueries.size();
+			}else{
+				Looper.getMainLooper().runFor(1);
+			}
+			Looper.getMainLooper().runUntilIdle();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void report(){
+		mController.onFinderDeactivated();
+		CraftAROnDeviceIR.Instance().reset();
+		System.out.println();
+		System.out.println("[concurrent workers=" + workers + " cores=" + Runtime.getRuntime().availableProcessors() + "] handedOver=" + mHandedOver + 
+				" reordered=" + mController.getReorderedResponses() + " inOrder=" + !mIsOutOfOrder);
+	}
+	
+	/**
+	 * Index of the template with the smallest sum of absolute differences at any shift.
+	 */
+	int bestTemplate(byte[] grid){
+		int w = ReferenceFrames.GRID_WIDTH;
+		int h = ReferenceFrames.GRID_HEIGHT;
+		int best = -1;
+		long bestDifference = Long.MAX_VALUE;
+		for(int t = 0; t < mTemplates.length; t++){
+			byte[] template = mTemplates[t];
+			for(int dy = -SHIFT_RADIUS; dy <= SHIFT_RADIUS; dy++){
+				for(int dx = -SHIFT_RADIUS; dx <= SHIFT_RADIUS; dx++){
+					long difference = 0;
+					for(int y = Math.max(0, dy); y < Math.min(h, h + dy); y++){
+						int row = y * w;
+						int shiftedRow = (y - dy) * w;
+						for(int x = Math.max(0, dx); x < Math.min(w, w + dx); x++){
+							difference += Math.abs((grid[row + x] & 0xff) - (template[shiftedRow + x - dx] & 0xff));
+						}
+					}
+					if(difference < bestDifference){
+						bestDifference = difference;
+						best = t;
+					}
+				}
+			}
+		}
+		return best;
+	}
+}
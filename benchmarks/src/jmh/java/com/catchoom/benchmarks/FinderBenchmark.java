@@ -0,0 +1,203 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.catchoom.advancedexamples.CloudRecognitionBackend;
+import com.catchoom.advancedexamples.ExtendedSearchController;
+import com.catchoom.advancedexamples.IdleFrameAdmissionScheduler;
+import com.catchoom.advancedexamples.LatencyAwareFrameScheduler;
+import com.catchoom.advancedexamples.LatencyHistogram;
+import com.catchoom.advancedexamples.TrackingSearchController;
+import com.catchoom.benchmarks.ReferenceFrames.Frame;
+import com.craftar.CraftARCloudRecognition;
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * Finder mode: frames per second processed by ExtendedSearchController (optionally behind a TrackingSearchController), 
+ * with the fake on-device and cloud modules answering in simulated time.
+ * 
+ * Every invocation sends the next preview frame to the controller and runs the main Looper for a frame interval.
+ * At the end of every trial, the benchmark prints the admission rate, the number of cloud fallback searches, the 
+ * results that arrived when the user had already moved to another image and the time-to-first-hit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FinderBenchmark {
+
+	//Frames of the sequence: 100 seconds at 30 fps, changing what the camera sees every 3 seconds.
+	private final static int FRAMES = 3000;
+	private final static int SEGMENT_FRAMES = 90;
+	private final static long FRAME_INTERVAL_MILLIS = 33;
+	//The on-device collection contains biz_card and shopping_kart, the cloud one contains all the images.
+	private final static int[] ON_DEVICE_IMAGES = {0, 1};
+	private final static int[] CLOUD_IMAGES = {0, 1, 2, 3};
+	
+	@Param({"latencyAware", "idle"})
+	public String scheduler;
+	
+	@Param({"false", "true"})
+	public boolean tracking;
+	
+	@Param({"80", "250"})
+	public long searchLatencyMillis;
+	
+	List<Frame> mFrames;
+	SearchController mSearchController;
+	TrackingSearchController mTrackingSearchController;
+	ExtendedSearchController mExtendedSearchController;
+	
+	int mNextFrame = 0;
+	Frame mFrame;
+	long mSegmentStartMillis = 0;
+	int mLastHitSegment = -1;
+	long mFrameCount = 0;
+	long mHits = 0;
+	long mStaleHits = 0;
+	//Time from the moment the user points at an image until it is recognized.
+	LatencyHistogram mTimeToFirstHit = new LatencyHistogram();
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		BufferedImage[] images = ReferenceFrames.loadImages(ReferenceFrames.getImagesDir());
+		mFrames = new ArrayList<Frame>(ReferenceFrames.generate(images, FRAMES, SEGMENT_FRAMES, 42));
+		SimulatedBackend.install(new SimulatedBackend(ON_DEVICE_IMAGES, searchLatencyMillis, searchLatencyMillis / 4, 0.7, 7), 
+				new SimulatedBackend(CLOUD_IMAGES, 900, 300, 0.95, 5));
+		
+		CraftARSearchResponseHandler responseHandler = new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+				onResults(results);
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+			}
+		};
+		if(tracking){
+			//The tracker sees the responses before the benchmark, as it would see them before the activity.
+			ForwardingResponseHandler forwarder = new ForwardingResponseHandler();
+			mExtendedSearchController = new ExtendedSearchController(forwarder, new CloudRecognitionBackend());
+			mTrackingSearchController = new TrackingSearchController(mExtendedSearchController, responseHandler);
+			forwarder.mTarget = mTrackingSearchController;
+			mSearchController = mTrackingSearchController;
+		}else{
+			mExtendedSearchController = new ExtendedSearchController(responseHandler, new CloudRecognitionBackend());
+			mSearchController = mExtendedSearchController;
+		}
+		mExtendedSearchController.getCloudResultCache().clear();
+		if("idle".equals(scheduler)){
+			mExtendedSearchController.setFrameAdmissionScheduler(new IdleFrameAdmissionScheduler());
+		}else{
+			mExtendedSearchController.setFrameAdmissionScheduler(new LatencyAwareFrameScheduler());
+		}
+		mSearchController.onFinderActivated();
+	}
+
+	@Benchmark
+	public void processFrame(){
+		Frame frame = mFrames.get(mNextFrame);
+		if(mFrame == null || frame.mSegment != mFrame.mSegment){
+			mSegmentStartMillis = SystemClock.elapsedRealtime();
+		}
+		mFrame = frame;
+		
+		mSearchController.onPreviewFrame(new CraftARQueryImage(frame.toBitmap()));
+		Looper.getMainLooper().runFor(FRAME_INTERVAL_MILLIS);
+		
+		mFrameCount++;
+		mNextFrame = (mNextFrame + 1) % mFrames.size();
+	}
+	
+	void onResults(ArrayList<CraftARResult> results){
+		if(results.size() == 0){
+			return;
+		}
+		mHits++;
+		if(SimulatedBackend.imageIndexOf(results.get(0)) != mFrame.mImageIndex){
+			//The user has already moved to something else: this search was wasted.
+			mStaleHits++;
+		}else if(mLastHitSegment != mFrame.mSegment){
+			mLastHitSegment = mFrame.mSegment;
+			mTimeToFirstHit.record(SystemClock.elapsedRealtime() - mSegmentStartMillis);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void report(){
+		mSearchController.onFinderDeactivated();
+		long searches = CraftAROnDeviceIR.Instance().getSearches();
+		System.out.println();
+		System.out.println("[finder scheduler=" + scheduler + " tracking=" + tracking + " latency=" + searchLatencyMillis + "]" +
+				" frames=" + mFrameCount + 
+				" searches=" + searches + 
+				" admissionRate=" + String.format(Locale.US, "%.3f", mFrameCount == 0 ? 0 : (double) searches / mFrameCount) + 
+				" cloudSearches=" + CraftARCloudRecognition.Instance().getSearches() + 
+				" hits=" + mHits + 
+				" staleHits=" + mStaleHits + 
+				"\n  timeToFirstHit " + mTimeToFirstHit);
+	}
+	
+	/**
+	 * Forwards the responses of the ExtendedSearchController to the TrackingSearchController that wraps it.
+	 */
+	static class ForwardingResponseHandler implements CraftARSearchResponseHandler {
+		CraftARSearchResponseHandler mTarget;
+
+		@Override
+		public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+			mTarget.searchResults(results, searchTimeMillis, requestCode);
+		}
+
+		@Override
+		public void searchFailed(CraftARError error, int requestCode) {
+			mTarget.searchFailed(error, requestCode);
+		}
+	}
+}
@@ -0,0 +1,275 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.benchmarks;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+
+import javax.imageio.ImageIO;
+
+import android.graphics.Bitmap;
+
+import com.catchoom.advancedexamples.PerceptualHash;
+import com.craftar.CraftARBoundingBox;
+
+/**
+ * Synthetic camera frame sequences built from the images in the Reference images folder.
+ * 
+ * A sequence simulates a user pointing the camera at one reference image for a while, then at nothing 
+ * (background), then at another image, and so on. Every frame of a segment shows the image with a random 
+ * rotation, scale, blur and noise, as a handheld camera would.
+ * 
+ * Frames are turned into the Bitmaps of the preview with {@link Frame#toBitmap()}, and the fake search engines find 
+ * the frame a Bitmap was made from with {@link #frameOf(Bitmap)}.
+ */
+public class ReferenceFrames {
+
+	public final static String[] IMAGE_NAMES = {"biz_card", "shopping_kart", "kid_with_mobile", "craftar_logo"};
+	
+	//Size of the rendered frames, and of the luma grid used by the tracker.
+	public final static int FRAME_WIDTH = 128;
+	public final static int FRAME_HEIGHT = 96;
+	public final static int GRID_WIDTH = 64;
+	public final static int GRID_HEIGHT = 48;
+	
+	//Frame each preview Bitmap was made from.
+	private final static Map<Bitmap, Frame> BITMAP_FRAMES = Collections.synchronizedMap(new WeakHashMap<Bitmap, Frame>());
+
+	/**
+	 * A synthetic frame.
+	 */
+	public static class Frame {
+		//Index of the reference image shown in the frame, or -1 for background frames.
+		public final int mImageIndex;
+		//Index of the segment of the sequence this frame belongs to.
+		public final int mSegment;
+		public final byte[] mLuma;
+		public final byte[] mGrid;
+		public final long mHash;
+		//Box around the image in the frame (without the rotation), or null for background frames.
+		public final CraftARBoundingBox mBoundingBox;
+		
+		Frame(int imageIndex, int segment, byte[] luma, long hash, CraftARBoundingBox boundingBox){
+			mImageIndex = imageIndex;
+			mSegment = segment;
+			mLuma = luma;
+			mGrid = downscale(luma);
+			mHash = hash;
+			mBoundingBox = boundingBox;
+		}
+		
+		/**
+		 * A new gray Bitmap of the frame, as the camera preview would deliver it.
+		 */
+		public Bitmap toBitmap(){
+			int[] colors = new int[FRAME_WIDTH * FRAME_HEIGHT];
+			for(int i = 0; i < colors.length; i++){
+				int value = mLuma[i] & 0xff;
+				colors[i] = 0xff000000 | (value << 16) | (value << 8) | value;
+			}
+			Bitmap bitmap = Bitmap.createBitmap(colors, FRAME_WIDTH, FRAME_HEIGHT, Bitmap.Config.ARGB_8888);
+			BITMAP_FRAMES.put(bitmap, this);
+			return bitmap;
+		}
+	}
+	
+	/**
+	 * Returns the frame the Bitmap was made from with {@link Frame#toBitmap()}, or null if it was not.
+	 */
+	public static Frame frameOf(Bitmap bitmap){
+		return bitmap == null ? null : BITMAP_FRAMES.get(bitmap);
+	}
+
+	public static File getImagesDir(){
+		return new File(System.getProperty("reference.images.dir", "Reference images"));
+	}
+	
+	public static BufferedImage[] loadImages(File dir) throws IOException {
+		BufferedImage[] images = new BufferedImage[IMAGE_NAMES.length];
+		for(int i = 0; i < IMAGE_NAMES.length; i++){
+			File file = new File(dir, IMAGE_NAMES[i] + ".jpg");
+			images[i] = ImageIO.read(file);
+			if(images[i] == null){
+				throw new IOException("Could not read "+file);
+			}
+		}
+		return images;
+	}
+	
+	/**
+	 * Hash of the reference image itself, as the fake recognition backends see it.
+	 */
+	public static long referenceHash(BufferedImage image){
+		byte[] luma = render(image, 0, 1, 0, 0, null);
+		return hash(luma);
+	}
+
+	/**
+	 * Generates a sequence of frames. Segments showing a reference image alternate with background segments.
+	 * 
+	 * @param frames total number of frames.
+	 * @param segmentFrames number of frames of every segment.
+	 */
+	public static List<Frame> generate(BufferedImage[] images, int frames, int segmentFrames, long seed){
+		Random random = new Random(seed);
+		List<Frame> sequence = new ArrayList<Frame>(frames);
+		int segment = 0;
+		while(sequence.size() < frames){
+			boolean background = segment % 2 == 1;
+			int imageIndex = background ? -1 : random.nextInt(images.length);
+			//Pose of the camera during the segment, with some jitter on every frame.
+			double rotation = (random.nextDouble() - 0.5) * Math.PI / 6;
+			double scale = 0.6 + random.nextDouble() * 0.5;
+			for(int i = 0; i < segmentFrames && sequence.size() < frames; i++){
+				byte[] luma;
+				CraftARBoundingBox boundingBox = null;
+				if(background){
+					luma = background(random);
+				}else{
+					double frameScale = scale * (1 + random.nextGaussian() * 0.02);
+					luma = render(images[imageIndex], 
+							rotation + random.nextGaussian() * 0.02, 
+							frameScale,
+							random.nextInt(3),
+							4 + random.nextInt(8),
+							random);
+					boundingBox = boundingBox(images[imageIndex], frameScale);
+				}
+				sequence.add(new Frame(imageIndex, segment, luma, hash(luma), boundingBox));
+			}
+			segment++;
+		}
+		return sequence;
+	}
+
+	/**
+	 * Renders the image into a FRAME_WIDTH x FRAME_HEIGHT luma frame.
+	 * 
+	 * @param blurRadius radius of the box blur, 0 for no blur.
+	 * @param noise standard deviation of the gaussian noise added to the luma.
+	 */
+	static byte[] render(BufferedImage image, double rotation, double scale, int blurRadius, int noise, Random random){
+		BufferedImage frame = new BufferedImage(FRAME_WIDTH, FRAME_HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D g = frame.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.setColor(Color.GRAY);
+		g.fillRect(0, 0, FRAME_WIDTH, FRAME_HEIGHT);
+		double fit = Math.min((double) FRAME_WIDTH / image.getWidth(), (double) FRAME_HEIGHT / image.getHeight());
+		AffineTransform transform = new AffineTransform();
+		transform.translate(FRAME_WIDTH / 2.0, FRAME_HEIGHT / 2.0);
+		transform.rotate(rotation);
+		transform.scale(fit * scale, fit * scale);
+		transform.translate(-image.getWidth() / 2.0, -image.getHeight() / 2.0);
+		g.drawImage(image, transform, null);
+		g.dispose();
+		
+		if(blurRadius > 0){
+			int size = 2 * blurRadius + 1;
+			float[] kernel = new float[size * size];
+			Arrays.fill(kernel, 1f / kernel.length);
+			frame = new ConvolveOp(new Kernel(size, size, kernel), ConvolveOp.EDGE_NO_OP, null).filter(frame, null);
+		}
+		
+		byte[] luma = new byte[FRAME_WIDTH * FRAME_HEIGHT];
+		frame.getRaster().getDataElements(0, 0, FRAME_WIDTH, FRAME_HEIGHT, luma);
+		if(noise > 0 && random != null){
+			for(int i = 0; i < luma.length; i++){
+				int value = (luma[i] & 0xff) + (int) (random.nextGaussian() * noise);
+				luma[i] = (byte) Math.max(0, Math.min(255, value));
+			}
+		}
+		return luma;
+	}
+	
+	/**
+	 * Normalized box of the image rendered with the given scale, centered in the frame.
+	 */
+	static CraftARBoundingBox boundingBox(BufferedImage image, double scale){
+		double fit = Math.min((double) FRAME_WIDTH / image.getWidth(), (double) FRAME_HEIGHT / image.getHeight());
+		float halfWidth = (float) (image.getWidth() * fit * scale / FRAME_WIDTH / 2);
+		float halfHeight = (float) (image.getHeight() * fit * scale / FRAME_HEIGHT / 2);
+		return new CraftARBoundingBox(Math.max(0, 0.5f - halfWidth), Math.max(0, 0.5f - halfHeight), 
+				Math.min(1, 0.5f + halfWidth), Math.min(1, 0.5f + halfHeight));
+	}
+	
+	/**
+	 * A frame with no reference image: smooth random shading plus noise.
+	 */
+	static byte[] background(Random random){
+		byte[] luma = new byte[FRAME_WIDTH * FRAME_HEIGHT];
+		int base = 60 + random.nextInt(120);
+		double gx = (random.nextDouble() - 0.5) * 0.8;
+		double gy = (random.nextDouble() - 0.5) * 0.8;
+		for(int y = 0; y < FRAME_HEIGHT; y++){
+			for(int x = 0; x < FRAME_WIDTH; x++){
+				int value = base + (int) (gx * x + gy * y + random.nextGaussian() * 6);
+				luma[y * FRAME_WIDTH + x] = (byte) Math.max(0, Math.min(255, value));
+			}
+		}
+		return luma;
+	}
+	
+	static byte[] downscale(byte[] luma){
+		byte[] grid = new byte[GRID_WIDTH * GRID_HEIGHT];
+		int factor = FRAME_WIDTH / GRID_WIDTH;
+		for(int y = 0; y < GRID_HEIGHT; y++){
+			for(int x = 0; x < GRID_WIDTH; x++){
+				int sum = 0;
+				for(int by = 0; by < factor; by++){
+					for(int bx = 0; bx < factor; bx++){
+						sum += luma[(y * factor + by) * FRAME_WIDTH + x * factor + bx] & 0xff;
+					}
+				}
+				grid[y * GRID_WIDTH + x] = (byte) (sum / (factor * factor));
+			}
+		}
+		return grid;
+	}
+	
+	static long hash(byte[] luma){
+		byte[] samples = new byte[PerceptualHash.GRID_WIDTH * PerceptualHash.GRID_HEIGHT];
+		int i = 0;
+		for(int gy = 0; gy < PerceptualHash.GRID_HEIGHT; gy++){
+			int y = (2 * gy + 1) * FRAME_HEIGHT / (2 * PerceptualHash.GRID_HEIGHT);
+			for(int gx = 0; gx < PerceptualHash.GRID_WIDTH; gx++){
+				int x = (2 * gx + 1) * FRAME_WIDTH / (2 * PerceptualHash.GRID_WIDTH);
+				samples[i++] = luma[y * FRAME_WIDTH + x];
+			}
+		}
+		return PerceptualHash.hash(samples);
+	}
+}
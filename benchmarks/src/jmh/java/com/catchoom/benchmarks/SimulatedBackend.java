@@ -0,0 +1,126 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.catchoom.advancedexamples.RecognitionMetrics;
+import com.catchoom.benchmarks.ReferenceFrames.Frame;
+import com.craftar.CraftARCloudRecognition;
+import com.craftar.CraftARItem;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.FakeSearchEngine;
+
+/**
+ * Fake recognition engine (on-device or cloud) for the fake CraftAR search modules.
+ * 
+ * The backend "contains" a subset of the reference images and recognizes a frame showing one of them with the 
+ * given probability. Every search takes a random latency around the base one; the fake module serves them one 
+ * after the other. Queries that were not made from a {@link Frame} are never recognized.
+ */
+public class SimulatedBackend implements FakeSearchEngine {
+
+	private final boolean[] mContainsImage = new boolean[ReferenceFrames.IMAGE_NAMES.length];
+	private final long mLatencyMillis;
+	private final long mJitterMillis;
+	private final double mRecall;
+	private final Random mRandom;
+	
+	private long mSearches = 0;
+
+	/**
+	 * @param imageIndices indices (in ReferenceFrames.IMAGE_NAMES) of the images in the collection of this backend.
+	 * @param latencyMillis mean latency of a search.
+	 * @param jitterMillis standard deviation of the latency.
+	 * @param recall probability of recognizing a frame that shows an image of the collection.
+	 */
+	public SimulatedBackend(int[] imageIndices, long latencyMillis, long jitterMillis, double recall, long seed){
+		for(int index : imageIndices){
+			mContainsImage[index] = true;
+		}
+		mLatencyMillis = latencyMillis;
+		mJitterMillis = jitterMillis;
+		mRecall = recall;
+		mRandom = new Random(seed);
+	}
+
+	/**
+	 * Starts a simulation: the clock is stopped at 0 and only moves when the main Looper runs, and the fake 
+	 * on-device and cloud modules search with the given backends. Whatever the last simulation left is dropped.
+	 */
+	public static void install(SimulatedBackend onDevice, SimulatedBackend cloud){
+		SystemClock.setSimulatedTime(0);
+		Looper.getMainLooper().reset();
+		CraftAROnDeviceIR.Instance().reset();
+		CraftAROnDeviceIR.Instance().setEngine(onDevice);
+		CraftARCloudRecognition.Instance().reset();
+		CraftARCloudRecognition.Instance().setEngine(cloud);
+		RecognitionMetrics.Instance().clear();
+	}
+
+	@Override
+	public long getLatencyMillis(CraftARQueryImage query) {
+		return Math.max(1, mLatencyMillis + (long) (mRandom.nextGaussian() * mJitterMillis));
+	}
+
+	@Override
+	public ArrayList<CraftARResult> search(CraftARQueryImage query) {
+		mSearches++;
+		ArrayList<CraftARResult> results = new ArrayList<CraftARResult>();
+		Frame frame = ReferenceFrames.frameOf(query.getBitmap());
+		if(frame != null && recognizes(frame)){
+			results.add(new CraftARResult(new CraftARItem(ReferenceFrames.IMAGE_NAMES[frame.mImageIndex]), 80, frame.mBoundingBox));
+		}
+		return results;
+	}
+	
+	public boolean recognizes(Frame frame){
+		return frame.mImageIndex >= 0 && mContainsImage[frame.mImageIndex] && mRandom.nextDouble() < mRecall;
+	}
+
+	/**
+	 * Number of queries searched by this backend.
+	 */
+	public long getSearches(){
+		return mSearches;
+	}
+	
+	/**
+	 * Index in ReferenceFrames.IMAGE_NAMES of the item of a result.
+	 */
+	public static int imageIndexOf(CraftARResult result){
+		String name = result.getItem().getItemName();
+		for(int i = 0; i < ReferenceFrames.IMAGE_NAMES.length; i++){
+			if(ReferenceFrames.IMAGE_NAMES[i].equals(name)){
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,142 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.catchoom.advancedexamples.CloudRecognitionBackend;
+import com.catchoom.advancedexamples.ExtendedSearchController;
+import com.catchoom.advancedexamples.LatencyHistogram;
+import com.catchoom.advancedexamples.RecognitionResultCache;
+import com.catchoom.benchmarks.ReferenceFrames.Frame;
+import com.craftar.CraftARCloudRecognition;
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+
+/**
+ * Single-shot extended recognition with ExtendedSearchController: every picture is searched on-device, and on the 
+ * cloud (unless it's found in the cloud result cache) if the on-device collection doesn't contain it. The fake 
+ * modules answer in simulated time.
+ * 
+ * Reports pictures per second processed by the controller and, at the end of every trial, the cache 
+ * hit rate, the cloud searches and the percentiles of the simulated time-to-result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SingleShotBenchmark {
+
+	private final static int[] ON_DEVICE_IMAGES = {0, 1};
+	private final static int[] CLOUD_IMAGES = {0, 1, 2, 3};
+	//Time between two pictures, longer than any search.
+	private final static long PICTURE_INTERVAL_MILLIS = 5000;
+	
+	@Param({"true", "false"})
+	public boolean cache;
+	
+	List<Frame> mPictures;
+	ExtendedSearchController mSearchController;
+	RecognitionResultCache<ArrayList<CraftARResult>> mCache;
+	//The cache is shared by all the controllers, so only the hits and misses of this trial are reported.
+	long mInitialCacheHits;
+	long mInitialCacheMisses;
+	LatencyHistogram mTimeToResult;
+	Random mRandom;
+	long mPictureMillis;
+	boolean mFound;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		BufferedImage[] images = ReferenceFrames.loadImages(ReferenceFrames.getImagesDir());
+		//Pictures are taken while the camera is steady, so keep only one frame of every segment showing an image.
+		mPictures = new ArrayList<Frame>();
+		for(Frame frame : ReferenceFrames.generate(images, 4000, 20, 11)){
+			if(frame.mImageIndex >= 0){
+				mPictures.add(frame);
+			}
+		}
+		SimulatedBackend.install(new SimulatedBackend(ON_DEVICE_IMAGES, 120, 30, 0.95, 3), 
+				new SimulatedBackend(CLOUD_IMAGES, 900, 300, 0.95, 5));
+		mSearchController = new ExtendedSearchController(new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+				mTimeToResult.record(SystemClock.elapsedRealtime() - mPictureMillis);
+				mFound = results.size() > 0;
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+				mTimeToResult.record(SystemClock.elapsedRealtime() - mPictureMillis);
+			}
+		}, new CloudRecognitionBackend());
+		mCache = mSearchController.getCloudResultCache();
+		mCache.clear();
+		mInitialCacheHits = mCache.getHits();
+		mInitialCacheMisses = mCache.getMisses();
+		mTimeToResult = new LatencyHistogram();
+		mRandom = new Random(1);
+	}
+
+	@Benchmark
+	public boolean searchPicture(){
+		Frame picture = mPictures.get(mRandom.nextInt(mPictures.size()));
+		if(!cache){
+			mCache.clear();
+		}
+		mFound = false;
+		mPictureMillis = SystemClock.elapsedRealtime();
+		mSearchController.onPictureTaken(new CraftARQueryImage(picture.toBitmap()));
+		Looper.getMainLooper().runFor(PICTURE_INTERVAL_MILLIS);
+		return mFound;
+	}
+
+	@TearDown(Level.Trial)
+	public void report(){
+		System.out.println();
+		System.out.println("[single-shot cache=" + cache + "] cacheHits=" + (mCache.getHits() - mInitialCacheHits) + 
+				" cacheMisses=" + (mCache.getMisses() - mInitialCacheMisses) + 
+				" cloudSearches=" + CraftARCloudRecognition.Instance().getSearches() + 
+				"\n  timeToResult " + mTimeToResult);
+	}
+}
@@ -0,0 +1,194 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.net.TrafficStats;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.catchoom.benchmarks.SlowLinkServer;
+import com.catchoom.benchmarks.StubCloudBackend;
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+
+/**
+ * AdaptiveEncodingBackend against a local stand-in of the cloud: what the encoder learns has to be what went over 
+ * the link.
+ */
+public class AdaptiveEncodingBackendTest {
+
+	private final static long UPLOAD_BITS_PER_SECOND = 2000000;
+	private final static long LATENCY_MILLIS = 150;
+
+	SlowLinkServer mServer;
+	StubCloudBackend mCloud;
+	AdaptiveEncodingBackend mBackend;
+	int mAnswers;
+
+	@Before
+	public void setUp() throws IOException {
+		SystemClock.useRealTime();
+		Looper.getMainLooper().reset();
+		TrafficStats.setSupported(true);
+		mServer = new SlowLinkServer(UPLOAD_BITS_PER_SECOND, LATENCY_MILLIS);
+		mCloud = new StubCloudBackend(mServer.getSearchUrl());
+		mBackend = new AdaptiveEncodingBackend(mCloud);
+		mBackend.setCraftARSearchResponseHandler(new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+				mAnswers++;
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+				mAnswers++;
+			}
+		});
+	}
+
+	@After
+	public void tearDown(){
+		mCloud.shutdown();
+		mServer.stop();
+		TrafficStats.setSupported(true);
+	}
+
+	@Test
+	public void recordsTheBytesTheServerReceived(){
+		mBackend.search(new CraftARQueryImage(picture(1)));
+		waitForAnswers(1);
+		
+		AdaptiveQueryEncoder encoder = mBackend.getEncoder();
+		assertEquals(1, encoder.getRequests());
+		assertEquals(mServer.getReceivedBytes(), encoder.getBytesSent());
+	}
+
+	@Test
+	public void recordsTheRoundTripOfTheLink(){
+		mBackend.search(new CraftARQueryImage(picture(2)));
+		waitForAnswers(1);
+		
+		long uploadMillis = mServer.getReceivedBytes() * 8 * 1000 / UPLOAD_BITS_PER_SECOND;
+		long rttMillis = mBackend.getEncoder().getRoundTripHistogram().getMaxMillis();
+		assertTrue("Round trip " + rttMillis + "ms, link " + (uploadMillis + LATENCY_MILLIS) + "ms", 
+				rttMillis >= uploadMillis + LATENCY_MILLIS);
+		assertTrue("Round trip " + rttMillis + "ms, link " + (uploadMillis + LATENCY_MILLIS) + "ms", 
+				rttMillis < uploadMillis + LATENCY_MILLIS + 2000);
+	}
+
+	@Test
+	public void learnsOnlyFromRequestsAloneOnTheLink(){
+		mBackend.search(new CraftARQueryImage(picture(3)));
+		mBackend.search(new CraftARQueryImage(picture(4)));
+		waitForAnswers(2);
+		assertEquals(0, mBackend.getEncoder().getRequests());
+		long overlappedBytes = mServer.getReceivedBytes();
+		
+		mBackend.search(new CraftARQueryImage(picture(5)));
+		waitForAnswers(3);
+		assertEquals(1, mBackend.getEncoder().getRequests());
+		assertEquals(mServer.getReceivedBytes() - overlappedBytes, mBackend.getEncoder().getBytesSent());
+	}
+
+	@Test
+	public void estimatesTheBytesWithoutTrafficCounters(){
+		TrafficStats.setSupported(false);
+		mBackend.search(new CraftARQueryImage(picture(6)));
+		waitForAnswers(1);
+		
+		assertEquals(1, mBackend.getEncoder().getRequests());
+		assertTrue(mBackend.getEncoder().getBytesSent() > 0);
+	}
+
+	@Test
+	public void recyclesOnlyTheBitmapsItCreates(){
+		final ArrayList<CraftARQueryImage> sent = new ArrayList<CraftARQueryImage>();
+		AdaptiveEncodingBackend backend = new AdaptiveEncodingBackend(new SearchBackend() {
+			@Override
+			public void search(CraftARQueryImage image) {
+				sent.add(image);
+			}
+
+			@Override
+			public void setCraftARSearchResponseHandler(CraftARSearchResponseHandler responseHandler) {
+			}
+		});
+		backend.setCraftARSearchResponseHandler(new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+			}
+		});
+		Bitmap picture = picture(7);
+		backend.search(new CraftARQueryImage(picture));
+		Bitmap encoded = sent.get(0).getBitmap();
+		assertFalse(encoded == picture);
+		assertFalse(encoded.isRecycled());
+		
+		backend.searchResults(new ArrayList<CraftARResult>(), 100, 1);
+		assertTrue(encoded.isRecycled());
+		assertFalse(picture.isRecycled());
+	}
+
+	private void waitForAnswers(int answers){
+		long deadline = System.currentTimeMillis() + 30000;
+		while(mAnswers < answers){
+			assertTrue("No answer from the server", System.currentTimeMillis() < deadline);
+			Looper.getMainLooper().runFor(20);
+		}
+	}
+
+	/**
+	 * A noisy 640x480 picture, like a camera would take.
+	 */
+	private static Bitmap picture(int seed){
+		Random random = new Random(seed);
+		int width = 640;
+		int height = 480;
+		int[] pixels = new int[width * height];
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				int value = Math.max(0, Math.min(255, ((x / 40 + y / 40) % 2 == 0 ? 60 : 190) + (int) (random.nextGaussian() * 8)));
+				pixels[y * width + x] = 0xff000000 | (value << 16) | (value << 8) | value;
+			}
+		}
+		return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+	}
+}
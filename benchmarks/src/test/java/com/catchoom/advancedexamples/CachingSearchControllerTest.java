@@ -0,0 +1,126 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.os.Looper;
+
+import com.craftar.CraftARBoundingBox;
+import com.craftar.CraftARError;
+import com.craftar.CraftARItem;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * CachingSearchController in front of a SearchController that counts the pictures it receives.
+ */
+public class CachingSearchControllerTest {
+
+	int mSearchedPictures;
+	List<Integer> mRequestCodes;
+	CachingSearchController mController;
+
+	@Before
+	public void setUp(){
+		Looper.getMainLooper().reset();
+		mSearchedPictures = 0;
+		mRequestCodes = new ArrayList<Integer>();
+		SearchController searchController = new SearchController() {
+			@Override
+			public void onPreviewFrame(CraftARQueryImage image) {
+			}
+
+			@Override
+			public void onPictureTaken(CraftARQueryImage image) {
+				mSearchedPictures++;
+			}
+
+			@Override
+			public void onTakePictureFailed(CraftARError error) {
+			}
+
+			@Override
+			public void onFinderActivated() {
+			}
+
+			@Override
+			public void onFinderDeactivated() {
+			}
+		};
+		mController = new CachingSearchController(searchController, new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+				mRequestCodes.add(requestCode);
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+				mRequestCodes.add(requestCode);
+			}
+		}, new RecognitionResultCache<ArrayList<CraftARResult>>(6, 60000, 16, 64 * 1024));
+	}
+
+	@After
+	public void tearDown(){
+		Looper.getMainLooper().reset();
+	}
+
+	@Test
+	public void postsTheCachedResultsToTheMainThread(){
+		mController.onPictureTaken(new CraftARQueryImage(picture()));
+		mController.searchResults(hit(), 100, 1);
+		mController.onPictureTaken(new CraftARQueryImage(picture()));
+		
+		//Answered from the cache, but not before onPictureTaken() returns.
+		assertEquals(1, mSearchedPictures);
+		assertEquals(1, mRequestCodes.size());
+		Looper.getMainLooper().runUntilIdle();
+		assertEquals(2, mRequestCodes.size());
+		assertEquals(CachingSearchController.CACHED_RESULTS_REQUEST_CODE, (int) mRequestCodes.get(1));
+	}
+
+	private static ArrayList<CraftARResult> hit(){
+		ArrayList<CraftARResult> results = new ArrayList<CraftARResult>();
+		results.add(new CraftARResult(new CraftARItem("item"), 90, new CraftARBoundingBox(0, 0, 1, 1)));
+		return results;
+	}
+
+	private static Bitmap picture(){
+		int[] pixels = new int[320 * 240];
+		for(int i = 0; i < pixels.length; i++){
+			int value = (i % 320) * 255 / 320;
+			pixels[i] = 0xff000000 | (value << 16) | (value << 8) | value;
+		}
+		return Bitmap.createBitmap(pixels, 320, 240, Bitmap.Config.ARGB_8888);
+	}
+}
@@ -0,0 +1,170 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.craftar.CraftARBoundingBox;
+import com.craftar.CraftARError;
+import com.craftar.CraftARItem;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.FakeSearchEngine;
+
+/**
+ * ConcurrentSearchController on top of the fake CraftAROnDeviceIR searching in 4 worker threads. The frames are 
+ * told apart by their width, and the engine takes longer to search the narrower ones.
+ */
+public class ConcurrentSearchControllerTest {
+
+	List<String> mHandedOver;
+	List<Integer> mRequestCodes;
+	ConcurrentSearchController mController;
+
+	@Before
+	public void setUp(){
+		SystemClock.useRealTime();
+		Looper.getMainLooper().reset();
+		CraftAROnDeviceIR.Instance().reset();
+		CraftAROnDeviceIR.Instance().setWorkers(4);
+		CraftAROnDeviceIR.Instance().setEngine(new FakeSearchEngine() {
+			@Override
+			public long getLatencyMillis(CraftARQueryImage query) {
+				return Math.max(1, 200 - 40 * query.getBitmap().getWidth());
+			}
+
+			@Override
+			public ArrayList<CraftARResult> search(CraftARQueryImage query) {
+				ArrayList<CraftARResult> results = new ArrayList<CraftARResult>();
+				results.add(new CraftARResult(new CraftARItem("frame" + query.getBitmap().getWidth()), 90, new CraftARBoundingBox(0, 0, 1, 1)));
+				return results;
+			}
+		});
+		mHandedOver = new ArrayList<String>();
+		mRequestCodes = new ArrayList<Integer>();
+		mController = new ConcurrentSearchController(CraftAROnDeviceIR.Instance(), new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+				mHandedOver.add(results.get(0).getItem().getItemName());
+				mRequestCodes.add(requestCode);
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+				mHandedOver.add("failed");
+				mRequestCodes.add(requestCode);
+			}
+		}, 4);
+		CraftAROnDeviceIR.Instance().setCraftARSearchResponseHandler(mController);
+		mController.onFinderActivated();
+		//Until the first response, only one frame is searched.
+		mController.onPreviewFrame(frame(5));
+		mController.onPreviewFrame(frame(5));
+		waitForResponses(1);
+		assertEquals(1, mController.getDroppedFrames());
+	}
+
+	@After
+	public void tearDown(){
+		CraftAROnDeviceIR.Instance().reset();
+		Looper.getMainLooper().reset();
+	}
+
+	@Test
+	public void handsOverTheResponsesInRequestOrder(){
+		for(int width = 1; width <= 4; width++){
+			mController.onPreviewFrame(frame(width));
+		}
+		waitForResponses(5);
+		
+		assertEquals(Arrays.asList("frame5", "frame1", "frame2", "frame3", "frame4"), mHandedOver);
+		for(int i = 1; i < mRequestCodes.size(); i++){
+			assertEquals(mRequestCodes.get(0) + i, (int) mRequestCodes.get(i));
+		}
+		assertTrue(mController.getReorderedResponses() > 0);
+		assertEquals(0, mController.getInFlight());
+	}
+
+	@Test
+	public void dropsTheFramesOverTheInFlightLimit(){
+		for(int width = 1; width <= 6; width++){
+			mController.onPreviewFrame(frame(width));
+		}
+		assertEquals(4, mController.getInFlight());
+		assertEquals(3, mController.getDroppedFrames());
+		waitForResponses(5);
+		
+		assertEquals(Arrays.asList("frame5", "frame1", "frame2", "frame3", "frame4"), mHandedOver);
+	}
+
+	@Test
+	public void dropsTheResponsesOfTheFramesSentBeforeTheFinderStopped(){
+		mController.onPreviewFrame(frame(1));
+		mController.onPreviewFrame(frame(2));
+		mController.onFinderDeactivated();
+		mController.onFinderActivated();
+		mController.onPreviewFrame(frame(4));
+		waitForResponses(2);
+		
+		assertEquals(Arrays.asList("frame5", "frame4"), mHandedOver);
+		assertEquals(2, mController.getStaleResponses());
+	}
+
+	@Test
+	public void handsOverThePicturesTakenAfterTheFinderStopped(){
+		mController.onPreviewFrame(frame(1));
+		mController.onFinderDeactivated();
+		mController.onPictureTaken(frame(4));
+		waitForResponses(2);
+		
+		assertEquals(Arrays.asList("frame5", "frame4"), mHandedOver);
+		assertEquals(1, mController.getStaleResponses());
+	}
+
+	private void waitForResponses(int responses){
+		long deadline = System.currentTimeMillis() + 10000;
+		while(mHandedOver.size() < responses || mController.getInFlight() > 0){
+			assertTrue("No response", System.currentTimeMillis() < deadline);
+			Looper.getMainLooper().runFor(5);
+		}
+	}
+
+	private static CraftARQueryImage frame(int width){
+		return new CraftARQueryImage(Bitmap.createBitmap(new int[width], width, 1, Bitmap.Config.ARGB_8888));
+	}
+}
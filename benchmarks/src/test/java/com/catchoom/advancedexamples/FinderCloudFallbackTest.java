@@ -0,0 +1,142 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.FakeSearchEngine;
+
+/**
+ * Cloud fallback of the finder of ExtendedSearchController, with the fake on-device module missing every frame and a 
+ * cloud backend that answers when the test tells it to.
+ */
+public class FinderCloudFallbackTest {
+
+	private final static long WINDOW_MILLIS = 50;
+
+	final ArrayList<CraftARQueryImage> mSent = new ArrayList<CraftARQueryImage>();
+	CraftARSearchResponseHandler mCloudHandler;
+	ExtendedSearchController mController;
+
+	@Before
+	public void setUp(){
+		SystemClock.useRealTime();
+		Looper.getMainLooper().reset();
+		CraftAROnDeviceIR.Instance().reset();
+		CraftAROnDeviceIR.Instance().setEngine(new FakeSearchEngine() {
+			@Override
+			public long getLatencyMillis(CraftARQueryImage query) {
+				return 1;
+			}
+
+			@Override
+			public ArrayList<CraftARResult> search(CraftARQueryImage query) {
+				return new ArrayList<CraftARResult>();
+			}
+		});
+		mController = new ExtendedSearchController(new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+			}
+		}, new SearchBackend() {
+			@Override
+			public void search(CraftARQueryImage image) {
+				mSent.add(image);
+			}
+
+			@Override
+			public void setCraftARSearchResponseHandler(CraftARSearchResponseHandler responseHandler) {
+				mCloudHandler = responseHandler;
+			}
+		});
+		mController.getCloudResultCache().clear();
+		mController.setSceneChangeDetector(null);
+		mController.setCloudFallbackCoalescing(WINDOW_MILLIS, CloudFallbackCoalescer.FramePolicy.MOST_RECENT, 1);
+		mController.onFinderActivated();
+	}
+
+	@After
+	public void tearDown(){
+		CraftAROnDeviceIR.Instance().reset();
+		Looper.getMainLooper().reset();
+	}
+
+	@Test
+	public void sendsACopyOfTheMissedFrame(){
+		Bitmap frame = frame(0);
+		int expectedPixel = frame.getPixel(31, 23);
+		mController.onPreviewFrame(new CraftARQueryImage(frame));
+		Looper.getMainLooper().runFor(20);
+		//The frame may be reused by the SDK once its on-device response has been handled.
+		frame.recycle();
+		Looper.getMainLooper().runFor(WINDOW_MILLIS + 50);
+		
+		assertEquals(1, mSent.size());
+		Bitmap sent = mSent.get(0).getBitmap();
+		assertNotSame(frame, sent);
+		assertFalse(sent.isRecycled());
+		assertEquals(expectedPixel, sent.getPixel(31, 23));
+	}
+
+	@Test
+	public void reusesTheCopyOnceTheCloudHasAnswered(){
+		mController.onPreviewFrame(new CraftARQueryImage(frame(0)));
+		Looper.getMainLooper().runFor(WINDOW_MILLIS + 50);
+		mCloudHandler.searchResults(new ArrayList<CraftARResult>(), 10, 1);
+		mController.onPreviewFrame(new CraftARQueryImage(frame(1)));
+		Looper.getMainLooper().runFor(WINDOW_MILLIS + 50);
+		
+		assertEquals(2, mSent.size());
+		assertSame(mSent.get(0).getBitmap(), mSent.get(1).getBitmap());
+		assertEquals(frame(1).getPixel(5, 5), mSent.get(1).getBitmap().getPixel(5, 5));
+	}
+
+	private static Bitmap frame(int seed){
+		int[] pixels = new int[64 * 48];
+		for(int i = 0; i < pixels.length; i++){
+			pixels[i] = 0xff000000 | ((i + seed) * 7919) & 0xffffff;
+		}
+		return Bitmap.createBitmap(pixels, 64, 48, Bitmap.Config.ARGB_8888);
+	}
+}
@@ -0,0 +1,101 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * FinderSessionTimer with a governor that ends the session after one second idle, in simulated time.
+ */
+public class FinderSessionTimerTest {
+
+	final static long IDLE_TIMEOUT_MILLIS = 1000;
+
+	FinderGovernor mGovernor;
+	FinderSessionTimer mTimer;
+	int mSessionsOver;
+
+	@Before
+	public void setUp(){
+		SystemClock.setSimulatedTime(0);
+		Looper.getMainLooper().reset();
+		mSessionsOver = 0;
+		mGovernor = new FinderGovernor(FinderGovernor.endWhenIdle(IDLE_TIMEOUT_MILLIS));
+		mTimer = new FinderSessionTimer(mGovernor, new FinderSessionTimer.Listener() {
+			@Override
+			public void finderSessionOver() {
+				mSessionsOver++;
+			}
+		}, 100);
+	}
+
+	@After
+	public void tearDown(){
+		Looper.getMainLooper().reset();
+		SystemClock.useRealTime();
+	}
+
+	@Test
+	public void endsTheSessionWithoutAnySearch(){
+		mGovernor.startSession(SystemClock.elapsedRealtime());
+		mTimer.start();
+		Looper.getMainLooper().runFor(IDLE_TIMEOUT_MILLIS - 1);
+		assertEquals(0, mSessionsOver);
+		
+		//The check after the idle timeout ends it.
+		Looper.getMainLooper().runFor(200);
+		assertEquals(1, mSessionsOver);
+		assertFalse(mTimer.isRunning());
+		assertEquals(0, Looper.getMainLooper().getPendingTasks());
+	}
+
+	@Test
+	public void keepsTheSessionWhileThereIsActivity(){
+		mGovernor.startSession(SystemClock.elapsedRealtime());
+		mTimer.start();
+		Looper.getMainLooper().runFor(IDLE_TIMEOUT_MILLIS / 2);
+		mGovernor.onHit(SystemClock.elapsedRealtime());
+		Looper.getMainLooper().runFor(IDLE_TIMEOUT_MILLIS - 100);
+		
+		assertEquals(0, mSessionsOver);
+	}
+
+	@Test
+	public void doesNothingOnceStopped(){
+		mGovernor.startSession(SystemClock.elapsedRealtime());
+		mTimer.start();
+		mTimer.stop();
+		Looper.getMainLooper().runFor(IDLE_TIMEOUT_MILLIS * 2);
+		
+		assertEquals(0, mSessionsOver);
+		assertEquals(0, Looper.getMainLooper().getPendingTasks());
+	}
+}
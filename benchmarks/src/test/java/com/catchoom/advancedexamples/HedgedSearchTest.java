@@ -0,0 +1,161 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.catchoom.benchmarks.SlowLinkServer;
+import com.catchoom.benchmarks.StubCloudBackend;
+import com.craftar.CraftARBoundingBox;
+import com.craftar.CraftARError;
+import com.craftar.CraftARItem;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.FakeSearchEngine;
+
+/**
+ * Hedged single shots of ExtendedSearchController, with the fake on-device module and a local stand-in of the cloud.
+ */
+public class HedgedSearchTest {
+
+	private final static long HEDGE_BUDGET_MILLIS = 200;
+	private final static long CLOUD_LATENCY_MILLIS = 100;
+
+	SlowLinkServer mServer;
+	StubCloudBackend mCloud;
+	ExtendedSearchController mController;
+	final ArrayList<ArrayList<CraftARResult>> mAnswers = new ArrayList<ArrayList<CraftARResult>>();
+
+	@Before
+	public void setUp() throws IOException {
+		SystemClock.useRealTime();
+		Looper.getMainLooper().reset();
+		CraftAROnDeviceIR.Instance().reset();
+		mServer = new SlowLinkServer(8000000, CLOUD_LATENCY_MILLIS);
+		mCloud = new StubCloudBackend(mServer.getSearchUrl());
+		mController = new ExtendedSearchController(new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+				mAnswers.add(results);
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+				mAnswers.add(null);
+			}
+		}, mCloud);
+		mController.getCloudResultCache().clear();
+		mController.setHedgedMode(true, HEDGE_BUDGET_MILLIS);
+	}
+
+	@After
+	public void tearDown(){
+		mCloud.shutdown();
+		mServer.stop();
+		CraftAROnDeviceIR.Instance().reset();
+	}
+
+	@Test
+	public void fastOnDeviceHitNeverReachesTheCloud(){
+		onDevice(50, true);
+		mController.onPictureTaken(new CraftARQueryImage(picture()));
+		Looper.getMainLooper().runFor(HEDGE_BUDGET_MILLIS + 500);
+		
+		assertEquals(1, mAnswers.size());
+		assertEquals(1, mAnswers.get(0).size());
+		assertEquals(0, mServer.getRequests());
+	}
+
+	@Test
+	public void slowOnDeviceSearchIsHedgedOnTheCloud(){
+		onDevice(1500, false);
+		mController.onPictureTaken(new CraftARQueryImage(picture()));
+		Looper.getMainLooper().runFor(HEDGE_BUDGET_MILLIS + 400);
+		
+		//The on-device search is still running.
+		assertEquals(1, CraftAROnDeviceIR.Instance().getPendingSearchRequestsCount());
+		assertEquals(1, mServer.getRequests());
+		waitForAnswers(1);
+		assertEquals(0, mAnswers.get(0).size());
+	}
+
+	@Test
+	public void withoutHedgingTheCloudWaitsForTheMiss(){
+		mController.setHedgedMode(false, HEDGE_BUDGET_MILLIS);
+		onDevice(800, false);
+		mController.onPictureTaken(new CraftARQueryImage(picture()));
+		Looper.getMainLooper().runFor(HEDGE_BUDGET_MILLIS + 400);
+		assertEquals(0, mServer.getRequests());
+		
+		waitForAnswers(1);
+		assertEquals(1, mServer.getRequests());
+	}
+
+	private void onDevice(final long latencyMillis, final boolean isFound){
+		CraftAROnDeviceIR.Instance().setEngine(new FakeSearchEngine() {
+			@Override
+			public long getLatencyMillis(CraftARQueryImage query) {
+				return latencyMillis;
+			}
+
+			@Override
+			public ArrayList<CraftARResult> search(CraftARQueryImage query) {
+				ArrayList<CraftARResult> results = new ArrayList<CraftARResult>();
+				if(isFound){
+					results.add(new CraftARResult(new CraftARItem("item"), 90, new CraftARBoundingBox(0, 0, 10, 10)));
+				}
+				return results;
+			}
+		});
+	}
+
+	private void waitForAnswers(int answers){
+		long deadline = System.currentTimeMillis() + 30000;
+		while(mAnswers.size() < answers){
+			assertTrue("No answer", System.currentTimeMillis() < deadline);
+			Looper.getMainLooper().runFor(20);
+		}
+	}
+
+	private static Bitmap picture(){
+		int[] pixels = new int[320 * 240];
+		for(int i = 0; i < pixels.length; i++){
+			int value = (i % 320) * 255 / 320;
+			pixels[i] = 0xff000000 | (value << 16) | (value << 8) | value;
+		}
+		return Bitmap.createBitmap(pixels, 320, 240, Bitmap.Config.ARGB_8888);
+	}
+}
@@ -0,0 +1,120 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.catchoom.advancedexamples.ItemTieringEngine.Action;
+import com.catchoom.advancedexamples.ItemTieringEngine.ItemStats;
+import com.catchoom.advancedexamples.ItemTieringEngine.Recommendation;
+import com.catchoom.advancedexamples.ItemTieringEngine.Tier;
+
+public class ItemTieringEngineTest {
+
+	private final static long NOW_MILLIS = 1000000000L;
+
+	@Test
+	public void readsTheItemsAndSizesOfTheManifest() throws IOException {
+		CollectionManifest manifest = manifest("{\"collection\": \"odir\", \"items\": [{\"name\": \"a\", \"sizeBytes\": 1000}, {\"name\": \"b\"}]}");
+		assertEquals("odir", manifest.getCollection());
+		assertEquals(2, manifest.getItemSizes().size());
+		assertEquals(1000, (long) manifest.getItemSizes().get("a"));
+		assertEquals(-1, (long) manifest.getItemSizes().get("b"));
+	}
+
+	@Test
+	public void keepsTheOnDeviceItemsWithinTheBudget() throws IOException {
+		ItemTieringEngine engine = new ItemTieringEngine();
+		manifest("{\"items\": [{\"name\": \"big\", \"sizeBytes\": 800}, {\"name\": \"small\", \"sizeBytes\": 300}]}").applyTo(engine);
+		engine.setItemSize("cloud", 300);
+		for(int i = 0; i < 10; i++){
+			engine.recordHit("big", Tier.ON_DEVICE, 100, NOW_MILLIS);
+			engine.recordHit("small", Tier.ON_DEVICE, 100, NOW_MILLIS);
+			engine.recordHit("cloud", Tier.CLOUD, 1000, NOW_MILLIS);
+		}
+		
+		Map<String, Recommendation> recommendations = byName(engine.recommend(700, NOW_MILLIS));
+		assertEquals(Action.KEEP, recommendations.get("small").mAction);
+		assertEquals(Action.PROMOTE, recommendations.get("cloud").mAction);
+		assertEquals(Action.DEMOTE, recommendations.get("big").mAction);
+		assertEquals(800, recommendations.get("big").mSizeBytes);
+	}
+
+	@Test
+	public void demotesTheOnDeviceItemsThatAreNeverFound() throws IOException {
+		ItemTieringEngine engine = new ItemTieringEngine();
+		manifest("{\"items\": [{\"name\": \"found\", \"sizeBytes\": 100}, {\"name\": \"never\", \"sizeBytes\": 100}]}").applyTo(engine);
+		engine.recordHit("found", Tier.ON_DEVICE, 100, NOW_MILLIS);
+		
+		Map<String, Recommendation> recommendations = byName(engine.recommend(1000000, NOW_MILLIS));
+		assertEquals(Action.KEEP, recommendations.get("found").mAction);
+		assertEquals(Action.DEMOTE, recommendations.get("never").mAction);
+	}
+
+	@Test
+	public void movesToTheCloudTheItemsLeftOutOfTheManifest() throws IOException {
+		ItemTieringEngine engine = new ItemTieringEngine();
+		engine.recordHit("removed", Tier.ON_DEVICE, 100, NOW_MILLIS);
+		manifest("{\"items\": [{\"name\": \"kept\"}]}").applyTo(engine);
+		
+		for(ItemStats stats : engine.getItems()){
+			assertEquals(stats.mName, "kept".equals(stats.mName) ? Tier.ON_DEVICE : Tier.CLOUD, stats.mTier);
+		}
+	}
+
+	@Test
+	public void restoringAnItemReplacesItsLatencies(){
+		ItemTieringEngine engine = new ItemTieringEngine();
+		ItemStats stats = new ItemStats("a");
+		stats.mCloudLatencySumMillis = 3000;
+		stats.mCloudLatencySamples = 3;
+		engine.restoreItem(stats);
+		engine.restoreItem(stats);
+		assertEquals(1000, engine.getPathLatencyMillis(Tier.CLOUD), 0.001);
+		
+		ItemStats faster = new ItemStats("a");
+		faster.mCloudLatencySumMillis = 1500;
+		faster.mCloudLatencySamples = 3;
+		engine.restoreItem(faster);
+		assertEquals(500, engine.getPathLatencyMillis(Tier.CLOUD), 0.001);
+	}
+
+	private static CollectionManifest manifest(String json) throws IOException {
+		return CollectionManifest.read(new ByteArrayInputStream(json.getBytes("UTF-8")));
+	}
+
+	private static Map<String, Recommendation> byName(List<Recommendation> recommendations){
+		Map<String, Recommendation> byName = new HashMap<String, Recommendation>();
+		for(Recommendation recommendation : recommendations){
+			byName.put(recommendation.mStats.mName, recommendation);
+		}
+		return byName;
+	}
+}
@@ -0,0 +1,171 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.SearchController;
+
+/**
+ * PreprocessingSearchController with a pipeline of all the operators, in front of a SearchController that keeps 
+ * the frames it receives.
+ */
+public class PreprocessingSearchControllerTest {
+
+	private final static int FRAME_WIDTH = 640;
+	private final static int FRAME_HEIGHT = 480;
+
+	final List<CraftARQueryImage> mSearched = new ArrayList<CraftARQueryImage>();
+	FrameBufferPool mPool;
+	PreprocessingSearchController mController;
+
+	@Before
+	public void setUp(){
+		SearchController searchController = new SearchController() {
+			@Override
+			public void onPreviewFrame(CraftARQueryImage image) {
+				if(mSearched.size() < 2){
+					mSearched.add(image);
+				}else{
+					//Keep the last two without allocating.
+					mSearched.set(0, mSearched.get(1));
+					mSearched.set(1, image);
+				}
+			}
+
+			@Override
+			public void onPictureTaken(CraftARQueryImage image) {
+			}
+
+			@Override
+			public void onTakePictureFailed(CraftARError error) {
+			}
+
+			@Override
+			public void onFinderActivated() {
+			}
+
+			@Override
+			public void onFinderDeactivated() {
+			}
+		};
+		mPool = new FrameBufferPool(3, FRAME_WIDTH * FRAME_HEIGHT / 4);
+		FramePipeline pipeline = new FramePipeline(mPool, new CenterCropOperator(0.5f), new BoxDownscaleOperator(2), new ContrastNormalizationOperator());
+		mController = new PreprocessingSearchController(searchController, new LumaExtractor(2), pipeline, new SharpnessFrameAnalyzer());
+	}
+
+	@Test
+	public void searchesTheProcessedFrame(){
+		CraftARQueryImage frame = new CraftARQueryImage(createTexture(1));
+		mController.onPreviewFrame(frame);
+		
+		assertEquals(1, mSearched.size());
+		Bitmap query = mSearched.get(0).getBitmap();
+		assertEquals(FRAME_WIDTH / 2 / 2 / 2, query.getWidth());
+		assertEquals(FRAME_HEIGHT / 2 / 2 / 2, query.getHeight());
+		int pixel = query.getPixel(10, 10);
+		assertEquals(pixel & 0xff, (pixel >> 8) & 0xff);
+		assertEquals(pixel & 0xff, (pixel >> 16) & 0xff);
+		assertEquals(3, mPool.getFreeCount());
+	}
+
+	@Test
+	public void usesTheQueryImagesInTurns(){
+		CraftARQueryImage frame = new CraftARQueryImage(createTexture(1));
+		mController.onPreviewFrame(frame);
+		CraftARQueryImage first = mSearched.get(0);
+		mController.onPreviewFrame(frame);
+		assertNotSame(first, mSearched.get(1));
+		mController.onPreviewFrame(frame);
+		assertSame(first, mSearched.get(1));
+	}
+
+	@Test
+	public void skipsTheBlurredFrames(){
+		Bitmap flat = Bitmap.createBitmap(new int[FRAME_WIDTH * FRAME_HEIGHT], FRAME_WIDTH, FRAME_HEIGHT, Bitmap.Config.ARGB_8888);
+		mController.onPreviewFrame(new CraftARQueryImage(flat));
+		
+		assertEquals(0, mSearched.size());
+		assertEquals(1, mController.getSkippedFrames());
+		assertEquals(3, mPool.getFreeCount());
+	}
+
+	@Test
+	public void allocatesNothingPerFrame(){
+		CraftARQueryImage[] frames = {new CraftARQueryImage(createTexture(1)), new CraftARQueryImage(createTexture(2))};
+		//Warm up: the query images and the row buffers are allocated with the first frames.
+		for(int i = 0; i < 100; i++){
+			mController.onPreviewFrame(frames[i % 2]);
+		}
+		
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		int frameCount = 1000;
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for(int i = 0; i < frameCount; i++){
+			mController.onPreviewFrame(frames[i % 2]);
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+		
+		assertEquals(1100, mController.getProcessedFrames());
+		assertEquals(0, mController.getUnprocessedFrames());
+		assertEquals(0, mPool.getExhaustedCount());
+		//Less than a byte per frame: whatever was allocated is not per frame (i.e. the measurement itself).
+		assertTrue("Allocated " + allocated + " bytes in " + frameCount + " frames", allocated < frameCount);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsACropLargerThanTheFrame(){
+		new CenterCropOperator(1.5f);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsAPipelineWithoutSpareBuffers(){
+		new FramePipeline(new FrameBufferPool(1, 16), new ContrastNormalizationOperator());
+	}
+
+	private static Bitmap createTexture(long seed){
+		Random random = new Random(seed);
+		int[] colors = new int[FRAME_WIDTH * FRAME_HEIGHT];
+		for(int i = 0; i < colors.length; i++){
+			int luma = random.nextInt(256);
+			colors[i] = 0xff000000 | luma << 16 | luma << 8 | luma;
+		}
+		return Bitmap.createBitmap(colors, FRAME_WIDTH, FRAME_HEIGHT, Bitmap.Config.ARGB_8888);
+	}
+}
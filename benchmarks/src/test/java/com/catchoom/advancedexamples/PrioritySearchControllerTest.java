@@ -0,0 +1,229 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.catchoom.advancedexamples.PrioritySearchQueue.Priority;
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.FakeSearchEngine;
+import com.craftar.SearchController;
+
+/**
+ * PrioritySearchController in front of a SearchController that records the requests it receives, and sends them to 
+ * the fake CraftAROnDeviceIR unless told to skip them, in simulated time. The module never answers by itself: the 
+ * tests send the responses.
+ */
+public class PrioritySearchControllerTest {
+
+	final static long IN_FLIGHT_TIMEOUT_MILLIS = 1000;
+
+	List<CraftARQueryImage> mSearched;
+	boolean mIsSkipping;
+	int mResponses;
+	PrioritySearchController mController;
+
+	@Before
+	public void setUp(){
+		SystemClock.setSimulatedTime(0);
+		Looper.getMainLooper().reset();
+		CraftAROnDeviceIR.Instance().reset();
+		CraftAROnDeviceIR.Instance().setEngine(new FakeSearchEngine() {
+			@Override
+			public long getLatencyMillis(CraftARQueryImage query) {
+				return Long.MAX_VALUE / 2;
+			}
+
+			@Override
+			public ArrayList<CraftARResult> search(CraftARQueryImage query) {
+				return new ArrayList<CraftARResult>();
+			}
+		});
+		mSearched = new ArrayList<CraftARQueryImage>();
+		mIsSkipping = false;
+		mResponses = 0;
+		SearchController searchController = new SearchController() {
+			@Override
+			public void onPreviewFrame(CraftARQueryImage image) {
+				search(image);
+			}
+
+			@Override
+			public void onPictureTaken(CraftARQueryImage image) {
+				search(image);
+			}
+			
+			private void search(CraftARQueryImage image){
+				mSearched.add(image);
+				if(!mIsSkipping){
+					CraftAROnDeviceIR.Instance().search(image);
+				}
+			}
+
+			@Override
+			public void onTakePictureFailed(CraftARError error) {
+			}
+
+			@Override
+			public void onFinderActivated() {
+			}
+
+			@Override
+			public void onFinderDeactivated() {
+			}
+		};
+		mController = new PrioritySearchController(CraftAROnDeviceIR.Instance(), searchController, new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+				mResponses++;
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+				mResponses++;
+			}
+		}, IN_FLIGHT_TIMEOUT_MILLIS);
+		mController.onFinderActivated();
+	}
+
+	@After
+	public void tearDown(){
+		CraftAROnDeviceIR.Instance().reset();
+		Looper.getMainLooper().reset();
+		SystemClock.useRealTime();
+	}
+
+	@Test
+	public void dropsTheFramesThatArriveWhileSearching(){
+		CraftARQueryImage first = frame();
+		mController.onPreviewFrame(first);
+		mController.onPreviewFrame(frame());
+		mController.onPreviewFrame(frame());
+		
+		assertEquals(1, mSearched.size());
+		assertEquals(2, mController.getQueue().getDropped(Priority.FINDER));
+		assertEquals(0, mController.getQueue().getDepth(Priority.FINDER));
+		
+		mController.searchResults(new ArrayList<CraftARResult>(), 10, 0);
+		CraftARQueryImage next = frame();
+		mController.onPreviewFrame(next);
+		assertEquals(1, mResponses);
+		assertSame(next, mSearched.get(1));
+	}
+
+	@Test
+	public void searchesThePictureAsSoonAsTheFrameIsAnswered(){
+		mController.onPreviewFrame(frame());
+		CraftARQueryImage picture = frame();
+		mController.onPictureTaken(picture);
+		mController.onPreviewFrame(frame());
+		assertEquals(1, mSearched.size());
+		
+		Looper.getMainLooper().runFor(100);
+		mController.searchResults(new ArrayList<CraftARResult>(), 10, 0);
+		assertEquals(2, mSearched.size());
+		assertSame(picture, mSearched.get(1));
+		
+		Looper.getMainLooper().runFor(200);
+		mController.searchResults(new ArrayList<CraftARResult>(), 10, 0);
+		assertEquals(1, mController.getTapToResultLatency().getCount());
+		assertEquals(300, mController.getTapToResultLatency().getMaxMillis());
+	}
+
+	@Test
+	public void sendsTheNextRequestWhenARequestIsNotSearched(){
+		mIsSkipping = true;
+		mController.onPreviewFrame(frame());
+		mIsSkipping = false;
+		mController.onPreviewFrame(frame());
+		
+		assertEquals(2, mSearched.size());
+		assertEquals(1, mController.getSkippedRequests());
+		assertEquals(0, mController.getTimedOutRequests());
+		mController.searchResults(new ArrayList<CraftARResult>(), 10, 1);
+		assertEquals(1, mResponses);
+	}
+
+	@Test
+	public void dropsTheLateResponsesOfTheRequestsGivenUp(){
+		mController.onPreviewFrame(frame());
+		Looper.getMainLooper().runFor(IN_FLIGHT_TIMEOUT_MILLIS - 1);
+		mController.onPreviewFrame(frame());
+		assertEquals(1, mSearched.size());
+		
+		Looper.getMainLooper().runFor(1);
+		assertEquals(1, mController.getTimedOutRequests());
+		CraftARQueryImage picture = frame();
+		mController.onPictureTaken(picture);
+		assertSame(picture, mSearched.get(1));
+		
+		//The response of the frame given up is not the answer to the picture.
+		Looper.getMainLooper().runFor(100);
+		mController.searchResults(new ArrayList<CraftARResult>(), 10, 1);
+		assertEquals(0, mResponses);
+		assertEquals(1, mController.getStaleResponses());
+		mController.onPreviewFrame(frame());
+		assertEquals(2, mSearched.size());
+		assertEquals(0, mController.getTapToResultLatency().getCount());
+		
+		Looper.getMainLooper().runFor(100);
+		mController.searchResults(new ArrayList<CraftARResult>(), 10, 2);
+		assertEquals(1, mResponses);
+		assertEquals(200, mController.getTapToResultLatency().getMaxMillis());
+		mController.onPreviewFrame(frame());
+		assertEquals(3, mSearched.size());
+	}
+
+	@Test
+	public void forwardsEveryFrameWhileTheFinderIsStopped(){
+		mController.onFinderDeactivated();
+		//The frames don't reach the module, so the only task would be an in-flight timeout.
+		mIsSkipping = true;
+		mController.onPreviewFrame(frame());
+		mController.onPreviewFrame(frame());
+		
+		assertEquals(2, mSearched.size());
+		assertEquals(0, mController.getSkippedRequests());
+		assertEquals(0, Looper.getMainLooper().getPendingTasks());
+	}
+
+	private static CraftARQueryImage frame(){
+		return new CraftARQueryImage(Bitmap.createBitmap(new int[16], 4, 4, Bitmap.Config.ARGB_8888));
+	}
+}
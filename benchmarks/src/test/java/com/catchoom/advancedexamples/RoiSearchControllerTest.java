@@ -0,0 +1,234 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.craftar.CraftARBoundingBox;
+import com.craftar.CraftARError;
+import com.craftar.CraftARItem;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.FakeSearchEngine;
+
+/**
+ * RoiSearchController on top of the fake CraftAROnDeviceIR, with an engine that misses every query and keeps the 
+ * bitmaps it was given.
+ */
+public class RoiSearchControllerTest {
+
+	final static int WIDTH = 64;
+	final static int HEIGHT = 48;
+
+	List<Bitmap> mSearched;
+	List<Integer> mRequestCodes;
+	RoiSearchController mController;
+
+	@Before
+	public void setUp(){
+		SystemClock.useRealTime();
+		Looper.getMainLooper().reset();
+		CraftAROnDeviceIR.Instance().reset();
+		mSearched = Collections.synchronizedList(new ArrayList<Bitmap>());
+		mRequestCodes = new ArrayList<Integer>();
+		CraftAROnDeviceIR.Instance().setEngine(new FakeSearchEngine() {
+			@Override
+			public long getLatencyMillis(CraftARQueryImage query) {
+				return 1;
+			}
+
+			@Override
+			public ArrayList<CraftARResult> search(CraftARQueryImage query) {
+				mSearched.add(query.getBitmap());
+				return new ArrayList<CraftARResult>();
+			}
+		});
+		mController = new RoiSearchController(CraftAROnDeviceIR.Instance(), new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+				mRequestCodes.add(requestCode);
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+				mRequestCodes.add(requestCode);
+			}
+		});
+	}
+
+	@After
+	public void tearDown(){
+		mController.release();
+		CraftAROnDeviceIR.Instance().reset();
+		Looper.getMainLooper().reset();
+	}
+
+	@Test
+	public void answersAMissWithTheRequestCodeOfTheLastSearch(){
+		mController.setMode(RoiSearchController.Mode.ROI);
+		mController.onPictureTaken(new CraftARQueryImage(createFrame()));
+		waitForAnswers(1);
+		
+		//The center crop, the four tiles and the full frame.
+		assertEquals(6, CraftAROnDeviceIR.Instance().getSearches());
+		assertEquals(6, (int) mRequestCodes.get(0));
+	}
+
+	@Test
+	public void searchesACopyOfTheFullFrameWhenTheRegionsMiss(){
+		final ArrayList<ArrayList<CraftARResult>> answers = new ArrayList<ArrayList<CraftARResult>>();
+		mController.setResponseHandler(new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+				answers.add(results);
+				mRequestCodes.add(requestCode);
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+				mRequestCodes.add(requestCode);
+			}
+		});
+		//An item that fills the frame is only recognized in the full frame.
+		CraftAROnDeviceIR.Instance().setEngine(new FakeSearchEngine() {
+			@Override
+			public long getLatencyMillis(CraftARQueryImage query) {
+				return 1;
+			}
+
+			@Override
+			public ArrayList<CraftARResult> search(CraftARQueryImage query) {
+				Bitmap bitmap = query.getBitmap();
+				mSearched.add(bitmap);
+				ArrayList<CraftARResult> results = new ArrayList<CraftARResult>();
+				if(bitmap.getWidth() == WIDTH && bitmap.getHeight() == HEIGHT){
+					results.add(new CraftARResult(new CraftARItem("poster"), 90, new CraftARBoundingBox(0, 0, WIDTH, HEIGHT)));
+				}
+				return results;
+			}
+		});
+		Bitmap frame = createFrame();
+		int expectedPixel = frame.getPixel(WIDTH - 1, HEIGHT - 1);
+		mController.setMode(RoiSearchController.Mode.ROI);
+		mController.onFinderActivated();
+		mController.onPreviewFrame(new CraftARQueryImage(frame));
+		frame.recycle();
+		waitForAnswers(1);
+		
+		assertEquals(6, mSearched.size());
+		Bitmap fullFrame = mSearched.get(5);
+		assertNotSame(frame, fullFrame);
+		assertEquals(expectedPixel, fullFrame.getPixel(WIDTH - 1, HEIGHT - 1));
+		assertEquals(1, answers.get(0).size());
+		assertEquals(1, mController.getTimeToRecognition(RoiSearchController.Mode.ROI).getCount());
+	}
+
+	@Test
+	public void cropsACopyOfTheFrame(){
+		Bitmap frame = createFrame();
+		int[] center = new RoiPlanner().centerCrop(WIDTH, HEIGHT);
+		int expectedPixel = frame.getPixel(center[0], center[1]);
+		mController.setMode(RoiSearchController.Mode.ROI);
+		mController.onFinderActivated();
+		mController.onPreviewFrame(new CraftARQueryImage(frame));
+		//The SDK may recycle the frame as soon as onPreviewFrame() returns.
+		frame.recycle();
+		waitForAnswers(1);
+		
+		Bitmap centerCrop = mSearched.get(0);
+		assertNotSame(frame, centerCrop);
+		assertEquals(center[2], centerCrop.getWidth());
+		assertEquals(center[3], centerCrop.getHeight());
+		assertEquals(expectedPixel, centerCrop.getPixel(0, 0));
+	}
+
+	@Test
+	public void reusesTheCropsFromOneQueryToTheNext(){
+		mController.setMode(RoiSearchController.Mode.ROI);
+		mController.onPictureTaken(new CraftARQueryImage(createFrame()));
+		waitForAnswers(1);
+		Set<Bitmap> firstCrops = identitySet(mSearched);
+		mSearched.clear();
+		mController.onPictureTaken(new CraftARQueryImage(createFrame()));
+		waitForAnswers(2);
+		
+		assertEquals(6, mSearched.size());
+		for(Bitmap crop : mSearched){
+			assertTrue(firstCrops.contains(crop));
+			assertFalse(crop.isRecycled());
+		}
+	}
+
+	@Test
+	public void searchesTheWholeFrameInFullFrameMode(){
+		Bitmap frame = createFrame();
+		assertEquals(RoiSearchController.Mode.FULL_FRAME, mController.getMode());
+		mController.onPictureTaken(new CraftARQueryImage(frame));
+		waitForAnswers(1);
+		
+		assertEquals(1, mSearched.size());
+		assertTrue(frame == mSearched.get(0));
+		assertEquals(1, (int) mRequestCodes.get(0));
+	}
+
+	private void waitForAnswers(int answers){
+		long deadline = System.currentTimeMillis() + 10000;
+		while(mRequestCodes.size() < answers){
+			assertTrue("No answer", System.currentTimeMillis() < deadline);
+			Looper.getMainLooper().runFor(5);
+		}
+	}
+
+	private static Set<Bitmap> identitySet(List<Bitmap> bitmaps){
+		Set<Bitmap> set = Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+		set.addAll(bitmaps);
+		return set;
+	}
+
+	private static Bitmap createFrame(){
+		int[] colors = new int[WIDTH * HEIGHT];
+		for(int i = 0; i < colors.length; i++){
+			colors[i] = 0xff000000 | (i * 7919) & 0xffffff;
+		}
+		return Bitmap.createBitmap(colors, WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+	}
+}
@@ -0,0 +1,138 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftARError.ERROR_CODES;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+
+/**
+ * SearchRequestRouter with a backend that answers when the test tells it to.
+ */
+public class SearchRequestRouterTest {
+
+	final ArrayList<CraftARQueryImage> mSent = new ArrayList<CraftARQueryImage>();
+	final ArrayList<String> mAnswers = new ArrayList<String>();
+	SearchRequestRouter mRouter;
+
+	@Before
+	public void setUp(){
+		mRouter = new SearchRequestRouter(new SearchBackend() {
+			@Override
+			public void search(CraftARQueryImage image) {
+				mSent.add(image);
+			}
+
+			@Override
+			public void setCraftARSearchResponseHandler(CraftARSearchResponseHandler responseHandler) {
+			}
+		});
+	}
+
+	@Test
+	public void keepsOneQueryInFlight(){
+		CraftARQueryImage first = query();
+		CraftARQueryImage second = query();
+		CraftARQueryImage third = query();
+		mRouter.search(first, new Client("first"));
+		mRouter.search(second, new Client("second"));
+		mRouter.search(third, new Client("third"));
+		assertEquals(1, mSent.size());
+		assertSame(first, mSent.get(0));
+		assertEquals(3, mRouter.getPendingRequests());
+		assertEquals(2, mRouter.getWaitingRequests());
+		
+		mRouter.searchResults(new ArrayList<CraftARResult>(), 100, 7);
+		assertEquals(2, mSent.size());
+		assertSame(second, mSent.get(1));
+		mRouter.searchFailed(new CraftARError(ERROR_CODES.OTHER, "offline"), 8);
+		assertSame(third, mSent.get(2));
+		mRouter.searchResults(new ArrayList<CraftARResult>(), 100, 9);
+		
+		assertEquals("[first 0 results 7, second 1 failed 8, third 2 results 9]", mAnswers.toString());
+		assertEquals(0, mRouter.getPendingRequests());
+	}
+
+	@Test
+	public void queuesTheQueriesSentWhileAResponseIsHandedOver(){
+		mRouter.search(query(), new Client("first"){
+			@Override
+			public void searchResults(long requestId, ArrayList<CraftARResult> results, long searchTimeMillis, 
+					int requestCode) {
+				super.searchResults(requestId, results, searchTimeMillis, requestCode);
+				mRouter.search(query(), new Client("retry"));
+			}
+		});
+		mRouter.search(query(), new Client("second"));
+		
+		mRouter.searchResults(new ArrayList<CraftARResult>(), 100, 1);
+		assertEquals(2, mSent.size());
+		mRouter.searchResults(new ArrayList<CraftARResult>(), 100, 2);
+		mRouter.searchResults(new ArrayList<CraftARResult>(), 100, 3);
+		
+		assertEquals("[first 0 results 1, second 1 results 2, retry 2 results 3]", mAnswers.toString());
+	}
+
+	@Test
+	public void ignoresResponsesWithNothingInFlight(){
+		mRouter.searchResults(new ArrayList<CraftARResult>(), 100, 1);
+		mRouter.search(query(), new Client("first"));
+		mRouter.searchResults(new ArrayList<CraftARResult>(), 100, 2);
+		mRouter.searchFailed(new CraftARError(ERROR_CODES.OTHER, "late"), 3);
+		
+		assertEquals("[first 0 results 2]", mAnswers.toString());
+	}
+
+	private static CraftARQueryImage query(){
+		return new CraftARQueryImage(Bitmap.createBitmap(8, 8, Bitmap.Config.ARGB_8888));
+	}
+
+	class Client implements SearchRequestRouter.ResponseHandler {
+		final String mName;
+
+		Client(String name){
+			mName = name;
+		}
+
+		@Override
+		public void searchResults(long requestId, ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+			mAnswers.add(mName + " " + requestId + " results " + requestCode);
+		}
+
+		@Override
+		public void searchFailed(long requestId, CraftARError error, int requestCode) {
+			mAnswers.add(mName + " " + requestId + " failed " + requestCode);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * SearchWorkerController in front of a SearchController that records the calls it receives, and the thread they come from.
+ */
+public class SearchWorkerControllerTest {
+
+	List<String> mCalls;
+	List<String> mThreads;
+	List<Bitmap> mSearched;
+	CountDownLatch mFirstFrameReleased;
+	SearchWorkerController mWorker;
+
+	@Before
+	public void setUp(){
+		mCalls = Collections.synchronizedList(new ArrayList<String>());
+		mThreads = Collections.synchronizedList(new ArrayList<String>());
+		mSearched = Collections.synchronizedList(new ArrayList<Bitmap>());
+		mFirstFrameReleased = new CountDownLatch(1);
+		SearchController searchController = new SearchController() {
+			@Override
+			public void onPreviewFrame(CraftARQueryImage image) {
+				mSearched.add(image.getBitmap());
+				record("frame" + image.getBitmap().getWidth());
+				if(image.getBitmap().getWidth() == 1){
+					await(mFirstFrameReleased);
+				}
+			}
+
+			@Override
+			public void onPictureTaken(CraftARQueryImage image) {
+				record("picture");
+			}
+
+			@Override
+			public void onTakePictureFailed(CraftARError error) {
+			}
+
+			@Override
+			public void onFinderActivated() {
+				record("activated");
+			}
+
+			@Override
+			public void onFinderDeactivated() {
+				record("deactivated");
+			}
+		};
+		mWorker = new SearchWorkerController(searchController, new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+				record("results" + requestCode);
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+				record("failed" + requestCode);
+			}
+		});
+	}
+
+	@After
+	public void tearDown(){
+		mFirstFrameReleased.countDown();
+		mWorker.quit();
+	}
+
+	@Test
+	public void searchesTheFramesBeforeTheEventsThatCameAfterThem() throws InterruptedException {
+		mWorker.onFinderActivated();
+		mWorker.onPreviewFrame(frame(1));
+		waitForCalls(2);
+		//The worker is busy with the first frame.
+		mWorker.onPreviewFrame(frame(2));
+		mWorker.onFinderDeactivated();
+		mWorker.onPreviewFrame(frame(3));
+		mFirstFrameReleased.countDown();
+		waitForCalls(5);
+		
+		assertEquals(Arrays.asList("activated", "frame1", "frame2", "deactivated", "frame3"), mCalls);
+	}
+
+	@Test
+	public void dropsTheOlderFramesThatCameBeforeTheSameEvent() throws InterruptedException {
+		mWorker.onPreviewFrame(frame(1));
+		waitForCalls(1);
+		mWorker.onPreviewFrame(frame(2));
+		mWorker.onPreviewFrame(frame(3));
+		mWorker.onPictureTaken(frame(4));
+		mFirstFrameReleased.countDown();
+		waitForCalls(3);
+		
+		assertEquals(Arrays.asList("frame1", "frame3", "picture"), mCalls);
+		assertEquals(1, mWorker.getDroppedFrames());
+	}
+
+	@Test
+	public void deliversTheResponsesOnTheWorkerThread() throws InterruptedException {
+		mFirstFrameReleased.countDown();
+		mWorker.onPreviewFrame(frame(2));
+		mWorker.searchResults(new ArrayList<CraftARResult>(), 10, 7);
+		mWorker.searchFailed(new CraftARError(CraftARError.ERROR_CODES.OTHER, "error"), 8);
+		waitForCalls(3);
+		
+		assertEquals(Arrays.asList("frame2", "results7", "failed8"), mCalls);
+		for(String thread : mThreads){
+			assertEquals(SearchWorkerController.THREAD_NAME, thread);
+		}
+	}
+
+	@Test
+	public void searchesACopyOfTheFrame() throws InterruptedException {
+		mFirstFrameReleased.countDown();
+		Bitmap bitmap = Bitmap.createBitmap(new int[]{0xff102030, 0xff405060}, 2, 1, Bitmap.Config.ARGB_8888);
+		mWorker.onPreviewFrame(new CraftARQueryImage(bitmap));
+		//The SDK may reuse the frame as soon as onPreviewFrame() returns.
+		bitmap.recycle();
+		waitForCalls(1);
+		
+		Bitmap searched = mSearched.get(0);
+		assertNotSame(bitmap, searched);
+		assertEquals(0xff405060, searched.getPixel(1, 0));
+	}
+
+	@Test
+	public void reusesTheCopies() throws InterruptedException {
+		mFirstFrameReleased.countDown();
+		for(int i = 0; i < 20; i++){
+			mWorker.onPreviewFrame(frame(2));
+			waitForCalls(i + 1);
+		}
+		
+		Set<Bitmap> copies = Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+		copies.addAll(mSearched);
+		assertTrue(copies.size() <= SearchWorkerController.DEFAULT_FRAME_CAPACITY + 2);
+	}
+
+	private void record(String call){
+		mCalls.add(call);
+		mThreads.add(Thread.currentThread().getName());
+	}
+
+	private void waitForCalls(int calls) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while(mCalls.size() < calls){
+			assertTrue("Timed out", System.currentTimeMillis() < deadline);
+			Thread.sleep(5);
+		}
+	}
+
+	private static void await(CountDownLatch latch){
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static CraftARQueryImage frame(int width){
+		return new CraftARQueryImage(Bitmap.createBitmap(new int[width], width, 1, Bitmap.Config.ARGB_8888));
+	}
+}
@@ -0,0 +1,177 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+
+import com.craftar.CraftARBoundingBox;
+import com.craftar.CraftARError;
+import com.craftar.CraftARItem;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * TrackingSearchController in front of a SearchController that counts the frames it receives, in simulated time.
+ */
+public class TrackingSearchControllerTest {
+
+	int mForwardedFrames;
+	TrackingSearchController mController;
+	CraftARQueryImage mFrame;
+
+	@Before
+	public void setUp(){
+		SystemClock.setSimulatedTime(0);
+		mForwardedFrames = 0;
+		SearchController searchController = new SearchController() {
+			@Override
+			public void onPreviewFrame(CraftARQueryImage image) {
+				mForwardedFrames++;
+			}
+
+			@Override
+			public void onPictureTaken(CraftARQueryImage image) {
+			}
+
+			@Override
+			public void onTakePictureFailed(CraftARError error) {
+			}
+
+			@Override
+			public void onFinderActivated() {
+			}
+
+			@Override
+			public void onFinderDeactivated() {
+			}
+		};
+		mController = new TrackingSearchController(searchController, new CraftARSearchResponseHandler() {
+			@Override
+			public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+			}
+
+			@Override
+			public void searchFailed(CraftARError error, int requestCode) {
+			}
+		});
+		mFrame = new CraftARQueryImage(createTexture(640, 480, 1));
+	}
+
+	@After
+	public void tearDown(){
+		SystemClock.useRealTime();
+	}
+
+	@Test
+	public void seedsTheTrackerWithTheBoundingBox(){
+		mController.onFinderActivated();
+		mController.onPreviewFrame(mFrame);
+		mController.searchResults(hit(new CraftARBoundingBox(0.5f, 0.5f, 0.75f, 0.75f)), 10, 1);
+		
+		assertTrue(mController.isTracking());
+		assertEquals(32, mController.mTracker.getX());
+		assertEquals(24, mController.mTracker.getY());
+		mController.onPreviewFrame(mFrame);
+		mController.onPreviewFrame(mFrame);
+		assertEquals(1, mForwardedFrames);
+		assertEquals(2, mController.getSuppressedFrames());
+	}
+
+	@Test
+	public void seedsTheFrameThatWasSearched(){
+		CraftARQueryImage newerFrame = new CraftARQueryImage(createTexture(640, 480, 2));
+		mController.onFinderActivated();
+		mController.onPreviewFrame(mFrame);
+		SystemClock.setSimulatedTime(50);
+		mController.onPreviewFrame(newerFrame);
+		//The search of the first frame took 60ms.
+		SystemClock.setSimulatedTime(80);
+		mController.searchResults(hit(null), 60, 1);
+		
+		//The template is found unchanged in the searched frame.
+		mController.onPreviewFrame(mFrame);
+		assertEquals(2, mForwardedFrames);
+		assertEquals(0, mController.mTracker.getLastDifference());
+	}
+
+	@Test
+	public void seedsTheCenterWhenTheBoxIsTooSmall(){
+		mController.onFinderActivated();
+		mController.onPreviewFrame(mFrame);
+		mController.searchResults(hit(new CraftARBoundingBox(0.1f, 0.1f, 0.12f, 0.12f)), 10, 1);
+		
+		assertEquals(TrackingSearchController.GRID_WIDTH / 4, mController.mTracker.getX());
+		assertEquals(TrackingSearchController.GRID_HEIGHT / 4, mController.mTracker.getY());
+	}
+
+	@Test
+	public void stopsTrackingWhenTheFinderRestarts(){
+		seedsTheTrackerWithTheBoundingBox();
+		
+		mController.onFinderDeactivated();
+		assertFalse(mController.isTracking());
+		mController.onFinderActivated();
+		mController.onPreviewFrame(mFrame);
+		assertEquals(2, mForwardedFrames);
+	}
+
+	@Test
+	public void doesNotSampleTheFramesWhileTheFinderIsStopped(){
+		mController.onPreviewFrame(mFrame);
+		mController.searchResults(hit(null), 10, 1);
+		
+		assertFalse(mController.mHasFrame);
+		assertFalse(mController.isTracking());
+		assertEquals(1, mForwardedFrames);
+	}
+
+	private static ArrayList<CraftARResult> hit(CraftARBoundingBox box){
+		ArrayList<CraftARResult> results = new ArrayList<CraftARResult>();
+		results.add(new CraftARResult(new CraftARItem("item"), 90, box));
+		return results;
+	}
+
+	private static Bitmap createTexture(int width, int height, long seed){
+		Random random = new Random(seed);
+		int[] colors = new int[width * height];
+		for(int i = 0; i < colors.length; i++){
+			int luma = random.nextInt(256);
+			colors[i] = 0xff000000 | luma << 16 | luma << 8 | luma;
+		}
+		return Bitmap.createBitmap(colors, width, height, Bitmap.Config.ARGB_8888);
+	}
+}
@@ -0,0 +1,233 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server that stands for the host of the collection bundles and their deltas.
+ * 
+ * Every file is served with an ETag and a Last-Modified date, and answers conditional requests (If-None-Match, 
+ * If-Modified-Since) with 304 and "Range: bytes=N-" requests with 206. The server can drop the connection in the 
+ * middle of the next download, like a flaky network does. Every request is recorded.
+ */
+public class BundleServer {
+
+	/**
+	 * A request received: its method, path and the first byte it asked for (0 if it didn't ask for a range).
+	 */
+	public static class Request {
+		public final String mMethod;
+		public final String mPath;
+		public final long mRangeStart;
+		public final int mStatus;
+
+		Request(String method, String path, long rangeStart, int status){
+			mMethod = method;
+			mPath = path;
+			mRangeStart = rangeStart;
+			mStatus = status;
+		}
+	}
+
+	private static class Resource {
+		final byte[] mBody;
+		final String mETag;
+		final long mLastModified;
+
+		Resource(byte[] body, String etag, long lastModified){
+			mBody = body;
+			mETag = etag;
+			mLastModified = lastModified;
+		}
+	}
+
+	private final HttpServer mServer;
+	private final Map<String, Resource> mResources = new HashMap<String, Resource>();
+	private final List<Request> mRequests = new ArrayList<Request>();
+	private long mDropAfterBytes = -1;
+	private long mBytesSent = 0;
+
+	/**
+	 * Starts the server on a free port of the loopback interface.
+	 */
+	public BundleServer() throws IOException {
+		mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		mServer.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+		mServer.start();
+	}
+
+	public URL getUrl(String path) throws IOException {
+		return new URL("http", "127.0.0.1", mServer.getAddress().getPort(), path);
+	}
+
+	public void stop(){
+		mServer.stop(0);
+	}
+
+	/**
+	 * Serves the body at the given path. The Last-Modified date is the current time, in seconds.
+	 */
+	public synchronized void put(String path, byte[] body, String etag){
+		mResources.put(path, new Resource(body, etag, System.currentTimeMillis() / 1000 * 1000));
+	}
+
+	public synchronized void remove(String path){
+		mResources.remove(path);
+	}
+
+	/**
+	 * Closes the connection of the next download after sending the given number of bytes of the body.
+	 */
+	public synchronized void dropNextDownloadAfter(long bytes){
+		mDropAfterBytes = bytes;
+	}
+
+	public synchronized List<Request> getRequests(){
+		return new ArrayList<Request>(mRequests);
+	}
+
+	/**
+	 * Bytes of all the bodies sent.
+	 */
+	public synchronized long getBytesSent(){
+		return mBytesSent;
+	}
+
+	private void serve(HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+		String path = exchange.getRequestURI().getPath();
+		Resource resource;
+		long dropAfterBytes;
+		synchronized (this) {
+			resource = mResources.get(path);
+			dropAfterBytes = "GET".equals(method) ? mDropAfterBytes : -1;
+			if(resource != null && dropAfterBytes >= 0){
+				mDropAfterBytes = -1;
+			}
+		}
+		long rangeStart = parseRangeStart(exchange.getRequestHeaders().getFirst("Range"));
+		if(resource == null){
+			record(method, path, rangeStart, 404);
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+			return;
+		}
+		
+		exchange.getResponseHeaders().set("ETag", resource.mETag);
+		exchange.getResponseHeaders().set("Last-Modified", formatDate(resource.mLastModified));
+		if(isNotModified(exchange, resource)){
+			record(method, path, rangeStart, 304);
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+			return;
+		}
+		
+		int status = 200;
+		long start = 0;
+		if(rangeStart > 0 && rangeStart < resource.mBody.length){
+			status = 206;
+			start = rangeStart;
+			exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (resource.mBody.length - 1) + "/" + resource.mBody.length);
+		}
+		record(method, path, rangeStart, status);
+		long length = resource.mBody.length - start;
+		if("HEAD".equals(method)){
+			exchange.getResponseHeaders().set("Content-Length", Long.toString(length));
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			return;
+		}
+		exchange.sendResponseHeaders(status, length);
+		OutputStream body = exchange.getResponseBody();
+		long sent = dropAfterBytes >= 0 ? Math.min(dropAfterBytes, length) : length;
+		body.write(resource.mBody, (int) start, (int) sent);
+		body.flush();
+		synchronized (this) {
+			mBytesSent += sent;
+		}
+		//Closing before the whole body is written throws, and the server cuts the connection.
+		body.close();
+	}
+
+	private synchronized void record(String method, String path, long rangeStart, int status){
+		mRequests.add(new Request(method, path, rangeStart, status));
+	}
+
+	private static boolean isNotModified(HttpExchange exchange, Resource resource){
+		String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+		if(ifNoneMatch != null){
+			return ifNoneMatch.equals(resource.mETag);
+		}
+		String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+		if(ifModifiedSince != null){
+			try {
+				return resource.mLastModified <= dateFormat().parse(ifModifiedSince).getTime();
+			} catch (ParseException e) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private static long parseRangeStart(String range){
+		if(range == null || !range.startsWith("bytes=") || !range.endsWith("-")){
+			return 0;
+		}
+		try {
+			return Long.parseLong(range.substring("bytes=".length(), range.length() - 1));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static String formatDate(long millis){
+		return dateFormat().format(new Date(millis));
+	}
+
+	private static SimpleDateFormat dateFormat(){
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return format;
+	}
+}
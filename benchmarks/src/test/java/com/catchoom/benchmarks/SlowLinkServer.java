@@ -0,0 +1,156 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server that stands for the cloud recognition service behind a slow link.
+ * 
+ * The body of every request is read no faster than the upload bandwidth of the link, and the answer is sent 
+ * after the latency of the link (and of the search) has passed. The answer is always an empty result list.
+ * 
+ * The benchmarks and the tests share it as the stand-in of the cloud: it counts the requests and the bytes received.
+ */
+public class SlowLinkServer {
+
+	private final static int CHUNK_BYTES = 1024;
+	private final static byte[] EMPTY_RESULTS = "{\"results\":[]}".getBytes(Charset.forName("UTF-8"));
+
+	private final long mUploadBytesPerSecond;
+	private final long mLatencyMillis;
+	private final HttpServer mServer;
+	private final AtomicLong mRequests = new AtomicLong();
+	private final AtomicLong mReceivedBytes = new AtomicLong();
+
+	/**
+	 * Starts the server on a free port of the loopback interface.
+	 * 
+	 * @param uploadBitsPerSecond upload bandwidth of the link.
+	 * @param latencyMillis round-trip time of an empty request.
+	 */
+	public SlowLinkServer(long uploadBitsPerSecond, long latencyMillis) throws IOException {
+		mUploadBytesPerSecond = uploadBitsPerSecond / 8;
+		mLatencyMillis = latencyMillis;
+		mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		mServer.createContext("/search", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+		mServer.start();
+	}
+
+	public URL getSearchUrl() throws IOException {
+		return new URL("http", "127.0.0.1", mServer.getAddress().getPort(), "/search");
+	}
+
+	public void stop(){
+		mServer.stop(0);
+	}
+
+	/**
+	 * Number of requests received.
+	 */
+	public long getRequests(){
+		return mRequests.get();
+	}
+
+	/**
+	 * Bytes of the bodies of all the requests received.
+	 */
+	public long getReceivedBytes(){
+		return mReceivedBytes.get();
+	}
+
+	private void serve(HttpExchange exchange) throws IOException {
+		long startNanos = System.nanoTime();
+		InputStream body = exchange.getRequestBody();
+		byte[] chunk = new byte[CHUNK_BYTES];
+		long received = 0;
+		int read;
+		while((read = body.read(chunk)) > 0){
+			received += read;
+			sleepUntil(startNanos, received * 1000 / mUploadBytesPerSecond);
+		}
+		body.close();
+		mRequests.incrementAndGet();
+		mReceivedBytes.addAndGet(received);
+		sleepUntil(startNanos, received * 1000 / mUploadBytesPerSecond + mLatencyMillis);
+		
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, EMPTY_RESULTS.length);
+		OutputStream response = exchange.getResponseBody();
+		response.write(EMPTY_RESULTS);
+		response.close();
+	}
+
+	private static void sleepUntil(long startNanos, long elapsedMillis){
+		long remainingMillis = elapsedMillis - (System.nanoTime() - startNanos) / 1000000;
+		if(remainingMillis > 0){
+			try {
+				Thread.sleep(remainingMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Posts a query to the server and returns the time until the answer, in milliseconds.
+	 */
+	public static long post(URL url, byte[] jpeg) throws IOException {
+		long startNanos = System.nanoTime();
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		try {
+			connection.setDoOutput(true);
+			connection.setRequestMethod("POST");
+			connection.setRequestProperty("Content-Type", "image/jpeg");
+			connection.setFixedLengthStreamingMode(jpeg.length);
+			OutputStream out = connection.getOutputStream();
+			out.write(jpeg);
+			out.close();
+			if(connection.getResponseCode() != HttpURLConnection.HTTP_OK){
+				throw new IOException("Unexpected answer: " + connection.getResponseCode());
+			}
+			InputStream in = connection.getInputStream();
+			while(in.read() >= 0){
+			}
+			in.close();
+		} finally {
+			connection.disconnect();
+		}
+		return (System.nanoTime() - startNanos) / 1000000;
+	}
+}
@@ -0,0 +1,99 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.graphics.Bitmap;
+import android.net.TrafficStats;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.catchoom.advancedexamples.SearchBackend;
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+
+/**
+ * SearchBackend that sends the queries to a local {@link SlowLinkServer} the way the SDK sends them to the cloud: 
+ * compressed again as JPEG, one at a time, with the bytes sent counted in the TrafficStats of the app. The answers 
+ * are given on the main looper.
+ */
+public class StubCloudBackend implements SearchBackend {
+
+	public final static int SDK_JPEG_QUALITY = 90;
+
+	private final URL mSearchUrl;
+	private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private CraftARSearchResponseHandler mResponseHandler;
+	private int mNextRequestCode = 1;
+
+	public StubCloudBackend(URL searchUrl){
+		mSearchUrl = searchUrl;
+	}
+
+	@Override
+	public void setCraftARSearchResponseHandler(CraftARSearchResponseHandler responseHandler) {
+		mResponseHandler = responseHandler;
+	}
+
+	@Override
+	public void search(CraftARQueryImage image) {
+		final int requestCode = mNextRequestCode++;
+		ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+		image.getBitmap().compress(Bitmap.CompressFormat.JPEG, SDK_JPEG_QUALITY, jpeg);
+		final byte[] body = jpeg.toByteArray();
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					TrafficStats.addTxBytes(body.length);
+					final long rttMillis = SlowLinkServer.post(mSearchUrl, body);
+					mHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							mResponseHandler.searchResults(new ArrayList<CraftARResult>(), rttMillis, requestCode);
+						}
+					});
+				} catch (final IOException e) {
+					mHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							mResponseHandler.searchFailed(new CraftARError(CraftARError.ERROR_CODES.OTHER, e.getMessage()), requestCode);
+						}
+					});
+				}
+			}
+		});
+	}
+
+	public void shutdown(){
+		mExecutor.shutdownNow();
+	}
+}
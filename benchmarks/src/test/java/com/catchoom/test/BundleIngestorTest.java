@@ -0,0 +1,188 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.catchoom.benchmarks.BundleServer;
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceCollection;
+import com.craftar.CraftAROnDeviceCollectionManager;
+
+/**
+ * BundleIngestor downloading a bundle of 3MB from a local stand-in of the bundle host, with the fake Android classes.
+ */
+public class BundleIngestorTest {
+
+	private final static String BUNDLE_NAME = "odir.zip";
+	private final static String BUNDLE_PATH = "/bundles/" + BUNDLE_NAME;
+	private final static int ENTRY_SIZE = 256 * 1024;
+	private final static int ENTRIES = 12;
+
+	File mDir;
+	Context mContext;
+	BundleServer mServer;
+	byte[] mBundle;
+	BundleIngestor mIngestor;
+	final List<CraftAROnDeviceCollection> mAdded = new ArrayList<CraftAROnDeviceCollection>();
+	final List<IOException> mFailures = new ArrayList<IOException>();
+	final BundleIngestor.Listener mListener = new BundleIngestor.Listener() {
+		@Override
+		public void collectionAdded(CraftAROnDeviceCollection collection) {
+			mAdded.add(collection);
+		}
+
+		@Override
+		public void addCollectionFailed(CraftARError error) {
+			mFailures.add(new IOException(error.getErrorMessage()));
+		}
+
+		@Override
+		public void addCollectionProgress(float progress) {
+		}
+
+		@Override
+		public void ingestionFailed(IOException e) {
+			mFailures.add(e);
+		}
+	};
+
+	@Before
+	public void setUp() throws IOException {
+		SystemClock.useRealTime();
+		Looper.getMainLooper().reset();
+		CraftAROnDeviceCollectionManager.Instance().reset();
+		mDir = TestFiles.createTempDir();
+		mContext = new Context(mDir);
+		mServer = new BundleServer();
+		mBundle = TestFiles.createBundle(1, ENTRIES, ENTRY_SIZE);
+		mServer.put(BUNDLE_PATH, mBundle, "\"v1\"");
+		mIngestor = new BundleIngestor(mContext);
+	}
+
+	@After
+	public void tearDown(){
+		mIngestor.cancel();
+		mServer.stop();
+		TestFiles.delete(mDir);
+	}
+
+	@Test
+	public void addsTheVerifiedBundle() throws IOException {
+		ingest();
+		
+		assertEquals(1, mAdded.size());
+		assertEquals(BUNDLE_NAME, mAdded.get(0).getName());
+		assertEquals(1, CraftAROnDeviceCollectionManager.Instance().getAddedBundles().size());
+		assertEquals(1, mServer.getRequests().size());
+		//The added bundle is kept as the base of the delta updates, and nothing is left in the staging directory.
+		assertArrayEquals(mBundle, TestFiles.read(DeltaUpdater.getInstalledBundle(mContext, BUNDLE_NAME)));
+		assertEquals(0, getStagingDir().list().length);
+	}
+
+	@Test
+	public void resumesAnInterruptedDownload() throws IOException {
+		mServer.dropNextDownloadAfter(mBundle.length * 4 / 5);
+		ingest();
+		assertEquals(0, mAdded.size());
+		assertEquals(1, mFailures.size());
+		
+		mFailures.clear();
+		ingest();
+		
+		assertEquals(0, mFailures.size());
+		assertEquals(1, mAdded.size());
+		List<BundleServer.Request> requests = mServer.getRequests();
+		assertEquals(2, requests.size());
+		assertEquals(206, requests.get(1).mStatus);
+		assertTrue(requests.get(1).mRangeStart >= 1024 * 1024);
+		assertTrue(mServer.getBytesSent() < mBundle.length * 3 / 2);
+		assertArrayEquals(mBundle, TestFiles.read(DeltaUpdater.getInstalledBundle(mContext, BUNDLE_NAME)));
+	}
+
+	@Test
+	public void startsOverWhenTheBundleChanged() throws IOException {
+		mServer.dropNextDownloadAfter(mBundle.length * 4 / 5);
+		ingest();
+		assertEquals(1, mFailures.size());
+		
+		byte[] newBundle = TestFiles.createBundle(2, ENTRIES, ENTRY_SIZE);
+		mServer.put(BUNDLE_PATH, newBundle, "\"v2\"");
+		mFailures.clear();
+		ingest();
+		
+		assertEquals(1, mAdded.size());
+		List<BundleServer.Request> requests = mServer.getRequests();
+		assertEquals(3, requests.size());
+		assertTrue(requests.get(1).mRangeStart > 0);
+		assertEquals(0, requests.get(2).mRangeStart);
+		assertEquals(200, requests.get(2).mStatus);
+		assertArrayEquals(newBundle, TestFiles.read(DeltaUpdater.getInstalledBundle(mContext, BUNDLE_NAME)));
+	}
+
+	@Test
+	public void discardsACorruptBundle() throws IOException {
+		byte[] corrupt = mBundle.clone();
+		corrupt[corrupt.length / 2] ^= 0xff;
+		mServer.put(BUNDLE_PATH, corrupt, "\"v1\"");
+		ingest();
+		
+		assertEquals(0, mAdded.size());
+		assertEquals(1, mFailures.size());
+		assertTrue(mFailures.get(0).getMessage().contains("Checksum"));
+		assertEquals(0, CraftAROnDeviceCollectionManager.Instance().getAddedBundles().size());
+		//There's no way to know which part is corrupt, so the next attempt starts over.
+		assertEquals(0, getStagingDir().list().length);
+	}
+
+	private void ingest() throws IOException {
+		final int results = mAdded.size() + mFailures.size();
+		mIngestor.ingest(new HttpBundleSource(mServer.getUrl(BUNDLE_PATH), BUNDLE_NAME), mListener);
+		TestLooper.runUntil(new TestLooper.Condition() {
+			@Override
+			public boolean isMet() {
+				return mAdded.size() + mFailures.size() > results;
+			}
+		});
+	}
+
+	private File getStagingDir(){
+		return new File(new File(mContext.getFilesDir(), "bundles"), "staging");
+	}
+}
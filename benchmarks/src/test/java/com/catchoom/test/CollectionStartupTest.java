@@ -0,0 +1,115 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.catchoom.benchmarks.BundleServer;
+import com.craftar.CraftAROnDeviceCollection;
+import com.craftar.CraftAROnDeviceCollectionManager;
+import com.craftar.CraftAROnDeviceIR;
+
+/**
+ * CollectionStartup adding the collection from a local stand-in of the bundle host, with the fake Android classes.
+ */
+public class CollectionStartupTest {
+
+	private final static String TOKEN = "craftarexamples1";
+	private final static String BUNDLE_NAME = "odir.zip";
+	private final static String BUNDLE_PATH = "/bundles/" + BUNDLE_NAME;
+
+	File mDir;
+	Context mContext;
+	BundleServer mServer;
+
+	@Before
+	public void setUp() throws IOException {
+		SystemClock.useRealTime();
+		Looper.getMainLooper().reset();
+		CraftAROnDeviceCollectionManager.Instance().reset();
+		CraftAROnDeviceIR.Instance().reset();
+		mDir = TestFiles.createTempDir();
+		mContext = new Context(mDir);
+		mServer = new BundleServer();
+	}
+
+	@After
+	public void tearDown(){
+		mServer.stop();
+		TestFiles.delete(mDir);
+	}
+
+	@Test
+	public void loadsTheIngestedBundle() throws IOException {
+		mServer.put(BUNDLE_PATH, TestFiles.createBundle(1, 4, 64 * 1024), "\"v1\"");
+		CollectionStartup startup = start();
+		
+		assertEquals(BUNDLE_NAME, CraftAROnDeviceIR.Instance().getCollection().getName());
+		assertEquals(1, CraftAROnDeviceCollectionManager.Instance().getAddedBundles().size());
+		assertTrue(DeltaUpdater.getInstalledBundle(mContext, BUNDLE_NAME).isFile());
+		assertTrue(startup.getTimestamps().containsKey(CollectionStartup.PHASE_LOAD + ".end"));
+	}
+
+	@Test
+	public void downloadsTheCollectionWhenTheBundleCantBeIngested() throws IOException {
+		CollectionStartup startup = start();
+		
+		assertEquals(404, mServer.getRequests().get(0).mStatus);
+		assertEquals(TOKEN, CraftAROnDeviceIR.Instance().getCollection().getName());
+		assertTrue(startup.getTimestamps().containsKey(CollectionStartup.PHASE_ADD + ".ingestionFailed"));
+	}
+
+	@Test
+	public void loadsTheCollectionInTheDeviceWithoutIngesting() throws IOException {
+		CraftAROnDeviceCollectionManager.Instance().putCollection(TOKEN, new CraftAROnDeviceCollection("stored"));
+		CollectionStartup startup = start();
+		
+		assertEquals("stored", CraftAROnDeviceIR.Instance().getCollection().getName());
+		assertEquals(0, mServer.getRequests().size());
+	}
+
+	private CollectionStartup start() throws IOException {
+		final CollectionStartup startup = new CollectionStartup(mContext, TOKEN, SystemClock.elapsedRealtime(), null, 
+				new HttpBundleSource(mServer.getUrl(BUNDLE_PATH), BUNDLE_NAME));
+		startup.start();
+		TestLooper.runUntil(new TestLooper.Condition() {
+			@Override
+			public boolean isMet() {
+				return startup.getReadyFuture().isReady();
+			}
+		});
+		return startup;
+	}
+}
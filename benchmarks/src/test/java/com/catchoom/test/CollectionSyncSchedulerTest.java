@@ -0,0 +1,195 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.catchoom.benchmarks.BundleServer;
+import com.craftar.CraftAROnDeviceCollection;
+import com.craftar.CraftAROnDeviceCollectionManager;
+
+/**
+ * CollectionSyncScheduler with the fake Android classes, checking the changes of the collection against a local 
+ * stand-in of the bundle host.
+ */
+public class CollectionSyncSchedulerTest {
+
+	private final static String BUNDLE_PATH = "/bundles/odir.zip";
+
+	File mDir;
+	Context mContext;
+	ConnectivityManager mConnectivity;
+	BundleServer mServer;
+	SyncPolicy mPolicy;
+	CollectionSyncScheduler mScheduler;
+	CraftAROnDeviceCollection mCollection;
+	final List<CraftAROnDeviceCollection> mSynced = new ArrayList<CraftAROnDeviceCollection>();
+	final CollectionSyncScheduler.Listener mListener = new CollectionSyncScheduler.Listener() {
+		@Override
+		public void collectionSynced(CraftAROnDeviceCollection collection) {
+			mSynced.add(collection);
+		}
+	};
+
+	@Before
+	public void setUp() throws IOException {
+		SystemClock.useRealTime();
+		Looper.getMainLooper().reset();
+		CraftAROnDeviceCollectionManager.Instance().reset();
+		mDir = TestFiles.createTempDir();
+		mContext = new Context(mDir);
+		mConnectivity = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+		mConnectivity.setActiveNetwork(true, false);
+		mServer = new BundleServer();
+		mServer.put(BUNDLE_PATH, new byte[]{1, 2, 3}, "\"v1\"");
+		mPolicy = new SyncPolicy();
+		mPolicy.setIdleDelayMillis(50);
+		mScheduler = new CollectionSyncScheduler(mContext, mPolicy, new CollectionChangeChecker(mServer.getUrl(BUNDLE_PATH)));
+		mCollection = new CraftAROnDeviceCollection("odir");
+	}
+
+	@After
+	public void tearDown(){
+		mScheduler.cancel();
+		mServer.stop();
+		TestFiles.delete(mDir);
+	}
+
+	@Test
+	public void syncsWhenTheBundleChanged(){
+		mScheduler.schedule(mCollection, mListener);
+		TestLooper.runUntil(new TestLooper.Condition() {
+			@Override
+			public boolean isMet() {
+				return mSynced.size() == 1;
+			}
+		});
+		
+		assertEquals(1, mCollection.getSyncs());
+		assertEquals(1, mServer.getRequests().size());
+		assertEquals("HEAD", mServer.getRequests().get(0).mMethod);
+		assertTrue(mScheduler.getLastSyncMillis("odir") > 0);
+	}
+
+	@Test
+	public void skipsTheSyncWhenTheBundleDidNotChange(){
+		mPolicy.setMinIntervalMillis(0);
+		syncsWhenTheBundleChanged();
+		
+		mScheduler.schedule(mCollection, mListener);
+		TestLooper.runUntil(new TestLooper.Condition() {
+			@Override
+			public boolean isMet() {
+				return mServer.getRequests().size() == 2;
+			}
+		});
+		Looper.getMainLooper().runFor(200);
+		
+		assertEquals(304, mServer.getRequests().get(1).mStatus);
+		assertEquals(1, mCollection.getSyncs());
+		assertEquals(1, mSynced.size());
+	}
+
+	@Test
+	public void doesNothingUntilTheMinimumInterval(){
+		syncsWhenTheBundleChanged();
+		
+		mServer.put(BUNDLE_PATH, new byte[]{4, 5, 6}, "\"v2\"");
+		mScheduler.schedule(mCollection, mListener);
+		Looper.getMainLooper().runFor(300);
+		
+		assertEquals(1, mServer.getRequests().size());
+		assertEquals(1, mCollection.getSyncs());
+	}
+
+	@Test
+	public void waitsForAnUnmeteredNetwork(){
+		mConnectivity.setActiveNetwork(true, true);
+		mScheduler.schedule(mCollection, mListener);
+		Looper.getMainLooper().runFor(300);
+		assertEquals(0, mServer.getRequests().size());
+		assertEquals(1, mContext.getRegisteredReceivers());
+		
+		mConnectivity.setActiveNetwork(true, false);
+		mContext.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+		TestLooper.runUntil(new TestLooper.Condition() {
+			@Override
+			public boolean isMet() {
+				return mSynced.size() == 1;
+			}
+		});
+		assertEquals(0, mContext.getRegisteredReceivers());
+	}
+
+	@Test
+	public void updatesWithADeltaWhenTheBundleIsInstalled() throws IOException {
+		byte[] bundle = TestFiles.createBundle(1, 4, 16 * 1024);
+		File installed = DeltaUpdater.getInstalledBundle(mContext, "odir.zip");
+		TestFiles.write(installed, bundle);
+		ByteArrayOutputStream delta = new ByteArrayOutputStream();
+		BundleDelta.diff(bundle, TestFiles.createBundle(2, 4, 16 * 1024), BundleDelta.DEFAULT_BLOCK_SIZE, delta);
+		mServer.put("/deltas/" + BundleDelta.toHex(BundleDelta.sha256(installed)) + ".delta", delta.toByteArray(), "\"d1\"");
+		mScheduler.setDeltaUpdater(new DeltaUpdater(mContext, mServer.getUrl("/deltas/").toString()), "craftarexamples1", "odir.zip");
+		
+		mScheduler.schedule(mCollection, mListener);
+		TestLooper.runUntil(new TestLooper.Condition() {
+			@Override
+			public boolean isMet() {
+				return mSynced.size() == 1;
+			}
+		});
+		
+		assertEquals(0, mCollection.getSyncs());
+		assertEquals(1, CraftAROnDeviceCollectionManager.Instance().getAddedBundles().size());
+		assertTrue(mScheduler.getLastSyncMillis("odir") > 0);
+	}
+
+	@Test
+	public void syncsWhenTheHostCantBeReached(){
+		mServer.stop();
+		mScheduler.schedule(mCollection, mListener);
+		TestLooper.runUntil(new TestLooper.Condition() {
+			@Override
+			public boolean isMet() {
+				return mSynced.size() == 1;
+			}
+		});
+		assertEquals(1, mCollection.getSyncs());
+	}
+}
@@ -0,0 +1,152 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.catchoom.benchmarks.BundleServer;
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceCollection;
+import com.craftar.CraftAROnDeviceCollectionManager;
+import com.craftar.CraftAROnDeviceCollectionManager.AddCollectionListener;
+
+/**
+ * DeltaUpdater downloading precomputed deltas from a local stand-in of the bundle host, with the fake Android classes.
+ */
+public class DeltaUpdaterTest {
+
+	private final static String TOKEN = "craftarexamples1";
+	private final static String BUNDLE_NAME = "odir.zip";
+	private final static String DELTAS_PATH = "/deltas/";
+
+	File mDir;
+	Context mContext;
+	BundleServer mServer;
+	byte[] mOldBundle;
+	byte[] mNewBundle;
+	File mInstalled;
+	final List<CraftAROnDeviceCollection> mAdded = new ArrayList<CraftAROnDeviceCollection>();
+	final AddCollectionListener mListener = new AddCollectionListener() {
+		@Override
+		public void collectionAdded(CraftAROnDeviceCollection collection) {
+			mAdded.add(collection);
+		}
+
+		@Override
+		public void addCollectionFailed(CraftARError error) {
+		}
+
+		@Override
+		public void addCollectionProgress(float progress) {
+		}
+	};
+
+	@Before
+	public void setUp() throws IOException {
+		SystemClock.useRealTime();
+		Looper.getMainLooper().reset();
+		CraftAROnDeviceCollectionManager.Instance().reset();
+		mDir = TestFiles.createTempDir();
+		mContext = new Context(mDir);
+		mServer = new BundleServer();
+		mOldBundle = TestFiles.createBundle(1, 12, 64 * 1024);
+		//The new version changes a few images.
+		mNewBundle = mOldBundle.clone();
+		for(int i = mNewBundle.length / 3; i < mNewBundle.length / 3 + 20000; i++){
+			mNewBundle[i]++;
+		}
+		mInstalled = DeltaUpdater.getInstalledBundle(mContext, BUNDLE_NAME);
+		TestFiles.write(mInstalled, mOldBundle);
+	}
+
+	@After
+	public void tearDown(){
+		mServer.stop();
+		TestFiles.delete(mDir);
+	}
+
+	@Test
+	public void appliesTheDeltaOfTheInstalledBundle() throws IOException {
+		putDelta(mOldBundle, mNewBundle);
+		update();
+		
+		//Added from the patched bundle, not downloaded with the token.
+		assertEquals(1, CraftAROnDeviceCollectionManager.Instance().getAddedBundles().size());
+		assertTrue(mServer.getBytesSent() < mNewBundle.length / 4);
+		//The patched bundle is the base of the next update.
+		assertArrayEquals(mNewBundle, TestFiles.read(mInstalled));
+	}
+
+	@Test
+	public void downloadsTheWholeCollectionWithoutADelta() throws IOException {
+		update();
+		
+		assertEquals(404, mServer.getRequests().get(0).mStatus);
+		assertEquals(TOKEN, mAdded.get(0).getName());
+		assertFalse(mInstalled.exists());
+	}
+
+	@Test
+	public void downloadsTheWholeCollectionWhenTheDeltaDoesNotApply() throws IOException {
+		//A delta from another version, served as the one of the installed bundle.
+		putDelta(TestFiles.createBundle(2, 12, 64 * 1024), mNewBundle);
+		update();
+		
+		assertEquals(TOKEN, mAdded.get(0).getName());
+		assertEquals(0, CraftAROnDeviceCollectionManager.Instance().getAddedBundles().size());
+		assertFalse(mInstalled.exists());
+	}
+
+	private void putDelta(byte[] base, byte[] target) throws IOException {
+		ByteArrayOutputStream delta = new ByteArrayOutputStream();
+		BundleDelta.diff(base, target, BundleDelta.DEFAULT_BLOCK_SIZE, delta);
+		mServer.put(DELTAS_PATH + BundleDelta.toHex(BundleDelta.sha256(mInstalled)) + ".delta", delta.toByteArray(), "\"d1\"");
+	}
+
+	private void update() throws IOException {
+		new DeltaUpdater(mContext, mServer.getUrl(DELTAS_PATH).toString()).update(TOKEN, BUNDLE_NAME, mListener);
+		TestLooper.runUntil(new TestLooper.Condition() {
+			@Override
+			public boolean isMet() {
+				return !mAdded.isEmpty();
+			}
+		});
+	}
+}
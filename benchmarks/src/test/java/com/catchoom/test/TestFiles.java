@@ -0,0 +1,110 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Temporary directories for the tests that need files (the fake Context keeps its files in one), and collection 
+ * bundles to serve.
+ */
+class TestFiles {
+
+	static File createTempDir() throws IOException {
+		File dir = File.createTempFile("craftar", "");
+		if(!dir.delete() || !dir.mkdirs()){
+			throw new IOException("Could not create " + dir);
+		}
+		return dir;
+	}
+
+	static void delete(File file){
+		File[] children = file.listFiles();
+		if(children != null){
+			for(File child : children){
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Creates a zip of random entries, stored without compression so the size of the bundle is predictable.
+	 * Bundles with the same seed have the same entries.
+	 */
+	static byte[] createBundle(long seed, int entries, int entrySize) throws IOException {
+		Random random = new Random(seed);
+		ByteArrayOutputStream bundle = new ByteArrayOutputStream();
+		ZipOutputStream zip = new ZipOutputStream(bundle);
+		for(int i = 0; i < entries; i++){
+			byte[] data = new byte[entrySize];
+			random.nextBytes(data);
+			CRC32 crc = new CRC32();
+			crc.update(data);
+			ZipEntry entry = new ZipEntry("images/" + i + ".dat");
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(data.length);
+			entry.setCrc(crc.getValue());
+			zip.putNextEntry(entry);
+			zip.write(data);
+			zip.closeEntry();
+		}
+		zip.close();
+		return bundle.toByteArray();
+	}
+
+	static byte[] read(File file) throws IOException {
+		byte[] data = new byte[(int) file.length()];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int offset = 0;
+			while(offset < data.length){
+				int count = in.read(data, offset, data.length - offset);
+				if(count < 0){
+					break;
+				}
+				offset += count;
+			}
+		} finally {
+			in.close();
+		}
+		return data;
+	}
+
+	static void write(File file, byte[] data) throws IOException {
+		file.getParentFile().mkdirs();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,206 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.advancedexamples;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.TrafficStats;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+
+/**
+ * SearchBackend that re-encodes the queries before sending them to another backend (usually the 
+ * {@link CloudRecognitionBackend}), with the resolution and the JPEG quality chosen by an {@link AdaptiveQueryEncoder}.
+ * 
+ * The picture is downscaled and compressed with the quality of the chosen level, and the decoded picture is the one 
+ * sent, so the details removed by the compression are not uploaded. The SDK only takes bitmaps and compresses them 
+ * again before the upload, so the size of our JPEG is not what goes over the link: the bytes uploaded are measured 
+ * with the TrafficStats counters of the app, and fed to the encoder with the time until the answer.
+ * 
+ * The counters can't tell overlapping requests apart, so the encoder only learns from the requests that were alone 
+ * on the link (their time also has no queueing in it). If the device has no per-app counters, the size of our JPEG is 
+ * used instead.
+ * 
+ * The answers are matched with the requests in order, so the wrapped backend must answer its requests in 
+ * the order they were made. The {@link SearchRequestRouter} of ExtendedSearchController only sends one query at a 
+ * time, so that always holds there.
+ */
+public class AdaptiveEncodingBackend implements SearchBackend, CraftARSearchResponseHandler {
+
+	private final static String TAG = "AdaptiveEncodingBackend";
+
+	private static class Request {
+		final int mLevel;
+		final int mWidth;
+		final int mHeight;
+		final int mJpegBytes;
+		final long mStartMillis;
+		//Set if other requests were on the link while this one was.
+		boolean mIsOverlapped;
+		//Bytes uploaded, measured when the request is answered, or -1 if unknown.
+		long mUploadedBytes = -1;
+		//Bitmap created for the request, recycled when it is answered.
+		Bitmap mEncoded;
+
+		Request(int level, int width, int height, int jpegBytes, long startMillis){
+			mLevel = level;
+			mWidth = width;
+			mHeight = height;
+			mJpegBytes = jpegBytes;
+			mStartMillis = startMillis;
+		}
+	}
+
+	SearchBackend mBackend;
+	AdaptiveQueryEncoder mEncoder;
+	CraftARSearchResponseHandler mResponseHandler;
+	final ArrayDeque<Request> mRequests = new ArrayDeque<Request>();
+	//Bytes sent by the app when the first request in the queue was sent.
+	long mTxBytesAtStart;
+
+	public AdaptiveEncodingBackend(SearchBackend backend){
+		this(backend, new AdaptiveQueryEncoder());
+	}
+
+	public AdaptiveEncodingBackend(SearchBackend backend, AdaptiveQueryEncoder encoder){
+		mBackend = backend;
+		mEncoder = encoder;
+		mBackend.setCraftARSearchResponseHandler(this);
+	}
+
+	public AdaptiveQueryEncoder getEncoder(){
+		return mEncoder;
+	}
+
+	@Override
+	public void setCraftARSearchResponseHandler(CraftARSearchResponseHandler responseHandler) {
+		mResponseHandler = responseHandler;
+	}
+
+	@Override
+	public void search(CraftARQueryImage image) {
+		Bitmap bitmap = image.getBitmap();
+		if(bitmap == null){
+			//Nothing to encode, let the backend deal with it
+			enqueueRequest(new Request(0, 0, 0, 0, SystemClock.elapsedRealtime()));
+			mBackend.search(image);
+			return;
+		}
+		
+		int level = mEncoder.chooseLevel(bitmap.getWidth(), bitmap.getHeight());
+		double scale = mEncoder.getScale(level, bitmap.getWidth(), bitmap.getHeight());
+		Bitmap scaled = bitmap;
+		if(scale < 1){
+			scaled = Bitmap.createScaledBitmap(bitmap, (int) Math.round(bitmap.getWidth() * scale), (int) Math.round(bitmap.getHeight() * scale), true);
+		}
+		ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+		Bitmap encoded = null;
+		if(scaled.compress(Bitmap.CompressFormat.JPEG, mEncoder.getLevel(level).mQuality, jpeg)){
+			encoded = BitmapFactory.decodeByteArray(jpeg.toByteArray(), 0, jpeg.size());
+		}
+		if(encoded == null){
+			Log.w(TAG, "Could not encode the query, sending it as it is");
+			encoded = scaled;
+		}else if(scaled != bitmap){
+			scaled.recycle();
+		}
+		
+		Request request = new Request(level, encoded.getWidth(), encoded.getHeight(), jpeg.size(), SystemClock.elapsedRealtime());
+		if(encoded != bitmap){
+			request.mEncoded = encoded;
+		}
+		enqueueRequest(request);
+		mBackend.search(new CraftARQueryImage(encoded));
+	}
+
+	private void enqueueRequest(Request request){
+		synchronized (mRequests) {
+			if(mRequests.isEmpty()){
+				mTxBytesAtStart = TrafficStats.getUidTxBytes(Process.myUid());
+			}else{
+				request.mIsOverlapped = true;
+				for(Request other : mRequests){
+					other.mIsOverlapped = true;
+				}
+			}
+			mRequests.add(request);
+		}
+	}
+
+	private Request pollRequest(){
+		synchronized (mRequests) {
+			Request request = mRequests.poll();
+			if(request == null){
+				return null;
+			}
+			long txBytes = TrafficStats.getUidTxBytes(Process.myUid());
+			if(txBytes == TrafficStats.UNSUPPORTED || mTxBytesAtStart == TrafficStats.UNSUPPORTED){
+				request.mUploadedBytes = request.mJpegBytes;
+			}else if(!request.mIsOverlapped){
+				request.mUploadedBytes = txBytes - mTxBytesAtStart;
+			}
+			mTxBytesAtStart = txBytes;
+			return request;
+		}
+	}
+
+	@Override
+	public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+		Request request = pollRequest();
+		if(request != null){
+			if(request.mJpegBytes > 0 && request.mUploadedBytes > 0){
+				mEncoder.recordRequest(request.mLevel, request.mWidth, request.mHeight, (int) request.mUploadedBytes, SystemClock.elapsedRealtime() - request.mStartMillis);
+			}
+			recycle(request);
+		}
+		mResponseHandler.searchResults(results, searchTimeMillis, requestCode);
+	}
+
+	@Override
+	public void searchFailed(CraftARError error, int requestCode) {
+		Request request = pollRequest();
+		if(request != null){
+			if(request.mJpegBytes > 0){
+				mEncoder.recordFailure(request.mLevel, (int) Math.max(0, request.mUploadedBytes));
+			}
+			recycle(request);
+		}
+		mResponseHandler.searchFailed(error, requestCode);
+	}
+
+	private void recycle(Request request){
+		if(request.mEncoded != null){
+			request.mEncoded.recycle();
+			request.mEncoded = null;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.advancedexamples;
+
+/**
+ * Chooses the resolution and the JPEG quality of the queries sent to the cloud, from the upload throughput
+ * and the latency measured on the previous requests.
+ * 
+ * The round-trip time of a request is modelled as latency + bytes / throughput. Both are fitted by least squares 
+ * on the last requests, whose sizes differ because the pictures, and the encoding levels, differ. Every few requests
+ * the encoder tries the next level (up or down) to keep the fit meaningful and to notice when the link gets faster.
+ * 
+ * The best level whose upload is expected to take less than the upload budget is chosen. The budget grows with the 
+ * latency of the cloud: when the answer takes long anyway, a few more milliseconds of upload buy a better query.
+ * 
+ * Not thread safe: choose the levels and record the requests from the same thread.
+ */
+public class AdaptiveQueryEncoder {
+
+	/**
+	 * An encoding level. Pictures bigger than the maximum side are downscaled, keeping the aspect ratio.
+	 */
+	public static class EncodingLevel {
+		public final int mMaxSide;
+		public final int mQuality;
+		//Size of the JPEG before any request of this level has been measured.
+		final double mDefaultBitsPerPixel;
+
+		public EncodingLevel(int maxSide, int quality, double defaultBitsPerPixel){
+			mMaxSide = maxSide;
+			mQuality = quality;
+			mDefaultBitsPerPixel = defaultBitsPerPixel;
+		}
+	}
+
+	//From the best to the cheapest query.
+	public final static EncodingLevel[] DEFAULT_LEVELS = {
+		new EncodingLevel(1024, 85, 1.6),
+		new EncodingLevel(800, 80, 1.3),
+		new EncodingLevel(640, 75, 1.1),
+		new EncodingLevel(480, 70, 0.95),
+		new EncodingLevel(320, 60, 0.8)
+	};
+
+	public final static long DEFAULT_MIN_UPLOAD_BUDGET_MILLIS = 150;
+
+	private final static int START_LEVEL = 2;
+	private final static int WINDOW_SIZE = 16;
+	private final static int MIN_FIT_SAMPLES = 3;
+	private final static double MIN_RELATIVE_SPREAD = 0.15;
+	private final static int PROBE_INTERVAL = 8;
+	private final static double SMOOTHING_FACTOR = 0.2;
+	private final static long DEFAULT_LATENCY_MILLIS = 200;
+
+	private final EncodingLevel[] mLevels;
+	private final long mMinUploadBudgetMillis;
+	private final double[] mBitsPerPixel;
+
+	//Last requests, to fit the link model
+	private final int[] mWindowBytes = new int[WINDOW_SIZE];
+	private final long[] mWindowRttMillis = new long[WINDOW_SIZE];
+	private int mWindowNext = 0;
+	private int mWindowSamples = 0;
+
+	private double mLatencyMillis = DEFAULT_LATENCY_MILLIS;
+	private double mBytesPerMilli = -1;
+	private int mLastLevel = START_LEVEL;
+	private long mChoices = 0;
+
+	//Statistics
+	private final LatencyHistogram mRoundTrip = new LatencyHistogram();
+	private final long[] mLevelRequests;
+	private long mRequests = 0;
+	private long mFailures = 0;
+	private long mBytesSent = 0;
+
+	public AdaptiveQueryEncoder(){
+		this(DEFAULT_LEVELS, DEFAULT_MIN_UPLOAD_BUDGET_MILLIS);
+	}
+
+	public AdaptiveQueryEncoder(EncodingLevel[] levels, long minUploadBudgetMillis){
+		if(levels.length == 0){
+			throw new IllegalArgumentException("At least one encoding level is needed");
+		}
+		mLevels = levels.clone();
+		mMinUploadBudgetMillis = minUploadBudgetMillis;
+		mBitsPerPixel = new double[levels.length];
+		for(int i = 0; i < levels.length; i++){
+			mBitsPerPixel[i] = levels[i].mDefaultBitsPerPixel;
+		}
+		mLevelRequests = new long[levels.length];
+		mLastLevel = Math.min(START_LEVEL, levels.length - 1);
+	}
+
+	public int getLevelCount(){
+		return mLevels.length;
+	}
+
+	public EncodingLevel getLevel(int level){
+		return mLevels[level];
+	}
+
+	/**
+	 * Scale factor (at most 1) to apply to a picture of the given size to encode it with the given level.
+	 */
+	public double getScale(int level, int width, int height){
+		int side = Math.max(width, height);
+		int maxSide = mLevels[level].mMaxSide;
+		return side > maxSide ? (double) maxSide / side : 1;
+	}
+
+	/**
+	 * Chooses the encoding level of the next request, for a picture of the given size.
+	 */
+	public int chooseLevel(int width, int height){
+		mChoices++;
+		int level;
+		if(mBytesPerMilli <= 0){
+			//Nothing measured yet
+			level = mLastLevel;
+		}else{
+			double budgetMillis = Math.max(mMinUploadBudgetMillis, mLatencyMillis);
+			level = mLevels.length - 1;
+			for(int i = 0; i < mLevels.length; i++){
+				if(getExpectedBytes(i, width, height) / mBytesPerMilli <= budgetMillis){
+					level = i;
+					break;
+				}
+			}
+		}
+		if(mChoices % PROBE_INTERVAL == 0 && mLevels.length > 1){
+			level = level > 0 ? level - 1 : level + 1;
+		}
+		mLastLevel = level;
+		return level;
+	}
+
+	/**
+	 * Expected size of the query, in bytes, when a picture of the given size is encoded with the given level.
+	 */
+	public double getExpectedBytes(int level, int width, int height){
+		double scale = getScale(level, width, height);
+		double pixels = Math.round(width * scale) * Math.round(height * scale);
+		return pixels * mBitsPerPixel[level] / 8;
+	}
+
+	/**
+	 * Records a request answered by the cloud.
+	 * 
+	 * @param width width of the query sent.
+	 * @param height height of the query sent.
+	 * @param bytes size of the query sent.
+	 * @param rttMillis time from the request to the answer.
+	 */
+	public void recordRequest(int level, int width, int height, int bytes, long rttMillis){
+		mRequests++;
+		mLevelRequests[level]++;
+		mBytesSent += bytes;
+		mRoundTrip.record(rttMillis);
+		
+		long pixels = (long) width * height;
+		if(pixels > 0){
+			double bitsPerPixel = 8.0 * bytes / pixels;
+			mBitsPerPixel[level] += SMOOTHING_FACTOR * (bitsPerPixel - mBitsPerPixel[level]);
+		}
+		
+		mWindowBytes[mWindowNext] = bytes;
+		mWindowRttMillis[mWindowNext] = rttMillis;
+		mWindowNext = (mWindowNext + 1) % WINDOW_SIZE;
+		if(mWindowSamples < WINDOW_SIZE){
+			mWindowSamples++;
+		}
+		fitLink();
+	}
+
+	/**
+	 * Records a request that failed. It doesn't change the link model, since the time it took says nothing about the link.
+	 */
+	public void recordFailure(int level, int bytes){
+		mFailures++;
+		mLevelRequests[level]++;
+		mBytesSent += bytes;
+	}
+
+	private void fitLink(){
+		int n = mWindowSamples;
+		double meanBytes = 0;
+		double meanRtt = 0;
+		long minRtt = Long.MAX_VALUE;
+		for(int i = 0; i < n; i++){
+			meanBytes += mWindowBytes[i];
+			meanRtt += mWindowRttMillis[i];
+			minRtt = Math.min(minRtt, mWindowRttMillis[i]);
+		}
+		meanBytes /= n;
+		meanRtt /= n;
+		double varBytes = 0;
+		double covariance = 0;
+		for(int i = 0; i < n; i++){
+			double db = mWindowBytes[i] - meanBytes;
+			varBytes += db * db;
+			covariance += db * (mWindowRttMillis[i] - meanRtt);
+		}
+		
+		if(n >= MIN_FIT_SAMPLES && Math.sqrt(varBytes / n) >= MIN_RELATIVE_SPREAD * meanBytes && covariance > 0){
+			double millisPerByte = covariance / varBytes;
+			double latency = meanRtt - millisPerByte * meanBytes;
+			if(latency >= 0){
+				mBytesPerMilli = 1 / millisPerByte;
+				mLatencyMillis = latency;
+				return;
+			}
+		}
+		//The sizes are too similar (or too noisy) to tell latency from transfer time: keep the latency, and put 
+		//the rest of the round-trip on the transfer.
+		mLatencyMillis = Math.min(mLatencyMillis, minRtt);
+		mBytesPerMilli = meanBytes / Math.max(1, meanRtt - mLatencyMillis);
+	}
+
+	/**
+	 * Estimated upload throughput, in bytes per second, or -1 if nothing has been measured yet.
+	 */
+	public double getThroughputBytesPerSecond(){
+		return mBytesPerMilli <= 0 ? -1 : mBytesPerMilli * 1000;
+	}
+
+	/**
+	 * Estimated latency of the cloud (round-trip time of an empty query), in milliseconds.
+	 */
+	public long getLatencyMillis(){
+		return Math.round(mLatencyMillis);
+	}
+
+	public LatencyHistogram getRoundTripHistogram(){
+		return mRoundTrip;
+	}
+
+	public long getRequests(){
+		return mRequests;
+	}
+
+	public long getFailures(){
+		return mFailures;
+	}
+
+	public long getBytesSent(){
+		return mBytesSent;
+	}
+
+	public long getLevelRequests(int level){
+		return mLevelRequests[level];
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder builder = new StringBuilder();
+		builder.append("requests=").append(mRequests).append(" failures=").append(mFailures)
+			.append(" bytesSent=").append(mBytesSent)
+			.append(" throughput=").append(Math.round(getThroughputBytesPerSecond() / 1024)).append("KB/s")
+			.append(" latency=").append(getLatencyMillis()).append("ms levels=[");
+		for(int i = 0; i < mLevels.length; i++){
+			builder.append(i == 0 ? "" : " ").append(mLevels[i].mMaxSide).append("@").append(mLevels[i].mQuality)
+				.append(":").append(mLevelRequests[i]);
+		}
+		builder.append("] rtt ").append(mRoundTrip);
+		return builder.toString();
+	}
+}
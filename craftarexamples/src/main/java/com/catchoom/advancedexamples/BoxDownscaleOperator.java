@@ -0,0 +1,59 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * Reduces the frame by an integer factor, averaging each factor x factor block of pixels.
+ */
+public class BoxDownscaleOperator implements FrameOperator {
+
+	private final int mFactor;
+
+	public BoxDownscaleOperator(int factor){
+		if(factor < 1){
+			throw new IllegalArgumentException("The downscale factor must be at least 1: " + factor);
+		}
+		mFactor = factor;
+	}
+
+	@Override
+	public void apply(FrameBuffer source, FrameBuffer destination) {
+		int width = source.getWidth() / mFactor;
+		int height = source.getHeight() / mFactor;
+		int blockSize = mFactor * mFactor;
+		destination.setSize(width, height);
+		
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				int sum = 0;
+				for(int by = 0; by < mFactor; by++){
+					int sourceIndex = (y * mFactor + by) * source.getWidth() + x * mFactor;
+					for(int bx = 0; bx < mFactor; bx++){
+						sum += source.get(sourceIndex + bx);
+					}
+				}
+				destination.put(y * width + x, sum / blockSize);
+			}
+		}
+	}
+}
@@ -0,0 +1,133 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * SearchController that answers the single-shot searches from a {@link RecognitionResultCache} when a similar 
+ * picture was recognized recently, and forwards the rest of the calls to another SearchController.
+ * 
+ * Set this class as the response handler of the search module used by the wrapped SearchController, so the 
+ * results of the pictures can be stored in the cache before they are forwarded to the given response handler.
+ * Finder frames are not cached. The cached results are posted to the main thread, so the response handler gets them 
+ * after onPictureTaken() returns, like the responses of the search module.
+ */
+public class CachingSearchController implements SearchController, CraftARSearchResponseHandler {
+
+	private final static String TAG = "CachingSearchController";
+
+	//Request code of the responses that were answered from the cache.
+	public final static int CACHED_RESULTS_REQUEST_CODE = -2;
+	
+	//Rough size of a cached result (item data, bounding box, etc), to keep the cache within its memory cap.
+	final static int RESULT_SIZE_ESTIMATE_BYTES = 2048;
+
+	SearchController mSearchController;
+	CraftARSearchResponseHandler mResponseHandler;
+	RecognitionResultCache<ArrayList<CraftARResult>> mCache;
+	QueryImageHasher mHasher = new QueryImageHasher();
+	Handler mHandler = new Handler(Looper.getMainLooper());
+	
+	boolean mIsPictureHashed = false;
+	long mPictureHash;
+
+	public CachingSearchController(SearchController searchController, CraftARSearchResponseHandler responseHandler, RecognitionResultCache<ArrayList<CraftARResult>> cache){
+		mSearchController = searchController;
+		mResponseHandler = responseHandler;
+		mCache = cache;
+	}
+	
+	public SearchController getSearchController(){
+		return mSearchController;
+	}
+
+	@Override
+	public void onPictureTaken(CraftARQueryImage image) {
+		mIsPictureHashed = mHasher.hash(image);
+		if(mIsPictureHashed){
+			mPictureHash = mHasher.getHash();
+			final ArrayList<CraftARResult> cachedResults = mCache.get(mPictureHash, SystemClock.elapsedRealtime());
+			if(cachedResults != null){
+				mIsPictureHashed = false;
+				Log.d(TAG, "Picture found in the cache. Hits:"+mCache.getHits()+", misses:"+mCache.getMisses());
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						mResponseHandler.searchResults(new ArrayList<CraftARResult>(cachedResults), 0, CACHED_RESULTS_REQUEST_CODE);
+					}
+				});
+				return;
+			}
+		}
+		mSearchController.onPictureTaken(image);
+	}
+
+	@Override
+	public void onTakePictureFailed(CraftARError error) {
+		mSearchController.onTakePictureFailed(error);
+	}
+
+	@Override
+	public void onPreviewFrame(CraftARQueryImage image) {
+		mSearchController.onPreviewFrame(image);
+	}
+
+	@Override
+	public void onFinderActivated() {
+		mSearchController.onFinderActivated();
+	}
+
+	@Override
+	public void onFinderDeactivated() {
+		mSearchController.onFinderDeactivated();
+	}
+
+	@Override
+	public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+		if(mIsPictureHashed){
+			mIsPictureHashed = false;
+			if(results.size() > 0){
+				mCache.put(mPictureHash, new ArrayList<CraftARResult>(results), results.size() * RESULT_SIZE_ESTIMATE_BYTES, SystemClock.elapsedRealtime());
+			}
+		}
+		mResponseHandler.searchResults(results, searchTimeMillis, requestCode);
+	}
+
+	@Override
+	public void searchFailed(CraftARError error, int requestCode) {
+		mIsPictureHashed = false;
+		mResponseHandler.searchFailed(error, requestCode);
+	}
+}
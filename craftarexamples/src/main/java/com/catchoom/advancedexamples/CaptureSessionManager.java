@@ -0,0 +1,220 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.craftar.CraftARActivity;
+import com.craftar.CraftARError;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSDK;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * Starts the capture of the recognition screens, and hands their SearchController over from one screen to the next.
+ * 
+ * The camera can't be kept open from one activity to the next: CraftARSDK.startCapture() opens it for the preview 
+ * of the given activity, and the SDK releases it with that activity. There's no SDK call to move a running capture 
+ * to another activity. So the camera is only kept between the screens hosted by the same activity (i.e. fragments): 
+ * the capture is started for the first of them, and the next ones keep using it.
+ * 
+ * What is kept across activities is the search pipeline: when a screen ends, its SearchController (with its caches, 
+ * schedulers and statistics) stays warm for a grace period, and the next screen of the same kind takes it instead of 
+ * building a new one. The responses reach the SearchController through a proxy that always points to the current screen.
+ * 
+ * The time from the start of every session (onPostCreate) until the first onPreviewStarted() is recorded in
+ * the {@link RecognitionMetrics}, as warm or cold depending on whether the SearchController was handed over. 
+ * When the capture of the activity was already running, the preview is there from the start.
+ * 
+ * All the methods must be called in the main thread.
+ */
+public class CaptureSessionManager {
+
+	private final static String TAG = "CaptureSessionManager";
+	
+	public final static long DEFAULT_GRACE_PERIOD_MILLIS = 5000;
+
+	public interface SearchControllerProvider {
+		/**
+		 * Creates the SearchController of the screen. It must send its responses to the given handler.
+		 */
+		SearchController createSearchController(CraftARSearchResponseHandler responseHandler);
+		
+		/**
+		 * Makes the search modules send their responses to the SearchController (another screen may have changed them). 
+		 * It's called every time a screen starts using the controller, including the first time.
+		 */
+		void attachSearchController(SearchController searchController);
+	}
+	
+	private static CaptureSessionManager sInstance;
+	
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private long mGracePeriodMillis = DEFAULT_GRACE_PERIOD_MILLIS;
+	
+	//Current session
+	private Object mOwner;
+	private String mKey;
+	private SearchController mSearchController;
+	private ResponseHandlerProxy mResponseHandler;
+	private long mSessionStartMillis = -1;
+	private boolean mIsWarm;
+	
+	//Activity whose capture was started last.
+	private WeakReference<CraftARActivity> mCaptureActivity;
+	
+	//SearchController of the last session, kept during the grace period.
+	private String mWarmKey;
+	private SearchController mWarmSearchController;
+	private ResponseHandlerProxy mWarmResponseHandler;
+	
+	public static synchronized CaptureSessionManager Instance(){
+		if(sInstance == null){
+			sInstance = new CaptureSessionManager();
+		}
+		return sInstance;
+	}
+	
+	public void setGracePeriodMillis(long gracePeriodMillis){
+		mGracePeriodMillis = gracePeriodMillis;
+	}
+	
+	/**
+	 * Starts the capture for the screen and sets its SearchController in the SDK. Call it from onPostCreate().
+	 * 
+	 * @param owner the activity or fragment that owns the session, passed later to {@link #endSession(Object)}.
+	 * @param key identifies the kind of screen: only screens with the same key share a SearchController.
+	 * @return the SearchController in use, warm or new.
+	 */
+	public SearchController startSession(Object owner, CraftARActivity activity, String key, 
+			CraftARSearchResponseHandler responseHandler, SearchControllerProvider provider){
+		mSessionStartMillis = SystemClock.elapsedRealtime();
+		mHandler.removeCallbacks(mExpireRunnable);
+		
+		if(key.equals(mWarmKey)){
+			mSearchController = mWarmSearchController;
+			mResponseHandler = mWarmResponseHandler;
+			mIsWarm = true;
+		}else{
+			mResponseHandler = new ResponseHandlerProxy();
+			mSearchController = provider.createSearchController(mResponseHandler);
+			mIsWarm = false;
+		}
+		clearWarm();
+		mOwner = owner;
+		mKey = key;
+		mResponseHandler.mTarget = responseHandler;
+		
+		CraftARSDK craftARSDK = CraftARSDK.Instance();
+		boolean isCapturing = isCapturing(activity);
+		if(!isCapturing){
+			craftARSDK.startCapture(activity);
+			mCaptureActivity = new WeakReference<CraftARActivity>(activity);
+		}
+		provider.attachSearchController(mSearchController);
+		craftARSDK.setSearchController(mSearchController);
+		if(isCapturing){
+			//The preview of the activity is already running, there won't be an onPreviewStarted() for this screen.
+			onPreviewStarted(owner);
+		}
+		return mSearchController;
+	}
+	
+	private boolean isCapturing(CraftARActivity activity){
+		return mCaptureActivity != null && mCaptureActivity.get() == activity && !activity.isFinishing();
+	}
+	
+	/**
+	 * Call it from onPreviewStarted() to measure how long the screen took to show the camera.
+	 */
+	public void onPreviewStarted(Object owner){
+		if(owner != mOwner || mSessionStartMillis < 0){
+			return;
+		}
+		long elapsed = SystemClock.elapsedRealtime() - mSessionStartMillis;
+		mSessionStartMillis = -1;
+		RecognitionMetrics.Instance().recordPreviewStart(mIsWarm, elapsed);
+		Log.d(TAG, "Preview of " + mKey + " started in " + elapsed + "ms (" + (mIsWarm ? "warm" : "cold") + ")");
+	}
+	
+	/**
+	 * Ends the session of the screen. Its SearchController stays warm during the grace period. Call it when the
+	 * screen is destroyed.
+	 */
+	public void endSession(Object owner){
+		if(owner != mOwner){
+			//A newer session already replaced this one.
+			return;
+		}
+		//Responses that arrive from now on have nobody to go to.
+		mResponseHandler.mTarget = null;
+		mWarmKey = mKey;
+		mWarmSearchController = mSearchController;
+		mWarmResponseHandler = mResponseHandler;
+		mOwner = null;
+		mKey = null;
+		mSearchController = null;
+		mResponseHandler = null;
+		mSessionStartMillis = -1;
+		mHandler.postDelayed(mExpireRunnable, mGracePeriodMillis);
+	}
+	
+	private final Runnable mExpireRunnable = new Runnable() {
+		@Override
+		public void run() {
+			Log.d(TAG, "Releasing warm SearchController of " + mWarmKey);
+			clearWarm();
+		}
+	};
+	
+	private void clearWarm(){
+		mWarmKey = null;
+		mWarmSearchController = null;
+		mWarmResponseHandler = null;
+	}
+	
+	private static class ResponseHandlerProxy implements CraftARSearchResponseHandler {
+		CraftARSearchResponseHandler mTarget;
+
+		@Override
+		public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+			if(mTarget != null){
+				mTarget.searchResults(results, searchTimeMillis, requestCode);
+			}
+		}
+
+		@Override
+		public void searchFailed(CraftARError error, int requestCode) {
+			if(mTarget != null){
+				mTarget.searchFailed(error, requestCode);
+			}
+		}
+	}
+}
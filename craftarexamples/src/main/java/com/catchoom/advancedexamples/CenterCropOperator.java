@@ -0,0 +1,58 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * Keeps the central part of the frame, of the given fraction of its width and height.
+ */
+public class CenterCropOperator implements FrameOperator {
+
+	private final float mFraction;
+
+	/**
+	 * @param fraction part of the width and height that is kept, greater than 0 and up to 1.
+	 */
+	public CenterCropOperator(float fraction){
+		if(!(fraction > 0 && fraction <= 1)){
+			throw new IllegalArgumentException("The crop fraction must be in (0, 1]: " + fraction);
+		}
+		mFraction = fraction;
+	}
+
+	@Override
+	public void apply(FrameBuffer source, FrameBuffer destination) {
+		int width = (int) (source.getWidth() * mFraction);
+		int height = (int) (source.getHeight() * mFraction);
+		int left = (source.getWidth() - width) / 2;
+		int top = (source.getHeight() - height) / 2;
+		destination.setSize(width, height);
+		
+		for(int y = 0; y < height; y++){
+			int sourceIndex = (top + y) * source.getWidth() + left;
+			int destinationIndex = y * width;
+			for(int x = 0; x < width; x++){
+				destination.put(destinationIndex + x, source.get(sourceIndex + x));
+			}
+		}
+	}
+}
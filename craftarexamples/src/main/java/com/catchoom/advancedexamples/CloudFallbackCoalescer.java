@@ -0,0 +1,169 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * Merges the on-device misses of the finder into few cloud requests.
+ * 
+ * The first miss opens a coalescing window. Every miss within the window competes to be the frame sent to 
+ * the cloud: the sharpest one, or simply the most recent one. When the window ends, the chosen frame is sent, 
+ * unless there are already maxInFlight cloud requests running: then it waits (and keeps being replaced by better 
+ * misses) until one of them finishes. This class is not thread-safe.
+ */
+public class CloudFallbackCoalescer<T> {
+
+	public enum FramePolicy {
+		SHARPEST,
+		MOST_RECENT
+	}
+
+	public final static long DEFAULT_WINDOW_MILLIS = 1000;
+	public final static int DEFAULT_MAX_IN_FLIGHT = 1;
+
+	private final long mWindowMillis;
+	private final FramePolicy mFramePolicy;
+	private final int mMaxInFlight;
+
+	private T mCandidate;
+	private double mCandidateSharpness;
+	private long mWindowStartMillis = -1;
+	private int mInFlight = 0;
+
+	private long mMisses = 0;
+	private long mRequests = 0;
+
+	public CloudFallbackCoalescer(){
+		this(DEFAULT_WINDOW_MILLIS, FramePolicy.SHARPEST, DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	public CloudFallbackCoalescer(long windowMillis, FramePolicy framePolicy, int maxInFlight){
+		mWindowMillis = windowMillis;
+		mFramePolicy = framePolicy;
+		mMaxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Adds a frame that was not found on-device.
+	 * 
+	 * @param sharpness sharpness of the frame (only used with the SHARPEST policy).
+	 * @return true if this miss opened a new window, so the caller has to call {@link #poll(long)} when it ends.
+	 */
+	public boolean onMiss(T frame, double sharpness, long nowMillis){
+		mMisses++;
+		if(isBetterCandidate(sharpness)){
+			mCandidate = frame;
+			mCandidateSharpness = sharpness;
+		}
+		if(mWindowStartMillis < 0){
+			mWindowStartMillis = nowMillis;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if a miss with the given sharpness would replace the frame waiting to be sent, so the caller only 
+	 * has to copy the frames that are kept.
+	 */
+	public boolean isBetterCandidate(double sharpness){
+		return mCandidate == null || mFramePolicy == FramePolicy.MOST_RECENT || sharpness >= mCandidateSharpness;
+	}
+	
+	/**
+	 * Frame waiting to be sent, or null.
+	 */
+	public T getCandidate(){
+		return mCandidate;
+	}
+
+	/**
+	 * Returns the frame to send to the cloud now, or null if the window is still open, there's nothing 
+	 * to send, or too many cloud requests are running. The returned frame counts as a request in flight.
+	 */
+	public T poll(long nowMillis){
+		if(mCandidate == null || mInFlight >= mMaxInFlight || nowMillis - mWindowStartMillis < mWindowMillis){
+			return null;
+		}
+		T frame = mCandidate;
+		mCandidate = null;
+		mWindowStartMillis = -1;
+		mInFlight++;
+		mRequests++;
+		return frame;
+	}
+
+	/**
+	 * Notifies that a cloud request returned by {@link #poll(long)} has finished.
+	 */
+	public void onCloudCompleted(){
+		if(mInFlight > 0){
+			mInFlight--;
+		}
+	}
+
+	/**
+	 * Discards the frame waiting to be sent (i.e. when the finder is stopped).
+	 */
+	public void reset(){
+		mCandidate = null;
+		mWindowStartMillis = -1;
+	}
+
+	public long getWindowMillis(){
+		return mWindowMillis;
+	}
+	
+	public FramePolicy getFramePolicy(){
+		return mFramePolicy;
+	}
+
+	public int getInFlight(){
+		return mInFlight;
+	}
+
+	public long getMisses(){
+		return mMisses;
+	}
+
+	/**
+	 * Number of cloud requests sent for all the misses.
+	 */
+	public long getRequests(){
+		return mRequests;
+	}
+	
+	/**
+	 * Sharpness of a luma grid: mean absolute difference between neighbouring samples.
+	 */
+	public static double sharpness(byte[] luma, int width, int height){
+		long sum = 0;
+		for(int y = 0; y < height - 1; y++){
+			for(int x = 0; x < width - 1; x++){
+				int index = y * width + x;
+				int value = luma[index] & 0xff;
+				sum += Math.abs((luma[index + 1] & 0xff) - value) + Math.abs((luma[index + width] & 0xff) - value);
+			}
+		}
+		return (double) sum / ((width - 1) * (height - 1));
+	}
+}
@@ -0,0 +1,97 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.advancedexamples;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The manifest that comes with an on-device collection bundle: the items in the collection, and the size that every 
+ * item takes in it. It's written by the tool that builds the bundle, next to it, as JSON:
+ * 
+ * <pre>
+ * {"collection": "craftarexamples_odir", "items": [{"name": "biz_card", "sizeBytes": 48213}, ...]}
+ * </pre>
+ * 
+ * The size of an item is optional. It's what the {@link ItemTieringEngine} needs to keep the on-device collection 
+ * within its budget.
+ */
+public class CollectionManifest {
+
+	private final String mCollection;
+	private final Map<String, Long> mItemSizes;
+
+	public CollectionManifest(String collection, Map<String, Long> itemSizes){
+		mCollection = collection;
+		mItemSizes = Collections.unmodifiableMap(new LinkedHashMap<String, Long>(itemSizes));
+	}
+
+	/**
+	 * Reads a manifest. The stream is not closed.
+	 */
+	public static CollectionManifest read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while((read = in.read(buffer)) > 0){
+			out.write(buffer, 0, read);
+		}
+		try {
+			JSONObject json = new JSONObject(out.toString("UTF-8"));
+			JSONArray items = json.getJSONArray("items");
+			Map<String, Long> itemSizes = new LinkedHashMap<String, Long>();
+			for(int i = 0; i < items.length(); i++){
+				JSONObject item = items.getJSONObject(i);
+				itemSizes.put(item.getString("name"), item.optLong("sizeBytes", -1));
+			}
+			return new CollectionManifest(json.optString("collection", null), itemSizes);
+		} catch (JSONException e) {
+			throw new IOException("Invalid collection manifest: "+e.getMessage());
+		}
+	}
+
+	public String getCollection(){
+		return mCollection;
+	}
+
+	/**
+	 * Size of every item of the collection, or -1 if it's not known.
+	 */
+	public Map<String, Long> getItemSizes(){
+		return mItemSizes;
+	}
+
+	/**
+	 * Tells the engine which items are on-device and how big they are.
+	 */
+	public void applyTo(ItemTieringEngine engine){
+		engine.setOnDeviceCollection(mItemSizes);
+	}
+}
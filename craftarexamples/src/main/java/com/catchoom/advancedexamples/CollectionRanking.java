@@ -0,0 +1,152 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the hit rate and the search latency observed for every collection, and decides in which order
+ * the collections should be searched.
+ * 
+ * When the collections are searched one after the other until the first hit, the expected time to find a
+ * match is minimal if they are sorted by hit rate divided by latency: a collection that is twice as slow must
+ * be twice as likely to have the item to deserve going first. Collections without enough samples are 
+ * assumed to always hit, so every collection is tried early and gets statistics of its own.
+ */
+public class CollectionRanking<K> {
+
+	private final static int DEFAULT_WINDOW_SIZE = 50;
+	private final static int MIN_SAMPLES = 5;
+	private final static double SMOOTHING_FACTOR = 0.2;
+
+	private static class Stats {
+		final HitRateWindow mHits;
+		double mLatencyEstimateMillis = -1;
+
+		Stats(int windowSize){
+			mHits = new HitRateWindow(windowSize);
+		}
+	}
+
+	private final int mWindowSize;
+	private final Map<K, Stats> mStats = new HashMap<K, Stats>();
+
+	public CollectionRanking(){
+		this(DEFAULT_WINDOW_SIZE);
+	}
+
+	public CollectionRanking(int windowSize){
+		mWindowSize = windowSize;
+	}
+
+	/**
+	 * Records the outcome of a search in the given collection, including the time it took to make it the 
+	 * current collection.
+	 */
+	public synchronized void recordSearch(K collection, boolean hit, long latencyMillis){
+		Stats stats = getStats(collection);
+		stats.mHits.record(hit);
+		if(stats.mLatencyEstimateMillis < 0){
+			stats.mLatencyEstimateMillis = latencyMillis;
+		}else{
+			stats.mLatencyEstimateMillis += SMOOTHING_FACTOR * (latencyMillis - stats.mLatencyEstimateMillis);
+		}
+	}
+
+	/**
+	 * Returns a copy of the collections, in the order they should be searched. Collections with the same score
+	 * keep their original order.
+	 */
+	public synchronized <T extends K> List<T> order(List<T> collections){
+		final double defaultLatency = getAverageLatencyMillis();
+		final Map<K, Double> scores = new HashMap<K, Double>();
+		for(T collection : collections){
+			scores.put(collection, score(collection, defaultLatency));
+		}
+		List<T> ordered = new ArrayList<T>(collections);
+		Collections.sort(ordered, new Comparator<T>() {
+			@Override
+			public int compare(T lhs, T rhs) {
+				return Double.compare(scores.get(rhs), scores.get(lhs));
+			}
+		});
+		return ordered;
+	}
+
+	/**
+	 * Hit rate of the collection in the last searches, or -1 if it hasn't been searched yet.
+	 */
+	public synchronized double getHitRate(K collection){
+		Stats stats = mStats.get(collection);
+		return stats == null ? -1 : stats.mHits.getHitRate(-1);
+	}
+
+	/**
+	 * Moving average of the search latency of the collection, or -1 if it hasn't been searched yet.
+	 */
+	public synchronized double getLatencyMillis(K collection){
+		Stats stats = mStats.get(collection);
+		return stats == null ? -1 : stats.mLatencyEstimateMillis;
+	}
+
+	public synchronized void clear(){
+		mStats.clear();
+	}
+
+	private double score(K collection, double defaultLatency){
+		Stats stats = mStats.get(collection);
+		double hitRate = 1;
+		double latency = defaultLatency;
+		if(stats != null){
+			if(stats.mHits.getSamples() >= MIN_SAMPLES){
+				hitRate = stats.mHits.getHitRate(1);
+			}
+			latency = stats.mLatencyEstimateMillis;
+		}
+		return hitRate / Math.max(latency, 1);
+	}
+
+	private double getAverageLatencyMillis(){
+		double sum = 0;
+		int count = 0;
+		for(Stats stats : mStats.values()){
+			sum += stats.mLatencyEstimateMillis;
+			count++;
+		}
+		return count == 0 ? 1 : sum / count;
+	}
+
+	private Stats getStats(K collection){
+		Stats stats = mStats.get(collection);
+		if(stats == null){
+			stats = new Stats(mWindowSize);
+			mStats.put(collection, stats);
+		}
+		return stats;
+	}
+}
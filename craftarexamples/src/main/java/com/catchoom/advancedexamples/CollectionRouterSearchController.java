@@ -0,0 +1,242 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceCollection;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+import com.craftar.SetOnDeviceCollectionListener;
+
+/**
+ * SearchController that searches a query in several on-device collections, one after the other, until one of them
+ * finds a match.
+ * 
+ * Every search request is performed on the collection set with CraftAROnDeviceIR.setCollection(), so this controller
+ * sets each collection before searching in it. The collections are tried in the order given by a {@link CollectionRanking},
+ * which is updated with the outcome and the latency (including the time to set the collection) of every search, so
+ * the collection most likely to have the item is tried first. 
+ * 
+ * Only one query is routed at a time: preview frames received meanwhile are dropped, and a picture taken meanwhile
+ * is routed after the current query.
+ * 
+ * The controller sets itself as the response handler of the CraftAROnDeviceIR module, and forwards the final 
+ * result of every query to the given response handler. A query not found in any collection gets an empty result.
+ */
+public class CollectionRouterSearchController implements SearchController, CraftARSearchResponseHandler, SetOnDeviceCollectionListener {
+
+	private final static String TAG = "CollectionRouterSearchController";
+
+	CraftAROnDeviceIR mOnDeviceIR;
+	CraftARSearchResponseHandler mResponseHandler;
+	List<CraftAROnDeviceCollection> mCollections;
+	CollectionRanking<CraftAROnDeviceCollection> mRanking = new CollectionRanking<CraftAROnDeviceCollection>();
+	CraftAROnDeviceCollection mCurrentCollection;
+
+	boolean mIsFinding = false;
+	CraftARQueryImage mPendingPicture;
+
+	//State of the query being routed
+	CraftARQueryImage mQuery;
+	boolean mIsFinderQuery;
+	List<CraftAROnDeviceCollection> mRoute;
+	int mRouteIndex;
+	long mQueryStartMillis;
+	long mStepStartMillis;
+	boolean mHasSearched;
+	CraftARError mLastError;
+
+	public CollectionRouterSearchController(CraftAROnDeviceIR onDeviceIR, List<CraftAROnDeviceCollection> collections, CraftARSearchResponseHandler responseHandler){
+		if(collections.isEmpty()){
+			throw new IllegalArgumentException("At least one collection is needed");
+		}
+		mOnDeviceIR = onDeviceIR;
+		mCollections = new ArrayList<CraftAROnDeviceCollection>(collections);
+		mResponseHandler = responseHandler;
+		mOnDeviceIR.setCraftARSearchResponseHandler(this);
+	}
+
+	/**
+	 * Tells the router which collection is currently set in the CraftAROnDeviceIR module (if any), so it's not set again.
+	 */
+	public void setCurrentCollection(CraftAROnDeviceCollection collection){
+		mCurrentCollection = collection;
+	}
+
+	public CollectionRanking<CraftAROnDeviceCollection> getRanking(){
+		return mRanking;
+	}
+
+	@Override
+	public void onPreviewFrame(CraftARQueryImage image) {
+		if(mIsFinding && mQuery == null){
+			route(image, true);
+		}
+	}
+
+	@Override
+	public void onPictureTaken(CraftARQueryImage image) {
+		if(mQuery == null){
+			route(image, false);
+		}else{
+			mPendingPicture = image;
+		}
+	}
+
+	@Override
+	public void onTakePictureFailed(CraftARError error) {
+		mResponseHandler.searchFailed(error, 0);
+	}
+
+	@Override
+	public void onFinderActivated() {
+		mIsFinding = true;
+	}
+
+	@Override
+	public void onFinderDeactivated() {
+		mIsFinding = false;
+	}
+
+	private void route(CraftARQueryImage query, boolean isFinderQuery){
+		mQuery = query;
+		mIsFinderQuery = isFinderQuery;
+		mRoute = mRanking.order(mCollections);
+		mRouteIndex = -1;
+		mQueryStartMillis = SystemClock.elapsedRealtime();
+		mHasSearched = false;
+		mLastError = null;
+		nextCollection();
+	}
+
+	private void nextCollection(){
+		mRouteIndex++;
+		if(mRouteIndex >= mRoute.size()){
+			//Not found in any collection
+			if(mHasSearched){
+				finishQuery(new ArrayList<CraftARResult>(), 0);
+			}else{
+				failQuery(mLastError, 0);
+			}
+			return;
+		}
+		mStepStartMillis = SystemClock.elapsedRealtime();
+		CraftAROnDeviceCollection collection = mRoute.get(mRouteIndex);
+		if(collection == mCurrentCollection){
+			mOnDeviceIR.search(mQuery);
+		}else{
+			mCurrentCollection = null;
+			mOnDeviceIR.setCollection(collection, (SetOnDeviceCollectionListener) this);
+		}
+	}
+
+	@Override
+	public void collectionReady(List<CraftARError> errors) {
+		if(mQuery == null){
+			return;
+		}
+		mCurrentCollection = mRoute.get(mRouteIndex);
+		mOnDeviceIR.search(mQuery);
+	}
+
+	@Override
+	public void setCollectionFailed(CraftARError error) {
+		if(mQuery == null){
+			return;
+		}
+		Log.e(TAG, "Could not set collection "+mRoute.get(mRouteIndex).getName()+" ("+error.getErrorCode()+"):"+error.getErrorMessage());
+		mLastError = error;
+		nextCollection();
+	}
+
+	@Override
+	public void setCollectionProgress(double progress) {
+	}
+
+	@Override
+	public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+		if(mQuery == null){
+			return;
+		}
+		CraftAROnDeviceCollection collection = mRoute.get(mRouteIndex);
+		boolean hit = results.size() > 0;
+		mRanking.recordSearch(collection, hit, SystemClock.elapsedRealtime() - mStepStartMillis);
+		mHasSearched = true;
+		if(hit){
+			Log.d(TAG, "Found in collection "+collection.getName()+" after searching "+(mRouteIndex + 1)+" collections");
+			finishQuery(results, requestCode);
+		}else{
+			nextCollection();
+		}
+	}
+
+	@Override
+	public void searchFailed(CraftARError error, int requestCode) {
+		if(mQuery == null){
+			return;
+		}
+		mLastError = error;
+		nextCollection();
+	}
+
+	private void finishQuery(ArrayList<CraftARResult> results, int requestCode){
+		boolean deliver = !mIsFinderQuery || mIsFinding;
+		long searchTimeMillis = SystemClock.elapsedRealtime() - mQueryStartMillis;
+		endQuery();
+		if(deliver){
+			mResponseHandler.searchResults(results, searchTimeMillis, requestCode);
+		}
+		routePendingPicture();
+	}
+
+	private void failQuery(CraftARError error, int requestCode){
+		boolean deliver = !mIsFinderQuery || mIsFinding;
+		endQuery();
+		if(deliver){
+			mResponseHandler.searchFailed(error, requestCode);
+		}
+		routePendingPicture();
+	}
+
+	private void endQuery(){
+		mQuery = null;
+		mRoute = null;
+	}
+
+	private void routePendingPicture(){
+		if(mPendingPicture != null && mQuery == null){
+			CraftARQueryImage picture = mPendingPicture;
+			mPendingPicture = null;
+			route(picture, false);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import android.util.Log;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * SearchController that keeps several finder frames in the on-device search module at once, instead of waiting 
+ * for the pending search to finish like the SDK's SearchController, so a module that searches on several cores 
+ * has work for all of them. The responses are handed over in the order the frames were sent.
+ * 
+ * Up to maxInFlight requests are searched or waiting to be handed over at any time (one per core by default); the 
+ * finder frames that arrive when the limit is reached are dropped. Pictures are always searched. Every frame is 
+ * sent to the module before onPreviewFrame() returns, as the SDK's SearchController does, so the SDK bitmap is never 
+ * used after the callback.
+ * 
+ * The module numbers the requests in the order search() is called, and every response carries that requestCode. 
+ * The code of the first request is learned from the first response (only one frame is sent until then), so every 
+ * response is matched to its request. A response that arrives before the responses of earlier requests waits for 
+ * them. The responses of the frames sent before the finder was stopped are stale and dropped, and so are the 
+ * responses that don't belong to any request of this class.
+ * 
+ * Set this class as the response handler of the module, and send every search of the module through it, so the 
+ * request codes of its requests are consecutive.
+ * 
+ * Example: 
+ * 
+ * 		ConcurrentSearchController concurrentController = new ConcurrentSearchController(mOnDeviceIR, this);
+ * 		mOnDeviceIR.setCraftARSearchResponseHandler(concurrentController);
+ * 		mCraftARSDK.setSearchController(concurrentController);
+ */
+public class ConcurrentSearchController implements SearchController, CraftARSearchResponseHandler {
+
+	private final static String TAG = "ConcurrentSearchController";
+	
+	public final static int DEFAULT_MAX_IN_FLIGHT = Math.max(1, Runtime.getRuntime().availableProcessors());
+	
+	//A search sent to the module, until its response is handed over.
+	static class Request {
+		final boolean mIsFinderFrame;
+		final int mFinderSession;
+		boolean mIsCompleted = false;
+		ArrayList<CraftARResult> mResults;
+		CraftARError mError;
+		long mSearchTimeMillis;
+		
+		Request(boolean isFinderFrame, int finderSession){
+			mIsFinderFrame = isFinderFrame;
+			mFinderSession = finderSession;
+		}
+	}
+
+	CraftAROnDeviceIR mOnDeviceIR;
+	CraftARSearchResponseHandler mResponseHandler;
+	final int mMaxInFlight;
+	
+	//Requests not handed over yet, in the order they were sent. The first one is the request number mHandedOver.
+	LinkedList<Request> mRequests = new LinkedList<Request>();
+	long mSent = 0;
+	long mHandedOver = 0;
+	//Request code of the request number 0, once known.
+	boolean mHasFirstRequestCode = false;
+	long mFirstRequestCode;
+	
+	boolean mIsFinding = false;
+	int mFinderSession = 0;
+	
+	long mDroppedFrames = 0;
+	long mReorderedResponses = 0;
+	long mStaleResponses = 0;
+	long mUnknownResponses = 0;
+
+	public ConcurrentSearchController(CraftAROnDeviceIR onDeviceIR, CraftARSearchResponseHandler responseHandler){
+		this(onDeviceIR, responseHandler, DEFAULT_MAX_IN_FLIGHT);
+	}
+	
+	public ConcurrentSearchController(CraftAROnDeviceIR onDeviceIR, CraftARSearchResponseHandler responseHandler, int maxInFlight){
+		if(maxInFlight < 1){
+			throw new IllegalArgumentException("maxInFlight must be at least 1");
+		}
+		mOnDeviceIR = onDeviceIR;
+		mResponseHandler = responseHandler;
+		mMaxInFlight = maxInFlight;
+	}
+	
+	/**
+	 * Requests sent to the module whose response has not been handed over (or dropped) yet.
+	 */
+	public int getInFlight(){
+		return mRequests.size();
+	}
+	
+	/**
+	 * Finder frames not searched because the in-flight limit was reached.
+	 */
+	public long getDroppedFrames(){
+		return mDroppedFrames;
+	}
+	
+	/**
+	 * Responses that arrived before the response of an earlier request, and waited for it.
+	 */
+	public long getReorderedResponses(){
+		return mReorderedResponses;
+	}
+	
+	/**
+	 * Responses of finder frames sent before the finder was stopped.
+	 */
+	public long getStaleResponses(){
+		return mStaleResponses;
+	}
+
+	@Override
+	public void onPreviewFrame(CraftARQueryImage image) {
+		if(!mIsFinding){
+			return;
+		}
+		int limit = mHasFirstRequestCode ? mMaxInFlight : 1;
+		if(mRequests.size() >= limit){
+			mDroppedFrames++;
+			return;
+		}
+		send(image, true);
+	}
+
+	@Override
+	public void onPictureTaken(CraftARQueryImage image) {
+		send(image, false);
+	}
+	
+	private void send(CraftARQueryImage image, boolean isFinderFrame){
+		mRequests.add(new Request(isFinderFrame, mFinderSession));
+		mSent++;
+		mOnDeviceIR.search(image);
+	}
+
+	@Override
+	public void onTakePictureFailed(CraftARError error) {
+		mResponseHandler.searchFailed(error, -1);
+	}
+
+	@Override
+	public void onFinderActivated() {
+		mIsFinding = true;
+	}
+
+	@Override
+	public void onFinderDeactivated() {
+		mIsFinding = false;
+		//The frames being searched belong to this session.
+		mFinderSession++;
+		Log.d(TAG, "Frames dropped:"+mDroppedFrames+", reordered responses:"+mReorderedResponses+", stale:"+mStaleResponses+", unknown:"+mUnknownResponses);
+	}
+
+	@Override
+	public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+		Request request = complete(requestCode);
+		if(request == null){
+			return;
+		}
+		request.mResults = results;
+		request.mSearchTimeMillis = searchTimeMillis;
+		handOver();
+	}
+
+	@Override
+	public void searchFailed(CraftARError error, int requestCode) {
+		Request request = complete(requestCode);
+		if(request == null){
+			return;
+		}
+		request.mError = error;
+		handOver();
+	}
+	
+	/**
+	 * Returns the request with the given code, marked as completed, or null if it's not a request of this class.
+	 */
+	private Request complete(int requestCode){
+		if(!mHasFirstRequestCode){
+			if(mRequests.isEmpty()){
+				mUnknownResponses++;
+				return null;
+			}
+			//Only one frame is sent until the first response, which is the response of the oldest request.
+			mFirstRequestCode = requestCode - mHandedOver;
+			mHasFirstRequestCode = true;
+		}
+		long number = requestCode - mFirstRequestCode;
+		if(number < mHandedOver || number >= mSent){
+			mUnknownResponses++;
+			Log.w(TAG, "Response to an unknown request:"+requestCode);
+			return null;
+		}
+		Request request = mRequests.get((int) (number - mHandedOver));
+		if(request.mIsCompleted){
+			mUnknownResponses++;
+			return null;
+		}
+		if(number != mHandedOver){
+			mReorderedResponses++;
+		}
+		request.mIsCompleted = true;
+		return request;
+	}
+	
+	/**
+	 * Hands over the completed responses that are next in order.
+	 */
+	private void handOver(){
+		while(!mRequests.isEmpty() && mRequests.getFirst().mIsCompleted){
+			Request request = mRequests.removeFirst();
+			int requestCode = (int) (mFirstRequestCode + mHandedOver);
+			mHandedOver++;
+			if(request.mIsFinderFrame && (!mIsFinding || request.mFinderSession != mFinderSession)){
+				mStaleResponses++;
+				continue;
+			}
+			if(request.mError != null){
+				mResponseHandler.searchFailed(request.mError, requestCode);
+			}else{
+				mResponseHandler.searchResults(request.mResults, request.mSearchTimeMillis, requestCode);
+			}
+		}
+	}
+}
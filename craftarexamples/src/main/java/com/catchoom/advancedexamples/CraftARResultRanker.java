@@ -0,0 +1,56 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import com.craftar.CraftARBoundingBox;
+import com.craftar.CraftARResult;
+
+/**
+ * Ranks CraftARResults by their score and the area of their bounding box. The same item is identified by its name.
+ */
+public class CraftARResultRanker implements ResultAggregator.Ranker<CraftARResult> {
+
+	@Override
+	public String getKey(CraftARResult result) {
+		return result.getItem().getItemName();
+	}
+
+	@Override
+	public double getScore(CraftARResult result) {
+		return result.getScore();
+	}
+
+	@Override
+	public double getArea(CraftARResult result) {
+		CraftARBoundingBox box = result.getBoundingBox();
+		if(box == null){
+			return 0;
+		}
+		//Shoelace formula, the corners may not form a rectangle.
+		double twiceArea = (box.TLx * box.TRy - box.TRx * box.TLy)
+				+ (box.TRx * box.BRy - box.BRx * box.TRy)
+				+ (box.BRx * box.BLy - box.BLx * box.BRy)
+				+ (box.BLx * box.TLy - box.TLx * box.BLy);
+		return Math.abs(twiceArea) / 2;
+	}
+}
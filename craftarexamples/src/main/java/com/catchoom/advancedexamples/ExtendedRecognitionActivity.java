@@ -22,6 +22,9 @@
 
 package com.catchoom.advancedexamples;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,6 +35,7 @@ import android.view.View;
 import android.view.View.OnClickListener;
 import android.widget.Toast;
 
+import com.catchoom.test.BuildConfig;
 import com.catchoom.test.R;
 import com.catchoom.test.SplashScreenActivity;
 import com.craftar.CraftARActivity;
@@ -41,6 +45,7 @@ import com.craftar.CraftARError;
 import com.craftar.CraftARResult;
 import com.craftar.CraftARSDK;
 import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
 import com.craftar.SetCloudCollectionListener;
 import com.craftar.SetOnDeviceCollectionListener;
 
@@ -68,20 +73,58 @@ import com.craftar.SetOnDeviceCollectionListener;
  * So, if you point to the image biz_card, it will be recognized using the on-device module. If you point to another image, a search
  * in the cloud will be performed. In the case you were pointing to the kid_with_mobile or to the craftar_logo images, the search in the cloud
  * will find the match.
+ * 
+ * If there's no connectivity when the cloud has to be searched, the picture is stored in an offline queue, and 
+ * searched on the cloud as soon as the connectivity returns. The results are shown then.
+ * 
+ * The pictures sent to the cloud are downscaled and compressed according to the upload throughput and the latency
+ * measured on the previous searches, so a slow link gets smaller queries.
+ * 
+ * The items found by each search are recorded, and a report recommending which items should be in the on-device 
+ * collection (within a size budget) is written to files/tiering/report.json when the screen is left.
  * **/
-public class ExtendedRecognitionActivity extends CraftARActivity implements OnClickListener, CraftARSearchResponseHandler{
+public class ExtendedRecognitionActivity extends CraftARActivity implements OnClickListener, CraftARSearchResponseHandler, OfflineCloudQueue.Listener{
 
 	private final static String TAG = "ExtendedRecognitionActivity";
 
 	private final static String MY_CLOUD_COLLECTION_TOKEN = "cloudrecognition";
+	//Maximum size of the on-device collection recommended by the tiering report.
+	private final static long ON_DEVICE_COLLECTION_BUDGET_BYTES = 1024 * 1024;
+	//Items of the on-device collection and their sizes, written next to the bundle when it's built (see CollectionManifest).
+	private final static String ON_DEVICE_COLLECTION_MANIFEST = "craftarexamples_odir_manifest.json";
 	
 	private View mScanningLayout;
 	private View mTapToScanLayout;
 		
+	//Creates the ExtendedSearchController, or takes the one of this screen if it was closed a moment ago (see CaptureSessionManager).
+	private final static CaptureSessionManager.SearchControllerProvider SEARCH_CONTROLLER_PROVIDER = new CaptureSessionManager.SearchControllerProvider() {
+		@Override
+		public SearchController createSearchController(CraftARSearchResponseHandler responseHandler) {
+			//Encode the cloud queries with a resolution and a quality that suit the current link (see AdaptiveQueryEncoder).
+			ExtendedSearchController extendedSearchController = new ExtendedSearchController(responseHandler, new AdaptiveEncodingBackend(new CloudRecognitionBackend()));
+			
+			//Start the cloud search when the on-device search takes too long, instead of waiting for it to miss (see build.gradle).
+			extendedSearchController.setHedgedMode(BuildConfig.HEDGED_SEARCH, ExtendedSearchController.DEFAULT_HEDGE_LATENCY_BUDGET_MILLIS);
+			
+			// Or search both at the same time, and receive the on-device results first and the merged results when the cloud answers.
+			//extendedSearchController.setIncrementalResponseHandler(myIncrementalSearchResponseHandler);
+			return extendedSearchController;
+		}
+
+		@Override
+		public void attachSearchController(SearchController searchController) {
+			((ExtendedSearchController) searchController).attachResponseHandlers();
+		}
+	};
+	
 	CraftARSDK mCraftARSDK; //The CraftARSDK object.
 	CraftARCamera mCamera; //Provides high-level access to some features of the device camera.
 	
 	private boolean mIsActivityRunning;
+	
+	ExtendedSearchController mSearchController;
+	OfflineCloudQueue mOfflineQueue;
+	TieringReportExporter mTieringReportExporter;
 		
 	@Override
 	public void onPostCreate() {
@@ -95,7 +138,6 @@ public class ExtendedRecognitionActivity extends CraftARActivity implements OnCl
 		 //Obtain an instance of the CraftARSDK (which manages the camera interaction).
 		mCraftARSDK = CraftARSDK.Instance();
 		mCraftARSDK.init(getApplicationContext()); //Initialize always the SDK before doing any other operation. If the SDK has already been initialized, this is a no-op.
-		mCraftARSDK.startCapture((CraftARActivity)this); //Starts the camera capture.
 		
 		CraftARCloudRecognition cloudIR = CraftARCloudRecognition.Instance(); //Get the instance to the CraftARCloudRecognition module		
 		//Use the collection specified by the TOKEN in the CraftARCloudRecognition module. Receive the callbacks from the setCollection call in our CloudSetCollectionListener 
@@ -113,11 +155,35 @@ public class ExtendedRecognitionActivity extends CraftARActivity implements OnCl
 			}
 		}); 		
 		
-		ExtendedSearchController extendedSearchController = new ExtendedSearchController((CraftARSearchResponseHandler)this);
-		
-		//Set the SearchController in the SDK. By doing this, the SDK will forward the pictures, the frames, and the finder events to our SearchController.
-		mCraftARSDK.setSearchController(extendedSearchController); 
+		//Start the camera capture and set our SearchController in the SDK. By doing this, the SDK will forward the pictures, the frames, 
+		//and the finder events to our SearchController.
+		mSearchController = (ExtendedSearchController) CaptureSessionManager.Instance().startSession(this, this, TAG, this, SEARCH_CONTROLLER_PROVIDER);
 		mCamera = mCraftARSDK.getCamera(); //Obtain the camera object from the SDK.
+		
+		//Keep the pictures that can't be searched on the cloud for lack of connectivity, and search them when it returns.
+		mOfflineQueue = new OfflineCloudQueue(this, new File(getFilesDir(), "offline/cloud_queries.log"), this);
+		mSearchController.setOfflineQueue(mOfflineQueue);
+		
+		//Keep the hits of every item, and recommend which ones should go in the on-device collection.
+		ItemTieringEngine tieringEngine = new ItemTieringEngine();
+		mTieringReportExporter = new TieringReportExporter(tieringEngine, new File(getFilesDir(), "tiering/report.json"), ON_DEVICE_COLLECTION_BUDGET_BYTES);
+		try {
+			mTieringReportExporter.load();
+		} catch (IOException e) {
+			Log.e(TAG, "Could not load the tiering report: "+e.getMessage());
+		}
+		//The manifest is newer than the report: it tells which items are on-device now.
+		try {
+			InputStream manifest = getAssets().open(ON_DEVICE_COLLECTION_MANIFEST);
+			try {
+				CollectionManifest.read(manifest).applyTo(tieringEngine);
+			} finally {
+				manifest.close();
+			}
+		} catch (IOException e) {
+			Log.w(TAG, "Could not read the manifest of the on-device collection, the item sizes are estimated: "+e.getMessage());
+		}
+		mSearchController.setTieringEngine(tieringEngine);
 	}
 	
 	@Override
@@ -127,8 +193,7 @@ public class ExtendedRecognitionActivity extends CraftARActivity implements OnCl
 
 	@Override
 	public void onPreviewStarted(int width, int height) {
-		// TODO Auto-generated method stub
-		
+		CaptureSessionManager.Instance().onPreviewStarted(this);
 	}
 	@Override
 	public void onClick(View v) {
@@ -152,6 +217,18 @@ public class ExtendedRecognitionActivity extends CraftARActivity implements OnCl
 		}
 	}
 
+	@Override
+	public void queryQueued(long id, int pendingQueries) {
+		Toast.makeText(getApplicationContext(), "No connectivity. The picture will be searched later ("+pendingQueries+" pending)", Toast.LENGTH_SHORT).show();
+	}
+
+	@Override
+	public void queuedQueryAnswered(long id, long capturedAtMillis, ArrayList<CraftARResult> results) {
+		if(results.size() > 0){
+			Toast.makeText(getApplicationContext(), "Found in a picture taken while offline: "+results.get(0).getItem().getItemName(), Toast.LENGTH_LONG).show();
+		}
+	}
+
 	private void showNoObjectsDialog(){
 		if(!mIsActivityRunning){
 			return;
@@ -216,6 +293,7 @@ public class ExtendedRecognitionActivity extends CraftARActivity implements OnCl
 	protected void onStop(){
 		super.onStop();
 		mIsActivityRunning = false;
+		mTieringReportExporter.exportAsync();
 		
 	}
 	@Override
@@ -224,5 +302,14 @@ public class ExtendedRecognitionActivity extends CraftARActivity implements OnCl
 		mIsActivityRunning = true;
 		
 	}
+	
+	@Override
+	protected void onDestroy(){
+		super.onDestroy();
+		mSearchController.setOfflineQueue(null);
+		mOfflineQueue.close();
+		mSearchController.setTieringEngine(null);
+		CaptureSessionManager.Instance().endSession(this);
+	}
 
 }
@@ -1,10 +1,15 @@
 package com.catchoom.advancedexamples;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
 
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
-import com.craftar.CraftARCloudRecognition;
 import com.craftar.CraftARError;
 import com.craftar.CraftAROnDeviceIR;
 import com.craftar.CraftARQueryImage;
@@ -15,25 +20,207 @@ import com.craftar.SearchController;
 public class ExtendedSearchController implements SearchController{
 
 	private final static String TAG = "ExtendedSearchController";
+	
+	//In hedged mode, if less than this ratio of the last single-shot searches were found on-device, the cloud is queried right away.
+	private final static double USUALLY_MISSES_HIT_RATE = 0.2;
+	private final static int ON_DEVICE_HISTORY_SIZE = 20;
+	private final static int ON_DEVICE_HISTORY_MIN_SAMPLES = 5;
+	public final static long DEFAULT_HEDGE_LATENCY_BUDGET_MILLIS = 300;
+	private final static int SHARPNESS_GRID_WIDTH = 64;
+	private final static int SHARPNESS_GRID_HEIGHT = 48;
+	private final static int MAX_FREE_FRAME_COPIES = 2;
+	
+	//Cloud responses of the last 10 minutes, shared by all the controllers.
+	private final static RecognitionResultCache<ArrayList<CraftARResult>> CLOUD_RESULT_CACHE = 
+			new RecognitionResultCache<ArrayList<CraftARResult>>(6, 10 * 60 * 1000, 64, 256 * 1024);
+	
 	CraftAROnDeviceIR mOnDeviceIR;
-	CraftARCloudRecognition mCloudRecognition;
+	//Sends the cloud queries, and gives every response to the query it answers.
+	SearchRequestRouter mCloudRouter;
 	CraftARSearchResponseHandler mResponseHandler;
+	FrameAdmissionScheduler mFrameScheduler = new LatencyAwareFrameScheduler();
+	SceneChangeDetector mSceneChangeDetector = new SceneChangeDetector();
+	//Stores the pictures whose cloud search failed while offline.
+	OfflineCloudQueue mOfflineQueue;
+	//Records the items found by every path, to decide which ones should be on-device.
+	ItemTieringEngine mTieringEngine;
+	
+	boolean mIsHedgedMode = false;
+	long mHedgeLatencyBudgetMillis = DEFAULT_HEDGE_LATENCY_BUDGET_MILLIS;
+	HitRateWindow mOnDeviceHistory = new HitRateWindow(ON_DEVICE_HISTORY_SIZE);
+	Handler mHandler = new Handler(Looper.getMainLooper());
+	
+	RecognitionResultCache<ArrayList<CraftARResult>> mCloudResultCache = CLOUD_RESULT_CACHE;
+	QueryImageHasher mHasher = new QueryImageHasher();
+	OnDeviceResponseHandler mOnDeviceResponseHandler;
+	
+	RecognitionMetrics mMetrics = RecognitionMetrics.Instance();
+	
+	//Queries sent to the on-device search, in order.
+	LinkedList<OnDeviceQuery> mOnDeviceQueries = new LinkedList<OnDeviceQuery>();
+	//Incremented every time the finder starts, to ignore the responses of the frames of the previous sessions.
+	int mFinderSession = 0;
+	CloudFallbackCoalescer<CraftARQueryImage> mCloudFallback = new CloudFallbackCoalescer<CraftARQueryImage>();
+	byte[] mSharpnessSamples = new byte[SHARPNESS_GRID_WIDTH * SHARPNESS_GRID_HEIGHT];
+	//Copies of the finder frames kept for the cloud fallback that can be reused, and the pixels used to copy them.
+	LinkedList<Bitmap> mFreeFrameCopies = new LinkedList<Bitmap>();
+	int[] mCopyPixels = new int[0];
+	
+	IncrementalSearchResponseHandler mIncrementalResponseHandler;
+	//Results of the current single-shot search, and of the last finder response.
+	ResultAggregator<CraftARResult> mSingleShotResults = new ResultAggregator<CraftARResult>(new CraftARResultRanker());
+	ResultAggregator<CraftARResult> mFinderResults = new ResultAggregator<CraftARResult>(new CraftARResultRanker());
 	
 	public ExtendedSearchController(CraftARSearchResponseHandler extendedSearchResponseHandler){
+		this(extendedSearchResponseHandler, new CloudRecognitionBackend());
+	}
+	
+	/**
+	 * Creates the SearchController using the given backend for the cloud searches, instead of the CraftARCloudRecognition module.
+	 */
+	public ExtendedSearchController(CraftARSearchResponseHandler extendedSearchResponseHandler, SearchBackend cloudBackend){
 		mOnDeviceIR= CraftAROnDeviceIR.Instance();
-		mCloudRecognition = CraftARCloudRecognition.Instance();
+		mCloudRouter = new SearchRequestRouter(cloudBackend);
 		mResponseHandler = extendedSearchResponseHandler;
-		mOnDeviceIR.setCraftARSearchResponseHandler(new OnDeviceResponseHandler());
-		mCloudRecognition.setCraftARSearchResponseHandler(new CloudResponseHandler());
+		mOnDeviceResponseHandler = new OnDeviceResponseHandler();
+		attachResponseHandlers();
+	}
+	
+	/**
+	 * Makes the on-device and cloud modules send their responses to this controller. It's done when the controller is
+	 * created: call it again if something else replaced their response handlers meanwhile.
+	 */
+	public void attachResponseHandlers(){
+		mOnDeviceIR.setCraftARSearchResponseHandler(mOnDeviceResponseHandler);
+		mCloudRouter.attachResponseHandler();
 	}
 
 	CraftARQueryImage mLastQuery;
 	boolean mIsFinding = false;
 	
+	//State of the current single-shot search.
+	SingleShotSearch mSingleShot;
+	
+	/**
+	 * Replaces the policy that decides which preview frames are searched in Finder mode.
+	 */
+	public void setFrameAdmissionScheduler(FrameAdmissionScheduler frameScheduler){
+		mFrameScheduler = frameScheduler;
+	}
+	
+	public FrameAdmissionScheduler getFrameAdmissionScheduler(){
+		return mFrameScheduler;
+	}
+	
+	/**
+	 * Stores the pictures whose cloud search fails while there's no connectivity in the given queue, and searches 
+	 * them on the cloud when connectivity returns. The results arrive through the listener of the queue. 
+	 * Set null to stop using the queue. The responses of the queries already replayed still go to the queue that 
+	 * replayed them.
+	 */
+	public void setOfflineQueue(OfflineCloudQueue offlineQueue){
+		if(mOfflineQueue != null){
+			mOfflineQueue.setReplayer(null);
+		}
+		mOfflineQueue = offlineQueue;
+		if(offlineQueue != null){
+			final OfflineCloudQueue replayingQueue = offlineQueue;
+			offlineQueue.setReplayer(new OfflineCloudQueue.Replayer() {
+				@Override
+				public void replay(long id, CraftARQueryImage query) {
+					mCloudRouter.search(query, new ReplayedQuery(replayingQueue, id));
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Records in the given engine the items found by the on-device and the cloud searches, with the latency of 
+	 * every search. Set null to stop recording.
+	 */
+	public void setTieringEngine(ItemTieringEngine tieringEngine){
+		mTieringEngine = tieringEngine;
+	}
+	
+	public ItemTieringEngine getTieringEngine(){
+		return mTieringEngine;
+	}
+	
+	/**
+	 * Replaces the detector that skips the finder frames showing the same scene as the last missed frame. 
+	 * Set null to search the frames even if nothing has changed.
+	 */
+	public void setSceneChangeDetector(SceneChangeDetector sceneChangeDetector){
+		mSceneChangeDetector = sceneChangeDetector;
+	}
+	
+	public SceneChangeDetector getSceneChangeDetector(){
+		return mSceneChangeDetector;
+	}
+	
+	/**
+	 * In hedged mode, the cloud search of a picture does not wait for the on-device search to miss: 
+	 * it starts as soon as the on-device search takes longer than latencyBudgetMillis, or right away if 
+	 * the on-device collection has missed most of the recent searches. The first positive answer is sent to the 
+	 * response handler, and the other one is ignored.
+	 */
+	public void setHedgedMode(boolean enabled, long latencyBudgetMillis){
+		mIsHedgedMode = enabled;
+		mHedgeLatencyBudgetMillis = latencyBudgetMillis;
+	}
+	
+	public boolean isHedgedMode(){
+		return mIsHedgedMode;
+	}
+	
+	/**
+	 * Streams the results of every search to the given handler as each path answers, without duplicates and 
+	 * ranked by score and bounding box area. 
+	 * 
+	 * While an incremental handler is set, pictures are searched on-device and on the cloud at the same time, and
+	 * the on-device results are sent as soon as they arrive. When both paths have answered, the merged results are 
+	 * also sent to the CraftARSearchResponseHandler. Set null to go back to searching the cloud only on a miss.
+	 */
+	public void setIncrementalResponseHandler(IncrementalSearchResponseHandler incrementalResponseHandler){
+		mIncrementalResponseHandler = incrementalResponseHandler;
+	}
+	
+	public RecognitionResultCache<ArrayList<CraftARResult>> getCloudResultCache(){
+		return mCloudResultCache;
+	}
+	
+	/**
+	 * Configures how the finder falls back to the cloud: the misses within windowMillis are merged into a single 
+	 * cloud request with the best frame of the window, and at most maxInFlight cloud requests run at the same time.
+	 */
+	public void setCloudFallbackCoalescing(long windowMillis, CloudFallbackCoalescer.FramePolicy framePolicy, int maxInFlight){
+		releaseFrameCopy(mCloudFallback.getCandidate());
+		mCloudFallback = new CloudFallbackCoalescer<CraftARQueryImage>(windowMillis, framePolicy, maxInFlight);
+	}
+	
+	public CloudFallbackCoalescer<CraftARQueryImage> getCloudFallbackCoalescer(){
+		return mCloudFallback;
+	}
+	
 	@Override
 	public void onPictureTaken(CraftARQueryImage image) {
 		mLastQuery = image;
+		startSingleShot(image);
+		mOnDeviceQueries.add(new OnDeviceQuery(image, -1));
 		mOnDeviceIR.search(image);
+		
+		if(mIncrementalResponseHandler != null){
+			startCloudSearch(mSingleShot);
+		}else if(mIsHedgedMode){
+			boolean usuallyMisses = mOnDeviceHistory.getSamples() >= ON_DEVICE_HISTORY_MIN_SAMPLES &&
+					mOnDeviceHistory.getHitRate(1) < USUALLY_MISSES_HIT_RATE;
+			if(usuallyMisses){
+				Log.d(TAG,"On-device collection usually misses, searching on the cloud at the same time...");
+				startCloudSearch(mSingleShot);
+			}else{
+				mHandler.postDelayed(mHedgeRunnable, mHedgeLatencyBudgetMillis);
+			}
+		}
 	}
 
 	@Override
@@ -48,9 +235,16 @@ public class ExtendedSearchController implements SearchController{
 	@Override
 	public void onPreviewFrame(CraftARQueryImage image) {
 		if(mIsFinding){
-			//TODO: If you want to use Finder mode, implement your logic here!
-			//Example: Search this frame only when the previous request was finished.
-			if(mOnDeviceIR.getPendingSearchRequestsCount() == 0 ){
+			//Don't search again a scene that was already missed.
+			if(mSceneChangeDetector != null && !mSceneChangeDetector.isNewScene(image)){
+				return;
+			}
+			//Let the scheduler decide if this frame is fresh enough to be searched, depending on the pending requests.
+			if(mFrameScheduler.admitFrame(SystemClock.elapsedRealtime(), mOnDeviceIR.getPendingSearchRequestsCount())){
+				if(mSceneChangeDetector != null){
+					mSceneChangeDetector.onSearched();
+				}
+				mOnDeviceQueries.add(new OnDeviceQuery(image, mFinderSession));
 				mOnDeviceIR.search(image);
 			}
 		}
@@ -59,53 +253,573 @@ public class ExtendedSearchController implements SearchController{
 	@Override
 	public void onFinderActivated() {
 		mIsFinding = true;
+		mFinderSession++;
 	}
 
 	@Override
 	public void onFinderDeactivated() {
 		mIsFinding = false;
+		mFrameScheduler.reset();
+		releaseFrameCopy(mCloudFallback.getCandidate());
+		mCloudFallback.reset();
+		mHandler.removeCallbacks(mCloudFallbackRunnable);
+		if(mSceneChangeDetector != null){
+			mSceneChangeDetector.reset();
+			Log.d(TAG, "Unchanged finder frames skipped:"+mSceneChangeDetector.getSkippedFrames());
+		}
+		Log.d(TAG, "Finder frames admitted:"+mFrameScheduler.getAdmittedFrames()+", dropped:"+mFrameScheduler.getDroppedFrames());
+		Log.d(TAG, "Finder misses:"+mCloudFallback.getMisses()+", cloud requests:"+mCloudFallback.getRequests());
+	}
+	
+	private void startSingleShot(CraftARQueryImage image){
+		mHandler.removeCallbacks(mHedgeRunnable);
+		mSingleShot = new SingleShotSearch(image);
+		mSingleShotResults.clear();
+	}
+	
+	private void startCloudSearch(SingleShotSearch search){
+		mHandler.removeCallbacks(mHedgeRunnable);
+		if(search.mIsCloudPending || search.mIsCloudDone){
+			return;
+		}
+		search.mIsCloudPending = true;
+		searchOnCloud(search.mQuery, search);
+	}
+	
+	/**
+	 * Adds a finder frame not found on-device to the cloud fallback window.
+	 * 
+	 * The frame is only valid until its on-device response has been handled, so the frame kept for the window is a 
+	 * copy. The copy is reused once it's replaced by a better miss, or once its cloud response arrives.
+	 */
+	private void coalesceFinderMiss(CraftARQueryImage frame){
+		double sharpness = 0;
+		if(mCloudFallback.getFramePolicy() == CloudFallbackCoalescer.FramePolicy.SHARPEST &&
+				QueryImageSampler.sampleLuma(frame, SHARPNESS_GRID_WIDTH, SHARPNESS_GRID_HEIGHT, mSharpnessSamples)){
+			sharpness = CloudFallbackCoalescer.sharpness(mSharpnessSamples, SHARPNESS_GRID_WIDTH, SHARPNESS_GRID_HEIGHT);
+		}
+		CraftARQueryImage previous = mCloudFallback.getCandidate();
+		boolean isKept = mCloudFallback.isBetterCandidate(sharpness);
+		CraftARQueryImage candidate = isKept ? copyFrame(frame) : frame;
+		if(candidate == null){
+			//The frame has no pixels to copy.
+			return;
+		}
+		if(mCloudFallback.onMiss(candidate, sharpness, SystemClock.elapsedRealtime())){
+			mHandler.postDelayed(mCloudFallbackRunnable, mCloudFallback.getWindowMillis());
+		}
+		if(isKept){
+			releaseFrameCopy(previous);
+		}
+	}
+	
+	private CraftARQueryImage copyFrame(CraftARQueryImage frame){
+		Bitmap bitmap = frame.getBitmap();
+		if(bitmap == null || bitmap.isRecycled()){
+			return null;
+		}
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		Bitmap copy = null;
+		for(int i = 0; i < mFreeFrameCopies.size(); i++){
+			Bitmap free = mFreeFrameCopies.get(i);
+			if(free.getWidth() == width && free.getHeight() == height){
+				copy = mFreeFrameCopies.remove(i);
+				break;
+			}
+		}
+		if(copy == null){
+			copy = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		}
+		if(mCopyPixels.length < width * height){
+			mCopyPixels = new int[width * height];
+		}
+		bitmap.getPixels(mCopyPixels, 0, width, 0, 0, width, height);
+		copy.setPixels(mCopyPixels, 0, width, 0, 0, width, height);
+		return new CraftARQueryImage(copy);
+	}
+	
+	/**
+	 * Keeps a copy made by copyFrame() for the next misses. Does nothing with null.
+	 */
+	private void releaseFrameCopy(CraftARQueryImage copy){
+		if(copy == null){
+			return;
+		}
+		if(mFreeFrameCopies.size() < MAX_FREE_FRAME_COPIES){
+			mFreeFrameCopies.add(copy.getBitmap());
+		}else{
+			copy.getBitmap().recycle();
+		}
+	}
+	
+	private Runnable mCloudFallbackRunnable = new Runnable() {
+		@Override
+		public void run() {
+			sendFinderFallback();
+		}
+	};
+	
+	private void sendFinderFallback(){
+		CraftARQueryImage frame = mCloudFallback.poll(SystemClock.elapsedRealtime());
+		if(frame != null){
+			Log.d(TAG,"Nothing found locally, searching on the cloud...");
+			CloudQuery query = searchOnCloud(frame, null);
+			if(query.isCached()){
+				releaseFrameCopy(frame);
+			}else{
+				query.mFrameCopy = frame;
+			}
+		}
+	}
+	
+	/**
+	 * Searches the query on the cloud, unless a similar query is found in the cloud result cache. Cached results are 
+	 * posted to the main thread, and handled like the response of the cloud.
+	 * 
+	 * @param singleShot the single-shot search that sends the query, or null if it was sent by the finder cloud fallback.
+	 * @return the query, answered from the cache or sent.
+	 */
+	private CloudQuery searchOnCloud(CraftARQueryImage image, SingleShotSearch singleShot){
+		int finderSession = singleShot == null ? mFinderSession : -1;
+		Long hash = null;
+		if(mHasher.hash(image)){
+			hash = mHasher.getHash();
+			final ArrayList<CraftARResult> cachedResults = mCloudResultCache.get(hash, SystemClock.elapsedRealtime());
+			if(cachedResults != null){
+				Log.d(TAG, "Query found in the cloud cache. Hits:"+mCloudResultCache.getHits()+", misses:"+mCloudResultCache.getMisses());
+				final CloudQuery query = new CloudQuery(hash, singleShot, finderSession, null);
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						onCloudResults(query, new ArrayList<CraftARResult>(cachedResults), 0, CachingSearchController.CACHED_RESULTS_REQUEST_CODE);
+					}
+				});
+				return query;
+			}
+		}
+		//Keep the pictures, to store them in the offline queue if the search fails.
+		CraftARQueryImage picture = (mOfflineQueue != null && singleShot != null) ? image : null;
+		CloudQuery query = new CloudQuery(hash, singleShot, finderSession, picture);
+		query.send(image);
+		return query;
+	}
+	
+	private void answerSingleShot(SingleShotSearch search){
+		mHandler.removeCallbacks(mHedgeRunnable);
+		search.mIsAnswered = true;
+		//The cloud response is not needed anymore, ignore it when it arrives.
+		search.mIsCloudPending = false;
+	}
+	
+	private Runnable mHedgeRunnable = new Runnable() {
+		@Override
+		public void run() {
+			SingleShotSearch search = mSingleShot;
+			if(search != null && !search.mIsAnswered && !search.mIsOnDeviceDone){
+				Log.d(TAG,"On-device search over the latency budget, searching on the cloud at the same time...");
+				startCloudSearch(search);
+			}
+		}
+	};
+	
+	/**
+	 * State of a picture being searched on-device and, maybe, on the cloud.
+	 */
+	static class SingleShotSearch {
+		final CraftARQueryImage mQuery;
+		final long mStartMillis = SystemClock.elapsedRealtime();
+		boolean mIsOnDeviceDone = false;
+		boolean mIsCloudPending = false;
+		boolean mIsCloudDone = false;
+		boolean mIsAnswered = false;
+		boolean mHasFirstResult = false;
+		CraftARError mOnDeviceError;
+		CraftARError mCloudError;
+		
+		SingleShotSearch(CraftARQueryImage query){
+			mQuery = query;
+		}
 	}
 	
 
-	class OnDeviceResponseHandler implements CraftARSearchResponseHandler{
+	/**
+	 * A query sent to the on-device search: a finder frame, with the finder session it was sent in, or a picture (session -1).
+	 */
+	static class OnDeviceQuery {
+		final CraftARQueryImage mImage;
+		final int mFinderSession;
+		
+		OnDeviceQuery(CraftARQueryImage image, int finderSession){
+			mImage = image;
+			mFinderSession = finderSession;
+		}
+		
+		boolean isFinderFrame(){
+			return mFinderSession >= 0;
+		}
+	}
+
+	/**
+	 * A query sent to the cloud (or answered from the cloud result cache): the hash of the image (null if it could not 
+	 * be hashed), the single-shot search that sent it or the finder session whose cloud fallback sent it, and the 
+	 * picture to store if it fails offline (or null).
+	 * 
+	 * The router keeps a single query on the cloud at a time and gives every response to the query in flight, so 
+	 * overlapping single-shot, finder and replayed queries wait for each other instead of taking each other's 
+	 * responses.
+	 */
+	class CloudQuery implements SearchRequestRouter.ResponseHandler {
+		final Long mHash;
+		final long mStartMillis = SystemClock.elapsedRealtime();
+		final SingleShotSearch mSingleShot;
+		final int mFinderSession;
+		final CraftARQueryImage mPicture;
+		//Id given by the router, or -1 if the query was answered from the cache.
+		long mRequestId = -1;
+		//Copy of the finder frame sent by the cloud fallback, reused when the response arrives.
+		CraftARQueryImage mFrameCopy;
+		
+		CloudQuery(Long hash, SingleShotSearch singleShot, int finderSession, CraftARQueryImage picture){
+			mHash = hash;
+			mSingleShot = singleShot;
+			mFinderSession = finderSession;
+			mPicture = picture;
+		}
+		
+		void send(CraftARQueryImage image){
+			mRequestId = mCloudRouter.search(image, this);
+		}
+		
+		boolean isFinderFallback(){
+			return mFinderSession >= 0;
+		}
+		
+		boolean isCached(){
+			return mRequestId < 0;
+		}
+		
+		SearchPath getPath(){
+			return isFinderFallback() ? SearchPath.CLOUD_FINDER : SearchPath.CLOUD_SINGLE_SHOT;
+		}
 
 		@Override
-		public void searchResults(ArrayList<CraftARResult> results,	long searchTimeMillis, int requestCode) {
+		public void searchResults(long requestId, ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+			onCloudResults(this, results, searchTimeMillis, requestCode);
+		}
+
+		@Override
+		public void searchFailed(long requestId, CraftARError error, int requestCode) {
+			onCloudFailure(this, error, requestCode);
+		}
+	}
 	
-			//Callback with the search results
-			if(results.size()> 0){
-				//Send back the results to the responseHandler
-				mResponseHandler.searchResults(results, searchTimeMillis, requestCode);
-			}else{
-				//Perform a search with the 
-				if(mLastQuery != null){
-					Log.d(TAG,"Nothing found locally, searching on the cloud...");
-					mCloudRecognition.search(mLastQuery);
-				}
-			}			
+	/**
+	 * An offline query replayed on the cloud. Its response goes to the queue that replayed it.
+	 */
+	class ReplayedQuery implements SearchRequestRouter.ResponseHandler {
+		final OfflineCloudQueue mQueue;
+		final long mReplayId;
+		
+		ReplayedQuery(OfflineCloudQueue queue, long replayId){
+			mQueue = queue;
+			mReplayId = replayId;
 		}
 
 		@Override
-		public void searchFailed(CraftARError error, int requestCode) {
-			mResponseHandler.searchFailed(error, requestCode);				
+		public void searchResults(long requestId, ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+			mMetrics.recordSearch(SearchPath.CLOUD_SINGLE_SHOT, searchTimeMillis, results.size());
+			//The time the query waited offline says nothing about the cloud latency.
+			recordItemHits(ItemTieringEngine.Tier.CLOUD, results, -1);
+			mQueue.onReplayCompleted(mReplayId, results);
+		}
+
+		@Override
+		public void searchFailed(long requestId, CraftARError error, int requestCode) {
+			mMetrics.recordFailure(SearchPath.CLOUD_SINGLE_SHOT, error.getErrorCode());
+			mQueue.onReplayFailed(mReplayId);
+		}
+	}
+	
+	/**
+	 * Adds the answer of a path to the results of the single-shot search and streams them to the incremental handler. 
+	 * When both paths have answered, the merged results are sent to the response handler.
+	 * 
+	 * @param results the results of the path, or null if it failed.
+	 */
+	private void aggregateSingleShot(SingleShotSearch search, SearchPath path, ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode){
+		boolean hasChanged = results != null && mSingleShotResults.add(results);
+		boolean isComplete = search.mIsOnDeviceDone && search.mIsCloudDone;
+		if(hasChanged && !search.mHasFirstResult){
+			search.mHasFirstResult = true;
+			mMetrics.recordFirstResult(path, SystemClock.elapsedRealtime() - search.mStartMillis);
+		}
+		if(hasChanged || isComplete){
+			mIncrementalResponseHandler.partialResults(mSingleShotResults.getRanked(), path, isComplete);
+		}
+		if(!isComplete){
+			return;
 		}
 		
+		answerSingleShot(search);
+		ArrayList<CraftARResult> rankedResults = mSingleShotResults.getRanked();
+		CraftARError error = search.mCloudError != null ? search.mCloudError : search.mOnDeviceError;
+		if(rankedResults.size() == 0 && error != null){
+			deliverFailure(path, error, requestCode);
+		}else{
+			deliverResults(path, rankedResults, searchTimeMillis, requestCode);
+		}
+	}
+	
+	/**
+	 * Sends a finder response to the incremental handler, if any. Every finder response is complete by itself.
+	 */
+	private void streamFinderResults(SearchPath path, ArrayList<CraftARResult> results){
+		if(mIncrementalResponseHandler != null){
+			mFinderResults.clear();
+			mFinderResults.add(results);
+			mIncrementalResponseHandler.partialResults(mFinderResults.getRanked(), path, true);
+		}
+	}
+	
+	private void deliverResults(SearchPath path, ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode){
+		long start = SystemClock.elapsedRealtime();
+		mResponseHandler.searchResults(results, searchTimeMillis, requestCode);
+		mMetrics.recordDispatch(path, SystemClock.elapsedRealtime() - start);
+	}
+	
+	private void deliverFailure(SearchPath path, CraftARError error, int requestCode){
+		long start = SystemClock.elapsedRealtime();
+		mResponseHandler.searchFailed(error, requestCode);
+		mMetrics.recordDispatch(path, SystemClock.elapsedRealtime() - start);
+	}
+	
+	/**
+	 * Records the items found by a search in the tiering engine, if any.
+	 * 
+	 * @param latencyMillis time the search took, or -1 if it's not known.
+	 */
+	private void recordItemHits(ItemTieringEngine.Tier path, ArrayList<CraftARResult> results, long latencyMillis){
+		if(mTieringEngine == null || results.size() == 0){
+			return;
+		}
+		long now = System.currentTimeMillis();
+		HashSet<String> recorded = new HashSet<String>();
+		for(CraftARResult result : results){
+			String itemName = result.getItem().getItemName();
+			if(itemName != null && recorded.add(itemName)){
+				mTieringEngine.recordHit(itemName, path, latencyMillis, now);
+			}
+		}
+	}
+	
+	private SearchPath onDevicePath(OnDeviceQuery query){
+		return query != null && query.isFinderFrame() ? SearchPath.ON_DEVICE_FINDER : SearchPath.ON_DEVICE_SINGLE_SHOT;
 	}
 	
-	class CloudResponseHandler implements CraftARSearchResponseHandler{
+
+	private boolean isCurrentFinderSession(int finderSession){
+		return mIsFinding && finderSession == mFinderSession;
+	}
+
+	class OnDeviceResponseHandler implements CraftARSearchResponseHandler{
 
 		@Override
-		public void searchResults(ArrayList<CraftARResult> results,
-				long searchTimeMillis, int requestCode) {
-			mResponseHandler.searchResults(results, searchTimeMillis, requestCode);
-	
+		public void searchResults(ArrayList<CraftARResult> results,	long searchTimeMillis, int requestCode) {
+			OnDeviceQuery query = mOnDeviceQueries.poll();
+			SearchPath path = onDevicePath(query);
+			mMetrics.recordSearch(path, searchTimeMillis, results.size());
+			recordItemHits(ItemTieringEngine.Tier.ON_DEVICE, results, searchTimeMillis);
+			if(query != null && query.isFinderFrame()){
+				mFrameScheduler.onSearchCompleted(SystemClock.elapsedRealtime());
+				if(!isCurrentFinderSession(query.mFinderSession)){
+					Log.d(TAG,"Ignoring the response of a frame sent before the finder was stopped");
+					return;
+				}
+				if(mSceneChangeDetector != null){
+					if(results.size() > 0){
+						mSceneChangeDetector.onHit();
+					}else{
+						mSceneChangeDetector.onMiss();
+					}
+				}
+				
+				//Callback with the search results
+				if(results.size()> 0){
+					//Send back the results to the responseHandler
+					streamFinderResults(path, results);
+					deliverResults(path, results, searchTimeMillis, requestCode);
+				}else{
+					//Search the frame on the cloud, merged with the other misses of the coalescing window.
+					coalesceFinderMiss(query.mImage);
+				}
+				return;
+			}
+			
+			SingleShotSearch search = mSingleShot;
+			if(search == null || search.mIsAnswered){
+				return;
+			}
+			search.mIsOnDeviceDone = true;
+			mOnDeviceHistory.record(results.size() > 0);
+			mMetrics.recordQueueing(path, SystemClock.elapsedRealtime() - search.mStartMillis - searchTimeMillis);
+			
+			if(mIncrementalResponseHandler != null){
+				//Time-to-first-result is the on-device latency, the cloud results are merged when they arrive.
+				aggregateSingleShot(search, path, results, searchTimeMillis, requestCode);
+			}else if(results.size()> 0){
+				//Send back the results to the responseHandler, the cloud search (if any) is not needed anymore.
+				answerSingleShot(search);
+				deliverResults(path, results, searchTimeMillis, requestCode);
+			}else if(search.mIsCloudDone){
+				//The cloud search already missed, so there's nothing else to wait for.
+				answerSingleShot(search);
+				if(search.mCloudError != null){
+					deliverFailure(path, search.mCloudError, requestCode);
+				}else{
+					deliverResults(path, results, searchTimeMillis, requestCode);
+				}
+			}else if(!search.mIsCloudPending){
+				Log.d(TAG,"Nothing found locally, searching on the cloud...");
+				startCloudSearch(search);
+			}
 		}
 
 		@Override
 		public void searchFailed(CraftARError error, int requestCode) {
-			mResponseHandler.searchFailed(error, requestCode);				
+			OnDeviceQuery query = mOnDeviceQueries.poll();
+			SearchPath path = onDevicePath(query);
+			mMetrics.recordFailure(path, error.getErrorCode());
+			if(query != null && query.isFinderFrame()){
+				mFrameScheduler.onSearchCompleted(SystemClock.elapsedRealtime());
+				if(isCurrentFinderSession(query.mFinderSession)){
+					deliverFailure(path, error, requestCode);
+				}
+				return;
+			}
+			
+			SingleShotSearch search = mSingleShot;
+			if(search != null){
+				if(search.mIsAnswered){
+					return;
+				}
+				search.mIsOnDeviceDone = true;
+				if(mIncrementalResponseHandler != null){
+					search.mOnDeviceError = error;
+					aggregateSingleShot(search, path, null, 0, requestCode);
+					return;
+				}
+				if(search.mIsCloudPending){
+					//Wait for the answer of the cloud.
+					return;
+				}
+				answerSingleShot(search);
+			}
+			deliverFailure(path, error, requestCode);
 		}
 		
 	}
 	
+	private void onCloudResults(CloudQuery query, ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+		long now = SystemClock.elapsedRealtime();
+		SearchPath path = query.getPath();
+		if(query.isCached()){
+			recordItemHits(ItemTieringEngine.Tier.CLOUD, results, -1);
+		}else{
+			mMetrics.recordSearch(path, searchTimeMillis, results.size());
+			recordItemHits(ItemTieringEngine.Tier.CLOUD, results, now - query.mStartMillis);
+			if(query.mHash != null && results.size() > 0){
+				mCloudResultCache.put(query.mHash, new ArrayList<CraftARResult>(results), 
+						results.size() * CachingSearchController.RESULT_SIZE_ESTIMATE_BYTES, now);
+			}
+			mMetrics.recordQueueing(path, now - query.mStartMillis - searchTimeMillis);
+		}
+		
+		if(query.isFinderFallback()){
+			if(onFinderFallbackCompleted(query)){
+				if(results.size() > 0){
+					streamFinderResults(path, results);
+				}
+				deliverResults(path, results, searchTimeMillis, requestCode);
+			}
+			return;
+		}
+		
+		SingleShotSearch search = query.mSingleShot;
+		if(!isWaitingForCloud(search)){
+			Log.d(TAG,"Ignoring a cloud response that is not needed anymore");
+			return;
+		}
+		search.mIsCloudPending = false;
+		search.mIsCloudDone = true;
+		if(mIncrementalResponseHandler != null){
+			aggregateSingleShot(search, path, results, searchTimeMillis, requestCode);
+			return;
+		}
+		if(results.size() == 0 && !search.mIsOnDeviceDone){
+			//The on-device search may still find something.
+			return;
+		}
+		answerSingleShot(search);
+		deliverResults(path, results, searchTimeMillis, requestCode);
+	}
+	
+	private void onCloudFailure(CloudQuery query, CraftARError error, int requestCode) {
+		SearchPath path = query.getPath();
+		mMetrics.recordFailure(path, error.getErrorCode());
+		
+		if(query.isFinderFallback()){
+			if(onFinderFallbackCompleted(query)){
+				deliverFailure(path, error, requestCode);
+			}
+			return;
+		}
+		
+		if(query.mPicture != null && mOfflineQueue != null && !mOfflineQueue.isOnline()){
+			Log.d(TAG, "No connectivity, storing the picture to search it later");
+			mOfflineQueue.enqueue(query.mPicture);
+		}
+		SingleShotSearch search = query.mSingleShot;
+		if(!isWaitingForCloud(search)){
+			return;
+		}
+		search.mIsCloudPending = false;
+		search.mIsCloudDone = true;
+		if(mIncrementalResponseHandler != null){
+			search.mCloudError = error;
+			aggregateSingleShot(search, path, null, 0, requestCode);
+			return;
+		}
+		if(!search.mIsOnDeviceDone){
+			search.mCloudError = error;
+			return;
+		}
+		answerSingleShot(search);
+		deliverFailure(path, error, requestCode);
+	}
+	
+	/**
+	 * Returns true if the search is the current single-shot search, and it's waiting for its cloud response.
+	 */
+	private boolean isWaitingForCloud(SingleShotSearch search){
+		return search != null && search == mSingleShot && !search.mIsAnswered && search.mIsCloudPending;
+	}
+	
+	/**
+	 * Lets the cloud fallback send the frame that may be waiting for this query to finish.
+	 * 
+	 * @return true if the query was sent by the current finder session, so its response must be delivered.
+	 */
+	private boolean onFinderFallbackCompleted(CloudQuery query){
+		mCloudFallback.onCloudCompleted();
+		releaseFrameCopy(query.mFrameCopy);
+		query.mFrameCopy = null;
+		if(!isCurrentFinderSession(query.mFinderSession)){
+			Log.d(TAG,"Ignoring a cloud response of a frame sent before the finder was stopped");
+			return false;
+		}
+		sendFinderFallback();
+		return true;
+	}
+	
 }
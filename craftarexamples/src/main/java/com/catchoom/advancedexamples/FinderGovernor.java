@@ -0,0 +1,213 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * Decides how often the finder searches, and when a finder session is over.
+ * 
+ * The finder searches every frame at first. After several consecutive misses the camera is probably looking at 
+ * something that is not in the collection, so the time between searches doubles with every further miss, up to 
+ * a maximum. As soon as the frames change (the camera moved or something new came into view) the finder goes back 
+ * to full rate, so a new item is searched right away. A hit also restores the full rate.
+ * 
+ * The scene is compared using small luma grids (see {@link QueryImageSampler}): a frame is a new scene when the 
+ * mean difference with the last searched frame is above the threshold.
+ * 
+ * When the session ends is decided by a {@link SessionPolicy}.
+ */
+public class FinderGovernor {
+
+	public final static int DEFAULT_FULL_RATE_MISSES = 10;
+	public final static long DEFAULT_BASE_INTERVAL_MILLIS = 100;
+	public final static long DEFAULT_MAX_INTERVAL_MILLIS = 1000;
+	public final static int DEFAULT_SCENE_CHANGE_THRESHOLD = 12;
+	
+	/**
+	 * Decides when a finder session is over.
+	 */
+	public interface SessionPolicy {
+		/**
+		 * @param sessionMillis time since the session started.
+		 * @param idleMillis time since the session started, the last hit or the last scene change, the latest of them.
+		 */
+		boolean isSessionOver(long sessionMillis, long idleMillis);
+	}
+	
+	/**
+	 * Never ends the session, for kiosk-like screens that are always finding.
+	 */
+	public final static SessionPolicy NEVER = new SessionPolicy() {
+		@Override
+		public boolean isSessionOver(long sessionMillis, long idleMillis) {
+			return false;
+		}
+	};
+	
+	/**
+	 * Ends the session after a fixed time.
+	 */
+	public static SessionPolicy endAfter(final long sessionMillis){
+		return new SessionPolicy() {
+			@Override
+			public boolean isSessionOver(long elapsedMillis, long idleMillis) {
+				return elapsedMillis > sessionMillis;
+			}
+		};
+	}
+	
+	/**
+	 * Ends the session when nothing has changed in front of the camera for idleMillis.
+	 */
+	public static SessionPolicy endWhenIdle(final long idleMillis){
+		return new SessionPolicy() {
+			@Override
+			public boolean isSessionOver(long sessionMillis, long elapsedIdleMillis) {
+				return elapsedIdleMillis > idleMillis;
+			}
+		};
+	}
+	
+	private final int mFullRateMisses;
+	private final long mBaseIntervalMillis;
+	private final long mMaxIntervalMillis;
+	private final int mSceneChangeThreshold;
+	private SessionPolicy mSessionPolicy;
+	
+	private long mSessionStartMillis;
+	private long mLastActivityMillis;
+	private long mLastAdmittedMillis = -1;
+	private int mConsecutiveMisses = 0;
+	private byte[] mReference;
+	private boolean mHasReference = false;
+	
+	private long mAdmittedFrames = 0;
+	private long mSkippedFrames = 0;
+	private long mSceneChanges = 0;
+	
+	public FinderGovernor(SessionPolicy sessionPolicy){
+		this(sessionPolicy, DEFAULT_FULL_RATE_MISSES, DEFAULT_BASE_INTERVAL_MILLIS, DEFAULT_MAX_INTERVAL_MILLIS, DEFAULT_SCENE_CHANGE_THRESHOLD);
+	}
+	
+	public FinderGovernor(SessionPolicy sessionPolicy, int fullRateMisses, long baseIntervalMillis, long maxIntervalMillis, int sceneChangeThreshold){
+		mSessionPolicy = sessionPolicy;
+		mFullRateMisses = fullRateMisses;
+		mBaseIntervalMillis = baseIntervalMillis;
+		mMaxIntervalMillis = maxIntervalMillis;
+		mSceneChangeThreshold = sceneChangeThreshold;
+	}
+	
+	public void setSessionPolicy(SessionPolicy sessionPolicy){
+		mSessionPolicy = sessionPolicy;
+	}
+	
+	/**
+	 * Starts a new session at full rate.
+	 */
+	public void startSession(long nowMillis){
+		mSessionStartMillis = nowMillis;
+		mLastActivityMillis = nowMillis;
+		mLastAdmittedMillis = -1;
+		mConsecutiveMisses = 0;
+		mHasReference = false;
+	}
+	
+	/**
+	 * Returns true if the frame has to be searched.
+	 * 
+	 * @param samples luma grid of the frame, or null if it's not available (the scene changes are not detected then).
+	 */
+	public boolean admitFrame(byte[] samples, long nowMillis){
+		if(samples != null && mHasReference && SceneChangeDetector.meanDifference(samples, mReference) > mSceneChangeThreshold){
+			onSceneChange(nowMillis);
+		}
+		if(mLastAdmittedMillis >= 0 && nowMillis - mLastAdmittedMillis < getIntervalMillis()){
+			mSkippedFrames++;
+			return false;
+		}
+		mLastAdmittedMillis = nowMillis;
+		mAdmittedFrames++;
+		if(samples != null){
+			if(mReference == null || mReference.length != samples.length){
+				mReference = new byte[samples.length];
+			}
+			System.arraycopy(samples, 0, mReference, 0, samples.length);
+			mHasReference = true;
+		}
+		return true;
+	}
+	
+	/**
+	 * Goes back to full rate.
+	 */
+	public void onSceneChange(long nowMillis){
+		mSceneChanges++;
+		mConsecutiveMisses = 0;
+		mLastActivityMillis = nowMillis;
+		//Search the next frame, whatever the current interval is.
+		mLastAdmittedMillis = -1;
+	}
+	
+	public void onHit(long nowMillis){
+		mConsecutiveMisses = 0;
+		mLastActivityMillis = nowMillis;
+	}
+	
+	public void onMiss(long nowMillis){
+		mConsecutiveMisses++;
+	}
+	
+	public boolean isSessionOver(long nowMillis){
+		return mSessionPolicy.isSessionOver(nowMillis - mSessionStartMillis, nowMillis - mLastActivityMillis);
+	}
+	
+	/**
+	 * Minimum time between two searched frames, 0 at full rate.
+	 */
+	public long getIntervalMillis(){
+		int decay = mConsecutiveMisses - mFullRateMisses;
+		if(decay < 0){
+			return 0;
+		}
+		long interval = mBaseIntervalMillis;
+		for(int i = 0; i < decay && interval < mMaxIntervalMillis; i++){
+			interval *= 2;
+		}
+		return Math.min(interval, mMaxIntervalMillis);
+	}
+	
+	public int getConsecutiveMisses(){
+		return mConsecutiveMisses;
+	}
+	
+	public long getAdmittedFrames(){
+		return mAdmittedFrames;
+	}
+	
+	public long getSkippedFrames(){
+		return mSkippedFrames;
+	}
+	
+	public long getSceneChanges(){
+		return mSceneChanges;
+	}
+}
@@ -0,0 +1,97 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Asks a {@link FinderGovernor} every few milliseconds whether the finder session is over, and tells the listener 
+ * when it is. 
+ * 
+ * The session has to end even if no frame is searched anymore (i.e. the governor and the other SearchControllers 
+ * skip them, or the frames are throttled), so the check can't wait for the next search response. 
+ * 
+ * Start it when the finder starts, after the governor has started its session, and stop it when the finder stops. 
+ * It runs on the main thread, where the listener is called.
+ */
+public class FinderSessionTimer {
+
+	public final static long DEFAULT_CHECK_INTERVAL_MILLIS = 250;
+	
+	public interface Listener {
+		/**
+		 * The finder session is over. The timer is already stopped.
+		 */
+		void finderSessionOver();
+	}
+	
+	final FinderGovernor mGovernor;
+	final Listener mListener;
+	final long mCheckIntervalMillis;
+	final Handler mHandler = new Handler(Looper.getMainLooper());
+	boolean mIsRunning = false;
+	
+	public FinderSessionTimer(FinderGovernor governor, Listener listener){
+		this(governor, listener, DEFAULT_CHECK_INTERVAL_MILLIS);
+	}
+	
+	public FinderSessionTimer(FinderGovernor governor, Listener listener, long checkIntervalMillis){
+		mGovernor = governor;
+		mListener = listener;
+		mCheckIntervalMillis = checkIntervalMillis;
+	}
+	
+	public void start(){
+		if(mIsRunning){
+			return;
+		}
+		mIsRunning = true;
+		mHandler.postDelayed(mCheck, mCheckIntervalMillis);
+	}
+	
+	public void stop(){
+		mIsRunning = false;
+		mHandler.removeCallbacks(mCheck);
+	}
+	
+	public boolean isRunning(){
+		return mIsRunning;
+	}
+	
+	private final Runnable mCheck = new Runnable() {
+		@Override
+		public void run() {
+			if(!mIsRunning){
+				return;
+			}
+			if(mGovernor.isSessionOver(SystemClock.elapsedRealtime())){
+				mIsRunning = false;
+				mListener.finderSessionOver();
+				return;
+			}
+			mHandler.postDelayed(mCheck, mCheckIntervalMillis);
+		}
+	};
+}
@@ -0,0 +1,58 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * Decides which camera frames are forwarded to the on-device search when the finder is active.
+ * 
+ * The SearchController calls {@link #admitFrame(long, int)} for every preview frame, and
+ * {@link #onSearchCompleted(long)} every time the response of a search admitted by the scheduler arrives 
+ * (with or without results, and even if the finder has been stopped meanwhile). All the times are expressed in 
+ * milliseconds of the same monotonic clock.
+ */
+public interface FrameAdmissionScheduler {
+
+	/**
+	 * Returns true if the frame that has just arrived should be searched now. 
+	 * If the frame is admitted, the scheduler considers it submitted at nowMillis.
+	 * 
+	 * @param nowMillis arrival time of the frame.
+	 * @param pendingSearches number of searches still pending in the search module.
+	 */
+	boolean admitFrame(long nowMillis, int pendingSearches);
+
+	/**
+	 * Notifies that the response of the oldest search admitted by this scheduler has arrived.
+	 */
+	void onSearchCompleted(long nowMillis);
+
+	/**
+	 * Forgets the timing of the frames (i.e. when the finder is stopped). The searches in flight are still completed 
+	 * with {@link #onSearchCompleted(long)}, and the counters are not reset.
+	 */
+	void reset();
+
+	long getAdmittedFrames();
+
+	long getDroppedFrames();
+}
@@ -0,0 +1,83 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 8-bit luma image stored in a direct buffer of fixed capacity, so it can be reused for frames of different sizes.
+ * Pixels are stored row by row, without padding.
+ */
+public class FrameBuffer {
+
+	private final ByteBuffer mData;
+	private int mWidth = 0;
+	private int mHeight = 0;
+
+	public FrameBuffer(int capacity){
+		mData = ByteBuffer.allocateDirect(capacity);
+	}
+
+	/**
+	 * Sets the size of the image that the buffer holds.
+	 * 
+	 * @throws IllegalArgumentException if the image does not fit in the buffer.
+	 */
+	public void setSize(int width, int height){
+		if(width < 0 || height < 0 || (long) width * height > mData.capacity()){
+			throw new IllegalArgumentException("Frame of "+width+"x"+height+" does not fit in a buffer of "+mData.capacity()+" bytes");
+		}
+		mWidth = width;
+		mHeight = height;
+	}
+
+	public int getWidth(){
+		return mWidth;
+	}
+
+	public int getHeight(){
+		return mHeight;
+	}
+
+	public int getCapacity(){
+		return mData.capacity();
+	}
+	
+	/**
+	 * Luma (0-255) of the pixel at the given index (y * width + x).
+	 */
+	public int get(int index){
+		return mData.get(index) & 0xff;
+	}
+	
+	public void put(int index, int luma){
+		mData.put(index, (byte) luma);
+	}
+	
+	/**
+	 * Direct access to the pixels, i.e. to hand them to native code. Use absolute get/put methods only.
+	 */
+	public ByteBuffer getData(){
+		return mData;
+	}
+}
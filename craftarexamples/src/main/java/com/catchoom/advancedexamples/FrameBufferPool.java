@@ -0,0 +1,90 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * Fixed set of {@link FrameBuffer}s, all of them allocated when the pool is created.
+ * 
+ * When all the buffers are in use, {@link #acquire()} returns null instead of allocating a new one, so the
+ * memory used by the frame processing stays constant no matter how fast the frames arrive.
+ */
+public class FrameBufferPool {
+
+	private final FrameBuffer[] mFreeBuffers;
+	private int mFreeCount;
+	private final int mAllocatedBuffers;
+	private long mExhaustedCount = 0;
+
+	public FrameBufferPool(int buffers, int capacity){
+		if(buffers < 1 || capacity < 1){
+			throw new IllegalArgumentException("The pool needs at least one buffer of one byte");
+		}
+		mFreeBuffers = new FrameBuffer[buffers];
+		for(int i = 0; i < buffers; i++){
+			mFreeBuffers[i] = new FrameBuffer(capacity);
+		}
+		mFreeCount = buffers;
+		mAllocatedBuffers = buffers;
+	}
+
+	/**
+	 * Takes a free buffer from the pool, or returns null if all of them are in use.
+	 */
+	public synchronized FrameBuffer acquire(){
+		if(mFreeCount == 0){
+			mExhaustedCount++;
+			return null;
+		}
+		FrameBuffer buffer = mFreeBuffers[--mFreeCount];
+		mFreeBuffers[mFreeCount] = null;
+		return buffer;
+	}
+
+	/**
+	 * Gives a buffer back to the pool.
+	 */
+	public synchronized void release(FrameBuffer buffer){
+		if(mFreeCount == mFreeBuffers.length){
+			throw new IllegalStateException("Released more buffers than acquired");
+		}
+		mFreeBuffers[mFreeCount++] = buffer;
+	}
+	
+	public synchronized int getFreeCount(){
+		return mFreeCount;
+	}
+	
+	/**
+	 * Number of buffers ever allocated by this pool. It never changes after the pool is created.
+	 */
+	public int getAllocatedBuffers(){
+		return mAllocatedBuffers;
+	}
+
+	/**
+	 * Number of times a buffer was requested while all of them were in use.
+	 */
+	public synchronized long getExhaustedCount(){
+		return mExhaustedCount;
+	}
+}
@@ -0,0 +1,68 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * Chain of {@link FrameOperator}s that runs on buffers taken from a {@link FrameBufferPool}.
+ * 
+ * Each operator writes into a new buffer of the pool and the previous one is given back, so at most two buffers 
+ * are in use during the processing of a frame and no memory is allocated.
+ */
+public class FramePipeline {
+
+	private final FrameBufferPool mPool;
+	private final FrameOperator[] mOperators;
+
+	public FramePipeline(FrameBufferPool pool, FrameOperator... operators){
+		if(operators.length > 0 && pool.getAllocatedBuffers() < 2){
+			throw new IllegalArgumentException("The operators need a pool of at least two buffers");
+		}
+		mPool = pool;
+		mOperators = operators;
+	}
+
+	/**
+	 * Runs all the operators on the source frame. The source buffer is given back to the pool.
+	 * 
+	 * @return the buffer with the processed frame, that has to be released by the caller, or null if 
+	 * there were no free buffers in the pool.
+	 */
+	public FrameBuffer process(FrameBuffer source){
+		FrameBuffer current = source;
+		for(int i = 0; i < mOperators.length; i++){
+			FrameBuffer next = mPool.acquire();
+			if(next == null){
+				mPool.release(current);
+				return null;
+			}
+			mOperators[i].apply(current, next);
+			mPool.release(current);
+			current = next;
+		}
+		return current;
+	}
+	
+	public FrameBufferPool getPool(){
+		return mPool;
+	}
+}
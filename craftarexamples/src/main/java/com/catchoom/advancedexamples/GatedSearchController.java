@@ -0,0 +1,90 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.SearchController;
+
+/**
+ * SearchController that drops the preview frames while it's closed, before any work is done with them.
+ * Pictures and finder events are always forwarded.
+ */
+public class GatedSearchController implements SearchController {
+
+	SearchController mSearchController;
+	volatile boolean mIsOpen = true;
+	long mDroppedFrames = 0;
+
+	public GatedSearchController(SearchController searchController){
+		mSearchController = searchController;
+	}
+	
+	public void setOpen(boolean isOpen){
+		mIsOpen = isOpen;
+	}
+	
+	public boolean isOpen(){
+		return mIsOpen;
+	}
+	
+	/**
+	 * Number of preview frames dropped while the gate was closed.
+	 */
+	public long getDroppedFrames(){
+		return mDroppedFrames;
+	}
+	
+	public SearchController getSearchController(){
+		return mSearchController;
+	}
+
+	@Override
+	public void onPreviewFrame(CraftARQueryImage image) {
+		if(!mIsOpen){
+			mDroppedFrames++;
+			return;
+		}
+		mSearchController.onPreviewFrame(image);
+	}
+
+	@Override
+	public void onPictureTaken(CraftARQueryImage image) {
+		mSearchController.onPictureTaken(image);
+	}
+
+	@Override
+	public void onTakePictureFailed(CraftARError error) {
+		mSearchController.onTakePictureFailed(error);
+	}
+
+	@Override
+	public void onFinderActivated() {
+		mSearchController.onFinderActivated();
+	}
+
+	@Override
+	public void onFinderDeactivated() {
+		mSearchController.onFinderDeactivated();
+	}
+}
@@ -0,0 +1,122 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * SearchController that only forwards the finder frames admitted by a {@link FinderGovernor}, and tells the 
+ * governor about the hits and misses of the searches.
+ * 
+ * Set this class as the response handler of the search module used by the wrapped SearchController (or of the 
+ * SearchController that wraps this one). The responses are forwarded to the given response handler.
+ */
+public class GovernedSearchController implements SearchController, CraftARSearchResponseHandler {
+
+	private final static String TAG = "GovernedSearchController";
+	
+	//Size of the luma grid compared to detect the scene changes.
+	final static int GRID_WIDTH = 16;
+	final static int GRID_HEIGHT = 12;
+
+	SearchController mSearchController;
+	CraftARSearchResponseHandler mResponseHandler;
+	FinderGovernor mGovernor;
+	byte[] mSamples = new byte[GRID_WIDTH * GRID_HEIGHT];
+	boolean mIsFinding = false;
+
+	public GovernedSearchController(SearchController searchController, CraftARSearchResponseHandler responseHandler, FinderGovernor governor){
+		mSearchController = searchController;
+		mResponseHandler = responseHandler;
+		mGovernor = governor;
+	}
+	
+	public FinderGovernor getGovernor(){
+		return mGovernor;
+	}
+
+	public SearchController getSearchController(){
+		return mSearchController;
+	}
+	
+	@Override
+	public void onPreviewFrame(CraftARQueryImage image) {
+		if(mIsFinding){
+			boolean hasSamples = QueryImageSampler.sampleLuma(image, GRID_WIDTH, GRID_HEIGHT, mSamples);
+			if(!mGovernor.admitFrame(hasSamples ? mSamples : null, SystemClock.elapsedRealtime())){
+				return;
+			}
+		}
+		mSearchController.onPreviewFrame(image);
+	}
+
+	@Override
+	public void onPictureTaken(CraftARQueryImage image) {
+		mSearchController.onPictureTaken(image);
+	}
+
+	@Override
+	public void onTakePictureFailed(CraftARError error) {
+		mSearchController.onTakePictureFailed(error);
+	}
+
+	@Override
+	public void onFinderActivated() {
+		mIsFinding = true;
+		mGovernor.startSession(SystemClock.elapsedRealtime());
+		mSearchController.onFinderActivated();
+	}
+
+	@Override
+	public void onFinderDeactivated() {
+		mIsFinding = false;
+		mSearchController.onFinderDeactivated();
+		Log.d(TAG, "Finder frames searched:"+mGovernor.getAdmittedFrames()+", skipped:"+mGovernor.getSkippedFrames()+", scene changes:"+mGovernor.getSceneChanges());
+	}
+
+	@Override
+	public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+		if(mIsFinding){
+			if(results.size() > 0){
+				mGovernor.onHit(SystemClock.elapsedRealtime());
+			}else{
+				mGovernor.onMiss(SystemClock.elapsedRealtime());
+			}
+		}
+		mResponseHandler.searchResults(results, searchTimeMillis, requestCode);
+	}
+
+	@Override
+	public void searchFailed(CraftARError error, int requestCode) {
+		mResponseHandler.searchFailed(error, requestCode);
+	}
+}
@@ -0,0 +1,74 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * Keeps the outcome (hit or miss) of the last N searches of a recognition path.
+ */
+public class HitRateWindow {
+
+	private final boolean[] mOutcomes;
+	private int mNext = 0;
+	private int mSamples = 0;
+	private int mHits = 0;
+
+	public HitRateWindow(int size){
+		mOutcomes = new boolean[size];
+	}
+
+	public void record(boolean hit){
+		if(mSamples == mOutcomes.length){
+			//Forget the oldest outcome
+			if(mOutcomes[mNext]){
+				mHits--;
+			}
+		}else{
+			mSamples++;
+		}
+		mOutcomes[mNext] = hit;
+		if(hit){
+			mHits++;
+		}
+		mNext = (mNext + 1) % mOutcomes.length;
+	}
+
+	public int getSamples(){
+		return mSamples;
+	}
+
+	/**
+	 * Ratio of hits in the window, or the given default if nothing has been recorded yet.
+	 */
+	public double getHitRate(double defaultRate){
+		if(mSamples == 0){
+			return defaultRate;
+		}
+		return (double) mHits / mSamples;
+	}
+
+	public void clear(){
+		mNext = 0;
+		mSamples = 0;
+		mHits = 0;
+	}
+}
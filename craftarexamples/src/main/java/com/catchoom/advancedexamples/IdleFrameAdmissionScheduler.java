@@ -0,0 +1,61 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * The simplest admission policy: search a frame only when the search module is idle.
+ * Whichever frame arrives next after a search finishes is searched, regardless of how long it has to wait.
+ */
+public class IdleFrameAdmissionScheduler implements FrameAdmissionScheduler {
+
+	private long mAdmittedFrames = 0;
+	private long mDroppedFrames = 0;
+
+	@Override
+	public boolean admitFrame(long nowMillis, int pendingSearches) {
+		if(pendingSearches == 0){
+			mAdmittedFrames++;
+			return true;
+		}
+		mDroppedFrames++;
+		return false;
+	}
+
+	@Override
+	public void onSearchCompleted(long nowMillis) {
+	}
+
+	@Override
+	public void reset() {
+	}
+
+	@Override
+	public long getAdmittedFrames() {
+		return mAdmittedFrames;
+	}
+
+	@Override
+	public long getDroppedFrames() {
+		return mDroppedFrames;
+	}
+}
@@ -0,0 +1,321 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the hits of every item on the on-device and the cloud paths, and recommends which items should be in 
+ * the on-device collection so it doesn't grow over a size budget.
+ * 
+ * Having an item on-device saves, on every hit, the difference between its cloud and its on-device latency. 
+ * The hits are counted with an exponential decay, so an item that was popular months ago doesn't keep its place.
+ * The items are ranked by the time they would save per byte of collection, and the on-device collection is 
+ * filled in that order until the budget runs out.
+ * 
+ * An item is known to be on-device once it's found by the on-device search, or when it's set with 
+ * {@link #setOnDeviceCollection(Map)} (from the {@link CollectionManifest} of the bundle) or 
+ * {@link #setItemTier(String, Tier)}. Any other item is assumed to be on the cloud. The on-device items that are 
+ * never found save nothing, so they are recommended to be demoted.
+ */
+public class ItemTieringEngine {
+
+	public enum Tier { ON_DEVICE, CLOUD }
+	
+	public enum Action { PROMOTE, DEMOTE, KEEP }
+	
+	public final static long DEFAULT_HALF_LIFE_MILLIS = 14L * 24 * 60 * 60 * 1000;
+	public final static long DEFAULT_ITEM_SIZE_BYTES = 64 * 1024;
+	private final static long DEFAULT_ON_DEVICE_LATENCY_MILLIS = 150;
+	private final static long DEFAULT_CLOUD_LATENCY_MILLIS = 1000;
+	//Latency samples needed to trust the latency of an item, instead of the latency of its path.
+	private final static int MIN_LATENCY_SAMPLES = 3;
+
+	/**
+	 * Statistics of an item.
+	 */
+	public static class ItemStats {
+		public final String mName;
+		public Tier mTier = Tier.CLOUD;
+		public long mSizeBytes = -1;
+		public long mOnDeviceHits;
+		public long mCloudHits;
+		public long mOnDeviceLatencySumMillis;
+		public long mOnDeviceLatencySamples;
+		public long mCloudLatencySumMillis;
+		public long mCloudLatencySamples;
+		//Hits decayed to mLastHitMillis.
+		public double mDecayedHits;
+		public long mLastHitMillis;
+
+		public ItemStats(String name){
+			mName = name;
+		}
+
+		ItemStats copy(){
+			ItemStats copy = new ItemStats(mName);
+			copy.mTier = mTier;
+			copy.mSizeBytes = mSizeBytes;
+			copy.mOnDeviceHits = mOnDeviceHits;
+			copy.mCloudHits = mCloudHits;
+			copy.mOnDeviceLatencySumMillis = mOnDeviceLatencySumMillis;
+			copy.mOnDeviceLatencySamples = mOnDeviceLatencySamples;
+			copy.mCloudLatencySumMillis = mCloudLatencySumMillis;
+			copy.mCloudLatencySamples = mCloudLatencySamples;
+			copy.mDecayedHits = mDecayedHits;
+			copy.mLastHitMillis = mLastHitMillis;
+			return copy;
+		}
+	}
+
+	/**
+	 * Recommended tier of an item.
+	 */
+	public static class Recommendation {
+		public final ItemStats mStats;
+		public final Tier mRecommendedTier;
+		public final Action mAction;
+		public final double mHits;
+		public final long mSizeBytes;
+		public final double mOnDeviceLatencyMillis;
+		public final double mCloudLatencyMillis;
+		//Time saved by having the item on-device, for the decayed hits.
+		public final double mSavedMillis;
+
+		Recommendation(ItemStats stats, Tier recommendedTier, double hits, long sizeBytes, double onDeviceLatencyMillis, 
+				double cloudLatencyMillis, double savedMillis){
+			mStats = stats;
+			mRecommendedTier = recommendedTier;
+			if(recommendedTier == stats.mTier){
+				mAction = Action.KEEP;
+			}else{
+				mAction = recommendedTier == Tier.ON_DEVICE ? Action.PROMOTE : Action.DEMOTE;
+			}
+			mHits = hits;
+			mSizeBytes = sizeBytes;
+			mOnDeviceLatencyMillis = onDeviceLatencyMillis;
+			mCloudLatencyMillis = cloudLatencyMillis;
+			mSavedMillis = savedMillis;
+		}
+	}
+
+	private final long mHalfLifeMillis;
+	private final long mDefaultItemSizeBytes;
+	private final Map<String, ItemStats> mItems = new HashMap<String, ItemStats>();
+	
+	//Latency of every path, for the items with few samples of their own.
+	private long mOnDeviceLatencySumMillis;
+	private long mOnDeviceLatencySamples;
+	private long mCloudLatencySumMillis;
+	private long mCloudLatencySamples;
+
+	public ItemTieringEngine(){
+		this(DEFAULT_HALF_LIFE_MILLIS, DEFAULT_ITEM_SIZE_BYTES);
+	}
+
+	/**
+	 * @param halfLifeMillis time after which a hit counts half.
+	 * @param defaultItemSizeBytes on-device size of the items whose size has not been set.
+	 */
+	public ItemTieringEngine(long halfLifeMillis, long defaultItemSizeBytes){
+		mHalfLifeMillis = halfLifeMillis;
+		mDefaultItemSizeBytes = defaultItemSizeBytes;
+	}
+
+	public long getHalfLifeMillis(){
+		return mHalfLifeMillis;
+	}
+
+	private ItemStats getOrCreate(String name){
+		ItemStats stats = mItems.get(name);
+		if(stats == null){
+			stats = new ItemStats(name);
+			mItems.put(name, stats);
+		}
+		return stats;
+	}
+
+	public synchronized void setItemTier(String name, Tier tier){
+		getOrCreate(name).mTier = tier;
+	}
+
+	/**
+	 * Sets the size that the item takes in the on-device collection.
+	 */
+	public synchronized void setItemSize(String name, long sizeBytes){
+		getOrCreate(name).mSizeBytes = sizeBytes;
+	}
+
+	/**
+	 * Sets the items of the on-device collection, with the size each one takes in it (or -1 if it's not known). 
+	 * The items that are not in it are on the cloud.
+	 */
+	public synchronized void setOnDeviceCollection(Map<String, Long> itemSizes){
+		for(ItemStats stats : mItems.values()){
+			if(!itemSizes.containsKey(stats.mName)){
+				stats.mTier = Tier.CLOUD;
+			}
+		}
+		for(Map.Entry<String, Long> item : itemSizes.entrySet()){
+			ItemStats stats = getOrCreate(item.getKey());
+			stats.mTier = Tier.ON_DEVICE;
+			if(item.getValue() >= 0){
+				stats.mSizeBytes = item.getValue();
+			}
+		}
+	}
+
+	/**
+	 * Records that a search found the item.
+	 * 
+	 * @param path path of the search that found the item.
+	 * @param latencyMillis time the search took, or -1 if it's not known (for instance, if the result came from a cache).
+	 * @param nowMillis wall-clock time, used to decay the hits.
+	 */
+	public synchronized void recordHit(String name, Tier path, long latencyMillis, long nowMillis){
+		ItemStats stats = getOrCreate(name);
+		stats.mDecayedHits = decay(stats, nowMillis) + 1;
+		stats.mLastHitMillis = Math.max(stats.mLastHitMillis, nowMillis);
+		if(path == Tier.ON_DEVICE){
+			//Found on-device, so it's in the on-device collection.
+			stats.mTier = Tier.ON_DEVICE;
+			stats.mOnDeviceHits++;
+			if(latencyMillis >= 0){
+				stats.mOnDeviceLatencySumMillis += latencyMillis;
+				stats.mOnDeviceLatencySamples++;
+				mOnDeviceLatencySumMillis += latencyMillis;
+				mOnDeviceLatencySamples++;
+			}
+		}else{
+			stats.mCloudHits++;
+			if(latencyMillis >= 0){
+				stats.mCloudLatencySumMillis += latencyMillis;
+				stats.mCloudLatencySamples++;
+				mCloudLatencySumMillis += latencyMillis;
+				mCloudLatencySamples++;
+			}
+		}
+	}
+
+	/**
+	 * Adds the statistics of an item (for instance, read from a previous report), replacing the ones it had.
+	 */
+	public synchronized void restoreItem(ItemStats stats){
+		ItemStats replaced = mItems.put(stats.mName, stats.copy());
+		if(replaced != null){
+			mOnDeviceLatencySumMillis -= replaced.mOnDeviceLatencySumMillis;
+			mOnDeviceLatencySamples -= replaced.mOnDeviceLatencySamples;
+			mCloudLatencySumMillis -= replaced.mCloudLatencySumMillis;
+			mCloudLatencySamples -= replaced.mCloudLatencySamples;
+		}
+		mOnDeviceLatencySumMillis += stats.mOnDeviceLatencySumMillis;
+		mOnDeviceLatencySamples += stats.mOnDeviceLatencySamples;
+		mCloudLatencySumMillis += stats.mCloudLatencySumMillis;
+		mCloudLatencySamples += stats.mCloudLatencySamples;
+	}
+
+	private double decay(ItemStats stats, long nowMillis){
+		long elapsed = Math.max(0, nowMillis - stats.mLastHitMillis);
+		return stats.mDecayedHits * Math.pow(0.5, (double) elapsed / mHalfLifeMillis);
+	}
+
+	public synchronized int getItemCount(){
+		return mItems.size();
+	}
+
+	public synchronized List<ItemStats> getItems(){
+		List<ItemStats> items = new ArrayList<ItemStats>(mItems.size());
+		for(ItemStats stats : mItems.values()){
+			items.add(stats.copy());
+		}
+		return items;
+	}
+
+	/**
+	 * Mean latency of the given path, over all the items.
+	 */
+	public synchronized double getPathLatencyMillis(Tier path){
+		if(path == Tier.ON_DEVICE){
+			return mOnDeviceLatencySamples == 0 ? DEFAULT_ON_DEVICE_LATENCY_MILLIS : (double) mOnDeviceLatencySumMillis / mOnDeviceLatencySamples;
+		}
+		return mCloudLatencySamples == 0 ? DEFAULT_CLOUD_LATENCY_MILLIS : (double) mCloudLatencySumMillis / mCloudLatencySamples;
+	}
+
+	/**
+	 * Recommends the tier of every known item, so the on-device items take at most budgetBytes.
+	 * 
+	 * @return the recommendations, ranked by time saved per byte (the first one is the most worth having on-device).
+	 */
+	public synchronized List<Recommendation> recommend(long budgetBytes, long nowMillis){
+		double onDevicePathLatency = getPathLatencyMillis(Tier.ON_DEVICE);
+		double cloudPathLatency = getPathLatencyMillis(Tier.CLOUD);
+		
+		final Map<ItemStats, Double> savedMillis = new HashMap<ItemStats, Double>();
+		final Map<ItemStats, Double> density = new HashMap<ItemStats, Double>();
+		List<ItemStats> ranked = new ArrayList<ItemStats>(mItems.values());
+		for(ItemStats stats : ranked){
+			double hits = decay(stats, nowMillis);
+			double saved = hits * Math.max(0, itemLatency(stats, Tier.CLOUD, cloudPathLatency) - itemLatency(stats, Tier.ON_DEVICE, onDevicePathLatency));
+			savedMillis.put(stats, saved);
+			density.put(stats, saved / Math.max(1, sizeOf(stats)));
+		}
+		Collections.sort(ranked, new Comparator<ItemStats>() {
+			@Override
+			public int compare(ItemStats lhs, ItemStats rhs) {
+				int byDensity = Double.compare(density.get(rhs), density.get(lhs));
+				return byDensity != 0 ? byDensity : lhs.mName.compareTo(rhs.mName);
+			}
+		});
+		
+		List<Recommendation> recommendations = new ArrayList<Recommendation>(ranked.size());
+		long usedBytes = 0;
+		for(ItemStats stats : ranked){
+			long size = sizeOf(stats);
+			double saved = savedMillis.get(stats);
+			Tier tier = Tier.CLOUD;
+			//Items that don't fit are skipped, a smaller one further down may still fit.
+			if(saved > 0 && usedBytes + size <= budgetBytes){
+				tier = Tier.ON_DEVICE;
+				usedBytes += size;
+			}
+			recommendations.add(new Recommendation(stats.copy(), tier, decay(stats, nowMillis), size, 
+					itemLatency(stats, Tier.ON_DEVICE, onDevicePathLatency), itemLatency(stats, Tier.CLOUD, cloudPathLatency), saved));
+		}
+		return recommendations;
+	}
+
+	private long sizeOf(ItemStats stats){
+		return stats.mSizeBytes >= 0 ? stats.mSizeBytes : mDefaultItemSizeBytes;
+	}
+
+	private static double itemLatency(ItemStats stats, Tier path, double pathLatency){
+		if(path == Tier.ON_DEVICE){
+			return stats.mOnDeviceLatencySamples >= MIN_LATENCY_SAMPLES ? (double) stats.mOnDeviceLatencySumMillis / stats.mOnDeviceLatencySamples : pathLatency;
+		}
+		return stats.mCloudLatencySamples >= MIN_LATENCY_SAMPLES ? (double) stats.mCloudLatencySumMillis / stats.mCloudLatencySamples : pathLatency;
+	}
+}
@@ -0,0 +1,173 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * Frame admission policy that keeps a moving estimate of the search latency and of the camera frame interval.
+ * 
+ * When the search module is idle, the incoming frame is searched right away. When a search is still running,
+ * the frame is only queued behind it if that search is expected to finish in less than half a frame interval: 
+ * waiting for the next frame would then leave the search module idle for longer than the queued frame has to wait.
+ * Any other frame is dropped, so the frame that gets searched is always the most recent one the search module can take.
+ * 
+ * The searches in flight are only counted down in {@link #onSearchCompleted(long)}: the pending count of the search 
+ * module can drop before the response is delivered, so it only tells when the search of a new frame starts.
+ */
+public class LatencyAwareFrameScheduler implements FrameAdmissionScheduler {
+
+	//Weight of the last sample in the moving estimates.
+	private final static double SMOOTHING_FACTOR = 0.2;
+	
+	//Gaps between frames longer than this are pauses of the preview, not frame intervals.
+	private final static long MAX_FRAME_INTERVAL_MILLIS = 1000;
+	
+	//One search running plus, at most, one frame queued behind it.
+	private final static int MAX_SEARCHES_IN_FLIGHT = 2;
+
+	private double mLatencyEstimateMillis = -1;
+	private double mFrameIntervalEstimateMillis = -1;
+	private long mLastFrameMillis = -1;
+	
+	private int mSearchesInFlight = 0;
+	private long mRunningSearchStartMillis;
+	//Time the running search was known to be finished (its response still to come), or -1.
+	private long mRunningSearchDoneMillis = -1;
+	//Time the queued search started, or -1 if it starts when the running one finishes.
+	private long mQueuedSearchStartMillis = -1;
+	
+	private long mAdmittedFrames = 0;
+	private long mDroppedFrames = 0;
+
+	@Override
+	public boolean admitFrame(long nowMillis, int pendingSearches) {
+		if(mLastFrameMillis >= 0){
+			long interval = nowMillis - mLastFrameMillis;
+			if(interval > 0 && interval < MAX_FRAME_INTERVAL_MILLIS){
+				mFrameIntervalEstimateMillis = smooth(mFrameIntervalEstimateMillis, interval);
+			}
+		}
+		mLastFrameMillis = nowMillis;
+		
+		if(pendingSearches == 0){
+			//The search module is idle: the searches still in flight have finished, but their responses haven't arrived yet.
+			if(mSearchesInFlight > 0 && mRunningSearchDoneMillis < 0){
+				mRunningSearchDoneMillis = nowMillis;
+			}
+			return admit(nowMillis, true);
+		}
+		
+		if(pendingSearches == 1 && mSearchesInFlight == 1 && mRunningSearchDoneMillis < 0 && hasEstimates()){
+			double remainingMillis = mRunningSearchStartMillis + mLatencyEstimateMillis - nowMillis;
+			if(remainingMillis <= mFrameIntervalEstimateMillis / 2){
+				return admit(nowMillis, false);
+			}
+		}
+		
+		mDroppedFrames++;
+		return false;
+	}
+
+	@Override
+	public void onSearchCompleted(long nowMillis) {
+		if(mSearchesInFlight == 0){
+			return;
+		}
+		long doneMillis = mRunningSearchDoneMillis >= 0 ? mRunningSearchDoneMillis : nowMillis;
+		mLatencyEstimateMillis = smooth(mLatencyEstimateMillis, doneMillis - mRunningSearchStartMillis);
+		mSearchesInFlight--;
+		mRunningSearchDoneMillis = -1;
+		if(mSearchesInFlight > 0){
+			//The queued frame started when the module went idle, or starts being searched now.
+			mRunningSearchStartMillis = mQueuedSearchStartMillis >= 0 ? mQueuedSearchStartMillis : nowMillis;
+			mQueuedSearchStartMillis = -1;
+		}
+	}
+
+	/**
+	 * Forgets the frame interval. The searches in flight are still counted until their responses arrive.
+	 */
+	@Override
+	public void reset() {
+		mLastFrameMillis = -1;
+	}
+	
+	/**
+	 * Number of searches admitted whose response has not arrived yet.
+	 */
+	public int getSearchesInFlight() {
+		return mSearchesInFlight;
+	}
+
+	@Override
+	public long getAdmittedFrames() {
+		return mAdmittedFrames;
+	}
+
+	@Override
+	public long getDroppedFrames() {
+		return mDroppedFrames;
+	}
+	
+	/**
+	 * Current estimate of the time a search takes, or -1 if no search has finished yet.
+	 */
+	public double getLatencyEstimateMillis() {
+		return mLatencyEstimateMillis;
+	}
+
+	/**
+	 * Current estimate of the time between two camera frames, or -1 if not known yet.
+	 */
+	public double getFrameIntervalEstimateMillis() {
+		return mFrameIntervalEstimateMillis;
+	}
+
+	/**
+	 * @param isModuleIdle true if the search of the frame starts right away.
+	 */
+	private boolean admit(long nowMillis, boolean isModuleIdle){
+		if(mSearchesInFlight >= MAX_SEARCHES_IN_FLIGHT){
+			mDroppedFrames++;
+			return false;
+		}
+		if(mSearchesInFlight == 0){
+			mRunningSearchStartMillis = nowMillis;
+		}else{
+			mQueuedSearchStartMillis = isModuleIdle ? nowMillis : -1;
+		}
+		mSearchesInFlight++;
+		mAdmittedFrames++;
+		return true;
+	}
+	
+	private boolean hasEstimates(){
+		return mLatencyEstimateMillis >= 0 && mFrameIntervalEstimateMillis >= 0;
+	}
+	
+	private static double smooth(double estimate, double sample){
+		if(estimate < 0){
+			return sample;
+		}
+		return estimate + SMOOTHING_FACTOR * (sample - estimate);
+	}
+}
@@ -0,0 +1,106 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with a fixed set of buckets, so it uses the same memory no matter how many samples it records.
+ * Recording a sample doesn't allocate memory and doesn't take any lock.
+ */
+public class LatencyHistogram {
+
+	//Upper bound (inclusive) of every bucket, in milliseconds. The last bucket holds everything above the last bound.
+	private final static long[] BUCKET_BOUNDS_MILLIS = {1, 2, 5, 10, 20, 35, 50, 75, 100, 150, 200, 300, 500, 750, 1000, 1500, 2000, 3000, 5000, 10000};
+
+	private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+	private final AtomicLong mCount = new AtomicLong();
+	private final AtomicLong mSumMillis = new AtomicLong();
+	private final AtomicLong mMaxMillis = new AtomicLong();
+
+	public void record(long millis){
+		if(millis < 0){
+			millis = 0;
+		}
+		int bucket = 0;
+		while(bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]){
+			bucket++;
+		}
+		mCounts.incrementAndGet(bucket);
+		mCount.incrementAndGet();
+		mSumMillis.addAndGet(millis);
+		long max = mMaxMillis.get();
+		while(millis > max && !mMaxMillis.compareAndSet(max, millis)){
+			max = mMaxMillis.get();
+		}
+	}
+
+	public long getCount(){
+		return mCount.get();
+	}
+
+	public long getMaxMillis(){
+		return mMaxMillis.get();
+	}
+
+	public double getMeanMillis(){
+		long count = mCount.get();
+		return count == 0 ? 0 : (double) mSumMillis.get() / count;
+	}
+
+	/**
+	 * Upper bound of the bucket that contains the given percentile (0-100), or the maximum recorded 
+	 * latency if the percentile falls in the last bucket.
+	 */
+	public long getPercentileMillis(double percentile){
+		long count = mCount.get();
+		if(count == 0){
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * percentile / 100);
+		long accumulated = 0;
+		for(int bucket = 0; bucket < BUCKET_BOUNDS_MILLIS.length; bucket++){
+			accumulated += mCounts.get(bucket);
+			if(accumulated >= rank){
+				return Math.min(BUCKET_BOUNDS_MILLIS[bucket], mMaxMillis.get());
+			}
+		}
+		return mMaxMillis.get();
+	}
+
+	public void clear(){
+		for(int bucket = 0; bucket < mCounts.length(); bucket++){
+			mCounts.set(bucket, 0);
+		}
+		mCount.set(0);
+		mSumMillis.set(0);
+		mMaxMillis.set(0);
+	}
+	
+	@Override
+	public String toString(){
+		return "count="+getCount()+" mean="+Math.round(getMeanMillis())+" p50="+getPercentileMillis(50)+
+				" p90="+getPercentileMillis(90)+" p95="+getPercentileMillis(95)+" p99="+getPercentileMillis(99)+" max="+getMaxMillis();
+	}
+}
@@ -0,0 +1,76 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import android.graphics.Bitmap;
+
+import com.craftar.CraftARQueryImage;
+
+/**
+ * First stage of the frame preprocessing: extracts the luma of a query image into a {@link FrameBuffer}, 
+ * optionally keeping only one of every step x step pixels. 
+ * 
+ * The pixels are read one row at a time into a row buffer that is allocated once, and only grows if a wider 
+ * frame arrives, so no memory is allocated in steady state.
+ */
+public class LumaExtractor {
+
+	private final int mStep;
+	private int[] mRow = new int[0];
+	
+	public LumaExtractor(int step){
+		if(step < 1){
+			throw new IllegalArgumentException("The step must be at least 1: " + step);
+		}
+		mStep = step;
+	}
+
+	/**
+	 * @return false if the pixels of the image are not available, or if they do not fit in the buffer.
+	 */
+	public boolean extract(CraftARQueryImage image, FrameBuffer destination){
+		Bitmap bitmap = image.getBitmap();
+		if(bitmap == null || bitmap.isRecycled()){
+			return false;
+		}
+		int bitmapWidth = bitmap.getWidth();
+		int width = bitmapWidth / mStep;
+		int height = bitmap.getHeight() / mStep;
+		if((long) width * height > destination.getCapacity()){
+			return false;
+		}
+		if(mRow.length < bitmapWidth){
+			mRow = new int[bitmapWidth];
+		}
+		destination.setSize(width, height);
+		
+		for(int y = 0; y < height; y++){
+			bitmap.getPixels(mRow, 0, bitmapWidth, 0, y * mStep, bitmapWidth, 1);
+			int index = y * width;
+			for(int x = 0; x < width; x++){
+				destination.put(index + x, QueryImageSampler.luma(mRow[x * mStep]));
+			}
+		}
+		return true;
+	}
+}
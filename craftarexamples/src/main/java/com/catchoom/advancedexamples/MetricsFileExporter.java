@@ -0,0 +1,105 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import android.util.Log;
+
+/**
+ * Periodically writes the {@link RecognitionMetrics#dump()} report into a file, from a background thread.
+ * The file is replaced atomically, so readers never see a partial report.
+ */
+public class MetricsFileExporter {
+
+	private final static String TAG = "MetricsFileExporter";
+
+	private final RecognitionMetrics mMetrics;
+	private final File mFile;
+	private ScheduledExecutorService mExecutor;
+
+	public MetricsFileExporter(RecognitionMetrics metrics, File file){
+		mMetrics = metrics;
+		mFile = file;
+	}
+
+	public synchronized void start(long periodMillis){
+		if(mExecutor != null){
+			return;
+		}
+		mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "MetricsFileExporter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		mExecutor.scheduleAtFixedRate(mExportRunnable, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the periodic export, writing the report one last time in the background.
+	 */
+	public synchronized void stop(){
+		if(mExecutor == null){
+			return;
+		}
+		mExecutor.execute(mExportRunnable);
+		mExecutor.shutdown();
+		mExecutor = null;
+	}
+	
+	private Runnable mExportRunnable = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				export();
+			} catch (IOException e) {
+				Log.e(TAG, "Error exporting metrics to "+mFile, e);
+			}
+		}
+	};
+
+	public void export() throws IOException {
+		File tmpFile = new File(mFile.getPath() + ".tmp");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
+		try {
+			writer.write("timestamp " + System.currentTimeMillis() + "\n");
+			writer.write(mMetrics.dump());
+		} finally {
+			writer.close();
+		}
+		if(!tmpFile.renameTo(mFile)){
+			throw new IOException("Could not rename "+tmpFile+" to "+mFile);
+		}
+	}
+}
@@ -0,0 +1,308 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+
+/**
+ * Keeps the cloud queries that could not be sent because there was no connectivity, and sends them again when 
+ * connectivity returns.
+ * 
+ * The queries are compressed to JPEG and stored in an {@link OfflineQueryLog}, so they survive crashes and restarts. 
+ * When the device connects, they are replayed in batches through the {@link Replayer} (the ExtendedSearchController),
+ * and their results are delivered to the {@link Listener} when they arrive. A query is only removed from the log once 
+ * its results have been delivered; if a replay fails, the rest wait for the next change of connectivity.
+ * 
+ * The queries are compressed when they are enqueued, and the disk work is done in a background thread. The listener 
+ * is called on the main thread. Call close() when the queue is not needed anymore: the responses of the queries it 
+ * was replaying are then ignored, and the queries are replayed again by the next queue that opens the log.
+ */
+public class OfflineCloudQueue {
+
+	private final static String TAG = "OfflineCloudQueue";
+	
+	public final static int DEFAULT_BATCH_SIZE = 4;
+	public final static int DEFAULT_JPEG_QUALITY = 80;
+	
+	public interface Listener {
+		/**
+		 * A query has been stored to be searched later.
+		 */
+		void queryQueued(long id, int pendingQueries);
+		/**
+		 * A stored query has been searched. 
+		 * 
+		 * @param capturedAtMillis time the query was captured, in System.currentTimeMillis() time.
+		 */
+		void queuedQueryAnswered(long id, long capturedAtMillis, ArrayList<CraftARResult> results);
+	}
+	
+	/**
+	 * Sends a stored query to the cloud, and calls onReplayCompleted() or onReplayFailed() with the response.
+	 */
+	public interface Replayer {
+		void replay(long id, CraftARQueryImage query);
+	}
+	
+	private final Context mContext;
+	private final File mLogFile;
+	private final Listener mListener;
+	private final int mBatchSize;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+	private BroadcastReceiver mConnectivityReceiver;
+	private Replayer mReplayer;
+	
+	//Only used from the executor.
+	private OfflineQueryLog mLog;
+	
+	//Queries of the batch being replayed, and their capture time.
+	private final HashMap<Long, Long> mReplaying = new HashMap<Long, Long>();
+	private boolean mIsReplaying = false;
+	//Set when a replay fails, until the connectivity changes.
+	private boolean mIsWaitingForConnectivity = false;
+	private boolean mIsClosed = false;
+
+	public OfflineCloudQueue(Context context, File logFile, Listener listener){
+		this(context, logFile, listener, DEFAULT_BATCH_SIZE);
+	}
+	
+	public OfflineCloudQueue(Context context, File logFile, Listener listener, int batchSize){
+		mContext = context.getApplicationContext();
+		mLogFile = logFile;
+		mListener = listener;
+		mBatchSize = batchSize;
+		mConnectivityReceiver = new BroadcastReceiver() {
+			@Override
+			public void onReceive(Context context, Intent intent) {
+				mIsWaitingForConnectivity = false;
+				replayIfOnline();
+			}
+		};
+		mContext.registerReceiver(mConnectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+	}
+	
+	public void setReplayer(Replayer replayer){
+		mReplayer = replayer;
+		replayIfOnline();
+	}
+	
+	public boolean isOnline(){
+		ConnectivityManager connectivityManager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+		NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+		return networkInfo != null && networkInfo.isConnected();
+	}
+	
+	/**
+	 * Stores a query to be searched when connectivity returns. The image is compressed right away, as the SDK may 
+	 * recycle its bitmap as soon as this method returns.
+	 */
+	public void enqueue(CraftARQueryImage query){
+		if(mIsClosed){
+			return;
+		}
+		Bitmap bitmap = query.getBitmap();
+		if(bitmap == null || bitmap.isRecycled()){
+			Log.w(TAG, "The query has no image, it can't be stored");
+			return;
+		}
+		ByteArrayOutputStream jpegStream = new ByteArrayOutputStream();
+		if(!bitmap.compress(Bitmap.CompressFormat.JPEG, DEFAULT_JPEG_QUALITY, jpegStream)){
+			Log.e(TAG, "Could not compress the query");
+			return;
+		}
+		final byte[] jpeg = jpegStream.toByteArray();
+		final long capturedAtMillis = System.currentTimeMillis();
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					final long id = openLog().append(jpeg, capturedAtMillis);
+					if(id < 0){
+						Log.w(TAG, "The offline queue is full, the query is discarded");
+						return;
+					}
+					final int pendingQueries = mLog.getPendingCount();
+					mHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							mListener.queryQueued(id, pendingQueries);
+						}
+					});
+				} catch (IOException e) {
+					Log.e(TAG, "Could not store the query: "+e.getMessage());
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Sends the next batch of stored queries, if there's connectivity and no batch is being replayed.
+	 */
+	public void replayIfOnline(){
+		if(mIsClosed || mIsReplaying || mIsWaitingForConnectivity || mReplayer == null || !isOnline()){
+			return;
+		}
+		mIsReplaying = true;
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				final List<OfflineQueryLog.Entry> batch = new ArrayList<OfflineQueryLog.Entry>();
+				final List<byte[]> payloads = new ArrayList<byte[]>();
+				try {
+					OfflineQueryLog log = openLog();
+					for(OfflineQueryLog.Entry entry : log.getPending(mBatchSize)){
+						batch.add(entry);
+						payloads.add(log.readPayload(entry));
+					}
+				} catch (IOException e) {
+					Log.e(TAG, "Could not read the offline queue: "+e.getMessage());
+				}
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						sendBatch(batch, payloads);
+					}
+				});
+			}
+		});
+	}
+	
+	private void sendBatch(List<OfflineQueryLog.Entry> batch, List<byte[]> payloads){
+		if(mIsClosed || mReplayer == null || batch.isEmpty()){
+			mIsReplaying = false;
+			return;
+		}
+		Log.d(TAG, "Replaying "+batch.size()+" offline queries");
+		for(int i = 0; i < batch.size(); i++){
+			OfflineQueryLog.Entry entry = batch.get(i);
+			byte[] jpeg = payloads.get(i);
+			Bitmap bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length);
+			if(bitmap == null){
+				//Can't be searched ever, drop it.
+				acknowledge(entry.mId);
+				continue;
+			}
+			mReplaying.put(entry.mId, entry.mTimeMillis);
+			mReplayer.replay(entry.mId, new CraftARQueryImage(bitmap));
+		}
+		if(mReplaying.isEmpty()){
+			mIsReplaying = false;
+			replayIfOnline();
+		}
+	}
+	
+	public void onReplayCompleted(long id, ArrayList<CraftARResult> results){
+		Long capturedAtMillis = mReplaying.remove(id);
+		if(capturedAtMillis == null || mIsClosed){
+			return;
+		}
+		acknowledge(id);
+		mListener.queuedQueryAnswered(id, capturedAtMillis, results);
+		onReplayFinished();
+	}
+	
+	public void onReplayFailed(long id){
+		if(mReplaying.remove(id) == null || mIsClosed){
+			return;
+		}
+		Log.d(TAG, "Offline query "+id+" failed again, waiting for connectivity");
+		//Don't send more batches until the connectivity changes.
+		mIsWaitingForConnectivity = true;
+		onReplayFinished();
+	}
+	
+	private void onReplayFinished(){
+		if(mReplaying.isEmpty()){
+			mIsReplaying = false;
+			replayIfOnline();
+		}
+	}
+	
+	private void acknowledge(final long id){
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					openLog().acknowledge(id);
+				} catch (IOException e) {
+					Log.e(TAG, "Could not acknowledge query "+id+": "+e.getMessage());
+				}
+			}
+		});
+	}
+	
+	private OfflineQueryLog openLog() throws IOException {
+		if(mLog == null){
+			mLog = new OfflineQueryLog(mLogFile);
+		}
+		return mLog;
+	}
+	
+	public void close(){
+		if(mIsClosed){
+			return;
+		}
+		mIsClosed = true;
+		if(mConnectivityReceiver != null){
+			mContext.unregisterReceiver(mConnectivityReceiver);
+			mConnectivityReceiver = null;
+		}
+		mReplayer = null;
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if(mLog != null){
+						mLog.close();
+					}
+				} catch (IOException e) {
+					Log.e(TAG, "Could not close the offline queue: "+e.getMessage());
+				}
+			}
+		});
+		mExecutor.shutdown();
+	}
+}
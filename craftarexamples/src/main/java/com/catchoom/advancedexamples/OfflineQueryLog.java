@@ -0,0 +1,264 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of queries waiting to be searched, that survives crashes and restarts.
+ * 
+ * Every query is appended as a record with its id, capture time and payload (the compressed image), and every 
+ * query that no longer has to be searched is appended as an acknowledgement record. Every record ends with the 
+ * CRC32 of its content and is synced to disk before append() or acknowledge() return. When the log is opened, 
+ * records are read until the first incomplete or damaged one (i.e. the one being written when the app died), 
+ * and the log is truncated there.
+ * 
+ * When everything has been acknowledged the log is deleted; when most of it is acknowledged it's rewritten with 
+ * the pending queries only. This class is not thread-safe: use it from a single thread.
+ */
+public class OfflineQueryLog {
+
+	public final static long DEFAULT_MAX_PENDING_BYTES = 20 * 1024 * 1024;
+	
+	private final static byte RECORD_QUERY = 1;
+	private final static byte RECORD_ACK = 2;
+	//Type, payload length, id and time.
+	private final static int HEADER_BYTES = 1 + 4 + 8 + 8;
+	private final static int CRC_BYTES = 4;
+	//Records this big or bigger are damaged.
+	private final static int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+	
+	/**
+	 * A pending query.
+	 */
+	public static class Entry {
+		public final long mId;
+		public final long mTimeMillis;
+		final long mPayloadOffset;
+		final int mPayloadLength;
+		
+		Entry(long id, long timeMillis, long payloadOffset, int payloadLength){
+			mId = id;
+			mTimeMillis = timeMillis;
+			mPayloadOffset = payloadOffset;
+			mPayloadLength = payloadLength;
+		}
+	}
+	
+	private final File mFile;
+	private final long mMaxPendingBytes;
+	private RandomAccessFile mLog;
+	private final LinkedHashMap<Long, Entry> mPending = new LinkedHashMap<Long, Entry>();
+	private long mPendingBytes = 0;
+	private long mNextId = 1;
+	
+	public OfflineQueryLog(File file) throws IOException {
+		this(file, DEFAULT_MAX_PENDING_BYTES);
+	}
+	
+	/**
+	 * Opens the log, recovering the pending queries of a previous run.
+	 * 
+	 * @param maxPendingBytes queries are rejected when the payload of the pending ones reaches this size.
+	 */
+	public OfflineQueryLog(File file, long maxPendingBytes) throws IOException {
+		mFile = file;
+		mMaxPendingBytes = maxPendingBytes;
+		File parent = file.getParentFile();
+		if(parent != null && !parent.exists() && !parent.mkdirs()){
+			throw new IOException("Could not create "+parent);
+		}
+		mLog = new RandomAccessFile(file, "rw");
+		recover();
+	}
+	
+	/**
+	 * Appends a query. Returns its id, or -1 if the log is full.
+	 */
+	public long append(byte[] payload, long timeMillis) throws IOException {
+		if(mPendingBytes + payload.length > mMaxPendingBytes){
+			return -1;
+		}
+		long id = mNextId++;
+		long offset = writeRecord(RECORD_QUERY, id, timeMillis, payload);
+		mPending.put(id, new Entry(id, timeMillis, offset + HEADER_BYTES, payload.length));
+		mPendingBytes += payload.length;
+		return id;
+	}
+	
+	/**
+	 * Marks a query as done, so it's not returned by getPending() anymore, not even after a restart.
+	 */
+	public void acknowledge(long id) throws IOException {
+		Entry entry = mPending.remove(id);
+		if(entry == null){
+			return;
+		}
+		mPendingBytes -= entry.mPayloadLength;
+		writeRecord(RECORD_ACK, id, 0, new byte[0]);
+		compactIfNeeded();
+	}
+	
+	/**
+	 * Returns up to maxEntries pending queries, the oldest first.
+	 */
+	public List<Entry> getPending(int maxEntries){
+		List<Entry> entries = new ArrayList<Entry>(Math.min(maxEntries, mPending.size()));
+		for(Entry entry : mPending.values()){
+			if(entries.size() >= maxEntries){
+				break;
+			}
+			entries.add(entry);
+		}
+		return entries;
+	}
+	
+	public byte[] readPayload(Entry entry) throws IOException {
+		byte[] payload = new byte[entry.mPayloadLength];
+		mLog.seek(entry.mPayloadOffset);
+		mLog.readFully(payload);
+		return payload;
+	}
+	
+	public int getPendingCount(){
+		return mPending.size();
+	}
+	
+	public long getPendingBytes(){
+		return mPendingBytes;
+	}
+	
+	public void close() throws IOException {
+		mLog.close();
+	}
+	
+	private long writeRecord(byte type, long id, long timeMillis, byte[] payload) throws IOException {
+		long offset = mLog.length();
+		mLog.seek(offset);
+		mLog.write(encodeRecord(type, id, timeMillis, payload));
+		mLog.getFD().sync();
+		return offset;
+	}
+	
+	private static byte[] encodeRecord(byte type, long id, long timeMillis, byte[] payload){
+		ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length + CRC_BYTES);
+		record.put(type).putInt(payload.length).putLong(id).putLong(timeMillis).put(payload);
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 0, record.position());
+		record.putInt((int) crc.getValue());
+		return record.array();
+	}
+	
+	private void recover() throws IOException {
+		long length = mLog.length();
+		long offset = 0;
+		byte[] header = new byte[HEADER_BYTES];
+		CRC32 crc = new CRC32();
+		while(offset + HEADER_BYTES + CRC_BYTES <= length){
+			mLog.seek(offset);
+			mLog.readFully(header);
+			ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+			byte type = headerBuffer.get();
+			int payloadLength = headerBuffer.getInt();
+			long id = headerBuffer.getLong();
+			long timeMillis = headerBuffer.getLong();
+			if((type != RECORD_QUERY && type != RECORD_ACK) || payloadLength < 0 || payloadLength >= MAX_PAYLOAD_BYTES 
+					|| offset + HEADER_BYTES + payloadLength + CRC_BYTES > length){
+				break;
+			}
+			byte[] payload = new byte[payloadLength];
+			mLog.readFully(payload);
+			int storedCrc = mLog.readInt();
+			crc.reset();
+			crc.update(header);
+			crc.update(payload);
+			if((int) crc.getValue() != storedCrc){
+				break;
+			}
+			
+			if(type == RECORD_QUERY){
+				mPending.put(id, new Entry(id, timeMillis, offset + HEADER_BYTES, payloadLength));
+				mPendingBytes += payloadLength;
+			}else{
+				Entry entry = mPending.remove(id);
+				if(entry != null){
+					mPendingBytes -= entry.mPayloadLength;
+				}
+			}
+			mNextId = Math.max(mNextId, id + 1);
+			offset += HEADER_BYTES + payloadLength + CRC_BYTES;
+		}
+		if(offset < length){
+			//Drop the damaged tail, the next records are appended after the last good one.
+			mLog.setLength(offset);
+			mLog.getFD().sync();
+		}
+		compactIfNeeded();
+	}
+	
+	private void compactIfNeeded() throws IOException {
+		long length = mLog.length();
+		if(mPending.isEmpty()){
+			if(length > 0){
+				mLog.setLength(0);
+				mLog.getFD().sync();
+			}
+			return;
+		}
+		//Rewrite the log when less than a quarter of it is still pending.
+		if(length < 64 * 1024 || mPendingBytes * 4 > length){
+			return;
+		}
+		File tmpFile = new File(mFile.getPath() + ".tmp");
+		RandomAccessFile tmpLog = new RandomAccessFile(tmpFile, "rw");
+		LinkedHashMap<Long, Entry> compacted = new LinkedHashMap<Long, Entry>();
+		try {
+			tmpLog.setLength(0);
+			for(Entry entry : mPending.values()){
+				byte[] payload = readPayload(entry);
+				long offset = tmpLog.length();
+				tmpLog.seek(offset);
+				tmpLog.write(encodeRecord(RECORD_QUERY, entry.mId, entry.mTimeMillis, payload));
+				compacted.put(entry.mId, new Entry(entry.mId, entry.mTimeMillis, offset + HEADER_BYTES, payload.length));
+			}
+			tmpLog.getFD().sync();
+		} finally {
+			tmpLog.close();
+		}
+		mLog.close();
+		if(!tmpFile.renameTo(mFile)){
+			mLog = new RandomAccessFile(mFile, "rw");
+			throw new IOException("Could not rename "+tmpFile+" to "+mFile);
+		}
+		mLog = new RandomAccessFile(mFile, "rw");
+		mPending.clear();
+		mPending.putAll(compacted);
+	}
+}
@@ -0,0 +1,57 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * 64-bit difference hash (dHash) of an image: each bit tells if the luma increases from a cell to the
+ * next one in a 9x8 grid. Similar images have hashes that differ in few bits.
+ */
+public class PerceptualHash {
+
+	public final static int GRID_WIDTH = 9;
+	public final static int GRID_HEIGHT = 8;
+	
+	/**
+	 * Computes the hash of a 9x8 grid of luma samples, stored row by row.
+	 */
+	public static long hash(byte[] luma){
+		long hash = 0;
+		for(int y = 0; y < GRID_HEIGHT; y++){
+			int row = y * GRID_WIDTH;
+			for(int x = 0; x < GRID_WIDTH - 1; x++){
+				hash <<= 1;
+				if((luma[row + x + 1] & 0xff) > (luma[row + x] & 0xff)){
+					hash |= 1;
+				}
+			}
+		}
+		return hash;
+	}
+	
+	/**
+	 * Number of different bits between two hashes.
+	 */
+	public static int distance(long hash1, long hash2){
+		return Long.bitCount(hash1 ^ hash2);
+	}
+}
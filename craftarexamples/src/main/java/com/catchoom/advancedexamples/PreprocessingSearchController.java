@@ -0,0 +1,176 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import android.graphics.Bitmap;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.SearchController;
+
+/**
+ * SearchController that preprocesses every preview frame before it is submitted to another SearchController.
+ * 
+ * The luma of the frame is extracted into a pooled buffer, transformed by a {@link FramePipeline} (crop, 
+ * downscale, contrast normalization...) and handed to a {@link FrameAnalyzer}, which decides if the frame is 
+ * searched. The processed frame is the one forwarded to the wrapped SearchController, as a grayscale query image.
+ * 
+ * The query images are taken in turns from a fixed set, and their bitmaps are overwritten by the next frames.
+ * This works with the search modules of the SDK, which search one finder frame at a time and don't keep it 
+ * after the search. Once the pool, the row buffer of the extractor and the query images are allocated, no 
+ * memory is allocated per frame.
+ * 
+ * Example: 
+ * 
+ * 		FrameBufferPool pool = new FrameBufferPool(3, 320 * 240);
+ * 		FramePipeline pipeline = new FramePipeline(pool, new CenterCropOperator(0.5f), new BoxDownscaleOperator(2), new ContrastNormalizationOperator());
+ * 		mCraftARSDK.setSearchController(new PreprocessingSearchController(mOnDeviceIR.getSearchController(), new LumaExtractor(2), pipeline, new SharpnessFrameAnalyzer()));
+ */
+public class PreprocessingSearchController implements SearchController {
+
+	//Query images used in turns. The one being searched is never overwritten by the next frame.
+	final static int QUERY_IMAGES = 2;
+
+	SearchController mSearchController;
+	LumaExtractor mExtractor;
+	FramePipeline mPipeline;
+	FrameAnalyzer mAnalyzer;
+	CraftARQueryImage[] mQueryImages = new CraftARQueryImage[QUERY_IMAGES];
+	int mNextQueryImage = 0;
+	int[] mPixels = new int[0];
+	
+	long mProcessedFrames = 0;
+	long mSkippedFrames = 0;
+	long mUnprocessedFrames = 0;
+
+	public PreprocessingSearchController(SearchController searchController, LumaExtractor extractor, FramePipeline pipeline, FrameAnalyzer analyzer){
+		mSearchController = searchController;
+		mExtractor = extractor;
+		mPipeline = pipeline;
+		mAnalyzer = analyzer;
+	}
+
+	public SearchController getSearchController(){
+		return mSearchController;
+	}
+	
+	@Override
+	public void onPreviewFrame(CraftARQueryImage image) {
+		FrameBufferPool pool = mPipeline.getPool();
+		FrameBuffer source = pool.acquire();
+		if(source == null){
+			//No buffers available, search the frame without analyzing it.
+			mUnprocessedFrames++;
+			mSearchController.onPreviewFrame(image);
+			return;
+		}
+		if(!mExtractor.extract(image, source)){
+			pool.release(source);
+			mUnprocessedFrames++;
+			mSearchController.onPreviewFrame(image);
+			return;
+		}
+		
+		FrameBuffer frame = mPipeline.process(source);
+		if(frame == null){
+			mUnprocessedFrames++;
+			mSearchController.onPreviewFrame(image);
+			return;
+		}
+		mProcessedFrames++;
+		if(!mAnalyzer.analyzeFrame(frame)){
+			pool.release(frame);
+			mSkippedFrames++;
+			return;
+		}
+		CraftARQueryImage query = toQueryImage(frame);
+		pool.release(frame);
+		mSearchController.onPreviewFrame(query);
+	}
+	
+	/**
+	 * Writes the frame into the next query image, as grayscale pixels.
+	 */
+	private CraftARQueryImage toQueryImage(FrameBuffer frame){
+		int width = frame.getWidth();
+		int height = frame.getHeight();
+		int pixels = width * height;
+		if(mPixels.length < pixels){
+			mPixels = new int[pixels];
+		}
+		for(int i = 0; i < pixels; i++){
+			int luma = frame.get(i);
+			mPixels[i] = 0xff000000 | luma << 16 | luma << 8 | luma;
+		}
+		
+		CraftARQueryImage query = mQueryImages[mNextQueryImage];
+		Bitmap bitmap = query == null ? null : query.getBitmap();
+		if(bitmap == null || bitmap.isRecycled() || bitmap.getWidth() != width || bitmap.getHeight() != height){
+			//First frame of this size, or the SDK recycled the bitmap.
+			bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+			query = new CraftARQueryImage(bitmap);
+			mQueryImages[mNextQueryImage] = query;
+		}
+		bitmap.setPixels(mPixels, 0, width, 0, 0, width, height);
+		mNextQueryImage = (mNextQueryImage + 1) % mQueryImages.length;
+		return query;
+	}
+
+	@Override
+	public void onPictureTaken(CraftARQueryImage image) {
+		mSearchController.onPictureTaken(image);
+	}
+
+	@Override
+	public void onTakePictureFailed(CraftARError error) {
+		mSearchController.onTakePictureFailed(error);
+	}
+
+	@Override
+	public void onFinderActivated() {
+		mSearchController.onFinderActivated();
+	}
+
+	@Override
+	public void onFinderDeactivated() {
+		mSearchController.onFinderDeactivated();
+	}
+	
+	public long getProcessedFrames(){
+		return mProcessedFrames;
+	}
+	
+	/**
+	 * Number of frames that the analyzer decided not to search.
+	 */
+	public long getSkippedFrames(){
+		return mSkippedFrames;
+	}
+	
+	/**
+	 * Number of frames that were searched without preprocessing (pixels not available, or pool exhausted).
+	 */
+	public long getUnprocessedFrames(){
+		return mUnprocessedFrames;
+	}
+}
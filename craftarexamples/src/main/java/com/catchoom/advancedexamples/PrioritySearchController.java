@@ -0,0 +1,269 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.catchoom.advancedexamples.PrioritySearchQueue.Priority;
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * SearchController that forwards the search requests to another SearchController one at a time, so a picture taken 
+ * while finding only waits for the frame being searched, instead of all the frames already sent to the search module.
+ * 
+ * The pictures wait in a {@link PrioritySearchQueue} and go before any finder frame. Finder frames are never kept: 
+ * a frame that arrives while a request is being searched (or a picture is waiting) is dropped right away, as the 
+ * camera needs its buffer back and a newer frame will come.
+ * 
+ * Set this class as the response handler of the search module used by the wrapped SearchController: every 
+ * response releases the next request. If the wrapped SearchController doesn't search a request (i.e. it skips some 
+ * frames), no response comes: the pending requests of the module are compared before and after every request is 
+ * forwarded, and a request that didn't reach the module releases the next one right away. A request that was 
+ * searched but has no response after the in-flight timeout is given up, and the next one is sent. The module answers 
+ * in order, so the next responses belong to the requests given up: they are dropped, and never release (or answer) 
+ * the request in flight.
+ * 
+ * Example: 
+ * 
+ * 		PrioritySearchController priorityController = new PrioritySearchController(mOnDeviceIR, mOnDeviceIR.getSearchController(), this);
+ * 		mOnDeviceIR.setCraftARSearchResponseHandler(priorityController);
+ * 		mCraftARSDK.setSearchController(priorityController);
+ */
+public class PrioritySearchController implements SearchController, CraftARSearchResponseHandler {
+
+	private final static String TAG = "PrioritySearchController";
+	
+	public final static long DEFAULT_IN_FLIGHT_TIMEOUT_MILLIS = 3000;
+
+	CraftAROnDeviceIR mOnDeviceIR;
+	SearchController mSearchController;
+	CraftARSearchResponseHandler mResponseHandler;
+	//Pictures wait here. A finder frame only goes through it when it can be searched right away.
+	PrioritySearchQueue<CraftARQueryImage> mQueue = new PrioritySearchQueue<CraftARQueryImage>(1, Long.MAX_VALUE);
+	final long mInFlightTimeoutMillis;
+	final Handler mHandler = new Handler(Looper.getMainLooper());
+	
+	//Class of the request being searched, null if none, and the number of requests sent before it.
+	Priority mInFlight;
+	long mInFlightGeneration = 0;
+	long mInFlightEnqueuedMillis;
+	boolean mIsFinding = false;
+	//Requests given up whose response has not arrived yet.
+	int mGivenUpRequests = 0;
+	long mTimedOutRequests = 0;
+	long mSkippedRequests = 0;
+	long mStaleResponses = 0;
+	LatencyHistogram mTapToResult = new LatencyHistogram();
+	
+	public PrioritySearchController(CraftAROnDeviceIR onDeviceIR, SearchController searchController, CraftARSearchResponseHandler responseHandler){
+		this(onDeviceIR, searchController, responseHandler, DEFAULT_IN_FLIGHT_TIMEOUT_MILLIS);
+	}
+	
+	/**
+	 * @param onDeviceIR the search module used by the wrapped SearchController.
+	 * @param inFlightTimeoutMillis time after which a request without response is given up.
+	 */
+	public PrioritySearchController(CraftAROnDeviceIR onDeviceIR, SearchController searchController, CraftARSearchResponseHandler responseHandler, 
+			long inFlightTimeoutMillis){
+		mOnDeviceIR = onDeviceIR;
+		mSearchController = searchController;
+		mResponseHandler = responseHandler;
+		mInFlightTimeoutMillis = inFlightTimeoutMillis;
+	}
+	
+	/**
+	 * Sets where the responses are forwarded, if it couldn't be given to the constructor (i.e. the SearchController 
+	 * that wraps this one).
+	 */
+	public void setResponseHandler(CraftARSearchResponseHandler responseHandler){
+		mResponseHandler = responseHandler;
+	}
+	
+	/**
+	 * Queue depth, wait time and dropped requests of every priority class.
+	 */
+	public PrioritySearchQueue<CraftARQueryImage> getQueue(){
+		return mQueue;
+	}
+	
+	/**
+	 * Time from a picture being taken to its response, including the time it waited in the queue.
+	 */
+	public LatencyHistogram getTapToResultLatency(){
+		return mTapToResult;
+	}
+	
+	/**
+	 * Number of requests given up because no response came within the in-flight timeout.
+	 */
+	public long getTimedOutRequests(){
+		return mTimedOutRequests;
+	}
+	
+	/**
+	 * Number of requests that the wrapped SearchController didn't send to the search module.
+	 */
+	public long getSkippedRequests(){
+		return mSkippedRequests;
+	}
+	
+	/**
+	 * Number of responses dropped because their request had been given up.
+	 */
+	public long getStaleResponses(){
+		return mStaleResponses;
+	}
+
+	@Override
+	public void onPictureTaken(CraftARQueryImage image) {
+		mQueue.offer(image, Priority.SINGLE_SHOT, SystemClock.elapsedRealtime());
+		searchNext();
+	}
+
+	@Override
+	public void onTakePictureFailed(CraftARError error) {
+		mSearchController.onTakePictureFailed(error);
+	}
+
+	@Override
+	public void onPreviewFrame(CraftARQueryImage image) {
+		if(!mIsFinding){
+			mSearchController.onPreviewFrame(image);
+			return;
+		}
+		if(mInFlight != null || mQueue.getDepth(Priority.SINGLE_SHOT) > 0){
+			mQueue.drop(Priority.FINDER);
+			return;
+		}
+		mQueue.offer(image, Priority.FINDER, SystemClock.elapsedRealtime());
+		searchNext();
+	}
+
+	@Override
+	public void onFinderActivated() {
+		mIsFinding = true;
+		mSearchController.onFinderActivated();
+	}
+
+	@Override
+	public void onFinderDeactivated() {
+		mIsFinding = false;
+		mQueue.clear(Priority.FINDER);
+		mSearchController.onFinderDeactivated();
+		Log.d(TAG, "Finder frames dropped:"+mQueue.getDropped(Priority.FINDER)+", timed out requests:"+mTimedOutRequests+
+				", skipped requests:"+mSkippedRequests+", stale responses:"+mStaleResponses);
+		Log.d(TAG, "Single shot wait:"+mQueue.getWaitLatency(Priority.SINGLE_SHOT)+", tap to result:"+mTapToResult);
+	}
+	
+	private void searchNext(){
+		if(mInFlight != null){
+			return;
+		}
+		CraftARQueryImage image = mQueue.poll(SystemClock.elapsedRealtime());
+		if(image == null){
+			return;
+		}
+		long generation = ++mInFlightGeneration;
+		mInFlight = mQueue.getPolledPriority();
+		mInFlightEnqueuedMillis = mQueue.getPolledEnqueuedMillis();
+		int pendingBefore = mOnDeviceIR.getPendingSearchRequestsCount();
+		if(mInFlight == Priority.SINGLE_SHOT){
+			mSearchController.onPictureTaken(image);
+		}else{
+			mSearchController.onPreviewFrame(image);
+		}
+		if(generation != mInFlightGeneration || mInFlight == null){
+			//Already answered.
+			return;
+		}
+		if(mOnDeviceIR.getPendingSearchRequestsCount() <= pendingBefore){
+			//Not searched, no response will come.
+			mSkippedRequests++;
+			mInFlight = null;
+			searchNext();
+			return;
+		}
+		mHandler.postDelayed(mInFlightTimeout, mInFlightTimeoutMillis);
+	}
+	
+	private final Runnable mInFlightTimeout = new Runnable() {
+		@Override
+		public void run() {
+			Log.w(TAG, "No response for the " + mInFlight + " request, searching the next one");
+			mTimedOutRequests++;
+			mGivenUpRequests++;
+			mInFlight = null;
+			searchNext();
+		}
+	};
+	
+	/**
+	 * Releases the request in flight, unless the response belongs to a request given up.
+	 * 
+	 * @return true if the response has to be forwarded.
+	 */
+	private boolean onSearchCompleted(){
+		if(mGivenUpRequests > 0){
+			mGivenUpRequests--;
+			mStaleResponses++;
+			Log.d(TAG, "Dropping the response of a request given up");
+			return false;
+		}
+		if(mInFlight == null){
+			//Not sent by this class (i.e. a frame forwarded while the finder is stopped).
+			return true;
+		}
+		mHandler.removeCallbacks(mInFlightTimeout);
+		if(mInFlight == Priority.SINGLE_SHOT){
+			mTapToResult.record(SystemClock.elapsedRealtime() - mInFlightEnqueuedMillis);
+		}
+		mInFlight = null;
+		//Keep the search module busy while the response is handled.
+		searchNext();
+		return true;
+	}
+
+	@Override
+	public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+		if(onSearchCompleted()){
+			mResponseHandler.searchResults(results, searchTimeMillis, requestCode);
+		}
+	}
+
+	@Override
+	public void searchFailed(CraftARError error, int requestCode) {
+		if(onSearchCompleted()){
+			mResponseHandler.searchFailed(error, requestCode);
+		}
+	}
+}
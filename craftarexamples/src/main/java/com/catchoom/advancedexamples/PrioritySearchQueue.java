@@ -0,0 +1,160 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Bounded queue of search requests with two priority classes. 
+ * 
+ * Single shots (the user tapped to search) always go before finder frames, and are never dropped. Finder frames 
+ * are only worth searching while they are fresh, so when the finder class is full the oldest frame is dropped, 
+ * and frames that waited longer than maxFinderAgeMillis are dropped instead of being returned.
+ */
+public class PrioritySearchQueue<T> {
+
+	public enum Priority {
+		SINGLE_SHOT,
+		FINDER
+	}
+	
+	static class Request<T> {
+		final T mItem;
+		final long mEnqueuedMillis;
+		
+		Request(T item, long enqueuedMillis){
+			mItem = item;
+			mEnqueuedMillis = enqueuedMillis;
+		}
+	}
+	
+	static class PriorityClass<T> {
+		final LinkedList<Request<T>> mRequests = new LinkedList<Request<T>>();
+		final LatencyHistogram mWait = new LatencyHistogram();
+		long mDropped = 0;
+		int mMaxDepth = 0;
+	}
+	
+	private final int mFinderCapacity;
+	private final long mMaxFinderAgeMillis;
+	private final List<PriorityClass<T>> mClasses = new ArrayList<PriorityClass<T>>();
+	
+	private Priority mPolledPriority;
+	private long mPolledEnqueuedMillis;
+	
+	public PrioritySearchQueue(int finderCapacity, long maxFinderAgeMillis){
+		mFinderCapacity = finderCapacity;
+		mMaxFinderAgeMillis = maxFinderAgeMillis;
+		for(int i = 0; i < Priority.values().length; i++){
+			mClasses.add(new PriorityClass<T>());
+		}
+	}
+	
+	public void offer(T item, Priority priority, long nowMillis){
+		PriorityClass<T> priorityClass = mClasses.get(priority.ordinal());
+		if(priority == Priority.FINDER){
+			while(priorityClass.mRequests.size() >= mFinderCapacity && !priorityClass.mRequests.isEmpty()){
+				priorityClass.mRequests.poll();
+				priorityClass.mDropped++;
+			}
+			if(mFinderCapacity <= 0){
+				priorityClass.mDropped++;
+				return;
+			}
+		}
+		priorityClass.mRequests.add(new Request<T>(item, nowMillis));
+		priorityClass.mMaxDepth = Math.max(priorityClass.mMaxDepth, priorityClass.mRequests.size());
+	}
+	
+	/**
+	 * Counts a request of the given class that was dropped without being offered (i.e. because nothing could wait).
+	 */
+	public void drop(Priority priority){
+		mClasses.get(priority.ordinal()).mDropped++;
+	}
+	
+	/**
+	 * Returns the next request to search, the single shots first, or null if there's nothing to search. 
+	 */
+	public T poll(long nowMillis){
+		for(Priority priority : Priority.values()){
+			PriorityClass<T> priorityClass = mClasses.get(priority.ordinal());
+			Request<T> request;
+			while((request = priorityClass.mRequests.poll()) != null){
+				long waitMillis = nowMillis - request.mEnqueuedMillis;
+				if(priority == Priority.FINDER && waitMillis > mMaxFinderAgeMillis){
+					//Too old, the camera is not pointing there anymore.
+					priorityClass.mDropped++;
+					continue;
+				}
+				priorityClass.mWait.record(waitMillis);
+				mPolledPriority = priority;
+				mPolledEnqueuedMillis = request.mEnqueuedMillis;
+				return request.mItem;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Priority of the last request returned by poll().
+	 */
+	public Priority getPolledPriority(){
+		return mPolledPriority;
+	}
+	
+	/**
+	 * Time when the last request returned by poll() was offered.
+	 */
+	public long getPolledEnqueuedMillis(){
+		return mPolledEnqueuedMillis;
+	}
+	
+	/**
+	 * Removes the requests of the given class without counting them as dropped.
+	 */
+	public void clear(Priority priority){
+		mClasses.get(priority.ordinal()).mRequests.clear();
+	}
+	
+	public int getDepth(Priority priority){
+		return mClasses.get(priority.ordinal()).mRequests.size();
+	}
+	
+	public int getMaxDepth(Priority priority){
+		return mClasses.get(priority.ordinal()).mMaxDepth;
+	}
+	
+	public long getDropped(Priority priority){
+		return mClasses.get(priority.ordinal()).mDropped;
+	}
+	
+	/**
+	 * Time the requests of the given class waited in the queue before being searched.
+	 */
+	public LatencyHistogram getWaitLatency(Priority priority){
+		return mClasses.get(priority.ordinal()).mWait;
+	}
+}
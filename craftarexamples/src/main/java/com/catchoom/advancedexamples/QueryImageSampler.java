@@ -0,0 +1,92 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import android.graphics.Bitmap;
+
+import com.craftar.CraftARQueryImage;
+
+/**
+ * Reads a small grid of luma samples from a query image, for the app-side analysis of the frames
+ * (hashing, tracking, etc). The image is not modified.
+ * 
+ * Every row of the grid is read from the bitmap with a single getPixels() call, into a buffer of the calling thread 
+ * that is only allocated when a wider region is sampled.
+ */
+public class QueryImageSampler {
+
+	private final static ThreadLocal<int[]> ROW_BUFFER = new ThreadLocal<int[]>();
+
+	/**
+	 * Samples the image in a regular grid of gridWidth x gridHeight cells, writing the luma (0-255) of 
+	 * the center of each cell in out, row by row. 
+	 * 
+	 * @return false if the pixels of the image are not available.
+	 */
+	public static boolean sampleLuma(CraftARQueryImage image, int gridWidth, int gridHeight, byte[] out){
+		Bitmap bitmap = image.getBitmap();
+		if(bitmap == null || bitmap.isRecycled()){
+			return false;
+		}
+		return sampleLuma(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), gridWidth, gridHeight, out);
+	}
+	
+	/**
+	 * Same as {@link #sampleLuma(CraftARQueryImage, int, int, byte[])}, but only sampling the given region of the bitmap.
+	 */
+	public static boolean sampleLuma(Bitmap bitmap, int left, int top, int width, int height, int gridWidth, int gridHeight, byte[] out){
+		if(width < gridWidth || height < gridHeight){
+			return false;
+		}
+		int[] row = getRowBuffer(width);
+		int i = 0;
+		for(int gy = 0; gy < gridHeight; gy++){
+			int y = top + (2 * gy + 1) * height / (2 * gridHeight);
+			bitmap.getPixels(row, 0, width, left, y, width, 1);
+			for(int gx = 0; gx < gridWidth; gx++){
+				int x = (2 * gx + 1) * width / (2 * gridWidth);
+				out[i++] = (byte) luma(row[x]);
+			}
+		}
+		return true;
+	}
+	
+	private static int[] getRowBuffer(int width){
+		int[] row = ROW_BUFFER.get();
+		if(row == null || row.length < width){
+			row = new int[width];
+			ROW_BUFFER.set(row);
+		}
+		return row;
+	}
+	
+	/**
+	 * Luma of an ARGB color, using the BT.601 weights in fixed point.
+	 */
+	public static int luma(int color){
+		int r = (color >> 16) & 0xff;
+		int g = (color >> 8) & 0xff;
+		int b = color & 0xff;
+		return (77 * r + 150 * g + 29 * b) >> 8;
+	}
+}
@@ -0,0 +1,213 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recognition metrics of the whole app: latency histograms and hit, miss and failure counters for every {@link SearchPath}.
+ * 
+ * Three latencies are measured for each path:
+ * 		search: the searchTimeMillis reported by the search module.
+ * 		queueing: the time from the submission of the query until its response arrives, minus the search time.
+ * 		dispatch: the time the response handler takes to process the results.
+ * 
+ * The time from the creation of a recognition screen until its camera preview starts is measured too, separately for
+ * the screens that got a warm SearchController from the {@link CaptureSessionManager} and the ones that didn't.
+ * 
+ * Recording doesn't allocate memory (except the first failure of every error code) and doesn't take any lock.
+ */
+public class RecognitionMetrics {
+
+	private static RecognitionMetrics sInstance;
+	
+	private final PathMetrics[] mPaths = new PathMetrics[SearchPath.values().length];
+	private LatencyHistogram mColdPreviewStart = new LatencyHistogram();
+	private LatencyHistogram mWarmPreviewStart = new LatencyHistogram();
+	
+	static class PathMetrics {
+		final LatencyHistogram mSearch = new LatencyHistogram();
+		final LatencyHistogram mQueueing = new LatencyHistogram();
+		final LatencyHistogram mDispatch = new LatencyHistogram();
+		final LatencyHistogram mFirstResult = new LatencyHistogram();
+		final AtomicLong mHits = new AtomicLong();
+		final AtomicLong mMisses = new AtomicLong();
+		final ConcurrentHashMap<String, AtomicLong> mFailures = new ConcurrentHashMap<String, AtomicLong>();
+	}
+
+	public static synchronized RecognitionMetrics Instance(){
+		if(sInstance == null){
+			sInstance = new RecognitionMetrics();
+		}
+		return sInstance;
+	}
+	
+	public RecognitionMetrics(){
+		for(int i = 0; i < mPaths.length; i++){
+			mPaths[i] = new PathMetrics();
+		}
+	}
+	
+	/**
+	 * Records a search response with the given number of results.
+	 */
+	public void recordSearch(SearchPath path, long searchTimeMillis, int results){
+		PathMetrics metrics = mPaths[path.ordinal()];
+		metrics.mSearch.record(searchTimeMillis);
+		if(results > 0){
+			metrics.mHits.incrementAndGet();
+		}else{
+			metrics.mMisses.incrementAndGet();
+		}
+	}
+	
+	public void recordQueueing(SearchPath path, long queueingMillis){
+		mPaths[path.ordinal()].mQueueing.record(queueingMillis);
+	}
+
+	public void recordDispatch(SearchPath path, long dispatchMillis){
+		mPaths[path.ordinal()].mDispatch.record(dispatchMillis);
+	}
+	
+	/**
+	 * Records the time from a picture being taken to the first results shown for it, when the results of the paths 
+	 * are aggregated. The path is the one that answered first.
+	 */
+	public void recordFirstResult(SearchPath path, long millis){
+		mPaths[path.ordinal()].mFirstResult.record(millis);
+	}
+	
+	/**
+	 * Records a failed search. The error code is the one returned by CraftARError.getErrorCode().
+	 */
+	public void recordFailure(SearchPath path, Object errorCode){
+		ConcurrentHashMap<String, AtomicLong> failures = mPaths[path.ordinal()].mFailures;
+		String code = String.valueOf(errorCode);
+		AtomicLong counter = failures.get(code);
+		if(counter == null){
+			failures.putIfAbsent(code, new AtomicLong());
+			counter = failures.get(code);
+		}
+		counter.incrementAndGet();
+	}
+	
+	/**
+	 * Records the time from onPostCreate() to the first onPreviewStarted() of a recognition screen.
+	 */
+	public void recordPreviewStart(boolean isWarm, long millis){
+		(isWarm ? mWarmPreviewStart : mColdPreviewStart).record(millis);
+	}
+	
+	public LatencyHistogram getPreviewStartLatency(boolean isWarm){
+		return isWarm ? mWarmPreviewStart : mColdPreviewStart;
+	}
+	
+	public LatencyHistogram getSearchLatency(SearchPath path){
+		return mPaths[path.ordinal()].mSearch;
+	}
+	
+	public LatencyHistogram getQueueingLatency(SearchPath path){
+		return mPaths[path.ordinal()].mQueueing;
+	}
+	
+	public LatencyHistogram getDispatchLatency(SearchPath path){
+		return mPaths[path.ordinal()].mDispatch;
+	}
+	
+	public LatencyHistogram getFirstResultLatency(SearchPath path){
+		return mPaths[path.ordinal()].mFirstResult;
+	}
+	
+	public long getHits(SearchPath path){
+		return mPaths[path.ordinal()].mHits.get();
+	}
+	
+	public long getMisses(SearchPath path){
+		return mPaths[path.ordinal()].mMisses.get();
+	}
+	
+	public long getFailures(SearchPath path){
+		long failures = 0;
+		for(AtomicLong counter : mPaths[path.ordinal()].mFailures.values()){
+			failures += counter.get();
+		}
+		return failures;
+	}
+	
+	/**
+	 * Returns a text report of all the metrics, one line per path and metric, and one more line per error code of 
+	 * the failures (PATH.failures.ERROR_CODE count). The percentiles are the upper bounds of the buckets, capped at 
+	 * the maximum. For example, after a finder session with the fake search modules of the benchmarks:
+	 * 
+	 * 		capture.cold.previewStart count=2 mean=659 p50=705 p90=705 p95=705 p99=705 max=705
+	 * 		capture.warm.previewStart count=1 mean=188 p50=188 p90=188 p95=188 p99=188 max=188
+	 * 		ON_DEVICE_FINDER.search count=84 mean=87 p50=75 p90=230 p95=230 p99=230 max=230
+	 * 		ON_DEVICE_FINDER.queueing count=0 mean=0 p50=0 p90=0 p95=0 p99=0 max=0
+	 * 		ON_DEVICE_FINDER.dispatch count=17 mean=0 p50=0 p90=0 p95=0 p99=0 max=0
+	 * 		ON_DEVICE_FINDER.hits 17
+	 * 		ON_DEVICE_FINDER.misses 67
+	 * 		CLOUD_FINDER.search count=8 mean=369 p50=482 p90=482 p95=482 p99=482 max=482
+	 * 		CLOUD_FINDER.queueing count=8 mean=180 p50=150 p90=366 p95=366 p99=366 max=366
+	 * 		CLOUD_FINDER.dispatch count=8 mean=0 p50=0 p90=0 p95=0 p99=0 max=0
+	 * 		CLOUD_FINDER.hits 6
+	 * 		CLOUD_FINDER.misses 2
+	 */
+	public String dump(){
+		StringBuilder sb = new StringBuilder();
+		if(mColdPreviewStart.getCount() > 0){
+			sb.append("capture.cold.previewStart ").append(mColdPreviewStart).append('\n');
+		}
+		if(mWarmPreviewStart.getCount() > 0){
+			sb.append("capture.warm.previewStart ").append(mWarmPreviewStart).append('\n');
+		}
+		for(SearchPath path : SearchPath.values()){
+			PathMetrics metrics = mPaths[path.ordinal()];
+			if(metrics.mSearch.getCount() == 0 && metrics.mFailures.isEmpty()){
+				continue;
+			}
+			sb.append(path).append(".search ").append(metrics.mSearch).append('\n');
+			sb.append(path).append(".queueing ").append(metrics.mQueueing).append('\n');
+			sb.append(path).append(".dispatch ").append(metrics.mDispatch).append('\n');
+			if(metrics.mFirstResult.getCount() > 0){
+				sb.append(path).append(".firstResult ").append(metrics.mFirstResult).append('\n');
+			}
+			sb.append(path).append(".hits ").append(metrics.mHits.get()).append('\n');
+			sb.append(path).append(".misses ").append(metrics.mMisses.get()).append('\n');
+			for(Map.Entry<String, AtomicLong> failure : new TreeMap<String, AtomicLong>(metrics.mFailures).entrySet()){
+				sb.append(path).append(".failures.").append(failure.getKey()).append(' ').append(failure.getValue().get()).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+	
+	public void clear(){
+		for(int i = 0; i < mPaths.length; i++){
+			mPaths[i] = new PathMetrics();
+		}
+		mColdPreviewStart = new LatencyHistogram();
+		mWarmPreviewStart = new LatencyHistogram();
+	}
+}
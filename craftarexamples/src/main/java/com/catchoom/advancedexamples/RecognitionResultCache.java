@@ -0,0 +1,138 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of search responses keyed by the {@link PerceptualHash} of the query image.
+ * 
+ * A lookup matches any entry whose hash is within maxDistance bits of the query hash. Entries expire after 
+ * ttlMillis, and the least recently used entries are evicted when the cache holds more than maxEntries or the
+ * estimated size of the entries goes over maxBytes. This class is not thread-safe.
+ */
+public class RecognitionResultCache<V> {
+
+	private final int mMaxDistance;
+	private final long mTtlMillis;
+	private final int mMaxEntries;
+	private final long mMaxBytes;
+	
+	//Iterates from the least to the most recently used entry.
+	private final LinkedHashMap<Long, CachedValue<V>> mEntries = new LinkedHashMap<Long, CachedValue<V>>(16, 0.75f, true);
+	private long mBytes = 0;
+	
+	private long mHits = 0;
+	private long mMisses = 0;
+	
+	static class CachedValue<V> {
+		final V mValue;
+		final long mCreatedMillis;
+		final int mBytes;
+		
+		CachedValue(V value, long createdMillis, int bytes){
+			mValue = value;
+			mCreatedMillis = createdMillis;
+			mBytes = bytes;
+		}
+	}
+
+	public RecognitionResultCache(int maxDistance, long ttlMillis, int maxEntries, long maxBytes){
+		mMaxDistance = maxDistance;
+		mTtlMillis = ttlMillis;
+		mMaxEntries = maxEntries;
+		mMaxBytes = maxBytes;
+	}
+	
+	/**
+	 * Returns the value of the closest non-expired entry to the given hash, or null if there's none.
+	 */
+	public V get(long hash, long nowMillis){
+		Long bestKey = null;
+		int bestDistance = mMaxDistance + 1;
+		Iterator<Map.Entry<Long, CachedValue<V>>> it = mEntries.entrySet().iterator();
+		while(it.hasNext()){
+			Map.Entry<Long, CachedValue<V>> e = it.next();
+			if(nowMillis - e.getValue().mCreatedMillis > mTtlMillis){
+				mBytes -= e.getValue().mBytes;
+				it.remove();
+				continue;
+			}
+			int distance = PerceptualHash.distance(hash, e.getKey());
+			if(distance < bestDistance){
+				bestDistance = distance;
+				bestKey = e.getKey();
+			}
+		}
+		if(bestKey == null){
+			mMisses++;
+			return null;
+		}
+		mHits++;
+		//Accessing the entry through the map marks it as the most recently used.
+		return mEntries.get(bestKey).mValue;
+	}
+	
+	/**
+	 * Stores a value, with its estimated size in bytes.
+	 */
+	public void put(long hash, V value, int bytes, long nowMillis){
+		CachedValue<V> previous = mEntries.put(hash, new CachedValue<V>(value, nowMillis, bytes));
+		if(previous != null){
+			mBytes -= previous.mBytes;
+		}
+		mBytes += bytes;
+		
+		Iterator<CachedValue<V>> it = mEntries.values().iterator();
+		while((mEntries.size() > mMaxEntries || mBytes > mMaxBytes) && it.hasNext()){
+			mBytes -= it.next().mBytes;
+			it.remove();
+		}
+	}
+	
+	public void clear(){
+		mEntries.clear();
+		mBytes = 0;
+	}
+	
+	public int size(){
+		return mEntries.size();
+	}
+	
+	public long getBytes(){
+		return mBytes;
+	}
+
+	/**
+	 * Number of lookups answered from the cache, i.e. searches that were not performed.
+	 */
+	public long getHits(){
+		return mHits;
+	}
+	
+	public long getMisses(){
+		return mMisses;
+	}
+}
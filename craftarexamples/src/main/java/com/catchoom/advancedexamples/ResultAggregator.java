@@ -0,0 +1,106 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the results of a query answered by several search paths, as the paths answer.
+ * 
+ * Results with the same key (the same item reported by more than one path) are merged into one, keeping the one
+ * with the best score. The merged results are ranked by score, and results with the same score by the area of 
+ * their bounding box (a bigger item is more likely to be the one the user is pointing at).
+ */
+public class ResultAggregator<R> {
+
+	/**
+	 * Tells the aggregator how to identify and rank a result.
+	 */
+	public interface Ranker<R> {
+		String getKey(R result);
+		double getScore(R result);
+		/**
+		 * Area of the result in the query image, or 0 if it's unknown.
+		 */
+		double getArea(R result);
+	}
+
+	private final Ranker<R> mRanker;
+	private final Map<String, R> mResults = new LinkedHashMap<String, R>();
+	private final Comparator<R> mComparator;
+
+	public ResultAggregator(final Ranker<R> ranker){
+		mRanker = ranker;
+		mComparator = new Comparator<R>() {
+			@Override
+			public int compare(R lhs, R rhs) {
+				int byScore = Double.compare(ranker.getScore(rhs), ranker.getScore(lhs));
+				if(byScore != 0){
+					return byScore;
+				}
+				return Double.compare(ranker.getArea(rhs), ranker.getArea(lhs));
+			}
+		};
+	}
+
+	/**
+	 * Forgets the results of the last query.
+	 */
+	public void clear(){
+		mResults.clear();
+	}
+
+	/**
+	 * Adds the results of a path. Returns true if the merged results changed.
+	 */
+	public boolean add(List<R> results){
+		boolean changed = false;
+		for(R result : results){
+			String key = mRanker.getKey(result);
+			R current = mResults.get(key);
+			if(current == null || mComparator.compare(result, current) < 0){
+				mResults.put(key, result);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	public int size(){
+		return mResults.size();
+	}
+
+	/**
+	 * Returns a new list with the merged results, the best first.
+	 */
+	public ArrayList<R> getRanked(){
+		ArrayList<R> ranked = new ArrayList<R>(mResults.values());
+		Collections.sort(ranked, mComparator);
+		return ranked;
+	}
+}
@@ -0,0 +1,85 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans the regions of a frame searched in ROI mode: a center crop, and a grid of overlapping tiles covering the 
+ * whole frame. Regions are {left, top, width, height} in pixels.
+ */
+public class RoiPlanner {
+
+	public final static float DEFAULT_CENTER_FRACTION = 0.5f;
+	public final static int DEFAULT_TILES_PER_SIDE = 2;
+	public final static float DEFAULT_TILE_FRACTION = 0.6f;
+	
+	private final float mCenterFraction;
+	private final int mTilesPerSide;
+	private final float mTileFraction;
+	
+	public RoiPlanner(){
+		this(DEFAULT_CENTER_FRACTION, DEFAULT_TILES_PER_SIDE, DEFAULT_TILE_FRACTION);
+	}
+	
+	/**
+	 * @param centerFraction size of the center crop, as a fraction of the frame size.
+	 * @param tilesPerSide number of tiles in each row and column.
+	 * @param tileFraction size of every tile as a fraction of the frame size. Tiles overlap when 
+	 * tilesPerSide * tileFraction is above 1.
+	 */
+	public RoiPlanner(float centerFraction, int tilesPerSide, float tileFraction){
+		mCenterFraction = centerFraction;
+		mTilesPerSide = tilesPerSide;
+		mTileFraction = tileFraction;
+	}
+	
+	public int[] centerCrop(int width, int height){
+		int cropWidth = Math.max(1, Math.round(width * mCenterFraction));
+		int cropHeight = Math.max(1, Math.round(height * mCenterFraction));
+		return new int[]{(width - cropWidth) / 2, (height - cropHeight) / 2, cropWidth, cropHeight};
+	}
+	
+	/**
+	 * Returns the tiles row by row.
+	 */
+	public List<int[]> tiles(int width, int height){
+		int tileWidth = Math.max(1, Math.round(width * mTileFraction));
+		int tileHeight = Math.max(1, Math.round(height * mTileFraction));
+		List<int[]> tiles = new ArrayList<int[]>(mTilesPerSide * mTilesPerSide);
+		for(int row = 0; row < mTilesPerSide; row++){
+			for(int column = 0; column < mTilesPerSide; column++){
+				tiles.add(new int[]{offset(column, width, tileWidth), offset(row, height, tileHeight), tileWidth, tileHeight});
+			}
+		}
+		return tiles;
+	}
+	
+	private int offset(int index, int size, int tileSize){
+		if(mTilesPerSide == 1){
+			return (size - tileSize) / 2;
+		}
+		return index * (size - tileSize) / (mTilesPerSide - 1);
+	}
+}
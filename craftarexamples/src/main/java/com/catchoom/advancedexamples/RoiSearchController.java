@@ -0,0 +1,457 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * SearchController for small items, which are easily missed when the whole frame is searched.
+ * 
+ * In ROI mode every query is searched in regions planned by a {@link RoiPlanner}: first the center crop (where the 
+ * user is most likely pointing at), and if it misses, a small set of overlapping tiles. The tiles are cropped in 
+ * parallel in a worker pool and searched as soon as they are ready; the first tile that hits answers the query, 
+ * and the rest are not searched (or their responses are ignored). If every tile misses, the whole frame is searched 
+ * last, so the items that fill the frame (and don't fit in any region) are still recognized. In FULL_FRAME mode, the 
+ * default, the queries are searched as usual, so both modes can be compared.
+ * 
+ * The pixels of the query are copied when it arrives, as the SDK may recycle its bitmap as soon as onPreviewFrame() 
+ * returns, and the workers crop that copy. The copies and the crops are reused from one query to the next.
+ * 
+ * Only one query is searched at a time: preview frames received meanwhile are dropped, and a picture replaces the
+ * query in progress. The time-to-recognition and the frames needed to recognize an item are recorded per mode.
+ * 
+ * The controller sets itself as the response handler of the CraftAROnDeviceIR module, and forwards the result of 
+ * every query to the given response handler, on the main thread. A query that misses is answered with the request 
+ * code of its last search. Call release() when it's not needed anymore; the crop workers also stop when idle.
+ */
+public class RoiSearchController implements SearchController, CraftARSearchResponseHandler {
+
+	private final static String TAG = "RoiSearchController";
+	
+	public enum Mode {
+		FULL_FRAME,
+		ROI
+	}
+	
+	//Region of a query sent to the search module.
+	enum Region {
+		FULL_FRAME,
+		CENTER_CROP,
+		TILE
+	}
+	
+	public final static int MAX_FREE_CROPS = 8;
+	public final static long CROP_WORKER_KEEP_ALIVE_MILLIS = 5000;
+	
+	static class Query {
+		final CraftARQueryImage mImage;
+		final boolean mIsFinderQuery;
+		final Mode mMode;
+		final long mStartMillis = SystemClock.elapsedRealtime();
+		//Copy of the pixels of the image, cropped by the workers.
+		int[] mPixels;
+		int mWidth;
+		int mHeight;
+		int mPendingSearches = 0;
+		int mPendingCrops = 0;
+		//Read by the workers, to skip the crops that are not needed anymore.
+		volatile boolean mIsAnswered = false;
+		boolean mHasSearchedFullFrame = false;
+		CraftARError mLastError;
+		int mRequestCode = -1;
+		
+		Query(CraftARQueryImage image, boolean isFinderQuery, Mode mode){
+			mImage = image;
+			mIsFinderQuery = isFinderQuery;
+			mMode = mode;
+		}
+	}
+	
+	//A region sent to the search module. Responses arrive in the same order.
+	static class Search {
+		final Query mQuery;
+		final Region mRegion;
+		final Bitmap mCrop;
+		
+		Search(Query query, Region region, Bitmap crop){
+			mQuery = query;
+			mRegion = region;
+			mCrop = crop;
+		}
+	}
+	
+	CraftAROnDeviceIR mOnDeviceIR;
+	CraftARSearchResponseHandler mResponseHandler;
+	RoiPlanner mPlanner;
+	Mode mMode = Mode.FULL_FRAME;
+	ThreadPoolExecutor mCropPool;
+	Handler mHandler = new Handler(Looper.getMainLooper());
+	
+	boolean mIsFinding = false;
+	Query mQuery;
+	LinkedList<Search> mSearches = new LinkedList<Search>();
+	//Pixel copies and crops that can be reused.
+	LinkedList<int[]> mFreePixels = new LinkedList<int[]>();
+	LinkedList<Bitmap> mFreeCrops = new LinkedList<Bitmap>();
+	
+	//Time-to-recognition and frames searched until the item was recognized, per mode.
+	LatencyHistogram[] mTimeToRecognition = new LatencyHistogram[Mode.values().length];
+	long[] mFramesToRecognition = new long[Mode.values().length];
+	long[] mRecognitions = new long[Mode.values().length];
+	long[] mRegionHits = new long[Region.values().length];
+	long mFinderStartMillis;
+	long mFinderFrames;
+
+	public RoiSearchController(CraftAROnDeviceIR onDeviceIR, CraftARSearchResponseHandler responseHandler){
+		this(onDeviceIR, responseHandler, new RoiPlanner(), Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)));
+	}
+	
+	public RoiSearchController(CraftAROnDeviceIR onDeviceIR, CraftARSearchResponseHandler responseHandler, RoiPlanner planner, int cropThreads){
+		mOnDeviceIR = onDeviceIR;
+		mResponseHandler = responseHandler;
+		mPlanner = planner;
+		for(int i = 0; i < mTimeToRecognition.length; i++){
+			mTimeToRecognition[i] = new LatencyHistogram();
+		}
+		final AtomicInteger threadCount = new AtomicInteger();
+		mCropPool = new ThreadPoolExecutor(cropThreads, cropThreads, CROP_WORKER_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS, 
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				return new Thread(runnable, "RoiCropWorker-" + threadCount.incrementAndGet());
+			}
+		});
+		//A controller dropped without release() doesn't keep its threads.
+		mCropPool.allowCoreThreadTimeOut(true);
+		mOnDeviceIR.setCraftARSearchResponseHandler(this);
+	}
+	
+	/**
+	 * Sets where the responses are forwarded, if it couldn't be given to the constructor (i.e. the SearchController 
+	 * that wraps this one).
+	 */
+	public void setResponseHandler(CraftARSearchResponseHandler responseHandler){
+		mResponseHandler = responseHandler;
+	}
+	
+	public void setMode(Mode mode){
+		mMode = mode;
+	}
+	
+	public Mode getMode(){
+		return mMode;
+	}
+	
+	/**
+	 * Stops the crop workers.
+	 */
+	public void release(){
+		mCropPool.shutdownNow();
+		for(Bitmap crop : mFreeCrops){
+			crop.recycle();
+		}
+		mFreeCrops.clear();
+		mFreePixels.clear();
+	}
+	
+	/**
+	 * Time from the start of the finder session (or from the picture) to the recognition of an item.
+	 */
+	public LatencyHistogram getTimeToRecognition(Mode mode){
+		return mTimeToRecognition[mode.ordinal()];
+	}
+	
+	/**
+	 * Mean number of finder frames searched until an item was recognized.
+	 */
+	public double getMeanFramesToRecognition(Mode mode){
+		long recognitions = mRecognitions[mode.ordinal()];
+		return recognitions == 0 ? 0 : (double) mFramesToRecognition[mode.ordinal()] / recognitions;
+	}
+
+	@Override
+	public void onPreviewFrame(CraftARQueryImage image) {
+		if(!mIsFinding || mQuery != null){
+			return;
+		}
+		mFinderFrames++;
+		startQuery(new Query(image, true, mMode));
+	}
+
+	@Override
+	public void onPictureTaken(CraftARQueryImage image) {
+		if(mQuery != null){
+			//The responses of the query in progress will be ignored.
+			finish(mQuery);
+		}
+		startQuery(new Query(image, false, mMode));
+	}
+
+	@Override
+	public void onTakePictureFailed(CraftARError error) {
+		mResponseHandler.searchFailed(error, -1);
+	}
+
+	@Override
+	public void onFinderActivated() {
+		mIsFinding = true;
+		mFinderStartMillis = SystemClock.elapsedRealtime();
+		mFinderFrames = 0;
+	}
+
+	@Override
+	public void onFinderDeactivated() {
+		mIsFinding = false;
+		if(mQuery != null && mQuery.mIsFinderQuery){
+			finish(mQuery);
+		}
+		for(Mode mode : Mode.values()){
+			Log.d(TAG, mode+" time to recognition:"+getTimeToRecognition(mode)+", frames:"+getMeanFramesToRecognition(mode));
+		}
+	}
+	
+	private void startQuery(Query query){
+		mQuery = query;
+		Bitmap bitmap = query.mImage.getBitmap();
+		if(query.mMode == Mode.FULL_FRAME || bitmap == null || bitmap.isRecycled()){
+			query.mHasSearchedFullFrame = true;
+			search(query, Region.FULL_FRAME, null);
+			return;
+		}
+		copyPixels(query, bitmap);
+		crop(query, Region.CENTER_CROP, mPlanner.centerCrop(query.mWidth, query.mHeight));
+	}
+	
+	private void searchTiles(Query query){
+		for(int[] tile : mPlanner.tiles(query.mWidth, query.mHeight)){
+			crop(query, Region.TILE, tile);
+		}
+	}
+	
+	/**
+	 * Searches the copy of the whole frame, as the image of the query may have been recycled by now.
+	 */
+	private void searchFullFrame(Query query){
+		query.mHasSearchedFullFrame = true;
+		crop(query, Region.FULL_FRAME, new int[]{0, 0, query.mWidth, query.mHeight});
+	}
+	
+	private void copyPixels(Query query, Bitmap bitmap){
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		int[] pixels = mFreePixels.poll();
+		if(pixels == null || pixels.length < width * height){
+			pixels = new int[width * height];
+		}
+		bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+		query.mPixels = pixels;
+		query.mWidth = width;
+		query.mHeight = height;
+	}
+	
+	/**
+	 * Crops the region of the query in a worker, and searches it when it's ready.
+	 */
+	private void crop(final Query query, final Region region, final int[] rect){
+		final Bitmap crop = acquireCrop(rect[2], rect[3]);
+		final int[] pixels = query.mPixels;
+		final int stride = query.mWidth;
+		query.mPendingSearches++;
+		query.mPendingCrops++;
+		mCropPool.execute(new Runnable() {
+			@Override
+			public void run() {
+				if(!query.mIsAnswered){
+					crop.setPixels(pixels, rect[1] * stride + rect[0], stride, 0, 0, rect[2], rect[3]);
+				}
+				postCrop(query, region, crop);
+			}
+		});
+	}
+	
+	private void postCrop(final Query query, final Region region, final Bitmap crop){
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				query.mPendingSearches--;
+				query.mPendingCrops--;
+				if(query.mIsAnswered){
+					releaseCrop(crop);
+					releasePixels(query);
+					onRegionMissed(query);
+					return;
+				}
+				search(query, region, crop);
+			}
+		});
+	}
+	
+	private Bitmap acquireCrop(int width, int height){
+		for(int i = 0; i < mFreeCrops.size(); i++){
+			Bitmap crop = mFreeCrops.get(i);
+			if(crop.getWidth() == width && crop.getHeight() == height){
+				mFreeCrops.remove(i);
+				return crop;
+			}
+		}
+		return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+	}
+	
+	/**
+	 * Keeps the crop for the next queries. The crops are always created here, never the image of a query.
+	 */
+	private void releaseCrop(Bitmap crop){
+		if(mFreeCrops.size() < MAX_FREE_CROPS){
+			mFreeCrops.add(crop);
+		}else{
+			crop.recycle();
+		}
+	}
+	
+	/**
+	 * Keeps the pixels of an answered query for the next ones, once no worker is cropping them.
+	 */
+	private void releasePixels(Query query){
+		if(query.mIsAnswered && query.mPendingCrops == 0 && query.mPixels != null){
+			mFreePixels.add(query.mPixels);
+			query.mPixels = null;
+		}
+	}
+	
+	private void finish(Query query){
+		query.mIsAnswered = true;
+		if(mQuery == query){
+			mQuery = null;
+		}
+		releasePixels(query);
+	}
+	
+	private void search(Query query, Region region, Bitmap crop){
+		query.mPendingSearches++;
+		mSearches.add(new Search(query, region, crop));
+		mOnDeviceIR.search(crop == null ? query.mImage : new CraftARQueryImage(crop));
+	}
+	
+	/**
+	 * Called when a region of the query has been searched without success (or could not be searched).
+	 */
+	private void onRegionMissed(Query query){
+		if(query.mIsAnswered || query.mPendingSearches > 0){
+			return;
+		}
+		if(!query.mHasSearchedFullFrame){
+			searchFullFrame(query);
+			return;
+		}
+		finish(query);
+		if(query.mLastError != null && !query.mIsFinderQuery){
+			mResponseHandler.searchFailed(query.mLastError, query.mRequestCode);
+		}else{
+			mResponseHandler.searchResults(new ArrayList<CraftARResult>(), SystemClock.elapsedRealtime() - query.mStartMillis, query.mRequestCode);
+		}
+	}
+
+	@Override
+	public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+		Search search = mSearches.poll();
+		if(search == null){
+			return;
+		}
+		if(search.mCrop != null){
+			releaseCrop(search.mCrop);
+		}
+		Query query = search.mQuery;
+		query.mPendingSearches--;
+		query.mRequestCode = requestCode;
+		if(query.mIsAnswered){
+			return;
+		}
+		if(results.size() > 0){
+			finish(query);
+			onRecognized(query, search.mRegion);
+			mResponseHandler.searchResults(results, SystemClock.elapsedRealtime() - query.mStartMillis, requestCode);
+			return;
+		}
+		if(search.mRegion == Region.CENTER_CROP){
+			searchTiles(query);
+			return;
+		}
+		onRegionMissed(query);
+	}
+
+	@Override
+	public void searchFailed(CraftARError error, int requestCode) {
+		Search search = mSearches.poll();
+		if(search == null){
+			return;
+		}
+		if(search.mCrop != null){
+			releaseCrop(search.mCrop);
+		}
+		Query query = search.mQuery;
+		query.mPendingSearches--;
+		query.mLastError = error;
+		query.mRequestCode = requestCode;
+		if(search.mRegion == Region.CENTER_CROP && !query.mIsAnswered){
+			searchTiles(query);
+			return;
+		}
+		onRegionMissed(query);
+	}
+	
+	private void onRecognized(Query query, Region region){
+		int mode = query.mMode.ordinal();
+		mRegionHits[region.ordinal()]++;
+		if(query.mIsFinderQuery){
+			mTimeToRecognition[mode].record(SystemClock.elapsedRealtime() - mFinderStartMillis);
+			mFramesToRecognition[mode] += mFinderFrames;
+			mRecognitions[mode]++;
+			//The next recognition starts now.
+			mFinderStartMillis = SystemClock.elapsedRealtime();
+			mFinderFrames = 0;
+		}else{
+			mTimeToRecognition[mode].record(SystemClock.elapsedRealtime() - query.mStartMillis);
+		}
+		Log.d(TAG, region+" hit. Hits per region: full frame="+mRegionHits[Region.FULL_FRAME.ordinal()]+
+				", center crop="+mRegionHits[Region.CENTER_CROP.ordinal()]+", tile="+mRegionHits[Region.TILE.ordinal()]);
+	}
+}
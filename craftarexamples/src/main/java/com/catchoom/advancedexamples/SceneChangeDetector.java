@@ -0,0 +1,166 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import com.craftar.CraftARQueryImage;
+
+/**
+ * Detects if a finder frame shows something different from the last frame that was searched and missed, so 
+ * the frames of a scene that is known not to be in the collection are not searched again.
+ * 
+ * The signature of a frame is a small luma grid (see {@link QueryImageSampler}). Two frames show the same scene 
+ * when the mean difference of their signatures is at most the threshold (0-255). Frames whose pixels are not 
+ * available are always searched.
+ * 
+ * Usage: call isNewScene() for every frame, onSearched() when the frame is actually searched, and onHit() or 
+ * onMiss() with the response.
+ */
+public class SceneChangeDetector {
+
+	public final static int DEFAULT_GRID_WIDTH = 16;
+	public final static int DEFAULT_GRID_HEIGHT = 12;
+	public final static int DEFAULT_THRESHOLD = 8;
+	
+	private final int mGridWidth;
+	private final int mGridHeight;
+	private int mThreshold;
+	
+	private final byte[] mSignature;
+	private final byte[] mLastSearched;
+	private final byte[] mLastMiss;
+	private boolean mHasSignature = false;
+	private boolean mHasLastSearched = false;
+	private boolean mHasLastMiss = false;
+	private int mLastDifference = -1;
+	
+	private long mSkippedFrames = 0;
+	private long mNewSceneFrames = 0;
+	
+	public SceneChangeDetector(){
+		this(DEFAULT_GRID_WIDTH, DEFAULT_GRID_HEIGHT, DEFAULT_THRESHOLD);
+	}
+	
+	public SceneChangeDetector(int gridWidth, int gridHeight, int threshold){
+		mGridWidth = gridWidth;
+		mGridHeight = gridHeight;
+		mThreshold = threshold;
+		mSignature = new byte[gridWidth * gridHeight];
+		mLastSearched = new byte[gridWidth * gridHeight];
+		mLastMiss = new byte[gridWidth * gridHeight];
+	}
+	
+	public void setThreshold(int threshold){
+		mThreshold = threshold;
+	}
+	
+	public int getThreshold(){
+		return mThreshold;
+	}
+	
+	/**
+	 * Returns false if the frame shows the same scene as the last missed frame, so it's not worth searching.
+	 */
+	public boolean isNewScene(CraftARQueryImage image){
+		mHasSignature = QueryImageSampler.sampleLuma(image, mGridWidth, mGridHeight, mSignature);
+		return mHasSignature ? isNewScene(mSignature) : true;
+	}
+	
+	/**
+	 * Same as {@link #isNewScene(CraftARQueryImage)}, with the signature already sampled.
+	 */
+	public boolean isNewScene(byte[] signature){
+		if(signature != mSignature){
+			System.arraycopy(signature, 0, mSignature, 0, mSignature.length);
+			mHasSignature = true;
+		}
+		if(mHasLastMiss){
+			mLastDifference = meanDifference(mSignature, mLastMiss);
+			if(mLastDifference <= mThreshold){
+				mSkippedFrames++;
+				return false;
+			}
+		}
+		mNewSceneFrames++;
+		return true;
+	}
+	
+	/**
+	 * The last frame passed to isNewScene() is being searched.
+	 */
+	public void onSearched(){
+		mHasLastSearched = mHasSignature;
+		if(mHasSignature){
+			System.arraycopy(mSignature, 0, mLastSearched, 0, mSignature.length);
+		}
+	}
+	
+	/**
+	 * The last searched frame was not found: the frames like it will be skipped.
+	 */
+	public void onMiss(){
+		mHasLastMiss = mHasLastSearched;
+		if(mHasLastSearched){
+			System.arraycopy(mLastSearched, 0, mLastMiss, 0, mLastSearched.length);
+		}
+	}
+	
+	public void onHit(){
+		mHasLastMiss = false;
+	}
+	
+	public void reset(){
+		mHasSignature = false;
+		mHasLastSearched = false;
+		mHasLastMiss = false;
+		mLastDifference = -1;
+	}
+	
+	/**
+	 * Frames skipped because they were like the last missed frame.
+	 */
+	public long getSkippedFrames(){
+		return mSkippedFrames;
+	}
+	
+	public long getNewSceneFrames(){
+		return mNewSceneFrames;
+	}
+	
+	/**
+	 * Difference between the last frame and the last missed frame, -1 if there was no missed frame to compare with.
+	 */
+	public int getLastDifference(){
+		return mLastDifference;
+	}
+	
+	/**
+	 * Mean absolute difference between two luma signatures of the same size.
+	 */
+	public static int meanDifference(byte[] a, byte[] b){
+		int sum = 0;
+		for(int i = 0; i < a.length; i++){
+			sum += Math.abs((a[i] & 0xFF) - (b[i] & 0xFF));
+		}
+		return sum / a.length;
+	}
+}
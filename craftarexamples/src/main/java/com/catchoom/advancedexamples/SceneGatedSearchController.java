@@ -0,0 +1,121 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+
+import android.util.Log;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * SearchController that skips the finder frames showing the same scene as the last missed frame (see 
+ * {@link SceneChangeDetector}), and forwards the rest to another SearchController.
+ * 
+ * Set this class as the response handler of the search module used by the wrapped SearchController (or of the 
+ * SearchController that wraps this one), so it knows which frames missed. The responses are forwarded to the 
+ * given response handler.
+ */
+public class SceneGatedSearchController implements SearchController, CraftARSearchResponseHandler {
+
+	private final static String TAG = "SceneGatedSearchController";
+
+	SearchController mSearchController;
+	CraftARSearchResponseHandler mResponseHandler;
+	SceneChangeDetector mDetector;
+	boolean mIsFinding = false;
+
+	public SceneGatedSearchController(SearchController searchController, CraftARSearchResponseHandler responseHandler){
+		this(searchController, responseHandler, new SceneChangeDetector());
+	}
+	
+	public SceneGatedSearchController(SearchController searchController, CraftARSearchResponseHandler responseHandler, SceneChangeDetector detector){
+		mSearchController = searchController;
+		mResponseHandler = responseHandler;
+		mDetector = detector;
+	}
+	
+	public SceneChangeDetector getSceneChangeDetector(){
+		return mDetector;
+	}
+
+	public SearchController getSearchController(){
+		return mSearchController;
+	}
+	
+	@Override
+	public void onPreviewFrame(CraftARQueryImage image) {
+		if(mIsFinding){
+			if(!mDetector.isNewScene(image)){
+				return;
+			}
+			mDetector.onSearched();
+		}
+		mSearchController.onPreviewFrame(image);
+	}
+
+	@Override
+	public void onPictureTaken(CraftARQueryImage image) {
+		mSearchController.onPictureTaken(image);
+	}
+
+	@Override
+	public void onTakePictureFailed(CraftARError error) {
+		mSearchController.onTakePictureFailed(error);
+	}
+
+	@Override
+	public void onFinderActivated() {
+		mIsFinding = true;
+		mSearchController.onFinderActivated();
+	}
+
+	@Override
+	public void onFinderDeactivated() {
+		mIsFinding = false;
+		mDetector.reset();
+		mSearchController.onFinderDeactivated();
+		Log.d(TAG, "Unchanged frames skipped:"+mDetector.getSkippedFrames()+", new scene frames:"+mDetector.getNewSceneFrames());
+	}
+
+	@Override
+	public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+		if(mIsFinding){
+			if(results.size() > 0){
+				mDetector.onHit();
+			}else{
+				mDetector.onMiss();
+			}
+		}
+		mResponseHandler.searchResults(results, searchTimeMillis, requestCode);
+	}
+
+	@Override
+	public void searchFailed(CraftARError error, int requestCode) {
+		mResponseHandler.searchFailed(error, requestCode);
+	}
+}
@@ -0,0 +1,155 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import android.util.Log;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+
+/**
+ * Lets several clients send queries to the same {@link SearchBackend}, and gives every response to the client that 
+ * sent the query, together with the id the router assigned to it.
+ * 
+ * The responses of the backend only carry the requestCode of the SDK, which is not known when the query is sent, so 
+ * the router can't tell the responses of overlapping queries apart. It keeps a single query in flight instead: the 
+ * others wait in the router, in the order they were sent, and the next one is sent when the response (or the failure)
+ * of the one in flight arrives. Every response is then the answer to the query in flight. The queries that wait keep 
+ * a reference to their image until they are sent, so the image must not be reused or recycled before.
+ * 
+ * The backend must answer every query, either with results or with a failure, or the queries behind it are never 
+ * sent. Nothing else may send queries to the backend, or set its response handler, while the router is in use.
+ */
+public class SearchRequestRouter implements CraftARSearchResponseHandler {
+
+	private final static String TAG = "SearchRequestRouter";
+	
+	/**
+	 * Receives the responses of the queries sent with {@link SearchRequestRouter#search(CraftARQueryImage, ResponseHandler)}.
+	 */
+	public interface ResponseHandler {
+		void searchResults(long requestId, ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode);
+		void searchFailed(long requestId, CraftARError error, int requestCode);
+	}
+	
+	static class Request {
+		final long mId;
+		final ResponseHandler mResponseHandler;
+		//Image to send, released once it is sent.
+		CraftARQueryImage mImage;
+		
+		Request(long id, CraftARQueryImage image, ResponseHandler responseHandler){
+			mId = id;
+			mImage = image;
+			mResponseHandler = responseHandler;
+		}
+	}
+
+	SearchBackend mBackend;
+	//Query sent to the backend whose response has not arrived yet, or null.
+	Request mInFlight;
+	//Queries waiting for the one in flight, in the order they were sent.
+	LinkedList<Request> mWaiting = new LinkedList<Request>();
+	long mNextRequestId = 0;
+
+	public SearchRequestRouter(SearchBackend backend){
+		mBackend = backend;
+		attachResponseHandler();
+	}
+	
+	/**
+	 * Makes the backend send its responses to this router. It's done when the router is created: call it again if 
+	 * something else replaced the response handler of the backend meanwhile.
+	 */
+	public void attachResponseHandler(){
+		mBackend.setCraftARSearchResponseHandler(this);
+	}
+	
+	/**
+	 * Sends the query to the backend, or queues it if another query is in flight. The response is sent to the given 
+	 * handler, with the returned id.
+	 */
+	public long search(CraftARQueryImage image, ResponseHandler responseHandler){
+		long id = mNextRequestId++;
+		mWaiting.add(new Request(id, image, responseHandler));
+		sendNext();
+		return id;
+	}
+	
+	/**
+	 * Number of queries whose response has not arrived yet, the one in flight included.
+	 */
+	public int getPendingRequests(){
+		return mWaiting.size() + (mInFlight != null ? 1 : 0);
+	}
+	
+	/**
+	 * Number of queries waiting for the one in flight.
+	 */
+	public int getWaitingRequests(){
+		return mWaiting.size();
+	}
+	
+	public SearchBackend getBackend(){
+		return mBackend;
+	}
+
+	private void sendNext(){
+		if(mInFlight != null || mWaiting.isEmpty()){
+			return;
+		}
+		mInFlight = mWaiting.poll();
+		CraftARQueryImage image = mInFlight.mImage;
+		mInFlight.mImage = null;
+		mBackend.search(image);
+	}
+
+	@Override
+	public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+		Request request = mInFlight;
+		if(request == null){
+			Log.w(TAG, "Ignoring a response of a query that was not sent through the router");
+			return;
+		}
+		//The queries sent by the handler while it gets the response wait behind the ones already queued.
+		mInFlight = null;
+		request.mResponseHandler.searchResults(request.mId, results, searchTimeMillis, requestCode);
+		sendNext();
+	}
+
+	@Override
+	public void searchFailed(CraftARError error, int requestCode) {
+		Request request = mInFlight;
+		if(request == null){
+			Log.w(TAG, "Ignoring a failure of a query that was not sent through the router");
+			return;
+		}
+		mInFlight = null;
+		request.mResponseHandler.searchFailed(request.mId, error, requestCode);
+		sendNext();
+	}
+}
@@ -0,0 +1,337 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * SearchController that runs another SearchController on a dedicated recognition thread, so the preprocessing, 
+ * hashing or gating done by the wrapped SearchController doesn't compete with the thread that delivers the camera frames.
+ * 
+ * The SDK may reuse the image of a preview frame as soon as onPreviewFrame() returns, so the camera callback copies its 
+ * pixels into one of a few pooled frames, puts it in a {@link SpscRingBuffer} and wakes up the worker: it doesn't lock 
+ * or allocate anything once the pool is filled (unless the preview size changes). The worker always searches the 
+ * newest frame, the frames it didn't get to in time are dropped, and every frame goes back to the pool when the 
+ * wrapped SearchController returns from onPreviewFrame(), so that one must not keep the image either (as the SDK 
+ * SearchControllers, which search it right away). The pictures are handed over as they are. Pictures, finder events and search responses go through a separate queue, and every one of them 
+ * remembers how many frames arrived before it: the worker handles them in the order they arrived, after searching 
+ * the newest of the frames that came first. A frame that arrived before onFinderDeactivated() is never searched after it.
+ * 
+ * Set this class as the response handler of the search module, and give it the handler of the wrapped SearchController 
+ * (usually the wrapped SearchController itself): the wrapped SearchController and its responses are only called from 
+ * the worker thread, so they never race. Wrap the handler that updates the UI in a {@link MainThreadResponseHandler}.
+ * 
+ * Example: 
+ * 
+ * 		SearchController preprocessing = new PreprocessingSearchController(mOnDeviceIR.getSearchController(), extractor, pipeline, analyzer);
+ * 		mSearchWorker = new SearchWorkerController(preprocessing, new MainThreadResponseHandler(this));
+ * 		mOnDeviceIR.setCraftARSearchResponseHandler(mSearchWorker);
+ * 		mCraftARSDK.setSearchController(mSearchWorker);
+ * 		...
+ * 		mSearchWorker.quit(); //When the activity is destroyed.
+ * 
+ * None of the example screens uses it yet: it is meant for SearchControllers that do heavy work on every frame.
+ */
+public class SearchWorkerController implements SearchController, CraftARSearchResponseHandler {
+
+	private final static String TAG = "SearchWorkerController";
+	
+	public final static String THREAD_NAME = "CraftARRecognitionWorker";
+	public final static int DEFAULT_FRAME_CAPACITY = 2;
+	
+	private final static int PICTURE_TAKEN = 0;
+	private final static int TAKE_PICTURE_FAILED = 1;
+	private final static int FINDER_ACTIVATED = 2;
+	private final static int FINDER_DEACTIVATED = 3;
+	private final static int SEARCH_RESULTS = 4;
+	private final static int SEARCH_FAILED = 5;
+	
+	//A pooled copy of a preview frame.
+	static class Frame {
+		int[] mPixels;
+		Bitmap mBitmap;
+		CraftARQueryImage mImage;
+		
+		/**
+		 * Copies the pixels of the bitmap, replacing the bitmap of the frame only if the size changed.
+		 */
+		void copy(Bitmap source){
+			int width = source.getWidth();
+			int height = source.getHeight();
+			if(mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height){
+				mPixels = new int[width * height];
+				mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+				mImage = new CraftARQueryImage(mBitmap);
+			}
+			source.getPixels(mPixels, 0, width, 0, 0, width, height);
+			mBitmap.setPixels(mPixels, 0, width, 0, 0, width, height);
+		}
+	}
+	
+	static class Event {
+		final int mType;
+		final Object mArgument;
+		//Frames put in the ring buffer before this event.
+		final long mFramesBefore;
+		long mSearchTimeMillis;
+		int mRequestCode;
+		
+		Event(int type, Object argument, long framesBefore){
+			mType = type;
+			mArgument = argument;
+			mFramesBefore = framesBefore;
+		}
+	}
+
+	SearchController mSearchController;
+	CraftARSearchResponseHandler mResponseHandler;
+	SpscRingBuffer<Frame> mFrames;
+	//Frames given back by the worker, taken by the camera thread.
+	SpscRingBuffer<Frame> mFreeFrames;
+	//Only used by the camera thread: a frame that could not be put in the ring buffer, and the frames created.
+	Frame mSpareFrame;
+	int mCreatedFrames = 0;
+	int mMaxFrames;
+	ConcurrentLinkedQueue<Event> mEvents = new ConcurrentLinkedQueue<Event>();
+	Thread mWorker;
+	volatile boolean mIsRunning = true;
+	
+	//Frames put in the ring buffer, only incremented by the camera thread once the frame is in it, and frames taken 
+	//from it, only used by the worker.
+	AtomicLong mOfferedFrames = new AtomicLong();
+	long mPolledFrames = 0;
+	
+	//Frames that didn't fit in the ring buffer, and frames replaced by a newer one before the worker got to them.
+	AtomicLong mRejectedFrames = new AtomicLong();
+	AtomicLong mSupersededFrames = new AtomicLong();
+	AtomicLong mSearchedFrames = new AtomicLong();
+	//Time spent in onPreviewFrame, only written by the camera thread.
+	volatile long mHandoffCount = 0;
+	volatile long mHandoffTotalNanos = 0;
+	volatile long mHandoffMaxNanos = 0;
+
+	public SearchWorkerController(SearchController searchController, CraftARSearchResponseHandler responseHandler){
+		this(searchController, responseHandler, DEFAULT_FRAME_CAPACITY);
+	}
+	
+	/**
+	 * @param responseHandler handler called on the worker thread with the responses received by this class.
+	 */
+	public SearchWorkerController(SearchController searchController, CraftARSearchResponseHandler responseHandler, int frameCapacity){
+		mSearchController = searchController;
+		mResponseHandler = responseHandler;
+		mFrames = new SpscRingBuffer<Frame>(frameCapacity);
+		//The frames in the ring buffer, the one searched by the worker and the one copied by the camera thread.
+		mMaxFrames = mFrames.getCapacity() + 2;
+		mFreeFrames = new SpscRingBuffer<Frame>(mMaxFrames);
+		mWorker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				work();
+			}
+		}, THREAD_NAME);
+		mWorker.start();
+	}
+	
+	/**
+	 * Stops the worker thread. The pending frames, events and responses are discarded.
+	 */
+	public void quit(){
+		mIsRunning = false;
+		LockSupport.unpark(mWorker);
+		Log.d(TAG, "Frames searched:"+getSearchedFrames()+", dropped:"+getDroppedFrames()+", handoff: mean="+getMeanHandoffMicros()+"us max="+getMaxHandoffMicros()+"us");
+	}
+
+	@Override
+	public void onPreviewFrame(CraftARQueryImage image) {
+		long start = System.nanoTime();
+		Frame frame = acquireFrame();
+		Bitmap bitmap = image.getBitmap();
+		if(frame == null || bitmap == null || bitmap.isRecycled()){
+			mSpareFrame = frame;
+			mRejectedFrames.incrementAndGet();
+		}else{
+			frame.copy(bitmap);
+			if(mFrames.offer(frame)){
+				mOfferedFrames.incrementAndGet();
+				LockSupport.unpark(mWorker);
+			}else{
+				mSpareFrame = frame;
+				mRejectedFrames.incrementAndGet();
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		mHandoffCount++;
+		mHandoffTotalNanos += elapsed;
+		if(elapsed > mHandoffMaxNanos){
+			mHandoffMaxNanos = elapsed;
+		}
+	}
+
+	/**
+	 * Camera thread side: returns a free frame, or null if they are all in use.
+	 */
+	private Frame acquireFrame(){
+		Frame frame = mSpareFrame;
+		if(frame != null){
+			mSpareFrame = null;
+			return frame;
+		}
+		frame = mFreeFrames.poll();
+		if(frame == null && mCreatedFrames < mMaxFrames){
+			mCreatedFrames++;
+			frame = new Frame();
+		}
+		return frame;
+	}
+
+	@Override
+	public void onPictureTaken(CraftARQueryImage image) {
+		post(new Event(PICTURE_TAKEN, image, mOfferedFrames.get()));
+	}
+
+	@Override
+	public void onTakePictureFailed(CraftARError error) {
+		post(new Event(TAKE_PICTURE_FAILED, error, mOfferedFrames.get()));
+	}
+
+	@Override
+	public void onFinderActivated() {
+		post(new Event(FINDER_ACTIVATED, null, mOfferedFrames.get()));
+	}
+
+	@Override
+	public void onFinderDeactivated() {
+		post(new Event(FINDER_DEACTIVATED, null, mOfferedFrames.get()));
+	}
+
+	@Override
+	public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+		Event event = new Event(SEARCH_RESULTS, results, mOfferedFrames.get());
+		event.mSearchTimeMillis = searchTimeMillis;
+		event.mRequestCode = requestCode;
+		post(event);
+	}
+
+	@Override
+	public void searchFailed(CraftARError error, int requestCode) {
+		Event event = new Event(SEARCH_FAILED, error, mOfferedFrames.get());
+		event.mRequestCode = requestCode;
+		post(event);
+	}
+	
+	private void post(Event event){
+		mEvents.add(event);
+		LockSupport.unpark(mWorker);
+	}
+	
+	private void work(){
+		while(mIsRunning){
+			//Search the newest frame that arrived before the next event, then the event.
+			Event event = mEvents.peek();
+			long framesBefore = event == null ? Long.MAX_VALUE : event.mFramesBefore;
+			Frame frame = null;
+			Frame newerFrame;
+			while(mPolledFrames < framesBefore && (newerFrame = mFrames.poll()) != null){
+				if(frame != null){
+					mSupersededFrames.incrementAndGet();
+					mFreeFrames.offer(frame);
+				}
+				frame = newerFrame;
+				mPolledFrames++;
+			}
+			if(frame != null){
+				mSearchedFrames.incrementAndGet();
+				mSearchController.onPreviewFrame(frame.mImage);
+				mFreeFrames.offer(frame);
+				continue;
+			}
+			if(event != null){
+				mEvents.poll();
+				handleEvent(event);
+				continue;
+			}
+			LockSupport.park(this);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void handleEvent(Event event){
+		switch(event.mType){
+		case PICTURE_TAKEN:
+			mSearchController.onPictureTaken((CraftARQueryImage) event.mArgument);
+			break;
+		case TAKE_PICTURE_FAILED:
+			mSearchController.onTakePictureFailed((CraftARError) event.mArgument);
+			break;
+		case FINDER_ACTIVATED:
+			mSearchController.onFinderActivated();
+			break;
+		case FINDER_DEACTIVATED:
+			mSearchController.onFinderDeactivated();
+			break;
+		case SEARCH_RESULTS:
+			mResponseHandler.searchResults((ArrayList<CraftARResult>) event.mArgument, event.mSearchTimeMillis, event.mRequestCode);
+			break;
+		case SEARCH_FAILED:
+			mResponseHandler.searchFailed((CraftARError) event.mArgument, event.mRequestCode);
+			break;
+		}
+	}
+	
+	public SearchController getSearchController(){
+		return mSearchController;
+	}
+	
+	public long getSearchedFrames(){
+		return mSearchedFrames.get();
+	}
+	
+	/**
+	 * Frames that were never searched, because the ring buffer was full or a newer frame arrived first.
+	 */
+	public long getDroppedFrames(){
+		return mRejectedFrames.get() + mSupersededFrames.get();
+	}
+	
+	public long getMeanHandoffMicros(){
+		long count = mHandoffCount;
+		return count == 0 ? 0 : mHandoffTotalNanos / count / 1000;
+	}
+	
+	public long getMaxHandoffMicros(){
+		return mHandoffMaxNanos / 1000;
+	}
+}
@@ -0,0 +1,79 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * FrameAnalyzer that skips the frames too blurred to be recognized, i.e. while the camera moves or focuses.
+ * 
+ * The sharpness of a frame is the mean absolute difference between neighbouring pixels, like in 
+ * {@link CloudFallbackCoalescer#sharpness(byte[], int, int)}. Run it after a ContrastNormalizationOperator so 
+ * the threshold doesn't depend on the lighting.
+ */
+public class SharpnessFrameAnalyzer implements FrameAnalyzer {
+
+	public final static double DEFAULT_MIN_SHARPNESS = 4;
+	
+	private final double mMinSharpness;
+	private double mLastSharpness = 0;
+	
+	public SharpnessFrameAnalyzer(){
+		this(DEFAULT_MIN_SHARPNESS);
+	}
+	
+	/**
+	 * @param minSharpness frames less sharp than this (0-255) are not searched.
+	 */
+	public SharpnessFrameAnalyzer(double minSharpness){
+		if(minSharpness < 0){
+			throw new IllegalArgumentException("The minimum sharpness can't be negative: " + minSharpness);
+		}
+		mMinSharpness = minSharpness;
+	}
+
+	@Override
+	public boolean analyzeFrame(FrameBuffer frame) {
+		int width = frame.getWidth();
+		int height = frame.getHeight();
+		if(width < 2 || height < 2){
+			//Nothing to measure, let the search decide.
+			return true;
+		}
+		long sum = 0;
+		for(int y = 0; y < height - 1; y++){
+			for(int x = 0; x < width - 1; x++){
+				int index = y * width + x;
+				int value = frame.get(index);
+				sum += Math.abs(frame.get(index + 1) - value) + Math.abs(frame.get(index + width) - value);
+			}
+		}
+		mLastSharpness = (double) sum / ((width - 1) * (height - 1));
+		return mLastSharpness >= mMinSharpness;
+	}
+	
+	/**
+	 * Sharpness of the last analyzed frame.
+	 */
+	public double getLastSharpness(){
+		return mLastSharpness;
+	}
+}
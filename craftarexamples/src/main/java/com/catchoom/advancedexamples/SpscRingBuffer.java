@@ -0,0 +1,86 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free ring buffer for exactly one producer thread and one consumer thread. 
+ * 
+ * offer() and poll() never block and never allocate memory. The capacity is rounded up to a power of two.
+ */
+public class SpscRingBuffer<T> {
+
+	private final AtomicReferenceArray<T> mSlots;
+	private final int mMask;
+	//Next slot to read, only written by the consumer.
+	private final AtomicLong mHead = new AtomicLong();
+	//Next slot to write, only written by the producer.
+	private final AtomicLong mTail = new AtomicLong();
+	
+	public SpscRingBuffer(int capacity){
+		int size = 1;
+		while(size < capacity){
+			size <<= 1;
+		}
+		mSlots = new AtomicReferenceArray<T>(size);
+		mMask = size - 1;
+	}
+	
+	public int getCapacity(){
+		return mMask + 1;
+	}
+	
+	/**
+	 * Producer side. Returns false if the buffer is full.
+	 */
+	public boolean offer(T item){
+		long tail = mTail.get();
+		if(tail - mHead.get() > mMask){
+			return false;
+		}
+		mSlots.lazySet((int) tail & mMask, item);
+		mTail.lazySet(tail + 1);
+		return true;
+	}
+	
+	/**
+	 * Consumer side. Returns null if the buffer is empty.
+	 */
+	public T poll(){
+		long head = mHead.get();
+		if(head >= mTail.get()){
+			return null;
+		}
+		int index = (int) head & mMask;
+		T item = mSlots.get(index);
+		mSlots.lazySet(index, null);
+		mHead.lazySet(head + 1);
+		return item;
+	}
+	
+	public boolean isEmpty(){
+		return mHead.get() >= mTail.get();
+	}
+}
@@ -0,0 +1,102 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.Locale;
+
+/**
+ * Accumulates the CPU time and the wall-clock time spent in every state of something (i.e. a screen with the
+ * capture active or suspended), so the cost of each state can be compared.
+ * 
+ * The times are passed in, so it works with any clock: on Android, use SystemClock.elapsedRealtime() and 
+ * Process.getElapsedCpuTime() (CPU time of the whole process).
+ */
+public class StateCpuAccounting<S extends Enum<S>> {
+
+	private final S[] mStates;
+	private final long[] mCpuMillis;
+	private final long[] mWallMillis;
+	private S mState;
+	private long mEnteredMillis;
+	private long mEnteredCpuMillis;
+
+	public StateCpuAccounting(Class<S> stateClass){
+		mStates = stateClass.getEnumConstants();
+		mCpuMillis = new long[mStates.length];
+		mWallMillis = new long[mStates.length];
+	}
+
+	/**
+	 * Ends the current state (if any) and starts the given one.
+	 */
+	public synchronized void enter(S state, long nowMillis, long cpuMillis){
+		accumulate(nowMillis, cpuMillis);
+		mState = state;
+	}
+
+	/**
+	 * Ends the current state, so the time from now on is not accounted to any state.
+	 */
+	public synchronized void stop(long nowMillis, long cpuMillis){
+		accumulate(nowMillis, cpuMillis);
+		mState = null;
+	}
+
+	public synchronized S getState(){
+		return mState;
+	}
+
+	public synchronized long getCpuMillis(S state){
+		return mCpuMillis[state.ordinal()];
+	}
+
+	public synchronized long getWallMillis(S state){
+		return mWallMillis[state.ordinal()];
+	}
+
+	/**
+	 * One line per state: "SUSPENDED cpu=120ms wall=30000ms load=0.4%". The current state is only included up to its last change.
+	 */
+	public synchronized String dump(){
+		StringBuilder sb = new StringBuilder();
+		for(S state : mStates){
+			long wall = mWallMillis[state.ordinal()];
+			long cpu = mCpuMillis[state.ordinal()];
+			sb.append(state).append(" cpu=").append(cpu).append("ms wall=").append(wall).append("ms");
+			if(wall > 0){
+				sb.append(" load=").append(String.format(Locale.US, "%.1f", 100.0 * cpu / wall)).append('%');
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	private void accumulate(long nowMillis, long cpuMillis){
+		if(mState != null){
+			mWallMillis[mState.ordinal()] += nowMillis - mEnteredMillis;
+			mCpuMillis[mState.ordinal()] += cpuMillis - mEnteredCpuMillis;
+		}
+		mEnteredMillis = nowMillis;
+		mEnteredCpuMillis = cpuMillis;
+	}
+}
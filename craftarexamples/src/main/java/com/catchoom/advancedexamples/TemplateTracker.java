@@ -0,0 +1,191 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+/**
+ * Cheap frame-to-frame template tracker working on small luma grids.
+ * 
+ * The tracker is seeded with a region of a frame. For every new frame, it looks for the template in a small 
+ * neighbourhood of its last position, comparing the luma after removing the mean of each patch (so changes of
+ * exposure don't break the tracking). The item is considered lost when the best match is worse than the threshold
+ * during several consecutive frames, or when it leaves the frame.
+ */
+public class TemplateTracker {
+
+	public final static int DEFAULT_SEARCH_RADIUS = 4;
+	public final static int DEFAULT_MAX_MEAN_DIFFERENCE = 20;
+	public final static int DEFAULT_MAX_LOST_FRAMES = 3;
+
+	private final int mFrameWidth;
+	private final int mFrameHeight;
+	private final int mSearchRadius;
+	private final int mMaxMeanDifference;
+	private final int mMaxLostFrames;
+
+	private final byte[] mTemplate;
+	private int mTemplateWidth;
+	private int mTemplateHeight;
+	private int mTemplateMean;
+	private int mX;
+	private int mY;
+	
+	private boolean mIsTracking = false;
+	private int mLostFrames = 0;
+	private int mLastDifference = 0;
+
+	public TemplateTracker(int frameWidth, int frameHeight){
+		this(frameWidth, frameHeight, DEFAULT_SEARCH_RADIUS, DEFAULT_MAX_MEAN_DIFFERENCE, DEFAULT_MAX_LOST_FRAMES);
+	}
+	
+	/**
+	 * @param frameWidth width of the luma grids that will be tracked.
+	 * @param frameHeight height of the luma grids that will be tracked.
+	 * @param searchRadius maximum displacement of the item between two frames, in grid cells.
+	 * @param maxMeanDifference maximum mean absolute luma difference (0-255) between the template and its match.
+	 * @param maxLostFrames number of consecutive frames without a match before the item is lost.
+	 */
+	public TemplateTracker(int frameWidth, int frameHeight, int searchRadius, int maxMeanDifference, int maxLostFrames){
+		mFrameWidth = frameWidth;
+		mFrameHeight = frameHeight;
+		mSearchRadius = searchRadius;
+		mMaxMeanDifference = maxMeanDifference;
+		mMaxLostFrames = maxLostFrames;
+		mTemplate = new byte[frameWidth * frameHeight];
+	}
+
+	/**
+	 * Starts tracking the given region of the frame.
+	 */
+	public void seed(byte[] frame, int left, int top, int width, int height){
+		mTemplateWidth = width;
+		mTemplateHeight = height;
+		for(int y = 0; y < height; y++){
+			System.arraycopy(frame, (top + y) * mFrameWidth + left, mTemplate, y * width, width);
+		}
+		mTemplateMean = mean(mTemplate, 0, width, width, height);
+		mX = left;
+		mY = top;
+		mLostFrames = 0;
+		mIsTracking = true;
+	}
+
+	/**
+	 * Looks for the tracked item in a new frame.
+	 * 
+	 * @return true if the item is still being tracked.
+	 */
+	public boolean track(byte[] frame){
+		if(!mIsTracking){
+			return false;
+		}
+		
+		int bestDifference = Integer.MAX_VALUE;
+		int bestX = mX;
+		int bestY = mY;
+		for(int dy = -mSearchRadius; dy <= mSearchRadius; dy++){
+			int y = mY + dy;
+			if(y < 0 || y + mTemplateHeight > mFrameHeight){
+				continue;
+			}
+			for(int dx = -mSearchRadius; dx <= mSearchRadius; dx++){
+				int x = mX + dx;
+				if(x < 0 || x + mTemplateWidth > mFrameWidth){
+					continue;
+				}
+				int difference = meanDifference(frame, x, y, bestDifference);
+				if(difference < bestDifference){
+					bestDifference = difference;
+					bestX = x;
+					bestY = y;
+				}
+			}
+		}
+		
+		mLastDifference = bestDifference;
+		if(bestDifference <= mMaxMeanDifference){
+			mX = bestX;
+			mY = bestY;
+			mLostFrames = 0;
+		}else if(++mLostFrames >= mMaxLostFrames){
+			mIsTracking = false;
+		}
+		return mIsTracking;
+	}
+	
+	public void stop(){
+		mIsTracking = false;
+	}
+	
+	public boolean isTracking(){
+		return mIsTracking;
+	}
+	
+	/**
+	 * Mean absolute difference between the template and its best match in the last tracked frame.
+	 */
+	public int getLastDifference(){
+		return mLastDifference;
+	}
+	
+	public int getX(){
+		return mX;
+	}
+	
+	public int getY(){
+		return mY;
+	}
+	
+	/**
+	 * Mean absolute difference between the template and the patch of the frame at (x,y), after removing the mean of both.
+	 * Stops early once the difference is known to be over the given limit.
+	 */
+	private int meanDifference(byte[] frame, int x, int y, int limit){
+		int offset = mean(frame, y * mFrameWidth + x, mFrameWidth, mTemplateWidth, mTemplateHeight) - mTemplateMean;
+		int pixels = mTemplateWidth * mTemplateHeight;
+		long maxSum = limit == Integer.MAX_VALUE ? Long.MAX_VALUE : (long) limit * pixels;
+		long sum = 0;
+		for(int row = 0; row < mTemplateHeight; row++){
+			int frameIndex = (y + row) * mFrameWidth + x;
+			int templateIndex = row * mTemplateWidth;
+			for(int col = 0; col < mTemplateWidth; col++){
+				int d = (frame[frameIndex + col] & 0xff) - offset - (mTemplate[templateIndex + col] & 0xff);
+				sum += d < 0 ? -d : d;
+			}
+			if(sum >= maxSum){
+				return limit;
+			}
+		}
+		return (int) (sum / pixels);
+	}
+	
+	private static int mean(byte[] data, int start, int stride, int width, int height){
+		long sum = 0;
+		for(int row = 0; row < height; row++){
+			int index = start + row * stride;
+			for(int col = 0; col < width; col++){
+				sum += data[index + col] & 0xff;
+			}
+		}
+		return (int) (sum / (width * height));
+	}
+}
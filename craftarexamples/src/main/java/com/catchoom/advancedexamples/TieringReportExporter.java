@@ -0,0 +1,257 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+package com.catchoom.advancedexamples;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import com.catchoom.advancedexamples.ItemTieringEngine.ItemStats;
+import com.catchoom.advancedexamples.ItemTieringEngine.Recommendation;
+import com.catchoom.advancedexamples.ItemTieringEngine.Tier;
+
+/**
+ * Writes the recommendations of an {@link ItemTieringEngine} into a JSON file, to be used when building 
+ * the collections, and reads the statistics back from it when the app starts again.
+ * 
+ * The report has the items to keep on-device ("onDeviceItems"), the changes from the current split ("promote" 
+ * and "demote") and, ranked, every item with its hits, latencies, size and the time it saves on-device. The 
+ * file is replaced atomically, so readers never see a partial report.
+ */
+public class TieringReportExporter {
+
+	private final static String TAG = "TieringReportExporter";
+	private final static int REPORT_VERSION = 1;
+
+	private final ItemTieringEngine mEngine;
+	private final File mFile;
+	private final long mBudgetBytes;
+	private ExecutorService mExecutor;
+
+	/**
+	 * @param budgetBytes maximum size of the on-device collection.
+	 */
+	public TieringReportExporter(ItemTieringEngine engine, File file, long budgetBytes){
+		mEngine = engine;
+		mFile = file;
+		mBudgetBytes = budgetBytes;
+	}
+
+	/**
+	 * Restores the item statistics of the last report written, if any.
+	 * 
+	 * @return the number of items restored.
+	 */
+	public int load() throws IOException {
+		if(!mFile.exists()){
+			return 0;
+		}
+		try {
+			JSONArray items = new JSONObject(readFile(mFile)).getJSONArray("items");
+			for(int i = 0; i < items.length(); i++){
+				JSONObject item = items.getJSONObject(i);
+				JSONObject json = item.getJSONObject("stats");
+				ItemStats stats = new ItemStats(item.getString("name"));
+				stats.mTier = parseTier(item.getString("currentTier"));
+				stats.mSizeBytes = json.optLong("sizeBytes", -1);
+				stats.mOnDeviceHits = json.getLong("onDeviceHits");
+				stats.mCloudHits = json.getLong("cloudHits");
+				stats.mOnDeviceLatencySumMillis = json.getLong("onDeviceLatencySumMillis");
+				stats.mOnDeviceLatencySamples = json.getLong("onDeviceLatencySamples");
+				stats.mCloudLatencySumMillis = json.getLong("cloudLatencySumMillis");
+				stats.mCloudLatencySamples = json.getLong("cloudLatencySamples");
+				stats.mDecayedHits = json.getDouble("decayedHits");
+				stats.mLastHitMillis = json.getLong("lastHitMillis");
+				mEngine.restoreItem(stats);
+			}
+			return items.length();
+		} catch (JSONException e) {
+			throw new IOException("Invalid tiering report "+mFile+": "+e.getMessage());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid tiering report "+mFile+": "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the report in a background thread.
+	 */
+	public synchronized void exportAsync(){
+		if(mExecutor == null){
+			mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "TieringReportExporter");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					export();
+				} catch (IOException e) {
+					Log.e(TAG, "Error exporting the tiering report to "+mFile, e);
+				}
+			}
+		});
+	}
+
+	public void export() throws IOException {
+		String report;
+		try {
+			report = buildReport(System.currentTimeMillis()).toString(2);
+		} catch (JSONException e) {
+			throw new IOException("Could not build the tiering report: "+e.getMessage());
+		}
+		File dir = mFile.getParentFile();
+		if(dir != null && !dir.isDirectory() && !dir.mkdirs()){
+			throw new IOException("Could not create "+dir);
+		}
+		File tmpFile = new File(mFile.getPath() + ".tmp");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
+		try {
+			writer.write(report);
+		} finally {
+			writer.close();
+		}
+		if(!tmpFile.renameTo(mFile)){
+			throw new IOException("Could not rename "+tmpFile+" to "+mFile);
+		}
+	}
+
+	public JSONObject buildReport(long nowMillis) throws JSONException {
+		List<Recommendation> recommendations = mEngine.recommend(mBudgetBytes, nowMillis);
+		JSONArray items = new JSONArray();
+		JSONArray onDeviceItems = new JSONArray();
+		JSONArray promote = new JSONArray();
+		JSONArray demote = new JSONArray();
+		long usedBytes = 0;
+		double currentSavedMillis = 0;
+		double recommendedSavedMillis = 0;
+		int rank = 1;
+		for(Recommendation recommendation : recommendations){
+			ItemStats stats = recommendation.mStats;
+			if(recommendation.mRecommendedTier == Tier.ON_DEVICE){
+				onDeviceItems.put(stats.mName);
+				usedBytes += recommendation.mSizeBytes;
+				recommendedSavedMillis += recommendation.mSavedMillis;
+			}
+			if(stats.mTier == Tier.ON_DEVICE){
+				currentSavedMillis += recommendation.mSavedMillis;
+			}
+			if(recommendation.mAction == ItemTieringEngine.Action.PROMOTE){
+				promote.put(stats.mName);
+			}else if(recommendation.mAction == ItemTieringEngine.Action.DEMOTE){
+				demote.put(stats.mName);
+			}
+			
+			JSONObject item = new JSONObject();
+			item.put("rank", rank++);
+			item.put("name", stats.mName);
+			item.put("currentTier", formatTier(stats.mTier));
+			item.put("recommendedTier", formatTier(recommendation.mRecommendedTier));
+			item.put("action", recommendation.mAction.name().toLowerCase(Locale.US));
+			item.put("hits", recommendation.mHits);
+			item.put("sizeBytes", recommendation.mSizeBytes);
+			item.put("onDeviceLatencyMillis", Math.round(recommendation.mOnDeviceLatencyMillis));
+			item.put("cloudLatencyMillis", Math.round(recommendation.mCloudLatencyMillis));
+			item.put("savedMillis", Math.round(recommendation.mSavedMillis));
+			
+			JSONObject json = new JSONObject();
+			if(stats.mSizeBytes >= 0){
+				json.put("sizeBytes", stats.mSizeBytes);
+			}
+			json.put("onDeviceHits", stats.mOnDeviceHits);
+			json.put("cloudHits", stats.mCloudHits);
+			json.put("onDeviceLatencySumMillis", stats.mOnDeviceLatencySumMillis);
+			json.put("onDeviceLatencySamples", stats.mOnDeviceLatencySamples);
+			json.put("cloudLatencySumMillis", stats.mCloudLatencySumMillis);
+			json.put("cloudLatencySamples", stats.mCloudLatencySamples);
+			json.put("decayedHits", stats.mDecayedHits);
+			json.put("lastHitMillis", stats.mLastHitMillis);
+			item.put("stats", json);
+			items.put(item);
+		}
+		
+		JSONObject pathLatency = new JSONObject();
+		pathLatency.put("onDevice", Math.round(mEngine.getPathLatencyMillis(Tier.ON_DEVICE)));
+		pathLatency.put("cloud", Math.round(mEngine.getPathLatencyMillis(Tier.CLOUD)));
+		JSONObject savedMillis = new JSONObject();
+		savedMillis.put("current", Math.round(currentSavedMillis));
+		savedMillis.put("recommended", Math.round(recommendedSavedMillis));
+		
+		JSONObject report = new JSONObject();
+		report.put("version", REPORT_VERSION);
+		report.put("generatedAtMillis", nowMillis);
+		report.put("budgetBytes", mBudgetBytes);
+		report.put("usedBytes", usedBytes);
+		report.put("halfLifeMillis", mEngine.getHalfLifeMillis());
+		report.put("pathLatencyMillis", pathLatency);
+		report.put("savedMillis", savedMillis);
+		report.put("onDeviceItems", onDeviceItems);
+		report.put("promote", promote);
+		report.put("demote", demote);
+		report.put("items", items);
+		return report;
+	}
+
+	private static String formatTier(Tier tier){
+		return tier.name().toLowerCase(Locale.US);
+	}
+
+	private static Tier parseTier(String tier){
+		return Tier.valueOf(tier.toUpperCase(Locale.US));
+	}
+
+	private static String readFile(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while((read = in.read(buffer)) > 0){
+				out.write(buffer, 0, read);
+			}
+			return out.toString("UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+}
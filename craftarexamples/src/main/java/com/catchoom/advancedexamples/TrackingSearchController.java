@@ -0,0 +1,207 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.advancedexamples;
+
+import java.util.ArrayList;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.craftar.CraftARBoundingBox;
+import com.craftar.CraftARError;
+import com.craftar.CraftARQueryImage;
+import com.craftar.CraftARResult;
+import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
+
+/**
+ * SearchController that stops searching frames while a recognized item stays in front of the camera.
+ * 
+ * When a search finds something, a {@link TemplateTracker} is seeded with the bounding box of the best result in 
+ * the frame that was searched (or its central area, where the finder expects the item to be, if the result has no 
+ * box). The grids of the last frames forwarded are kept with the time they were forwarded, and the searched one is 
+ * the newest forwarded before the search started (the time of the response minus the search time), as the wrapped 
+ * SearchController may drop some of the frames forwarded meanwhile. The 
+ * following frames are only used to track the item, and they are not forwarded to the wrapped SearchController 
+ * until the tracking is lost. The frames are only sampled while the finder is active, and the tracking ends when
+ * the finder stops or starts again.
+ * 
+ * Set this class as the response handler of the search module used by the wrapped SearchController, so it 
+ * knows when an item has been found. The responses are forwarded to the given response handler.
+ */
+public class TrackingSearchController implements SearchController, CraftARSearchResponseHandler {
+
+	private final static String TAG = "TrackingSearchController";
+
+	//Size of the luma grid sampled from every frame. The tracked template is the central half of it.
+	final static int GRID_WIDTH = 64;
+	final static int GRID_HEIGHT = 48;
+	//Smallest template seeded from a bounding box, in grid cells. Smaller ones don't have enough detail to be tracked.
+	final static int MIN_TEMPLATE_SIZE = 6;
+	//Grids of the forwarded frames that are kept, enough for searches of about half a second at 30 fps.
+	final static int FORWARDED_FRAMES = 16;
+
+	SearchController mSearchController;
+	CraftARSearchResponseHandler mResponseHandler;
+	TemplateTracker mTracker = new TemplateTracker(GRID_WIDTH, GRID_HEIGHT);
+	byte[] mFrame = new byte[GRID_WIDTH * GRID_HEIGHT];
+	boolean mHasFrame = false;
+	boolean mIsFinding = false;
+	//Ring of the grids of the forwarded frames, and the time they were forwarded.
+	byte[][] mForwardedFrames = new byte[FORWARDED_FRAMES][GRID_WIDTH * GRID_HEIGHT];
+	long[] mForwardedMillis = new long[FORWARDED_FRAMES];
+	long mForwardedCount = 0;
+	
+	long mSuppressedFrames = 0;
+
+	public TrackingSearchController(SearchController searchController, CraftARSearchResponseHandler responseHandler){
+		mSearchController = searchController;
+		mResponseHandler = responseHandler;
+	}
+
+	@Override
+	public void onPreviewFrame(CraftARQueryImage image) {
+		if(!mIsFinding){
+			mSearchController.onPreviewFrame(image);
+			return;
+		}
+		mHasFrame = QueryImageSampler.sampleLuma(image, GRID_WIDTH, GRID_HEIGHT, mFrame);
+		if(mHasFrame && mTracker.isTracking()){
+			if(mTracker.track(mFrame)){
+				//The recognized item is still in view, there's no need to search it again.
+				mSuppressedFrames++;
+				return;
+			}
+			Log.d(TAG, "Tracking lost after "+mSuppressedFrames+" frames, searching again");
+		}
+		if(mHasFrame){
+			int index = (int) (mForwardedCount++ % FORWARDED_FRAMES);
+			System.arraycopy(mFrame, 0, mForwardedFrames[index], 0, mFrame.length);
+			mForwardedMillis[index] = SystemClock.elapsedRealtime();
+		}
+		mSearchController.onPreviewFrame(image);
+	}
+
+	@Override
+	public void onPictureTaken(CraftARQueryImage image) {
+		mSearchController.onPictureTaken(image);
+	}
+
+	@Override
+	public void onTakePictureFailed(CraftARError error) {
+		mSearchController.onTakePictureFailed(error);
+	}
+
+	@Override
+	public void onFinderActivated() {
+		//Whatever was tracked before may not be in view anymore.
+		stopTracking();
+		mForwardedCount = 0;
+		mIsFinding = true;
+		mSearchController.onFinderActivated();
+	}
+
+	@Override
+	public void onFinderDeactivated() {
+		mIsFinding = false;
+		stopTracking();
+		mForwardedCount = 0;
+		mSearchController.onFinderDeactivated();
+	}
+
+	@Override
+	public void searchResults(ArrayList<CraftARResult> results, long searchTimeMillis, int requestCode) {
+		if(results.size() > 0 && mIsFinding && mForwardedCount > 0){
+			seed(searchedFrame(SystemClock.elapsedRealtime() - searchTimeMillis), results.get(0).getBoundingBox());
+			mSuppressedFrames = 0;
+		}
+		mResponseHandler.searchResults(results, searchTimeMillis, requestCode);
+	}
+
+	@Override
+	public void searchFailed(CraftARError error, int requestCode) {
+		mResponseHandler.searchFailed(error, requestCode);
+	}
+	
+	/**
+	 * Returns the grid of the newest frame forwarded at or before the given time, or the oldest one kept if they 
+	 * were all forwarded later.
+	 */
+	private byte[] searchedFrame(long searchStartMillis){
+		int kept = (int) Math.min(mForwardedCount, FORWARDED_FRAMES);
+		int index = 0;
+		for(int i = 1; i <= kept; i++){
+			index = (int) ((mForwardedCount - i) % FORWARDED_FRAMES);
+			if(mForwardedMillis[index] <= searchStartMillis){
+				break;
+			}
+		}
+		return mForwardedFrames[index];
+	}
+	
+	/**
+	 * Seeds the tracker with the area of the grid covered by the box (in normalized coordinates).
+	 */
+	private void seed(byte[] frame, CraftARBoundingBox box){
+		if(box != null){
+			int left = clamp(Math.round(Math.min(box.TLx, box.BLx) * GRID_WIDTH), GRID_WIDTH);
+			int right = clamp(Math.round(Math.max(box.TRx, box.BRx) * GRID_WIDTH), GRID_WIDTH);
+			int top = clamp(Math.round(Math.min(box.TLy, box.TRy) * GRID_HEIGHT), GRID_HEIGHT);
+			int bottom = clamp(Math.round(Math.max(box.BLy, box.BRy) * GRID_HEIGHT), GRID_HEIGHT);
+			if(right - left >= MIN_TEMPLATE_SIZE && bottom - top >= MIN_TEMPLATE_SIZE){
+				mTracker.seed(frame, left, top, right - left, bottom - top);
+				return;
+			}
+		}
+		mTracker.seed(frame, GRID_WIDTH / 4, GRID_HEIGHT / 4, GRID_WIDTH / 2, GRID_HEIGHT / 2);
+	}
+	
+	private static int clamp(int value, int max){
+		return Math.max(0, Math.min(value, max));
+	}
+	
+	public SearchController getSearchController(){
+		return mSearchController;
+	}
+	
+	/**
+	 * Returns true while a recognized item is being tracked (and the frames are not searched).
+	 */
+	public boolean isTracking(){
+		return mTracker.isTracking();
+	}
+	
+	/**
+	 * Stops tracking the current item, so the next frames are searched again.
+	 */
+	public void stopTracking(){
+		mTracker.stop();
+	}
+	
+	/**
+	 * Number of frames that were not searched because the item was being tracked, since the last hit.
+	 */
+	public long getSuppressedFrames(){
+		return mSuppressedFrames;
+	}
+}
@@ -0,0 +1,91 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+/**
+ * Reads a collection bundle from the app assets (i.e. "craftarexamples_odir.zip").
+ */
+public class AssetBundleSource implements BundleSource {
+
+	private final AssetManager mAssets;
+	private final String mAssetName;
+	private long mOffset = 0;
+	private long mLength = -1;
+
+	public AssetBundleSource(AssetManager assets, String assetName){
+		mAssets = assets;
+		mAssetName = assetName;
+	}
+
+	@Override
+	public String getName() {
+		return mAssetName;
+	}
+
+	@Override
+	public ReadableByteChannel open(long offset) throws IOException {
+		try {
+			AssetFileDescriptor fd = mAssets.openFd(mAssetName);
+			mLength = fd.getLength();
+			fd.close();
+		} catch (IOException e) {
+			//Compressed assets can't be opened as a file descriptor, so their length is unknown.
+			mLength = -1;
+		}
+		InputStream in = mAssets.open(mAssetName);
+		long skipped = 0;
+		while(skipped < offset){
+			long count = in.skip(offset - skipped);
+			if(count <= 0){
+				break;
+			}
+			skipped += count;
+		}
+		mOffset = skipped;
+		return Channels.newChannel(in);
+	}
+
+	@Override
+	public long getOffset() {
+		return mOffset;
+	}
+
+	@Override
+	public long getLength() {
+		return mLength;
+	}
+
+	@Override
+	public String getVersion() {
+		//The assets only change with the app, and then the staged copy is not needed anymore.
+		return null;
+	}
+}
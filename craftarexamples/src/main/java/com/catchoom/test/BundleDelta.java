@@ -0,0 +1,353 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary delta between two versions of a collection bundle, so an update only transfers what changed.
+ * 
+ * The delta is a list of operations that rebuild the new bundle: copy a range of the old bundle, or insert new data.
+ * It's computed like rsync does: the old bundle is split in blocks indexed by a rolling checksum, and the new bundle
+ * is scanned byte by byte looking for those blocks. Adding an item to a collection usually keeps most of the bundle
+ * in the same blocks, so the delta is about the size of the new item.
+ * 
+ * The delta carries the SHA-256 of both bundles: it's only applied to the bundle it was computed from, and the
+ * rebuilt bundle is verified before it's used.
+ * 
+ * Format (big endian): magic, block size, old length and SHA-256, new length and SHA-256, then the operations: 
+ * COPY (offset, length), DATA (length, bytes), and END.
+ */
+public class BundleDelta {
+
+	public final static int DEFAULT_BLOCK_SIZE = 4096;
+	
+	private final static byte[] MAGIC = {'C', 'R', 'D', 'E', 'L', 'T', 'A', '1'};
+	private final static int OP_END = 0;
+	private final static int OP_COPY = 1;
+	private final static int OP_DATA = 2;
+	
+	private final static int MAX_DATA_LENGTH = 64 * 1024;
+	private final static int BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * Thrown when a delta doesn't apply to the given bundle, or the result doesn't match the expected bundle.
+	 */
+	public static class DeltaException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public DeltaException(String message){
+			super(message);
+		}
+	}
+	
+	private BundleDelta(){
+	}
+	
+	/**
+	 * Writes the delta that turns the old bundle into the new one.
+	 */
+	public static void diff(byte[] oldBundle, byte[] newBundle, int blockSize, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+		data.write(MAGIC);
+		data.writeInt(blockSize);
+		data.writeLong(oldBundle.length);
+		data.write(sha256(oldBundle));
+		data.writeLong(newBundle.length);
+		data.write(sha256(newBundle));
+		
+		Map<Integer, List<Integer>> blocks = indexBlocks(oldBundle, blockSize);
+		OpWriter writer = new OpWriter(data, newBundle);
+		int position = 0;
+		int literalStart = 0;
+		int weak = newBundle.length >= blockSize ? checksum(newBundle, 0, blockSize) : 0;
+		while(position + blockSize <= newBundle.length){
+			int match = findBlock(blocks, weak, oldBundle, newBundle, position, blockSize);
+			if(match >= 0){
+				int length = blockSize;
+				while(match + length < oldBundle.length && position + length < newBundle.length 
+						&& oldBundle[match + length] == newBundle[position + length]){
+					length++;
+				}
+				writer.data(literalStart, position - literalStart);
+				writer.copy(match, length);
+				position += length;
+				literalStart = position;
+				if(position + blockSize <= newBundle.length){
+					weak = checksum(newBundle, position, blockSize);
+				}
+			}else{
+				if(position + blockSize < newBundle.length){
+					weak = roll(weak, newBundle[position], newBundle[position + blockSize], blockSize);
+				}
+				position++;
+			}
+		}
+		writer.data(literalStart, newBundle.length - literalStart);
+		writer.end();
+		data.flush();
+	}
+	
+	/**
+	 * Rebuilds the new bundle from the old bundle and the delta, and verifies it.
+	 * 
+	 * @throws DeltaException if the delta was not computed from this old bundle, or the result is not the expected bundle.
+	 * The target file is deleted then.
+	 */
+	public static void apply(File oldBundle, InputStream delta, File target) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(delta, BUFFER_SIZE));
+		byte[] magic = new byte[MAGIC.length];
+		in.readFully(magic);
+		if(!Arrays.equals(magic, MAGIC)){
+			throw new DeltaException("Not a bundle delta");
+		}
+		in.readInt(); //Block size, only needed to compute the delta.
+		long oldLength = in.readLong();
+		byte[] oldHash = new byte[32];
+		in.readFully(oldHash);
+		long newLength = in.readLong();
+		byte[] newHash = new byte[32];
+		in.readFully(newHash);
+		
+		if(oldBundle.length() != oldLength || !Arrays.equals(sha256(oldBundle), oldHash)){
+			throw new DeltaException("The delta is for a different version of " + oldBundle.getName());
+		}
+		
+		boolean isValid = false;
+		RandomAccessFile source = new RandomAccessFile(oldBundle, "r");
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(target), BUFFER_SIZE);
+		try {
+			MessageDigest digest = newDigest();
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long written = 0;
+			while(true){
+				int op = in.read();
+				if(op == OP_END){
+					break;
+				}else if(op == OP_COPY){
+					long offset = in.readLong();
+					int length = in.readInt();
+					if(offset < 0 || length < 0 || offset + length > oldLength){
+						throw new DeltaException("Copy out of range");
+					}
+					source.seek(offset);
+					while(length > 0){
+						int count = Math.min(length, buffer.length);
+						source.readFully(buffer, 0, count);
+						out.write(buffer, 0, count);
+						digest.update(buffer, 0, count);
+						length -= count;
+						written += count;
+					}
+				}else if(op == OP_DATA){
+					int length = in.readInt();
+					if(length < 0 || length > MAX_DATA_LENGTH){
+						throw new DeltaException("Invalid data length " + length);
+					}
+					in.readFully(buffer, 0, length);
+					out.write(buffer, 0, length);
+					digest.update(buffer, 0, length);
+					written += length;
+				}else if(op < 0){
+					throw new EOFException("Delta is truncated");
+				}else{
+					throw new DeltaException("Unknown operation " + op);
+				}
+			}
+			if(written != newLength || !Arrays.equals(digest.digest(), newHash)){
+				throw new DeltaException("The patched bundle doesn't match the expected checksum");
+			}
+			isValid = true;
+		} finally {
+			source.close();
+			out.close();
+			if(!isValid){
+				target.delete();
+			}
+		}
+	}
+	
+	public static byte[] sha256(File file) throws IOException {
+		MessageDigest digest = newDigest();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int count;
+			while((count = in.read(buffer)) >= 0){
+				digest.update(buffer, 0, count);
+			}
+		} finally {
+			in.close();
+		}
+		return digest.digest();
+	}
+	
+	public static String toHex(byte[] bytes){
+		StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes){
+			builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+			builder.append(Character.forDigit(b & 0xf, 16));
+		}
+		return builder.toString();
+	}
+	
+	private static byte[] sha256(byte[] bytes){
+		return newDigest().digest(bytes);
+	}
+	
+	private static MessageDigest newDigest(){
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			//Every Java and Android platform supports SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static Map<Integer, List<Integer>> indexBlocks(byte[] bundle, int blockSize){
+		Map<Integer, List<Integer>> blocks = new HashMap<Integer, List<Integer>>();
+		for(int offset = 0; offset + blockSize <= bundle.length; offset += blockSize){
+			int weak = checksum(bundle, offset, blockSize);
+			List<Integer> offsets = blocks.get(weak);
+			if(offsets == null){
+				offsets = new ArrayList<Integer>(1);
+				blocks.put(weak, offsets);
+			}
+			offsets.add(offset);
+		}
+		return blocks;
+	}
+	
+	private static int findBlock(Map<Integer, List<Integer>> blocks, int weak, byte[] oldBundle, byte[] newBundle, int position, int blockSize){
+		List<Integer> offsets = blocks.get(weak);
+		if(offsets == null){
+			return -1;
+		}
+		for(int offset : offsets){
+			if(regionMatches(oldBundle, offset, newBundle, position, blockSize)){
+				return offset;
+			}
+		}
+		return -1;
+	}
+	
+	private static boolean regionMatches(byte[] a, int aOffset, byte[] b, int bOffset, int length){
+		for(int i = 0; i < length; i++){
+			if(a[aOffset + i] != b[bOffset + i]){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	//rsync weak checksum: two 16 bit sums that can be rolled one byte at a time.
+	private static int checksum(byte[] bytes, int offset, int length){
+		int a = 0;
+		int b = 0;
+		for(int i = 0; i < length; i++){
+			int value = bytes[offset + i] & 0xff;
+			a += value;
+			b += (length - i) * value;
+		}
+		return ((b & 0xffff) << 16) | (a & 0xffff);
+	}
+	
+	private static int roll(int checksum, byte out, byte in, int length){
+		int a = checksum & 0xffff;
+		int b = checksum >>> 16;
+		a = (a - (out & 0xff) + (in & 0xff)) & 0xffff;
+		b = (b - length * (out & 0xff) + a) & 0xffff;
+		return (b << 16) | a;
+	}
+	
+	//Merges consecutive copies and splits the new data in chunks.
+	private static class OpWriter {
+		private final DataOutputStream mOut;
+		private final byte[] mNewBundle;
+		private long mCopyOffset = -1;
+		private int mCopyLength = 0;
+		
+		OpWriter(DataOutputStream out, byte[] newBundle){
+			mOut = out;
+			mNewBundle = newBundle;
+		}
+		
+		void copy(long offset, int length) throws IOException {
+			if(mCopyOffset >= 0 && mCopyOffset + mCopyLength == offset){
+				mCopyLength += length;
+				return;
+			}
+			flushCopy();
+			mCopyOffset = offset;
+			mCopyLength = length;
+		}
+		
+		void data(int offset, int length) throws IOException {
+			if(length == 0){
+				return;
+			}
+			flushCopy();
+			while(length > 0){
+				int count = Math.min(length, MAX_DATA_LENGTH);
+				mOut.write(OP_DATA);
+				mOut.writeInt(count);
+				mOut.write(mNewBundle, offset, count);
+				offset += count;
+				length -= count;
+			}
+		}
+		
+		void end() throws IOException {
+			flushCopy();
+			mOut.write(OP_END);
+		}
+		
+		private void flushCopy() throws IOException {
+			if(mCopyOffset >= 0){
+				mOut.write(OP_COPY);
+				mOut.writeLong(mCopyOffset);
+				mOut.writeInt(mCopyLength);
+				mCopyOffset = -1;
+				mCopyLength = 0;
+			}
+		}
+	}
+}
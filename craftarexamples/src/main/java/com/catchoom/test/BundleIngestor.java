@@ -0,0 +1,342 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Enumeration;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceCollection;
+import com.craftar.CraftAROnDeviceCollectionManager;
+import com.craftar.CraftAROnDeviceCollectionManager.AddCollectionListener;
+
+/**
+ * Copies a collection bundle into the device in a way that can be resumed, before adding it with 
+ * CraftAROnDeviceCollectionManager.addCollection().
+ * 
+ * The bundle is streamed from its {@link BundleSource} into a staging file with NIO channels, and the checksum of
+ * every zip entry is verified before handing it to the SDK. A journal next to the staging file records how far 
+ * the download and the verification got, so an interrupted ingestion (the app is killed, the Wi-Fi drops...) continues 
+ * from there the next time instead of starting over.
+ * 
+ * The progress of the whole process (download, verification, and the SDK adding the bundle) is reported with
+ * addCollectionProgress(). All the listener methods are called in the main thread.
+ */
+public class BundleIngestor {
+
+	public interface Listener extends AddCollectionListener {
+		/**
+		 * The bundle could not be copied or verified. Whatever was staged is kept so the next attempt resumes from it,
+		 * unless the bundle was corrupt.
+		 */
+		void ingestionFailed(IOException e);
+	}
+
+	private final static String TAG = "BundleIngestor";
+	
+	private final static int BUFFER_SIZE = 64 * 1024;
+	
+	//The journal is saved every time this many bytes are written to the staging file.
+	private final static long JOURNAL_INTERVAL_BYTES = 1024 * 1024;
+	
+	//Part of the reported progress used by every stage. The SDK adding the bundle takes the rest.
+	private final static float DOWNLOAD_PROGRESS_SHARE = 0.7f;
+	private final static float VERIFY_PROGRESS_SHARE = 0.1f;
+	
+	//Minimum progress change between two addCollectionProgress() calls.
+	private final static float PROGRESS_STEP = 0.001f;
+	
+	private final Context mContext;
+	private final File mBundlesDir;
+	private final File mStagingDir;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private volatile boolean mIsCancelled = false;
+	private Thread mThread;
+	private float mLastProgress;
+	
+	public BundleIngestor(Context context){
+		mContext = context.getApplicationContext();
+		mBundlesDir = new File(mContext.getFilesDir(), "bundles");
+		mStagingDir = new File(mBundlesDir, "staging");
+	}
+	
+	/**
+	 * Starts ingesting the bundle in a background thread. Only one bundle can be ingested at a time.
+	 */
+	public synchronized void ingest(final BundleSource source, final Listener listener){
+		if(mThread != null && mThread.isAlive()){
+			throw new IllegalStateException("Already ingesting a bundle");
+		}
+		mIsCancelled = false;
+		mLastProgress = -1;
+		mThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					final File bundle = stage(source, listener);
+					mHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							addToSDK(bundle, listener);
+						}
+					});
+				} catch (final IOException e) {
+					Log.e(TAG, "Ingestion of " + source.getName() + " failed", e);
+					mHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							listener.ingestionFailed(e);
+						}
+					});
+				}
+			}
+		}, "BundleIngestor");
+		mThread.start();
+	}
+	
+	/**
+	 * Stops the ingestion as soon as possible. What was already staged is kept, so it can be resumed later.
+	 */
+	public void cancel(){
+		mIsCancelled = true;
+	}
+	
+	/**
+	 * Copies and verifies the bundle, and returns the verified copy.
+	 */
+	private File stage(BundleSource source, Listener listener) throws IOException {
+		if(!mStagingDir.isDirectory() && !mStagingDir.mkdirs()){
+			throw new IOException("Could not create " + mStagingDir);
+		}
+		File stagedFile = new File(mStagingDir, source.getName() + ".part");
+		IngestionJournal journal = IngestionJournal.load(new File(mStagingDir, source.getName() + ".journal"));
+		
+		if(!journal.mIsDownloadComplete || stagedFile.length() != journal.mDownloadedBytes){
+			journal.mIsDownloadComplete = false;
+			journal.mVerifiedEntries = 0;
+			download(source, stagedFile, journal, listener);
+		}
+		
+		try {
+			verify(stagedFile, journal, listener);
+		} catch (ChecksumException e) {
+			//The staged copy is corrupt, there's no way to know which part of it. Start over the next time.
+			stagedFile.delete();
+			journal.delete();
+			throw e;
+		}
+		
+		File bundle = new File(mBundlesDir, source.getName());
+		if(!stagedFile.renameTo(bundle)){
+			throw new IOException("Could not rename " + stagedFile + " to " + bundle);
+		}
+		journal.delete();
+		return bundle;
+	}
+	
+	private void download(BundleSource source, File stagedFile, IngestionJournal journal, Listener listener) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(stagedFile, "rw");
+		try {
+			FileChannel out = file.getChannel();
+			long position = Math.min(journal.mDownloadedBytes, out.size());
+			ReadableByteChannel in = source.open(position);
+			try {
+				if(!journal.matches(source.getVersion(), source.getLength()) || source.getOffset() != position){
+					//Nothing to resume from, or the bundle changed since the last attempt.
+					if(source.getOffset() != 0){
+						in.close();
+						in = source.open(0);
+					}
+					position = source.getOffset();
+					journal.reset(source.getVersion(), source.getLength());
+				}else if(position > 0){
+					Log.d(TAG, "Resuming " + source.getName() + " at " + position + " bytes");
+				}
+				out.truncate(position);
+				
+				long length = source.getLength();
+				long journalPosition = position;
+				while(true){
+					if(mIsCancelled){
+						throw new InterruptedIOException("Ingestion cancelled");
+					}
+					mBuffer.clear();
+					if(in.read(mBuffer) < 0){
+						break;
+					}
+					mBuffer.flip();
+					while(mBuffer.hasRemaining()){
+						position += out.write(mBuffer, position);
+					}
+					if(position - journalPosition >= JOURNAL_INTERVAL_BYTES){
+						//The data must be on disk before the journal says it is.
+						out.force(false);
+						journal.mDownloadedBytes = position;
+						journal.save();
+						journalPosition = position;
+					}
+					if(length > 0){
+						reportProgress(listener, DOWNLOAD_PROGRESS_SHARE * position / length);
+					}
+				}
+				if(length >= 0 && position != length){
+					throw new IOException("Bundle " + source.getName() + " is truncated: " + position + " of " + length + " bytes");
+				}
+				out.force(false);
+				journal.mDownloadedBytes = position;
+				journal.mIsDownloadComplete = true;
+				journal.save();
+			} finally {
+				in.close();
+			}
+		} finally {
+			file.close();
+		}
+	}
+	
+	private void verify(File stagedFile, IngestionJournal journal, Listener listener) throws IOException {
+		ZipFile zip;
+		try {
+			zip = new ZipFile(stagedFile);
+		} catch (IOException e) {
+			throw new ChecksumException("Bundle is not a valid zip file: " + e.getMessage());
+		}
+		try {
+			long totalBytes = 0;
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while(entries.hasMoreElements()){
+				totalBytes += Math.max(entries.nextElement().getCompressedSize(), 0);
+			}
+			
+			CRC32 crc = new CRC32();
+			byte[] buffer = mBuffer.array();
+			long verifiedBytes = 0;
+			long journalBytes = 0;
+			int index = 0;
+			entries = zip.entries();
+			while(entries.hasMoreElements()){
+				ZipEntry entry = entries.nextElement();
+				verifiedBytes += Math.max(entry.getCompressedSize(), 0);
+				if(index++ < journal.mVerifiedEntries || entry.isDirectory()){
+					continue;
+				}
+				if(mIsCancelled){
+					throw new InterruptedIOException("Ingestion cancelled");
+				}
+				
+				crc.reset();
+				InputStream in = zip.getInputStream(entry);
+				try {
+					int count;
+					while((count = in.read(buffer)) >= 0){
+						crc.update(buffer, 0, count);
+					}
+				} catch (ZipException e) {
+					//The compressed data of the entry is damaged.
+					throw new ChecksumException("Corrupt entry " + entry.getName() + ": " + e.getMessage());
+				} finally {
+					in.close();
+				}
+				if(entry.getCrc() != -1 && crc.getValue() != entry.getCrc()){
+					throw new ChecksumException("Checksum mismatch in " + entry.getName());
+				}
+				
+				journal.mVerifiedEntries = index;
+				if(verifiedBytes - journalBytes >= JOURNAL_INTERVAL_BYTES){
+					journal.save();
+					journalBytes = verifiedBytes;
+				}
+				if(totalBytes > 0){
+					reportProgress(listener, DOWNLOAD_PROGRESS_SHARE + VERIFY_PROGRESS_SHARE * verifiedBytes / totalBytes);
+				}
+			}
+		} finally {
+			zip.close();
+		}
+	}
+	
+	private void addToSDK(final File bundle, final Listener listener){
+		CraftAROnDeviceCollectionManager.Instance().addCollection(new AddCollectionListener() {
+			@Override
+			public void collectionAdded(CraftAROnDeviceCollection collection) {
+				//Keep the bundle as the base for delta updates (see DeltaUpdater).
+				File installed = DeltaUpdater.getInstalledBundle(mContext, bundle.getName());
+				installed.getParentFile().mkdirs();
+				if(!bundle.renameTo(installed)){
+					bundle.delete();
+				}
+				listener.collectionAdded(collection);
+			}
+
+			@Override
+			public void addCollectionFailed(CraftARError error) {
+				bundle.delete();
+				listener.addCollectionFailed(error);
+			}
+
+			@Override
+			public void addCollectionProgress(float progress) {
+				float offset = DOWNLOAD_PROGRESS_SHARE + VERIFY_PROGRESS_SHARE;
+				listener.addCollectionProgress(offset + (1 - offset) * progress);
+			}
+		}, bundle.getAbsolutePath());
+	}
+	
+	private void reportProgress(final Listener listener, final float progress){
+		if(progress - mLastProgress < PROGRESS_STEP){
+			return;
+		}
+		mLastProgress = progress;
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				listener.addCollectionProgress(progress);
+			}
+		});
+	}
+	
+	private static class ChecksumException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		ChecksumException(String message){
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Where a collection bundle is read from by the {@link BundleIngestor}.
+ */
+public interface BundleSource {
+
+	/**
+	 * Name of the bundle, used to name the staged files.
+	 */
+	String getName();
+	
+	/**
+	 * Opens the bundle, starting at the given offset if the source supports it. After this call, {@link #getOffset()}
+	 * tells where the returned channel actually starts, and {@link #getLength()} and {@link #getVersion()} describe the bundle.
+	 */
+	ReadableByteChannel open(long offset) throws IOException;
+	
+	long getOffset();
+	
+	/**
+	 * Total length of the bundle in bytes, or -1 if it's unknown.
+	 */
+	long getLength();
+	
+	/**
+	 * Identifies the contents of the bundle (i.e. the ETag of a download), so a partial copy is only resumed if 
+	 * the bundle didn't change. It may be null.
+	 */
+	String getVersion();
+}
@@ -0,0 +1,129 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Asks a server whether the collection bundle changed since the last sync, with a HEAD request, so the collection
+ * is only synced when there's something new. 
+ * 
+ * The URL is expected to point to the latest bundle (or to anything that changes when the collection changes), and 
+ * the server to support ETag and/or Last-Modified. A local stand-in server serving a file works for testing.
+ * 
+ * This makes a network request: don't call it in the main thread.
+ */
+public class CollectionChangeChecker {
+
+	public enum Result {
+		CHANGED,
+		UNCHANGED,
+		//The server could not be reached, or it doesn't tell whether the bundle changed.
+		UNKNOWN
+	}
+	
+	private final static int DEFAULT_TIMEOUT_MILLIS = 5000;
+	
+	private final URL mUrl;
+	private final int mTimeoutMillis;
+	private String mETag;
+	private long mLastModified;
+	
+	public CollectionChangeChecker(URL url){
+		this(url, DEFAULT_TIMEOUT_MILLIS);
+	}
+	
+	public CollectionChangeChecker(URL url, int timeoutMillis){
+		mUrl = url;
+		mTimeoutMillis = timeoutMillis;
+	}
+	
+	/**
+	 * @param etag ETag returned by the server the last time, or null.
+	 * @param lastModified Last-Modified date returned by the server the last time, or 0.
+	 */
+	public Result check(String etag, long lastModified){
+		mETag = null;
+		mLastModified = 0;
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection) mUrl.openConnection();
+			connection.setRequestMethod("HEAD");
+			connection.setConnectTimeout(mTimeoutMillis);
+			connection.setReadTimeout(mTimeoutMillis);
+			connection.setUseCaches(false);
+			if(etag != null){
+				connection.setRequestProperty("If-None-Match", etag);
+			}
+			if(lastModified > 0){
+				connection.setIfModifiedSince(lastModified);
+			}
+			
+			int code = connection.getResponseCode();
+			mETag = connection.getHeaderField("ETag");
+			mLastModified = connection.getLastModified();
+			if(code == HttpURLConnection.HTTP_NOT_MODIFIED){
+				if(mETag == null){
+					mETag = etag;
+				}
+				if(mLastModified == 0){
+					mLastModified = lastModified;
+				}
+				return Result.UNCHANGED;
+			}
+			if(code != HttpURLConnection.HTTP_OK){
+				return Result.UNKNOWN;
+			}
+			//Some servers ignore the conditional headers in HEAD requests.
+			if(mETag != null && etag != null){
+				return mETag.equals(etag) ? Result.UNCHANGED : Result.CHANGED;
+			}
+			if(mLastModified > 0 && lastModified > 0){
+				return mLastModified <= lastModified ? Result.UNCHANGED : Result.CHANGED;
+			}
+			return (mETag != null || mLastModified > 0) ? Result.CHANGED : Result.UNKNOWN;
+		} catch (IOException e) {
+			return Result.UNKNOWN;
+		} finally {
+			if(connection != null){
+				connection.disconnect();
+			}
+		}
+	}
+	
+	/**
+	 * ETag returned by the server in the last check, or null.
+	 */
+	public String getETag(){
+		return mETag;
+	}
+	
+	/**
+	 * Last-Modified date returned by the server in the last check, or 0.
+	 */
+	public long getLastModified(){
+		return mLastModified;
+	}
+}
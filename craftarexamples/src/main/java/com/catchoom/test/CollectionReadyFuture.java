@@ -0,0 +1,168 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceCollection;
+
+/**
+ * Future that completes when the on-device collection is loaded and ready for recognition.
+ * 
+ * Activities should register a {@link Listener} (called in the main thread) instead of blocking in {@link #get()},
+ * which is only meant for background threads.
+ */
+public class CollectionReadyFuture implements Future<CraftAROnDeviceCollection> {
+
+	public interface Listener {
+		void collectionReady(CraftAROnDeviceCollection collection);
+		void collectionFailed(CraftARError error);
+	}
+
+	private final CountDownLatch mLatch = new CountDownLatch(1);
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	private final List<Listener> mListeners = new ArrayList<Listener>();
+	private CraftAROnDeviceCollection mCollection;
+	private CraftARError mError;
+	private boolean mIsDone = false;
+
+	/**
+	 * Calls the listener in the main thread when the collection is ready or fails to load. 
+	 * If that already happened, the listener is called right away (but never from inside this method).
+	 */
+	public void addListener(final Listener listener){
+		synchronized (this) {
+			if(!mIsDone){
+				mListeners.add(listener);
+				return;
+			}
+		}
+		mMainHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				notifyListener(listener);
+			}
+		});
+	}
+	
+	public synchronized void removeListener(Listener listener){
+		mListeners.remove(listener);
+	}
+
+	void setCollection(CraftAROnDeviceCollection collection){
+		complete(collection, null);
+	}
+
+	void setError(CraftARError error){
+		complete(null, error);
+	}
+
+	private void complete(CraftAROnDeviceCollection collection, CraftARError error){
+		final List<Listener> listeners;
+		synchronized (this) {
+			if(mIsDone){
+				return;
+			}
+			mCollection = collection;
+			mError = error;
+			mIsDone = true;
+			listeners = new ArrayList<Listener>(mListeners);
+			mListeners.clear();
+		}
+		mLatch.countDown();
+		mMainHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				for(Listener listener : listeners){
+					notifyListener(listener);
+				}
+			}
+		});
+	}
+	
+	private void notifyListener(Listener listener){
+		if(mError != null){
+			listener.collectionFailed(mError);
+		}else{
+			listener.collectionReady(mCollection);
+		}
+	}
+	
+	/**
+	 * Returns true if the collection is loaded and ready for recognition.
+	 */
+	public synchronized boolean isReady(){
+		return mIsDone && mError == null;
+	}
+	
+	public synchronized CraftARError getError(){
+		return mError;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		//Loading the collection can't be cancelled.
+		return false;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return false;
+	}
+
+	@Override
+	public synchronized boolean isDone() {
+		return mIsDone;
+	}
+
+	@Override
+	public CraftAROnDeviceCollection get() throws InterruptedException, ExecutionException {
+		mLatch.await();
+		return getResult();
+	}
+
+	@Override
+	public CraftAROnDeviceCollection get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if(!mLatch.await(timeout, unit)){
+			throw new TimeoutException();
+		}
+		return getResult();
+	}
+	
+	private synchronized CraftAROnDeviceCollection getResult() throws ExecutionException {
+		if(mError != null){
+			throw new ExecutionException(new Exception("Loading collection failed ("+mError.getErrorCode()+"): "+mError.getErrorMessage()));
+		}
+		return mCollection;
+	}
+}
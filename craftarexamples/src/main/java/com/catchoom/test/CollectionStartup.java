@@ -0,0 +1,239 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Toast;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceCollection;
+import com.craftar.CraftAROnDeviceCollectionManager;
+import com.craftar.CraftAROnDeviceIR;
+import com.craftar.SetOnDeviceCollectionListener;
+
+/**
+ * Prepares the on-device collection in the background when the app starts: adds the collection if it's
+ * not in the device yet, and loads it into memory with CraftAROnDeviceIR.setCollection().
+ * 
+ * The collection is added from a bundle with a {@link BundleIngestor} if a {@link BundleSource} is given, so an 
+ * interrupted download resumes the next time. Otherwise, or if the ingestion fails, it's downloaded with its token.
+ * 
+ * A collection that is already in the device is loaded right away, and synced later by a {@link CollectionSyncScheduler}.
+ * When the sync brings a new version, it's loaded the next time {@link #applyPendingUpdate()} is called.
+ * 
+ * Nothing in the UI waits for this pipeline except the recognition examples, which use {@link #getReadyFuture()}.
+ * The time at which every phase starts and ends is recorded (in milliseconds since the app started), so
+ * cold-start regressions show up in the log.
+ */
+public class CollectionStartup implements BundleIngestor.Listener, SetOnDeviceCollectionListener, CollectionSyncScheduler.Listener {
+
+	private final static String TAG = "CollectionStartup";
+	
+	public final static String PHASE_ADD = "add";
+	public final static String PHASE_LOAD = "load";
+	public final static String PHASE_UPDATE = "update";
+	
+	private final Context mContext;
+	private final String mCollectionToken;
+	private final long mOriginMillis;
+	private final CollectionSyncScheduler mSyncScheduler;
+	private final BundleSource mBundleSource;
+	private final Map<String, Long> mTimestamps = new LinkedHashMap<String, Long>();
+	private CollectionReadyFuture mReadyFuture = new CollectionReadyFuture();
+	private boolean mIsStarted = false;
+	private CraftAROnDeviceCollection mPendingUpdate;
+	private CraftAROnDeviceCollection mLoadingCollection;
+	private boolean mIsUpdating = false;
+	
+	/**
+	 * @param originMillis SystemClock.elapsedRealtime() when the app started. Timestamps are relative to it.
+	 * @param syncScheduler syncs the collection after it's loaded, or null to never sync it.
+	 * @param bundleSource bundle to add if the collection is not in the device, or null to download it with the token.
+	 */
+	public CollectionStartup(Context context, String collectionToken, long originMillis, CollectionSyncScheduler syncScheduler, BundleSource bundleSource){
+		mContext = context.getApplicationContext();
+		mCollectionToken = collectionToken;
+		mOriginMillis = originMillis;
+		mSyncScheduler = syncScheduler;
+		mBundleSource = bundleSource;
+	}
+	
+	public void start(){
+		if(mIsStarted){
+			return;
+		}
+		mIsStarted = true;
+		
+		//Obtain the collection with your token.
+		//This will lookup for the collection in the internal storage, and return the collection if it's available.
+		CraftAROnDeviceCollection col = CraftAROnDeviceCollectionManager.Instance().get(mCollectionToken);
+		if(col == null){
+			mark(PHASE_ADD + ".start");
+			if(mBundleSource != null){
+				//Copy and verify the bundle in a way that can be resumed if it's interrupted, then add it.
+				new BundleIngestor(mContext).ingest(mBundleSource, this);
+			}else{
+				//Collection is not available. Add it from the CraftAR service using the collection token.
+				CraftAROnDeviceCollectionManager.Instance().addCollectionWithToken(mCollectionToken, this);
+			}
+		}else{
+			//Collection is already available in the device. Use the local copy, it will be synced later.
+			loadCollection(col);
+		}
+	}
+	
+	/**
+	 * Returns the future of the collection currently loaded (or being loaded). A new future is used while an update is applied.
+	 */
+	public CollectionReadyFuture getReadyFuture(){
+		return mReadyFuture;
+	}
+	
+	/**
+	 * Loads the new version of the collection, if a sync brought one. Call it when no recognition is running.
+	 */
+	public void applyPendingUpdate(){
+		if(mPendingUpdate == null || !mReadyFuture.isReady()){
+			return;
+		}
+		CraftAROnDeviceCollection collection = mPendingUpdate;
+		mPendingUpdate = null;
+		mReadyFuture = new CollectionReadyFuture();
+		mIsUpdating = true;
+		mark(PHASE_UPDATE + ".start");
+		mLoadingCollection = collection;
+		CraftAROnDeviceIR.Instance().setCollection(collection, (SetOnDeviceCollectionListener) this);
+	}
+	
+	@Override
+	public void collectionSynced(CraftAROnDeviceCollection collection) {
+		mPendingUpdate = collection;
+	}
+	
+	/**
+	 * Records a startup milestone, so it can be compared with the collection phases (i.e. when the launcher is shown).
+	 */
+	public synchronized void mark(String name){
+		long elapsed = SystemClock.elapsedRealtime() - mOriginMillis;
+		mTimestamps.put(name, elapsed);
+		Log.d(TAG, "Startup " + name + " at " + elapsed + "ms");
+	}
+	
+	/**
+	 * Returns the recorded milestones in the order they happened, in milliseconds since the app started.
+	 */
+	public synchronized Map<String, Long> getTimestamps(){
+		return new LinkedHashMap<String, Long>(mTimestamps);
+	}
+	
+	private void loadCollection(CraftAROnDeviceCollection collection){
+		mark(PHASE_LOAD + ".start");
+		mLoadingCollection = collection;
+		CraftAROnDeviceIR.Instance().setCollection(collection, (SetOnDeviceCollectionListener) this);
+	}
+
+	@Override
+	public void collectionAdded(CraftAROnDeviceCollection collection) {
+		//Collection bundle has been added. Set this collection as current collection.
+		mark(PHASE_ADD + ".end");
+		Log.d(TAG, "Collection " + collection.getName() + " added");
+		if(mSyncScheduler != null){
+			//The collection was just downloaded, there's no need to sync it until the policy says so.
+			mSyncScheduler.markSynced(collection);
+		}
+		loadCollection(collection);
+	}
+
+	@Override
+	public void addCollectionFailed(CraftARError error) {
+		//Error adding the bundle to the device internal storage. 
+		mark(PHASE_ADD + ".failed");
+		Log.e(TAG, "AddCollectionFailed(" + error.getErrorCode() + "):" + error.getErrorMessage());
+		Toast.makeText(mContext, "Error adding collection", Toast.LENGTH_SHORT).show();
+		switch(error.getErrorCode()){
+		case COLLECTION_BUNDLE_SDK_VERSION_IS_OLD:
+			//You are trying to add a bundle which version is newer than the SDK version. 
+			//You should either update the SDK, or download and add a bundle compatible with this SDK version.
+			break;
+		case COLLECTION_BUNDLE_VERSION_IS_OLD:
+			//You are trying to add a bundle which is outdated, since the SDK version is newer than the bundleSDK 
+			//You should download a bundle compatible with the newer SDK version.
+			break;
+		default:
+			break;
+		}
+		mReadyFuture.setError(error);
+	}
+
+	@Override
+	public void ingestionFailed(IOException e) {
+		//What was copied is kept, so the next launch resumes the bundle. Meanwhile, download the collection with its token.
+		mark(PHASE_ADD + ".ingestionFailed");
+		Log.e(TAG, "Could not ingest the bundle " + mBundleSource.getName() + ": " + e.getMessage() + ". Downloading the collection instead.");
+		CraftAROnDeviceCollectionManager.Instance().addCollectionWithToken(mCollectionToken, this);
+	}
+
+	@Override
+	public void addCollectionProgress(float progress) {
+		//Progress adding the collection to internal storage (de-compressing bundle and storing into the device storage).
+		//Note that this might only happen once per app installation, or when the bundle is updated.
+		Log.d(TAG, "AddCollectionProgress:" + progress);
+	}
+
+	@Override
+	public void collectionReady(List<CraftARError> list) {
+		//Collection is ready for recognition.
+		if(mReadyFuture.isDone()){
+			return;
+		}
+		CraftAROnDeviceCollection collection = mLoadingCollection;
+		mark((mIsUpdating ? PHASE_UPDATE : PHASE_LOAD) + ".end");
+		mReadyFuture.setCollection(collection);
+		if(!mIsUpdating && mSyncScheduler != null){
+			mSyncScheduler.schedule(collection, this);
+		}
+		mIsUpdating = false;
+	}
+
+	@Override
+	public void setCollectionFailed(CraftARError error) {
+		//Error loading the collection into memory. No recognition can be performed unless a collection has been set.
+		mark((mIsUpdating ? PHASE_UPDATE : PHASE_LOAD) + ".failed");
+		mIsUpdating = false;
+		Log.e(TAG, "SetCollectionFailed (" + error.getErrorCode() + "):" + error.getErrorMessage());
+		mReadyFuture.setError(error);
+	}
+
+	@Override
+	public void setCollectionProgress(double progress) {
+		//The images from the collection are loading into memory. You will have to load the collections into memory every time you open the app. 
+		Log.d(TAG, "SetCollectionProgress:" + progress);
+	}
+}
@@ -0,0 +1,305 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceCollection;
+import com.craftar.CraftAROnDeviceCollectionManager.AddCollectionListener;
+import com.craftar.CraftAROnDeviceCollectionManager.SyncCollectionListener;
+
+/**
+ * Syncs the on-device collection in the background, following a {@link SyncPolicy}.
+ * 
+ * Nothing is done if the last sync is more recent than the minimum interval of the policy, so most launches don't
+ * make any network request. Otherwise, the sync waits until the app has been idle for a while and the network allowed
+ * by the policy is available. Then, if a {@link CollectionChangeChecker} is given, it checks whether the collection 
+ * changed before syncing it.
+ * 
+ * If a {@link DeltaUpdater} is set and the bundle of the collection is installed in the device, the collection is 
+ * updated with a delta against that bundle instead of being synced.
+ * 
+ * The time of the last sync is kept in the SharedPreferences. All the methods and callbacks run in the main thread.
+ */
+public class CollectionSyncScheduler {
+
+	public interface Listener {
+		/**
+		 * Called when a newer version of the collection has been synced to the device storage. 
+		 * It still has to be loaded with CraftAROnDeviceIR.setCollection() to be used for recognition.
+		 */
+		void collectionSynced(CraftAROnDeviceCollection collection);
+	}
+
+	private final static String TAG = "CollectionSyncScheduler";
+	
+	private final static String PREFERENCES_NAME = "collection_sync";
+	private final static String KEY_LAST_SYNC = "last_sync_";
+	private final static String KEY_ETAG = "etag_";
+	private final static String KEY_LAST_MODIFIED = "last_modified_";
+	
+	private final Context mContext;
+	private final SyncPolicy mPolicy;
+	private final CollectionChangeChecker mChangeChecker;
+	private final SharedPreferences mPreferences;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	
+	private CraftAROnDeviceCollection mCollection;
+	private Listener mListener;
+	private boolean mIsScheduled = false;
+	private BroadcastReceiver mConnectivityReceiver;
+	private ExecutorService mExecutor;
+	private DeltaUpdater mDeltaUpdater;
+	private String mCollectionToken;
+	private String mBundleName;
+	
+	/**
+	 * @param changeChecker used to check if the collection changed before syncing it. If null, the collection is 
+	 * synced whenever the policy allows it.
+	 */
+	public CollectionSyncScheduler(Context context, SyncPolicy policy, CollectionChangeChecker changeChecker){
+		mContext = context.getApplicationContext();
+		mPolicy = policy;
+		mChangeChecker = changeChecker;
+		mPreferences = mContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+	}
+	
+	/**
+	 * Updates the collection with deltas when its bundle is installed (see {@link DeltaUpdater#getInstalledBundle}).
+	 * 
+	 * @param collectionToken token used by the updater to download the whole collection if the delta can't be used.
+	 * @param bundleName name of the installed bundle.
+	 */
+	public void setDeltaUpdater(DeltaUpdater deltaUpdater, String collectionToken, String bundleName){
+		mDeltaUpdater = deltaUpdater;
+		mCollectionToken = collectionToken;
+		mBundleName = bundleName;
+	}
+	
+	/**
+	 * Schedules a sync of the collection if the policy says it's due. 
+	 */
+	public void schedule(CraftAROnDeviceCollection collection, Listener listener){
+		if(mIsScheduled){
+			return;
+		}
+		long lastSyncMillis = mPreferences.getLong(KEY_LAST_SYNC + collection.getName(), -1);
+		if(!mPolicy.isSyncDue(System.currentTimeMillis(), lastSyncMillis)){
+			Log.d(TAG, "Collection " + collection.getName() + " was synced recently, skipping sync");
+			return;
+		}
+		mCollection = collection;
+		mListener = listener;
+		mIsScheduled = true;
+		mHandler.postDelayed(mWaitForIdleRunnable, mPolicy.getIdleDelayMillis());
+	}
+	
+	/**
+	 * Cancels the scheduled sync, if it hasn't started yet.
+	 */
+	public void cancel(){
+		mHandler.removeCallbacks(mWaitForIdleRunnable);
+		Looper.myQueue().removeIdleHandler(mIdleHandler);
+		unregisterConnectivityReceiver();
+		mIsScheduled = false;
+	}
+	
+	/**
+	 * Records that the collection is up to date now (i.e. because it was just downloaded).
+	 */
+	public void markSynced(CraftAROnDeviceCollection collection){
+		mCollection = collection;
+		recordSync(null, 0);
+	}
+	
+	public long getLastSyncMillis(String collectionName){
+		return mPreferences.getLong(KEY_LAST_SYNC + collectionName, -1);
+	}
+	
+	private final Runnable mWaitForIdleRunnable = new Runnable() {
+		@Override
+		public void run() {
+			Looper.myQueue().addIdleHandler(mIdleHandler);
+		}
+	};
+	
+	private final MessageQueue.IdleHandler mIdleHandler = new MessageQueue.IdleHandler() {
+		@Override
+		public boolean queueIdle() {
+			waitForNetwork();
+			return false;
+		}
+	};
+	
+	private void waitForNetwork(){
+		if(canSyncNow()){
+			checkForChanges();
+			return;
+		}
+		Log.d(TAG, "Waiting for network to sync collection " + mCollection.getName());
+		mConnectivityReceiver = new BroadcastReceiver() {
+			@Override
+			public void onReceive(Context context, Intent intent) {
+				if(canSyncNow()){
+					unregisterConnectivityReceiver();
+					checkForChanges();
+				}
+			}
+		};
+		mContext.registerReceiver(mConnectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+	}
+	
+	private void unregisterConnectivityReceiver(){
+		if(mConnectivityReceiver != null){
+			mContext.unregisterReceiver(mConnectivityReceiver);
+			mConnectivityReceiver = null;
+		}
+	}
+	
+	private boolean canSyncNow(){
+		ConnectivityManager connectivityManager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+		NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+		boolean isConnected = networkInfo != null && networkInfo.isConnected();
+		return mPolicy.canSyncOn(isConnected, connectivityManager.isActiveNetworkMetered());
+	}
+	
+	private void checkForChanges(){
+		final String name = mCollection.getName();
+		final String etag = mPreferences.getString(KEY_ETAG + name, null);
+		final long lastModified = mPreferences.getLong(KEY_LAST_MODIFIED + name, 0);
+		if(mChangeChecker == null){
+			sync(etag, lastModified);
+			return;
+		}
+		
+		mExecutor = Executors.newSingleThreadExecutor();
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				final CollectionChangeChecker.Result result = mChangeChecker.check(etag, lastModified);
+				final String newETag = mChangeChecker.getETag();
+				final long newLastModified = mChangeChecker.getLastModified();
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						mExecutor.shutdown();
+						mExecutor = null;
+						if(result == CollectionChangeChecker.Result.UNCHANGED){
+							Log.d(TAG, "Collection " + name + " didn't change, skipping sync");
+							recordSync(newETag, newLastModified);
+							mIsScheduled = false;
+						}else{
+							sync(newETag, newLastModified);
+						}
+					}
+				});
+			}
+		});
+	}
+	
+	private void sync(final String etag, final long lastModified){
+		if(mDeltaUpdater != null && DeltaUpdater.getInstalledBundle(mContext, mBundleName).isFile()){
+			update(etag, lastModified);
+			return;
+		}
+		Log.d(TAG, "Syncing collection " + mCollection.getName());
+		mCollection.sync(new SyncCollectionListener() {
+			@Override
+			public void syncSuccessful(CraftAROnDeviceCollection collection) {
+				Log.d(TAG, "Sync succesful for collection " + collection.getName());
+				recordSync(etag, lastModified);
+				mIsScheduled = false;
+				mListener.collectionSynced(collection);
+			}
+
+			@Override
+			public void syncFinishedWithErrors(CraftAROnDeviceCollection collection, CraftARError error) {
+				Log.e(TAG, error.getErrorMessage());
+			}
+
+			@Override
+			public void syncProgress(CraftAROnDeviceCollection collection, float progress) {
+				Log.d(TAG, "Sync progress for collection " + collection.getName() + ":" + progress);
+			}
+
+			@Override
+			public void syncFailed(CraftAROnDeviceCollection collection, CraftARError error) {
+				//Nothing is recorded, so the sync is tried again in the next launch.
+				Log.e(TAG, "Sync failed for collection " + collection.getName() + ":" + error.getErrorMessage());
+				mIsScheduled = false;
+			}
+		});
+	}
+	
+	private void update(final String etag, final long lastModified){
+		Log.d(TAG, "Updating collection " + mCollection.getName() + " with a delta");
+		mDeltaUpdater.update(mCollectionToken, mBundleName, new AddCollectionListener() {
+			@Override
+			public void collectionAdded(CraftAROnDeviceCollection collection) {
+				Log.d(TAG, "Update succesful for collection " + collection.getName());
+				recordSync(etag, lastModified);
+				mIsScheduled = false;
+				mListener.collectionSynced(collection);
+			}
+
+			@Override
+			public void addCollectionFailed(CraftARError error) {
+				//Nothing is recorded, so the update is tried again in the next launch.
+				Log.e(TAG, "Update failed for collection " + mCollection.getName() + ":" + error.getErrorMessage());
+				mIsScheduled = false;
+			}
+
+			@Override
+			public void addCollectionProgress(float progress) {
+				Log.d(TAG, "Update progress for collection " + mCollection.getName() + ":" + progress);
+			}
+		});
+	}
+	
+	private void recordSync(String etag, long lastModified){
+		String name = mCollection.getName();
+		SharedPreferences.Editor editor = mPreferences.edit();
+		editor.putLong(KEY_LAST_SYNC + name, System.currentTimeMillis());
+		if(etag != null){
+			editor.putString(KEY_ETAG + name, etag);
+		}
+		if(lastModified > 0){
+			editor.putLong(KEY_LAST_MODIFIED + name, lastModified);
+		}
+		editor.apply();
+	}
+}
@@ -15,11 +15,18 @@ import android.view.ViewGroup;
 import android.widget.Toast;
 
 import com.catchoom.test.R;
+import com.catchoom.advancedexamples.CaptureSessionManager;
+import com.catchoom.advancedexamples.FinderGovernor;
+import com.catchoom.advancedexamples.FinderSessionTimer;
+import com.catchoom.advancedexamples.GatedSearchController;
+import com.catchoom.advancedexamples.RecognitionMetrics;
+import com.catchoom.advancedexamples.SearchPath;
 import com.craftar.CraftARError;
 import com.craftar.CraftAROnDeviceIR;
 import com.craftar.CraftARResult;
 import com.craftar.CraftARSDK;
 import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
 
 public class CraftARCameraFragment extends Fragment  implements CraftARSearchResponseHandler{
 
@@ -29,10 +36,29 @@ public class CraftARCameraFragment extends Fragment  implements CraftARSearchRes
 	CraftAROnDeviceIR mOnDeviceIR;
 	CraftARSDK mCraftARSDK;
 	View mScanningLayout;
-	long startFinderTimeMillis;
+	FinderGovernor mFinderGovernor;
+	FinderSessionTimer mSessionTimer;
 	boolean mIsCraftARInitialized = false;
 	boolean mIsFragmentVisible = false;
-	private final static long FINDER_SESSION_TIME_MILLIS= 10000;
+	
+	private final static String SESSION_KEY = "cameraFragment";
+	
+	//The same SearchController as the RecognitionFinderActivity, behind a gate that drops the frames while the page is not shown.
+	private final static CaptureSessionManager.SearchControllerProvider SEARCH_CONTROLLER_PROVIDER = new CaptureSessionManager.SearchControllerProvider() {
+		@Override
+		public SearchController createSearchController(CraftARSearchResponseHandler responseHandler) {
+			return new GatedSearchController(RecognitionFinderActivity.FINDER_SEARCH_CONTROLLER_PROVIDER.createSearchController(responseHandler));
+		}
+
+		@Override
+		public void attachSearchController(SearchController searchController) {
+			GatedSearchController frameGate = (GatedSearchController) searchController;
+			RecognitionFinderActivity.FINDER_SEARCH_CONTROLLER_PROVIDER.attachSearchController(frameGate.getSearchController());
+		}
+	};
+	
+	GatedSearchController mFrameGate;
+	boolean mIsFinding = false;
 	
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
@@ -45,17 +71,23 @@ public class CraftARCameraFragment extends Fragment  implements CraftARSearchRes
         //Obtain an instance of the CraftARSDK (which manages the camera interaction).
         //Note we already called CraftARSDK.init() in the Splash Screen, so we don't have to do it again
 		mCraftARSDK = CraftARSDK.Instance(); 
-		mCraftARSDK.startCapture(mParentActivity);
 		
 		//Get the instance to the OnDeviceIR singleton (it has already been initialized in the SplashScreenActivity, and the collectoins are already loaded).
 		mOnDeviceIR = CraftAROnDeviceIR.Instance();	
 		
-		//Tell the SDK that the OnDeviceIR who manage the calls to singleShotSearch() and startFinding().
-		//In this case, as we are using on-device-image-recognition, we will tell the SDK that the OnDeviceIR singleton will manage this calls.
-		mCraftARSDK.setSearchController(mOnDeviceIR.getSearchController());
-		
-		//Tell the SDK that we want to receive the search responses in this class.
-		mOnDeviceIR.setCraftARSearchResponseHandler(this);
+		//Start the capture and set the SearchController (reusing it if this screen was closed a moment ago).
+		mFrameGate = (GatedSearchController) CaptureSessionManager.Instance().startSession(this, mParentActivity, SESSION_KEY, this, SEARCH_CONTROLLER_PROVIDER);
+		mFrameGate.setOpen(true);
+		mFinderGovernor = RecognitionFinderActivity.getFinderGovernor(mFrameGate.getSearchController());
+		//The governor decides when the finder session is over (so the phone is not finding indefinitely, but stops after some time).
+		mSessionTimer = new FinderSessionTimer(mFinderGovernor, new FinderSessionTimer.Listener() {
+			@Override
+			public void finderSessionOver() {
+				stopFinding();
+				//No object were found during this session
+				showNoObjectsDialog();
+			}
+		});
 
 		mIsCraftARInitialized = true;
 
@@ -85,19 +117,12 @@ public class CraftARCameraFragment extends Fragment  implements CraftARSearchRes
 	public void searchResults(ArrayList<CraftARResult> results,
 			long searchTimeMillis, int requestCode) {
 		//Callback with the search results
+		RecognitionMetrics.Instance().recordSearch(SearchPath.ON_DEVICE_FINDER, searchTimeMillis, results.size());
 		
 		if(results.size() > 0){
 			//We found something! Show the results
 			stopFinding();
 			showResultDialog(results);	
-		}else{
-			//We have a timeout for the finder session (so the phone is not finding indefinitely, but stops after some time).
-			long ellapsedTime = System.currentTimeMillis() - startFinderTimeMillis;
-			if(ellapsedTime > FINDER_SESSION_TIME_MILLIS ){
-				stopFinding();
-				//No object were found during this session
-				showNoObjectsDialog();
-			}
 		}
 	}
 
@@ -158,17 +183,47 @@ public class CraftARCameraFragment extends Fragment  implements CraftARSearchRes
 
 	private void startFinding(){
 		mScanningLayout.setVisibility(View.VISIBLE);
-		mCraftARSDK.startFinder(); //Start finder in the CraftARSDK.
-		startFinderTimeMillis= System.currentTimeMillis();
+		if(!mIsFinding){
+			mIsFinding = true;
+			mCraftARSDK.startFinder(); //Start finder in the CraftARSDK. The governor starts a new session.
+			mSessionTimer.start();
+		}
 	}
 	
 	private void stopFinding(){
+		mIsFinding = false;
+		mSessionTimer.stop();
 		mCraftARSDK.stopFinder(); //Stop the finder in the CraftARSDK.
 		mScanningLayout.setVisibility(View.INVISIBLE);
 	}
 	
+	/**
+	 * Stops the finder and drops the camera frames before they reach the search pipeline. Called by the {@link PageCaptureController}
+	 * when the page is not shown. The camera preview keeps running, so the frames are still delivered.
+	 */
+	public void suspendCapture(){
+		if(!mIsCraftARInitialized){
+			return;
+		}
+		stopFinding();
+		mFrameGate.setOpen(false);
+	}
+	
+	/**
+	 * Lets the frames through and starts the finder again. It's called as soon as the page starts coming into view,
+	 * so the finder is already running when the page is shown.
+	 */
+	public void resumeCapture(){
+		if(!mIsCraftARInitialized){
+			return;
+		}
+		mFrameGate.setOpen(true);
+		startFinding();
+	}
+	
 	@Override
 	public void searchFailed(CraftARError error, int requestCode) {
+		RecognitionMetrics.Instance().recordFailure(SearchPath.ON_DEVICE_FINDER, error.getErrorCode());
 		Log.e(TAG, "Search failed("+error.getErrorCode()+"):"+error.getErrorMessage());
 	}	
 	
@@ -193,6 +248,14 @@ public class CraftARCameraFragment extends Fragment  implements CraftARSearchRes
 	
 	public void onPreviewStarted(int width, int height){
 		//We get the event from the CraftARActivity
+		CaptureSessionManager.Instance().onPreviewStarted(this);
+	}
+	
+	@Override
+	public void onDestroyView() {
+		super.onDestroyView();
+		mIsCraftARInitialized = false;
+		CaptureSessionManager.Instance().endSession(this);
 	}
 	
 	public void onCameraOpenFailed(){
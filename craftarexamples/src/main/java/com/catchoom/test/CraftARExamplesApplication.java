@@ -0,0 +1,99 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import android.app.Application;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.craftar.CraftARSDK;
+
+/**
+ * Starts loading the on-device collection as soon as the process starts, so the launcher doesn't have to wait for it.
+ */
+public class CraftARExamplesApplication extends Application {
+
+	private final static String TAG = "CraftARExamplesApplication";
+	
+	//URL checked before syncing the collection, to skip the sync if it didn't change (see CollectionChangeChecker).
+	//Point it to the bundle of your collection, or to a local server while testing (i.e. "http://10.0.2.2:8000/imagerecognition.zip" from the emulator).
+	//If it's null, the collection is synced whenever the sync policy allows it.
+	private final static String COLLECTION_CHANGE_CHECK_URL = null;
+	
+	//URL of the bundle of the on-device collection, downloaded with a BundleIngestor the first time the app runs.
+	//If it's null, the collection is downloaded from the CraftAR service with its token.
+	private final static String COLLECTION_BUNDLE_URL = null;
+	private final static String COLLECTION_BUNDLE_NAME = "craftarexamples_odir.zip";
+	
+	//URL of the deltas between the versions of the bundle, followed by the SHA-256 of the installed one (see DeltaUpdater).
+	//Once a bundle is installed, the collection is updated with a delta instead of synced. If it's null, it's always synced.
+	private final static String DELTA_BASE_URL = null;
+
+	private CollectionStartup mCollectionStartup;
+	
+	@Override
+	public void onCreate() {
+		long startMillis = SystemClock.elapsedRealtime();
+		super.onCreate();
+		CraftARSDK.Instance().init(getApplicationContext());
+		
+		CollectionSyncScheduler syncScheduler = new CollectionSyncScheduler(this, new SyncPolicy(), createChangeChecker());
+		if(DELTA_BASE_URL != null){
+			syncScheduler.setDeltaUpdater(new DeltaUpdater(this, DELTA_BASE_URL), SplashScreenActivity.COLLECTION_TOKEN, COLLECTION_BUNDLE_NAME);
+		}
+		mCollectionStartup = new CollectionStartup(this, SplashScreenActivity.COLLECTION_TOKEN, startMillis, syncScheduler, createBundleSource());
+		mCollectionStartup.mark("sdk.init");
+		mCollectionStartup.start();
+	}
+	
+	private CollectionChangeChecker createChangeChecker(){
+		if(COLLECTION_CHANGE_CHECK_URL == null){
+			return null;
+		}
+		try {
+			return new CollectionChangeChecker(new URL(COLLECTION_CHANGE_CHECK_URL));
+		} catch (MalformedURLException e) {
+			Log.e(TAG, "Invalid collection change check URL: " + COLLECTION_CHANGE_CHECK_URL);
+			return null;
+		}
+	}
+	
+	private BundleSource createBundleSource(){
+		if(COLLECTION_BUNDLE_URL == null){
+			return null;
+		}
+		try {
+			return new HttpBundleSource(new URL(COLLECTION_BUNDLE_URL), COLLECTION_BUNDLE_NAME);
+		} catch (MalformedURLException e) {
+			Log.e(TAG, "Invalid collection bundle URL: " + COLLECTION_BUNDLE_URL);
+			return null;
+		}
+	}
+	
+	public CollectionStartup getCollectionStartup(){
+		return mCollectionStartup;
+	}
+}
@@ -0,0 +1,171 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceCollection;
+import com.craftar.CraftAROnDeviceCollectionManager;
+import com.craftar.CraftAROnDeviceCollectionManager.AddCollectionListener;
+
+/**
+ * Updates an on-device collection by downloading a {@link BundleDelta} against the bundle installed in the device,
+ * instead of downloading the whole new bundle.
+ * 
+ * The delta is requested from the given base URL followed by the SHA-256 of the installed bundle (i.e.
+ * "https://example.com/deltas/imagerecognition/<sha256>.delta"), so the server knows which version the app has.
+ * A local stand-in server that serves precomputed deltas works for testing.
+ * 
+ * If there's no installed bundle, the server has no delta for it, or the delta can't be applied or verified, the 
+ * collection is downloaded with CraftAROnDeviceCollectionManager.addCollectionWithToken() instead.
+ * 
+ * The bundle added through the delta is kept as the base of the next update. {@link BundleIngestor} keeps the bundles 
+ * it adds too. The listener methods are called in the main thread.
+ */
+public class DeltaUpdater {
+
+	private final static String TAG = "DeltaUpdater";
+	
+	private final static int TIMEOUT_MILLIS = 15000;
+	
+	private final Context mContext;
+	private final String mDeltaBaseUrl;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	
+	public DeltaUpdater(Context context, String deltaBaseUrl){
+		mContext = context.getApplicationContext();
+		mDeltaBaseUrl = deltaBaseUrl;
+	}
+	
+	/**
+	 * Copy of the last bundle added for the collection, used as the base of delta updates.
+	 */
+	public static File getInstalledBundle(Context context, String bundleName){
+		return new File(new File(new File(context.getFilesDir(), "bundles"), "installed"), bundleName);
+	}
+	
+	/**
+	 * Updates the collection in a background thread.
+	 * 
+	 * @param collectionToken token used to download the whole collection if the delta can't be used.
+	 * @param bundleName name of the installed bundle.
+	 */
+	public void update(final String collectionToken, final String bundleName, final AddCollectionListener listener){
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final File patched;
+				try {
+					patched = downloadAndApply(bundleName);
+				} catch (IOException e) {
+					Log.e(TAG, "Delta update of " + bundleName + " failed: " + e.getMessage());
+					mHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							fullDownload(collectionToken, bundleName, listener);
+						}
+					});
+					return;
+				}
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						addPatchedBundle(patched, collectionToken, bundleName, listener);
+					}
+				});
+			}
+		}, "DeltaUpdater").start();
+	}
+	
+	private File downloadAndApply(String bundleName) throws IOException {
+		File installed = getInstalledBundle(mContext, bundleName);
+		if(!installed.isFile()){
+			throw new IOException("There's no installed bundle to patch");
+		}
+		
+		URL url = new URL(mDeltaBaseUrl + BundleDelta.toHex(BundleDelta.sha256(installed)) + ".delta");
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setConnectTimeout(TIMEOUT_MILLIS);
+		connection.setReadTimeout(TIMEOUT_MILLIS);
+		try {
+			int code = connection.getResponseCode();
+			if(code != HttpURLConnection.HTTP_OK){
+				throw new IOException("No delta available at " + url + " (" + code + ")");
+			}
+			File patched = new File(installed.getParentFile(), bundleName + ".patched");
+			InputStream in = connection.getInputStream();
+			try {
+				BundleDelta.apply(installed, in, patched);
+			} finally {
+				in.close();
+			}
+			Log.d(TAG, "Applied delta of " + connection.getContentLength() + " bytes to " + bundleName);
+			return patched;
+		} finally {
+			connection.disconnect();
+		}
+	}
+	
+	private void addPatchedBundle(final File patched, final String collectionToken, final String bundleName, final AddCollectionListener listener){
+		CraftAROnDeviceCollectionManager.Instance().addCollection(new AddCollectionListener() {
+			@Override
+			public void collectionAdded(CraftAROnDeviceCollection collection) {
+				File installed = getInstalledBundle(mContext, bundleName);
+				if(!patched.renameTo(installed)){
+					installed.delete();
+					patched.delete();
+				}
+				listener.collectionAdded(collection);
+			}
+
+			@Override
+			public void addCollectionFailed(CraftARError error) {
+				Log.e(TAG, "Adding patched bundle failed (" + error.getErrorCode() + "):" + error.getErrorMessage());
+				patched.delete();
+				fullDownload(collectionToken, bundleName, listener);
+			}
+
+			@Override
+			public void addCollectionProgress(float progress) {
+				listener.addCollectionProgress(progress);
+			}
+		}, patched.getAbsolutePath());
+	}
+	
+	private void fullDownload(String collectionToken, String bundleName, AddCollectionListener listener){
+		//The installed bundle doesn't match the downloaded collection anymore, so it can't be the base of the next delta.
+		getInstalledBundle(mContext, bundleName).delete();
+		Log.d(TAG, "Downloading the whole collection " + collectionToken);
+		CraftAROnDeviceCollectionManager.Instance().addCollectionWithToken(collectionToken, listener);
+	}
+}
@@ -0,0 +1,127 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Downloads a collection bundle from a URL, resuming with a Range request when the server supports it.
+ */
+public class HttpBundleSource implements BundleSource {
+
+	private final static int DEFAULT_TIMEOUT_MILLIS = 15000;
+	
+	private final URL mUrl;
+	private final String mName;
+	private final int mTimeoutMillis;
+	private HttpURLConnection mConnection;
+	private long mOffset = 0;
+	private long mLength = -1;
+	private String mVersion;
+	
+	public HttpBundleSource(URL url, String name){
+		this(url, name, DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	public HttpBundleSource(URL url, String name, int timeoutMillis){
+		mUrl = url;
+		mName = name;
+		mTimeoutMillis = timeoutMillis;
+	}
+
+	@Override
+	public String getName() {
+		return mName;
+	}
+
+	@Override
+	public ReadableByteChannel open(long offset) throws IOException {
+		if(mConnection != null){
+			mConnection.disconnect();
+		}
+		mConnection = (HttpURLConnection) mUrl.openConnection();
+		mConnection.setConnectTimeout(mTimeoutMillis);
+		mConnection.setReadTimeout(mTimeoutMillis);
+		if(offset > 0){
+			mConnection.setRequestProperty("Range", "bytes=" + offset + "-");
+		}
+		
+		int code = mConnection.getResponseCode();
+		if(code == HttpURLConnection.HTTP_PARTIAL){
+			mOffset = offset;
+			mLength = parseTotalLength(mConnection.getHeaderField("Content-Range"));
+		}else if(code == HttpURLConnection.HTTP_OK){
+			//The server ignored the range, the download starts from the beginning.
+			mOffset = 0;
+			mLength = parseLength(mConnection.getHeaderField("Content-Length"));
+		}else{
+			mConnection.disconnect();
+			throw new IOException("Unexpected response downloading " + mUrl + ": " + code);
+		}
+		
+		mVersion = mConnection.getHeaderField("ETag");
+		if(mVersion == null){
+			mVersion = mConnection.getHeaderField("Last-Modified");
+		}
+		return Channels.newChannel(mConnection.getInputStream());
+	}
+
+	@Override
+	public long getOffset() {
+		return mOffset;
+	}
+
+	@Override
+	public long getLength() {
+		return mLength;
+	}
+
+	@Override
+	public String getVersion() {
+		return mVersion;
+	}
+	
+	//Content-Range: bytes <first>-<last>/<total>
+	private static long parseTotalLength(String contentRange){
+		if(contentRange == null){
+			return -1;
+		}
+		int slash = contentRange.lastIndexOf('/');
+		return slash < 0 ? -1 : parseLength(contentRange.substring(slash + 1));
+	}
+	
+	private static long parseLength(String value){
+		if(value == null){
+			return -1;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
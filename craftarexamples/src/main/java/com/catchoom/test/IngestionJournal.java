@@ -0,0 +1,130 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Progress of the ingestion of a bundle, saved next to the staged copy so an interrupted ingestion can be resumed.
+ */
+class IngestionJournal {
+
+	private final static String KEY_VERSION = "version";
+	private final static String KEY_LENGTH = "length";
+	private final static String KEY_DOWNLOADED_BYTES = "downloadedBytes";
+	private final static String KEY_DOWNLOAD_COMPLETE = "downloadComplete";
+	private final static String KEY_VERIFIED_ENTRIES = "verifiedEntries";
+	
+	private final File mFile;
+	String mVersion;
+	long mLength = -1;
+	long mDownloadedBytes = 0;
+	boolean mIsDownloadComplete = false;
+	int mVerifiedEntries = 0;
+	
+	private IngestionJournal(File file){
+		mFile = file;
+	}
+	
+	/**
+	 * Loads the journal from the file. A missing or damaged journal means nothing was ingested yet.
+	 */
+	static IngestionJournal load(File file){
+		IngestionJournal journal = new IngestionJournal(file);
+		if(!file.exists()){
+			return journal;
+		}
+		Properties properties = new Properties();
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+			journal.mVersion = properties.getProperty(KEY_VERSION);
+			journal.mLength = Long.parseLong(properties.getProperty(KEY_LENGTH, "-1"));
+			journal.mDownloadedBytes = Long.parseLong(properties.getProperty(KEY_DOWNLOADED_BYTES, "0"));
+			journal.mIsDownloadComplete = Boolean.parseBoolean(properties.getProperty(KEY_DOWNLOAD_COMPLETE));
+			journal.mVerifiedEntries = Integer.parseInt(properties.getProperty(KEY_VERIFIED_ENTRIES, "0"));
+		} catch (IOException e) {
+			journal.reset(null, -1);
+		} catch (NumberFormatException e) {
+			journal.reset(null, -1);
+		}
+		return journal;
+	}
+	
+	/**
+	 * True if the journal describes a copy of the same bundle the source has now.
+	 */
+	boolean matches(String version, long length){
+		if(mVersion == null ? version != null : !mVersion.equals(version)){
+			return false;
+		}
+		return mLength == length;
+	}
+	
+	void reset(String version, long length){
+		mVersion = version;
+		mLength = length;
+		mDownloadedBytes = 0;
+		mIsDownloadComplete = false;
+		mVerifiedEntries = 0;
+	}
+	
+	/**
+	 * Writes the journal to a temporary file and renames it, so a crash never leaves a partial journal.
+	 */
+	void save() throws IOException {
+		Properties properties = new Properties();
+		if(mVersion != null){
+			properties.setProperty(KEY_VERSION, mVersion);
+		}
+		properties.setProperty(KEY_LENGTH, Long.toString(mLength));
+		properties.setProperty(KEY_DOWNLOADED_BYTES, Long.toString(mDownloadedBytes));
+		properties.setProperty(KEY_DOWNLOAD_COMPLETE, Boolean.toString(mIsDownloadComplete));
+		properties.setProperty(KEY_VERIFIED_ENTRIES, Integer.toString(mVerifiedEntries));
+		
+		File tmpFile = new File(mFile.getPath() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmpFile);
+		try {
+			properties.store(out, null);
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		if(!tmpFile.renameTo(mFile)){
+			throw new IOException("Could not rename "+tmpFile+" to "+mFile);
+		}
+	}
+	
+	void delete(){
+		mFile.delete();
+	}
+}
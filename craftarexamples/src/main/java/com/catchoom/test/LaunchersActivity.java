@@ -22,8 +22,11 @@
 
 package com.catchoom.test;
 
+import java.io.File;
+
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.app.ProgressDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.PackageManager;
@@ -36,10 +39,25 @@ import android.view.Window;
 import android.widget.Toast;
 
 import com.catchoom.advancedexamples.ExtendedRecognitionActivity;
+import com.catchoom.advancedexamples.MetricsFileExporter;
+import com.catchoom.advancedexamples.RecognitionMetrics;
+import com.craftar.CraftARError;
+import com.craftar.CraftAROnDeviceCollection;
 import com.craftar.CraftARSDK;
 
 public class LaunchersActivity extends Activity implements OnClickListener {
 	
+	private final static long METRICS_EXPORT_PERIOD_MILLIS = 60000;
+	
+	//Writes the recognition metrics of all the examples to the internal storage while the app is running.
+	MetricsFileExporter mMetricsExporter;
+	
+	CollectionStartup mCollectionStartup;
+	
+	//Shown when a recognition example is opened before the collection is ready.
+	ProgressDialog mWaitCollectionDialog;
+	CollectionReadyFuture.Listener mWaitCollectionListener;
+	
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
@@ -56,6 +74,26 @@ public class LaunchersActivity extends Activity implements OnClickListener {
 		// Setup bottom Links
 		findViewById(R.id.imageButton_logo).setOnClickListener(this);
 		findViewById(R.id.button_signUp).setOnClickListener(this);
+		
+		mMetricsExporter = new MetricsFileExporter(RecognitionMetrics.Instance(), new File(getFilesDir(), "recognition_metrics.txt"));
+		mMetricsExporter.start(METRICS_EXPORT_PERIOD_MILLIS);
+		
+		mCollectionStartup = ((CraftARExamplesApplication) getApplication()).getCollectionStartup();
+		mCollectionStartup.mark("launcher.created");
+	}
+	
+	@Override
+	protected void onResume() {
+		super.onResume();
+		//No example is running now, so it's a good moment to load the new version of the collection (if it was synced).
+		mCollectionStartup.applyPendingUpdate();
+	}
+	
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		mMetricsExporter.stop();
+		cancelWaitForCollection();
 	}
 
 	@Override
@@ -63,6 +101,7 @@ public class LaunchersActivity extends Activity implements OnClickListener {
 				
 		// Clicked on play links
 		Intent intent = null;
+		boolean needsCollection = true;
 		switch(v.getId()){
 		case R.id.play_finder:
 			intent = new Intent(this, RecognitionFinderActivity.class);
@@ -77,10 +116,12 @@ public class LaunchersActivity extends Activity implements OnClickListener {
 			intent = new Intent(this, ExtendedRecognitionActivity.class);
 			break;
 		case R.id.imageButton_logo:
+			needsCollection = false;
 			intent = new Intent(this, WebActivity.class);
 			intent.putExtra(WebActivity.WEB_ACTIVITY_URL, "http://catchoom.com/product/?utm_source=CraftARExamplesApp&amp;utm_medium=Android&amp;utm_campaign=HelpWithAPI");
 			break;
 		case R.id.button_signUp:
+			needsCollection = false;
 			intent = new Intent(this, WebActivity.class);
 			intent.putExtra(WebActivity.WEB_ACTIVITY_URL, "https://my.craftar.net/try-free?utm_source=CraftARExamplesApp&amp;utm_medium=Android&amp;utm_campaign=HelpWithAPI");
 			break;
@@ -88,15 +129,73 @@ public class LaunchersActivity extends Activity implements OnClickListener {
 		
 		if (intent != null) {
 			final Intent finalIntent = intent;
+			final boolean finalNeedsCollection = needsCollection;
 			checkPermissionAndAskIfNotGranted(new Runnable() {
 				@Override
 				public void run() {
-					startActivity(finalIntent);
+					if(finalNeedsCollection){
+						startWhenCollectionReady(finalIntent);
+					}else{
+						startActivity(finalIntent);
+					}
 				}
 			});
 			return;
 		}
 	}
+	
+	private void startWhenCollectionReady(final Intent intent){
+		CollectionReadyFuture readyFuture = mCollectionStartup.getReadyFuture();
+		if(readyFuture.isReady()){
+			startActivity(intent);
+			return;
+		}
+		
+		cancelWaitForCollection();
+		if(!readyFuture.isDone()){
+			mWaitCollectionDialog = new ProgressDialog(this);
+			mWaitCollectionDialog.setTitle("Loading collection...");
+			mWaitCollectionDialog.setMessage("Loading collection in progress ...");
+			mWaitCollectionDialog.setCancelable(true);
+			mWaitCollectionDialog.setOnCancelListener(new DialogInterface.OnCancelListener() {
+				@Override
+				public void onCancel(DialogInterface dialog) {
+					cancelWaitForCollection();
+				}
+			});
+			mWaitCollectionDialog.show();
+		}
+		
+		mWaitCollectionListener = new CollectionReadyFuture.Listener() {
+			@Override
+			public void collectionReady(CraftAROnDeviceCollection collection) {
+				cancelWaitForCollection();
+				if(!isFinishing()){
+					startActivity(intent);
+				}
+			}
+
+			@Override
+			public void collectionFailed(CraftARError error) {
+				cancelWaitForCollection();
+				Toast.makeText(getApplicationContext(), "The collection could not be loaded ("+error.getErrorCode()+"):"+error.getErrorMessage(), Toast.LENGTH_SHORT).show();
+			}
+		};
+		readyFuture.addListener(mWaitCollectionListener);
+	}
+	
+	private void cancelWaitForCollection(){
+		if(mWaitCollectionListener != null){
+			mCollectionStartup.getReadyFuture().removeListener(mWaitCollectionListener);
+			mWaitCollectionListener = null;
+		}
+		if(mWaitCollectionDialog != null){
+			if(mWaitCollectionDialog.isShowing()){
+				mWaitCollectionDialog.dismiss();
+			}
+			mWaitCollectionDialog = null;
+		}
+	}
 
 
 
@@ -0,0 +1,120 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.v4.view.ViewPager;
+import android.util.Log;
+
+import com.catchoom.advancedexamples.StateCpuAccounting;
+
+/**
+ * Suspends the capture of the {@link CraftARCameraFragment} while its page is not shown in the ViewPager, and 
+ * resumes it as soon as a swipe starts bringing the page into view, so it's already running when the page settles.
+ * 
+ * The camera preview itself keeps running while the capture is suspended: the SDK has no call to pause it (only 
+ * to restart it after a picture), and restarting the camera would delay the page. Suspending stops the finder and 
+ * drops the frames before they reach the search pipeline, so what's saved is the search work, not the preview.
+ * 
+ * The CPU time of the process is accounted to each state, and logged when the activity pauses, so the savings
+ * of suspending the capture can be checked.
+ */
+public class PageCaptureController implements ViewPager.OnPageChangeListener {
+
+	private final static String TAG = "PageCaptureController";
+	
+	public enum CaptureState {
+		//The camera page is shown.
+		ACTIVE,
+		//A swipe is bringing the camera page into view.
+		RESUMING,
+		//The camera page is not shown.
+		SUSPENDED
+	}
+	
+	private final CraftARCameraFragment mCameraFragment;
+	private final int mCameraPage;
+	private final StateCpuAccounting<CaptureState> mCpuAccounting = new StateCpuAccounting<CaptureState>(CaptureState.class);
+	private int mCurrentPage;
+	private CaptureState mState;
+	
+	public PageCaptureController(CraftARCameraFragment cameraFragment, int cameraPage, int currentPage){
+		mCameraFragment = cameraFragment;
+		mCameraPage = cameraPage;
+		mCurrentPage = currentPage;
+		mState = currentPage == cameraPage ? CaptureState.ACTIVE : CaptureState.SUSPENDED;
+	}
+	
+	public CaptureState getState(){
+		return mState;
+	}
+	
+	public StateCpuAccounting<CaptureState> getCpuAccounting(){
+		return mCpuAccounting;
+	}
+	
+	public void onResume(){
+		mCpuAccounting.enter(mState, SystemClock.elapsedRealtime(), Process.getElapsedCpuTime());
+	}
+	
+	public void onPause(){
+		mCpuAccounting.stop(SystemClock.elapsedRealtime(), Process.getElapsedCpuTime());
+		Log.d(TAG, "CPU time per capture state:\n" + mCpuAccounting.dump());
+	}
+
+	@Override
+	public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+		//While scrolling, the pages shown are position and position + 1 (if positionOffset > 0).
+		boolean isCameraPageInView = position == mCameraPage || (position + 1 == mCameraPage && positionOffset > 0);
+		if(mState == CaptureState.SUSPENDED && isCameraPageInView){
+			setState(CaptureState.RESUMING);
+		}
+	}
+
+	@Override
+	public void onPageSelected(int position) {
+		mCurrentPage = position;
+	}
+
+	@Override
+	public void onPageScrollStateChanged(int state) {
+		if(state == ViewPager.SCROLL_STATE_IDLE){
+			setState(mCurrentPage == mCameraPage ? CaptureState.ACTIVE : CaptureState.SUSPENDED);
+		}
+	}
+	
+	private void setState(CaptureState state){
+		if(state == mState){
+			return;
+		}
+		boolean wasSuspended = mState == CaptureState.SUSPENDED;
+		mState = state;
+		mCpuAccounting.enter(state, SystemClock.elapsedRealtime(), Process.getElapsedCpuTime());
+		if(state == CaptureState.SUSPENDED){
+			mCameraFragment.suspendCapture();
+		}else if(wasSuspended){
+			mCameraFragment.resumeCapture();
+		}
+	}
+}
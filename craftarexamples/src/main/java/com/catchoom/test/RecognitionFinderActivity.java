@@ -33,11 +33,27 @@ import android.widget.Toast;
 
 import com.catchoom.test.R;
 import com.craftar.CraftARActivity;
+import com.catchoom.advancedexamples.CaptureSessionManager;
+import com.catchoom.advancedexamples.ContrastNormalizationOperator;
+import com.catchoom.advancedexamples.FinderGovernor;
+import com.catchoom.advancedexamples.FinderSessionTimer;
+import com.catchoom.advancedexamples.FrameBufferPool;
+import com.catchoom.advancedexamples.FramePipeline;
+import com.catchoom.advancedexamples.GovernedSearchController;
+import com.catchoom.advancedexamples.LumaExtractor;
+import com.catchoom.advancedexamples.PreprocessingSearchController;
+import com.catchoom.advancedexamples.PrioritySearchController;
+import com.catchoom.advancedexamples.RecognitionMetrics;
+import com.catchoom.advancedexamples.SceneGatedSearchController;
+import com.catchoom.advancedexamples.SearchPath;
+import com.catchoom.advancedexamples.SharpnessFrameAnalyzer;
+import com.catchoom.advancedexamples.TrackingSearchController;
 import com.craftar.CraftARError;
 import com.craftar.CraftAROnDeviceIR;
 import com.craftar.CraftARResult;
 import com.craftar.CraftARSDK;
 import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
 
 public class RecognitionFinderActivity extends CraftARActivity implements CraftARSearchResponseHandler{
 
@@ -46,10 +62,68 @@ public class RecognitionFinderActivity extends CraftARActivity implements CraftA
 	CraftAROnDeviceIR mOnDeviceIR;
 	CraftARSDK mCraftARSDK;
 	View mScanningLayout;
-	long startFinderTimeMillis;
-	private final static long FINDER_SESSION_TIME_MILLIS= 10000;
+	FinderGovernor mFinderGovernor;
+	FinderSessionTimer mSessionTimer;
 	boolean mIsActivityRunning = false;
 	
+	//The finder session ends when nothing has changed in front of the camera for this time. Use FinderGovernor.NEVER for kiosk-like screens.
+	final static long FINDER_IDLE_TIMEOUT_MILLIS = 10000;
+	
+	//Largest preview frame preprocessed before it's searched. Bigger frames are searched as they come.
+	final static int PREPROCESSED_FRAME_CAPACITY = 640 * 480;
+	
+	//Key of the finder sessions in the CaptureSessionManager.
+	final static String FINDER_SESSION_KEY = "finder";
+	
+	//Tell the SDK that the OnDeviceIR who manage the calls to singleShotSearch() and startFinding().
+	//In this case, as we are using on-device-image-recognition, we will tell the SDK that the OnDeviceIR singleton will manage this calls.
+	//The TrackingSearchController skips the frames while the last recognized item stays in view, and the GovernedSearchController
+	//lowers the search rate while nothing is found, until the scene changes. The SceneGatedSearchController skips the frames that look like the last
+	//missed one. The PreprocessingSearchController skips the blurred frames, and forwards the rest in grayscale with normalized contrast. The
+	//PrioritySearchController sends them to the OnDeviceIR one at a time, so a picture taken while finding doesn't wait behind the frames.
+	final static CaptureSessionManager.SearchControllerProvider FINDER_SEARCH_CONTROLLER_PROVIDER = new CaptureSessionManager.SearchControllerProvider() {
+		@Override
+		public SearchController createSearchController(CraftARSearchResponseHandler responseHandler) {
+			FinderGovernor governor = new FinderGovernor(FinderGovernor.endWhenIdle(FINDER_IDLE_TIMEOUT_MILLIS));
+			FramePipeline pipeline = new FramePipeline(new FrameBufferPool(2, PREPROCESSED_FRAME_CAPACITY), new ContrastNormalizationOperator());
+			PrioritySearchController prioritySearchController = new PrioritySearchController(CraftAROnDeviceIR.Instance(), CraftAROnDeviceIR.Instance().getSearchController(), null);
+			PreprocessingSearchController preprocessingSearchController = new PreprocessingSearchController(prioritySearchController, 
+					new LumaExtractor(1), pipeline, new SharpnessFrameAnalyzer());
+			SceneGatedSearchController sceneGatedSearchController = new SceneGatedSearchController(preprocessingSearchController, responseHandler);
+			GovernedSearchController governedSearchController = new GovernedSearchController(sceneGatedSearchController, sceneGatedSearchController, governor);
+			TrackingSearchController trackingSearchController = new TrackingSearchController(governedSearchController, governedSearchController);
+			prioritySearchController.setResponseHandler(trackingSearchController);
+			return trackingSearchController;
+		}
+
+		@Override
+		public void attachSearchController(SearchController searchController) {
+			TrackingSearchController trackingSearchController = (TrackingSearchController) searchController;
+			//Whatever the last screen was tracking is not in view anymore.
+			trackingSearchController.stopTracking();
+			//Tell the SDK that we want to receive the search responses through the PrioritySearchController, which forwards them to the tracker.
+			CraftAROnDeviceIR.Instance().setCraftARSearchResponseHandler(getPrioritySearchController(searchController));
+		}
+	};
+	
+	/**
+	 * Returns the governor of a SearchController created by the FINDER_SEARCH_CONTROLLER_PROVIDER.
+	 */
+	static FinderGovernor getFinderGovernor(SearchController finderSearchController){
+		TrackingSearchController trackingSearchController = (TrackingSearchController) finderSearchController;
+		return ((GovernedSearchController) trackingSearchController.getSearchController()).getGovernor();
+	}
+	
+	/**
+	 * Returns the PrioritySearchController of a SearchController created by the FINDER_SEARCH_CONTROLLER_PROVIDER.
+	 */
+	static PrioritySearchController getPrioritySearchController(SearchController finderSearchController){
+		GovernedSearchController governedSearchController = (GovernedSearchController) ((TrackingSearchController) finderSearchController).getSearchController();
+		SceneGatedSearchController sceneGatedSearchController = (SceneGatedSearchController) governedSearchController.getSearchController();
+		PreprocessingSearchController preprocessingSearchController = (PreprocessingSearchController) sceneGatedSearchController.getSearchController();
+		return (PrioritySearchController) preprocessingSearchController.getSearchController();
+	}
+	
 	@Override
 	public void onCreate(Bundle savedInstanceState){
 		super.onCreate(savedInstanceState);
@@ -63,17 +137,22 @@ public class RecognitionFinderActivity extends CraftARActivity implements CraftA
 		//Obtain an instance of the CraftARSDK (which manages the camera interaction).
         //Note we already called CraftARSDK.init() in the Splash Screen, so we don't have to do it again
 		mCraftARSDK = CraftARSDK.Instance();
-		mCraftARSDK.startCapture(this);
 		
 		//Get the instance to the OnDeviceIR singleton (it has already been initialized in the SplashScreenActivity, and the collectoins are already loaded).
 		mOnDeviceIR = CraftAROnDeviceIR.Instance();	
 		
-		//Tell the SDK that the OnDeviceIR who manage the calls to singleShotSearch() and startFinding().
-		//In this case, as we are using on-device-image-recognition, we will tell the SDK that the OnDeviceIR singleton will manage this calls.
-		mCraftARSDK.setSearchController(mOnDeviceIR.getSearchController());
-		
-		//Tell the SDK that we want to receive the search responses in this class.
-		mOnDeviceIR.setCraftARSearchResponseHandler(this);
+		//Start the capture and set the SearchController. If a finder screen was closed a moment ago, its SearchController is reused.
+		SearchController searchController = CaptureSessionManager.Instance().startSession(this, this, FINDER_SESSION_KEY, this, FINDER_SEARCH_CONTROLLER_PROVIDER);
+		mFinderGovernor = getFinderGovernor(searchController);
+		//The governor decides when the finder session is over, even if no frame is being searched.
+		mSessionTimer = new FinderSessionTimer(mFinderGovernor, new FinderSessionTimer.Listener() {
+			@Override
+			public void finderSessionOver() {
+				stopFinding();
+				//No object were found during this session
+				showNoObjectsDialog();
+			}
+		});
 		
 		mScanningLayout = findViewById(R.id.layout_scanning);
 	
@@ -88,24 +167,19 @@ public class RecognitionFinderActivity extends CraftARActivity implements CraftA
 	@Override
 	public void onPreviewStarted(int width, int height) {
 		Log.d(TAG, "Preview started with width:"+width+", height:"+height);
+		CaptureSessionManager.Instance().onPreviewStarted(this);
 	}
 
 	@Override
 	public void searchResults(ArrayList<CraftARResult> results,
 			long searchTimeMillis, int requestCode) {
 		//Callback with the search results
+		RecognitionMetrics.Instance().recordSearch(SearchPath.ON_DEVICE_FINDER, searchTimeMillis, results.size());
 		
 		if(results.size() > 0){
 			//We found something! Show the results
 			stopFinding();
 			showResultDialog(results);	
-		}else{
-			long ellapsedTime = System.currentTimeMillis() - startFinderTimeMillis;
-			if(ellapsedTime > FINDER_SESSION_TIME_MILLIS ){
-				stopFinding();
-				//No object were found during this session
-				showNoObjectsDialog();
-			}
 		}
 	}
 
@@ -155,11 +229,12 @@ public class RecognitionFinderActivity extends CraftARActivity implements CraftA
 
 	private void startFinding(){
 		mScanningLayout.setVisibility(View.VISIBLE);
-		mCraftARSDK.startFinder();
-		startFinderTimeMillis= System.currentTimeMillis();
+		mCraftARSDK.startFinder(); //The governor starts a new session when the finder is activated.
+		mSessionTimer.start();
 	}
 	
 	private void stopFinding(){
+		mSessionTimer.stop();
 		mCraftARSDK.stopFinder();
 		mScanningLayout.setVisibility(View.INVISIBLE);
 	}
@@ -167,6 +242,7 @@ public class RecognitionFinderActivity extends CraftARActivity implements CraftA
 	
 	@Override
 	public void searchFailed(CraftARError error, int requestCode) {
+		RecognitionMetrics.Instance().recordFailure(SearchPath.ON_DEVICE_FINDER, error.getErrorCode());
 		Log.e(TAG, "Search failed("+error.getErrorCode()+"):"+error.getErrorMessage());
 	}
 	
@@ -187,6 +263,12 @@ public class RecognitionFinderActivity extends CraftARActivity implements CraftA
 		super.onStart();
 		mIsActivityRunning = true;
 	}
+	
+	@Override
+	protected void onDestroy(){
+		super.onDestroy();
+		CaptureSessionManager.Instance().endSession(this);
+	}
 
 	
 }
@@ -30,8 +30,15 @@ import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
 import android.view.View.OnClickListener;
+import android.view.View.OnLongClickListener;
 import android.widget.Toast;
 
+import com.catchoom.advancedexamples.CachingSearchController;
+import com.catchoom.advancedexamples.CaptureSessionManager;
+import com.catchoom.advancedexamples.RecognitionMetrics;
+import com.catchoom.advancedexamples.RecognitionResultCache;
+import com.catchoom.advancedexamples.RoiSearchController;
+import com.catchoom.advancedexamples.SearchPath;
 import com.craftar.CraftARActivity;
 import com.craftar.CraftARCamera;
 import com.craftar.CraftARError;
@@ -39,17 +46,44 @@ import com.craftar.CraftAROnDeviceIR;
 import com.craftar.CraftARResult;
 import com.craftar.CraftARSDK;
 import com.craftar.CraftARSearchResponseHandler;
+import com.craftar.SearchController;
 
 public class RecognitionSingleShotActivity extends CraftARActivity implements CraftARSearchResponseHandler, OnClickListener {
 
 	private final static String TAG = "RecognitionSingleShotActivity";
 
+	//Pictures that look the same as one recognized in the last 10 minutes are answered from this cache, without searching again.
+	private final static RecognitionResultCache<ArrayList<CraftARResult>> RESULT_CACHE = 
+			new RecognitionResultCache<ArrayList<CraftARResult>>(6, 10 * 60 * 1000, 64, 256 * 1024);
+
+	//Tell the SDK that the OnDeviceIR who manage the calls to singleShotSearch() and startFinding().
+	//In this case, as we are using on-device-image-recognition, we will tell the SDK that the OnDeviceIR singleton will manage this calls.
+	//The CachingSearchController answers the pictures that were already recognized, and forwards the rest to the RoiSearchController,
+	//which searches the full pictures. A long tap on the screen switches it to ROI mode, where the center of the picture and then 
+	//some tiles are searched before the full picture, so small items are recognized too. Another long tap switches it back.
+	private final static CaptureSessionManager.SearchControllerProvider SEARCH_CONTROLLER_PROVIDER = new CaptureSessionManager.SearchControllerProvider() {
+		@Override
+		public SearchController createSearchController(CraftARSearchResponseHandler responseHandler) {
+			RoiSearchController roiSearchController = new RoiSearchController(CraftAROnDeviceIR.Instance(), null);
+			CachingSearchController cachingSearchController = new CachingSearchController(roiSearchController, responseHandler, RESULT_CACHE);
+			roiSearchController.setResponseHandler(cachingSearchController);
+			return cachingSearchController;
+		}
+
+		@Override
+		public void attachSearchController(SearchController searchController) {
+			//Tell the SDK that we want to receive the search responses through the RoiSearchController, which forwards them to the cache.
+			CraftAROnDeviceIR.Instance().setCraftARSearchResponseHandler((RoiSearchController) ((CachingSearchController) searchController).getSearchController());
+		}
+	};
+
 	private View mScanningLayout;
 	private View mTapToScanLayout;
 		
 	CraftAROnDeviceIR mOnDeviceIR;
 	CraftARSDK mCraftARSDK;
 	CraftARCamera mCamera;
+	RoiSearchController mRoiSearchController;
 	private boolean mIsActivityRunning;
 		
 	@Override
@@ -65,17 +99,13 @@ public class RecognitionSingleShotActivity extends CraftARActivity implements Cr
 		 //Obtain an instance of the CraftARSDK (which manages the camera interaction).
         //Note we already called CraftARSDK.init() in the Splash Screen, so we don't have to do it again
 		mCraftARSDK = CraftARSDK.Instance();
-		mCraftARSDK.startCapture(this);
 		
 		//Get the instance to the OnDeviceIR singleton (it has already been initialized in the SplashScreenActivity, and the collections are already loaded).
 		mOnDeviceIR = CraftAROnDeviceIR.Instance();	
 		
-		//Tell the SDK that the OnDeviceIR who manage the calls to singleShotSearch() and startFinding().
-		//In this case, as we are using on-device-image-recognition, we will tell the SDK that the OnDeviceIR singleton will manage this calls.
-		mCraftARSDK.setSearchController(mOnDeviceIR.getSearchController());
-		
-		//Tell the SDK that we want to receive the search responses in this class.
-		mOnDeviceIR.setCraftARSearchResponseHandler(this);
+		//Start the capture and set the SearchController. If this screen was closed a moment ago, its SearchController is reused.
+		CachingSearchController searchController = (CachingSearchController) CaptureSessionManager.Instance().startSession(this, this, TAG, this, SEARCH_CONTROLLER_PROVIDER);
+		mRoiSearchController = (RoiSearchController) searchController.getSearchController();
 		
 		//Obtain the reference to the camera, to be able to restart the camera, trigger focus etc.
 		//Note that if you use single-shot, you will always have to obtain the reference to the camera to restart it after you take the snapshot.
@@ -85,6 +115,13 @@ public class RecognitionSingleShotActivity extends CraftARActivity implements Cr
 		mTapToScanLayout = findViewById(R.id.tap_to_scan);
 		mTapToScanLayout.setClickable(true);
 		mTapToScanLayout.setOnClickListener(this);	
+		mTapToScanLayout.setOnLongClickListener(new OnLongClickListener() {
+			@Override
+			public boolean onLongClick(View v) {
+				switchRoiMode();
+				return true;
+			}
+		});
 	}
 
 	@Override
@@ -94,8 +131,7 @@ public class RecognitionSingleShotActivity extends CraftARActivity implements Cr
 
 	@Override
 	public void onPreviewStarted(int width, int height) {
-		// TODO Auto-generated method stub
-		
+		CaptureSessionManager.Instance().onPreviewStarted(this);
 	}
 	@Override
 	public void onClick(View v) {
@@ -106,10 +142,22 @@ public class RecognitionSingleShotActivity extends CraftARActivity implements Cr
 		}
 	}
 
+	private void switchRoiMode(){
+		RoiSearchController.Mode mode = mRoiSearchController.getMode() == RoiSearchController.Mode.ROI ? RoiSearchController.Mode.FULL_FRAME : RoiSearchController.Mode.ROI;
+		mRoiSearchController.setMode(mode);
+		for(RoiSearchController.Mode each : RoiSearchController.Mode.values()){
+			Log.d(TAG, each+" time to recognition:"+mRoiSearchController.getTimeToRecognition(each));
+		}
+		Toast.makeText(getApplicationContext(), "Searching "+(mode == RoiSearchController.Mode.ROI ? "center, tiles and full frame" : "full frame"), Toast.LENGTH_SHORT).show();
+	}
+
 	@Override
 	public void searchResults(ArrayList<CraftARResult> result,
 			long searchTimeMillis, int requestCode) {
 		//Callback with the search results
+		if(requestCode != CachingSearchController.CACHED_RESULTS_REQUEST_CODE){
+			RecognitionMetrics.Instance().recordSearch(SearchPath.ON_DEVICE_SINGLE_SHOT, searchTimeMillis, result.size());
+		}
 		if(result.size()> 0){
 			//We found something! Show the results
 			showResultDialog(result);
@@ -166,6 +214,7 @@ public class RecognitionSingleShotActivity extends CraftARActivity implements Cr
 	
 	@Override
 	public void searchFailed(CraftARError error, int requestCode) {
+		RecognitionMetrics.Instance().recordFailure(SearchPath.ON_DEVICE_SINGLE_SHOT, error.getErrorCode());
 		mScanningLayout.setVisibility(View.GONE);
 		mTapToScanLayout.setVisibility(View.VISIBLE);		
 		Log.e(TAG, "Search failed("+error.getErrorCode()+"):"+error.getErrorMessage());
@@ -191,6 +240,12 @@ public class RecognitionSingleShotActivity extends CraftARActivity implements Cr
 		mIsActivityRunning = true;
 		
 	}
+	
+	@Override
+	protected void onDestroy(){
+		super.onDestroy();
+		CaptureSessionManager.Instance().endSession(this);
+	}
 
 	
 
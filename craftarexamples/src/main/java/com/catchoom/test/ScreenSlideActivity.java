@@ -54,6 +54,11 @@ public class ScreenSlideActivity extends CraftARActivity{
     private CraftARCameraFragment cameraFragment;
     private EmptyFragment emptyFragment;
     
+    /**
+     * Suspends the capture of the camera page while it's not shown.
+     */
+    private PageCaptureController mPageCaptureController;
+    
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -68,6 +73,24 @@ public class ScreenSlideActivity extends CraftARActivity{
         mPager = (ViewPager) findViewById(R.id.pager);
         mPagerAdapter = new ScreenSlidePagerAdapter(getFragmentManager());
         mPager.setAdapter(mPagerAdapter);
+        mPageCaptureController = new PageCaptureController(cameraFragment, 0, mPager.getCurrentItem());
+        mPager.setOnPageChangeListener(mPageCaptureController);
+    }
+    
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if(mPageCaptureController != null){
+            mPageCaptureController.onResume();
+        }
+    }
+    
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if(mPageCaptureController != null){
+            mPageCaptureController.onPause();
+        }
     }
 
 
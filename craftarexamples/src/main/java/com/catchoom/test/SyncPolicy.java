@@ -0,0 +1,83 @@
+// com.craftar.craftarexamplesir is free software. You may use it under the MIT license, which is copied
+// below and available at http://opensource.org/licenses/MIT
+//
+// Copyright (c) 2014 Catchoom Technologies S.L.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of
+// this software and associated documentation files (the "Software"), to deal in
+// the Software without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the
+// Software, and to permit persons to whom the Software is furnished to do so, subject to
+// the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+// PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+// FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+// OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+// DEALINGS IN THE SOFTWARE.
+
+package com.catchoom.test;
+
+/**
+ * Decides when the on-device collection should be synced with the CraftAR service.
+ * 
+ * A sync is only due when the last successful sync (or check that found no changes) is older than the minimum
+ * interval. When it's due, it's deferred until the app is idle for a while and, optionally, until the device is
+ * on an unmetered network.
+ */
+public class SyncPolicy {
+
+	public final static long DEFAULT_MIN_INTERVAL_MILLIS = 24 * 60 * 60 * 1000L;
+	public final static long DEFAULT_IDLE_DELAY_MILLIS = 10000;
+	
+	private long mMinIntervalMillis = DEFAULT_MIN_INTERVAL_MILLIS;
+	private long mIdleDelayMillis = DEFAULT_IDLE_DELAY_MILLIS;
+	private boolean mRequiresUnmeteredNetwork = true;
+	
+	public void setMinIntervalMillis(long minIntervalMillis){
+		mMinIntervalMillis = minIntervalMillis;
+	}
+	
+	public long getMinIntervalMillis(){
+		return mMinIntervalMillis;
+	}
+	
+	/**
+	 * Time the app has to be running before a sync starts, so it doesn't compete with the startup.
+	 */
+	public void setIdleDelayMillis(long idleDelayMillis){
+		mIdleDelayMillis = idleDelayMillis;
+	}
+	
+	public long getIdleDelayMillis(){
+		return mIdleDelayMillis;
+	}
+	
+	public void setRequiresUnmeteredNetwork(boolean requiresUnmeteredNetwork){
+		mRequiresUnmeteredNetwork = requiresUnmeteredNetwork;
+	}
+	
+	public boolean requiresUnmeteredNetwork(){
+		return mRequiresUnmeteredNetwork;
+	}
+	
+	/**
+	 * @param nowMillis current wall-clock time.
+	 * @param lastSyncMillis wall-clock time of the last successful sync, or a negative value if the collection was never synced.
+	 */
+	public boolean isSyncDue(long nowMillis, long lastSyncMillis){
+		if(lastSyncMillis < 0 || nowMillis < lastSyncMillis){
+			//Never synced, or the clock went backwards.
+			return true;
+		}
+		return nowMillis - lastSyncMillis >= mMinIntervalMillis;
+	}
+	
+	public boolean canSyncOn(boolean isConnected, boolean isMetered){
+		return isConnected && !(isMetered && mRequiresUnmeteredNetwork);
+	}
+}